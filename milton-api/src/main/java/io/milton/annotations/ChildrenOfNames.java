@@ -0,0 +1,62 @@
+/*
+ *
+ * Copyright 2014 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.milton.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Batch form of {@code @ChildOf}. Marks a method as one which locates a number
+ * of children of a parent given their names, such as with a single IN query.
+ *
+ * <p>This is used when many resources are requested at once, for example by
+ * calendar-multiget and addressbook-multiget reports. Any names which are not
+ * returned will still be looked up with {@code @ChildOf} and {@code @ChildrenOf}
+ * methods as usual, so this does not need to locate every type of child.
+ *
+ * <p>The method must:
+ * <ul>
+ *  <li>return a Map keyed on the requested name, where the values are the same
+ *  objects as would be returned by the corresponding ChildOf method</li>
+ *  <li>the first argument must be the hierarchical parent of these objects</li>
+ *  <li>the second argument must be a List or Collection of the requested names</li>
+ * </ul>
+ * <p>
+ * Eg
+ * <pre>
+ * {@literal @}ChildrenOfNames
+ * public Map{@literal <}String, Contact{@literal >} findContacts(AddressBook book, List{@literal <}String{@literal >} names) {
+ *    return ContactDao.findByNames(book, names);
+ * }
+ * </pre>
+ *
+ * @author brad
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ChildrenOfNames {
+
+    /**
+     * Will only be given names which end with the given suffix. Default is
+     * empty string so will always match
+     *
+     * @return empty string by default.
+     */
+    String pathSuffix() default "";
+}
@@ -22,6 +22,9 @@ import org.apache.commons.io.IOUtils;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
 
 /**
@@ -126,4 +129,53 @@ public class RangeUtils {
         }
     }
 
+    /**
+     * Writes range from a FileChannel to OutputStream. Unlike the InputStream
+     * version this positions directly at the start of the range, and uses
+     * FileChannel.transferTo so the data does not need to pass through a heap
+     * buffer when the OutputStream is backed by a channel.
+     * @param in FileChannel to read from. Is not closed.
+     * @param range Range to write, or null for the whole file.
+     * @param responseOut OutputStream to write to.
+     * @throws IOException in case of IO exception.
+     */
+    public static void writeRange(FileChannel in, Range range, OutputStream responseOut) throws IOException {
+        long size = in.size();
+        long start = 0;
+        long finish = size - 1;
+        if (range != null) {
+            if (range.getStart() != null) {
+                start = range.getStart();
+            }
+            if (range.getFinish() != null) {
+                finish = Math.min(finish, range.getFinish());
+            }
+        }
+        transfer(in, start, finish - start + 1, responseOut);
+    }
+
+    /**
+     * Transfers count bytes starting at position from the FileChannel to the
+     * OutputStream, or fewer if the end of file is reached.
+     * @param in FileChannel to read from. Its position is not changed.
+     * @param position Position in the file of the first byte.
+     * @param count Number of bytes to send.
+     * @param out OutputStream to write to.
+     * @throws IOException in case of IO exception.
+     */
+    public static void transfer(FileChannel in, long position, long count, OutputStream out) throws IOException {
+        if (count <= 0) {
+            return;
+        }
+        WritableByteChannel target = Channels.newChannel(out);
+        long end = position + count;
+        while (position < end) {
+            long n = in.transferTo(position, end - position, target);
+            if (n <= 0) {
+                break; // end of file
+            }
+            position += n;
+        }
+    }
+
 }
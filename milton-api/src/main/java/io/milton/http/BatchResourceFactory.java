@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http;
+
+import io.milton.http.exceptions.BadRequestException;
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.resource.Resource;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Optional extension to ResourceFactory for implementations which can locate
+ * many resources more efficiently together than one at a time.
+ * <p/>
+ * This is used by reports such as calendar-multiget and addressbook-multiget,
+ * where a client may request thousands of resources, usually all within the
+ * same collection. Implementations can use this to resolve shared parent
+ * collections once and to fetch the children with a single backend query.
+ * <p/>
+ * Paths have the same form as those given to getResource.
+ *
+ * @author brad
+ */
+public interface BatchResourceFactory extends ResourceFactory {
+
+    /**
+     * Locate the resources for the given paths.
+     * <p/>
+     * The returned map is keyed on the paths exactly as given. Paths which do
+     * not correspond to a resource should be omitted (or mapped to null)
+     *
+     * @param host Full host name with port number, e.g. milton.ettrema.com:80
+     * @param paths Relative paths on server, e.g. /calendars/user1/cal/a.ics
+     * @return a map of path to resource, never null
+     */
+    Map<String, Resource> getResources(String host, Collection<String> paths) throws NotAuthorizedException, BadRequestException;
+
+    /**
+     * Null-safe helper to locate a number of resources using the given
+     * factory, using getResources if the factory supports it, and otherwise
+     * calling getResource for each path
+     *
+     * @param resourceFactory
+     * @param host
+     * @param paths
+     * @return a map of path to resource, in the order of the given paths
+     */
+    static Map<String, Resource> getResources(ResourceFactory resourceFactory, String host, Collection<String> paths) throws NotAuthorizedException, BadRequestException {
+        if (resourceFactory instanceof BatchResourceFactory) {
+            return ((BatchResourceFactory) resourceFactory).getResources(host, paths);
+        }
+        Map<String, Resource> map = new LinkedHashMap<>();
+        for (String path : paths) {
+            Resource r = resourceFactory.getResource(host, path);
+            if (r != null) {
+                map.put(path, r);
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http;
+
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.resource.LockableResource;
+import java.util.List;
+
+/**
+ * A LockManager which keys locks on the path of the locked resource, and
+ * indexes them hierarchically.
+ *
+ * This allows Depth: infinity locks on collections, where the lock applies to
+ * every member of the collection, and it allows checking whether anything
+ * within a collection is locked without listing its members. Eg before
+ * deleting or moving a large folder.
+ *
+ * Resources which know their own path should use these methods in preference
+ * to the ones on LockManager. Paths are slash separated, and leading or
+ * trailing slashes are ignored.
+ *
+ * @author brad
+ */
+public interface HierarchicalLockManager extends LockManager {
+
+    /**
+     * Lock the resource at the given path. Fails with ALREADY_LOCKED if the
+     * path is within a depth infinity lock, or if this is a depth infinity
+     * lock and something within the path is already locked.
+     */
+    LockResult lock(LockTimeout timeout, LockInfo lockInfo, LockableResource resource, String path) throws NotAuthorizedException;
+
+    LockResult refresh(String token, LockTimeout timeout, LockableResource resource, String path) throws NotAuthorizedException;
+
+    /**
+     * Remove the lock with the given token, which may be on the path or on a
+     * collection containing it with depth infinity
+     */
+    void unlock(String tokenId, LockableResource resource, String path) throws NotAuthorizedException;
+
+    /**
+     *
+     * @return - the lock directly on the path, or the depth infinity lock on
+     * a containing collection, or null if the path is not locked
+     */
+    LockToken getCurrentToken(LockableResource resource, String path);
+
+    /**
+     * Find all locks on the path and on anything within it. Returns quickly
+     * when there are none, without regard to the number of members
+     *
+     * @param path
+     * @return - a list of current locks, never null
+     */
+    List<LockToken> getLocksWithin(String path);
+
+    /**
+     * Discard the locks on the path and anything within it. Called when the
+     * resource is deleted or moved away
+     *
+     * @param path
+     */
+    void removeLocksWithin(String path);
+}
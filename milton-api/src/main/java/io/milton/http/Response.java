@@ -44,7 +44,8 @@ public interface Response {
 
     enum ContentEncoding {
 
-        GZIP("gzip");
+        GZIP("gzip"),
+        DEFLATE("deflate");
         public final String code;
 
         ContentEncoding(String code) {
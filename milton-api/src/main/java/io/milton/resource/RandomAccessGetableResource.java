@@ -0,0 +1,42 @@
+/*
+ *
+ * Copyright 2014 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.milton.resource;
+
+/**
+ * Specialisation of GetableResource for content which can be read from any
+ * position, such as a file.
+ * <p>
+ * For a multiple range GET, sendContent is normally called once with a null
+ * range and the requested ranges are picked out of the full content. If this
+ * returns true, sendContent is instead called once per range, in the order
+ * requested, with the range given as absolute start and finish positions.
+ * Implementations must then send exactly that range, going directly to the
+ * start position rather than reading through the content before it.
+ * <p>
+ * getContentLength must also return a value for this to be used.
+ *
+ * @author brad
+ */
+public interface RandomAccessGetableResource extends GetableResource {
+    /**
+     * True if sendContent can be called repeatedly, and will seek to the start
+     * of each requested range
+     *
+     * @return
+     */
+    boolean isRandomAccess();
+}
@@ -23,6 +23,10 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -123,4 +127,34 @@ public class RangeUtilsTest extends TestCase {
         System.out.println("testWrite_OpenRange2 wrote: " + out.toByteArray().length + " bytes");
         assertEquals(40823, out.toByteArray().length);
     }       
+
+    public void testWriteRange_Channel() throws IOException {
+        byte[] buf = new byte[10000];
+        for (int i = 0; i < buf.length; i++) {
+            buf[i] = (byte) i;
+        }
+        Path file = Files.createTempFile("rangeutils", ".bin");
+        try {
+            Files.write(file, buf);
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                RangeUtils.writeRange(ch, new Range(5000L, 5099L), out);
+                assertTrue(Arrays.equals(Arrays.copyOfRange(buf, 5000, 5100), out.toByteArray()));
+
+                out = new ByteArrayOutputStream();
+                RangeUtils.writeRange(ch, new Range(9990L, null), out); // open ended
+                assertTrue(Arrays.equals(Arrays.copyOfRange(buf, 9990, 10000), out.toByteArray()));
+
+                out = new ByteArrayOutputStream();
+                RangeUtils.writeRange(ch, new Range(9000L, 20000L), out); // beyond end of file
+                assertEquals(1000, out.size());
+
+                out = new ByteArrayOutputStream();
+                RangeUtils.writeRange(ch, null, out);
+                assertTrue(Arrays.equals(buf, out.toByteArray()));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
 }
@@ -0,0 +1,468 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.httpclient;
+
+import io.milton.http.exceptions.BadRequestException;
+import io.milton.http.exceptions.ConflictException;
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.http.exceptions.NotFoundException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.namespace.QName;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.output.XMLOutputter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds what has changed in a collection since it was last synchronised,
+ * and writes the changes into the Folder's children cache
+ *
+ * Where the server supports it this uses the sync-collection REPORT (RFC
+ * 6578), so only changed and removed members are transferred. The sync-token
+ * for each collection is kept in a map of State objects keyed on the folder
+ * href. Pass in a persistent map to keep tokens across restarts.
+ *
+ * If the server does not support sync-collection this falls back to a Depth:0
+ * PROPFIND for the CTag, and only lists the collection if the CTag has
+ * changed. The REPORT is only given up on for good when the server says it is
+ * not supported, ie a 501, or a 403 or 409 with the DAV:supported-report
+ * precondition. Other failures fall back for that sync only. The listing is
+ * then compared against the ETags from the previous sync to find changed and
+ * removed members.
+ *
+ * Calls for different folders may run concurrently, but a single folder
+ * should only be synchronised by one thread at a time
+ *
+ * @author brad
+ */
+public class CollectionSync {
+
+    private static final Logger log = LoggerFactory.getLogger(CollectionSync.class);
+
+    public static final QName CTAG = new QName("http://calendarserver.org/ns/", "getctag", "cs");
+
+    private static final List<QName> FIELDS = Collections.unmodifiableList(Arrays.asList(
+            RespUtils.davName("resourcetype"),
+            RespUtils.davName("getetag"),
+            RespUtils.davName("displayname"),
+            RespUtils.davName("getcontentlength"),
+            RespUtils.davName("getcontenttype"),
+            RespUtils.davName("creationdate"),
+            RespUtils.davName("getlastmodified")));
+
+    private final Host host;
+    private final Map<String, State> states;
+    private int maxTruncatedRequests = 100;
+
+    public CollectionSync(Host host) {
+        this(host, new ConcurrentHashMap<>());
+    }
+
+    /**
+     *
+     * @param host
+     * @param states - holds the sync state for each collection, keyed on
+     * href. Must be thread safe if folders are synchronised concurrently
+     */
+    public CollectionSync(Host host, Map<String, State> states) {
+        this.host = host;
+        this.states = states;
+    }
+
+    /**
+     * Bring the cached children of the folder up to date with the server
+     *
+     * @param folder
+     * @return - what changed since the last sync
+     * @throws IOException
+     * @throws HttpException
+     * @throws NotAuthorizedException
+     * @throws BadRequestException
+     */
+    public Changes sync(Folder folder) throws IOException, HttpException, NotAuthorizedException, BadRequestException {
+        String href = folder.href();
+        State state = states.get(href);
+        if (state == null) {
+            state = new State();
+        }
+        Changes changes = null;
+        if (!Boolean.FALSE.equals(state.syncCollectionSupported)) {
+            changes = syncCollection(folder, state);
+        }
+        if (changes == null) {
+            changes = compareTags(folder, state);
+        }
+        states.put(href, state);
+        return changes;
+    }
+
+    /**
+     *
+     * @param folder
+     * @return - the sync state for the folder, or null if it has not been
+     * synchronised
+     */
+    public State getState(Folder folder) {
+        return states.get(folder.href());
+    }
+
+    /**
+     * Forget the sync state for the folder, so the next sync lists it in full
+     *
+     * @param folder
+     */
+    public void reset(Folder folder) {
+        states.remove(folder.href());
+    }
+
+    /**
+     *
+     * @return - null if the server does not support sync-collection on this
+     * folder
+     */
+    private Changes syncCollection(Folder folder, State state) throws IOException, HttpException, NotAuthorizedException, BadRequestException {
+        String selfPath = pathOf(folder.encodedUrl());
+        // deltas can only be merged into a cached listing
+        String token = folder.isChildrenCached() ? state.syncToken : null;
+        boolean full = token == null;
+        Map<String, PropFindResponse> changed = new HashMap<>();
+        Set<String> removed = new HashSet<>();
+        boolean truncated = false;
+        for (int i = 0; i < maxTruncatedRequests; i++) {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            int status;
+            try {
+                status = host.doReport(folder.encodedUrl(), 0, buildSyncCollectionXml(token), bout);
+            } catch (URISyntaxException ex) {
+                throw new RuntimeException(ex);
+            }
+            if (status == 403 || status == 409) {
+                if (token != null) {
+                    // most likely the token has expired, so start again with a full listing
+                    log.info("sync-token rejected for {}, doing a full sync", folder.href());
+                    token = null;
+                    full = true;
+                    changed.clear();
+                    removed.clear();
+                    continue;
+                }
+            }
+            if (status != 207) {
+                if (status == 401 || (status >= 500 && status != 501)) {
+                    processResultCode(status, folder.encodedUrl());
+                }
+                if (isUnsupported(status, bout.toByteArray())) {
+                    log.info("sync-collection not supported for {}, status {}", folder.href(), status);
+                    state.syncCollectionSupported = false;
+                } else {
+                    log.info("sync-collection failed for {}, status {}, comparing tags instead", folder.href(), status);
+                }
+                return null;
+            }
+            state.syncCollectionSupported = true;
+            Document doc;
+            try {
+                doc = Host.getJDomDocument(new ByteArrayInputStream(bout.toByteArray()));
+            } catch (JDOMException ex) {
+                throw new RuntimeException(ex);
+            }
+            Element root = doc.getRootElement();
+            truncated = false;
+            for (Element el : RespUtils.getElements(root, "response")) {
+                String childHref = RespUtils.asString(el, "href");
+                if (childHref == null) {
+                    continue;
+                }
+                String childPath = pathOf(childHref.trim());
+                String st = RespUtils.asString(el, "status");
+                if (childPath.equals(selfPath)) {
+                    if (st != null && st.contains("507")) {
+                        truncated = true;
+                    }
+                } else if (st != null && st.contains("404")) {
+                    String name = nameOf(childPath);
+                    changed.remove(name);
+                    removed.add(name);
+                } else {
+                    PropFindResponse resp = new PropFindResponse(null, el);
+                    String name = Resource.decodePath(resp.getName());
+                    removed.remove(name);
+                    changed.put(name, resp);
+                }
+            }
+            String newToken = RespUtils.asString(root, "sync-token");
+            if (newToken != null) {
+                token = newToken.trim();
+            }
+            if (!truncated) {
+                break;
+            }
+        }
+        if (truncated) {
+            log.warn("sync-collection for {} was still truncated after {} requests, the next sync will continue from the last token", folder.href(), maxTruncatedRequests);
+        }
+        state.syncToken = token;
+        List<Resource> resources = folder.applyChanges(new ArrayList<>(changed.values()), removed, full);
+        return new Changes(resources, full ? Collections.emptySet() : removed, full, true);
+    }
+
+    /**
+     * Whether a failed sync-collection REPORT means the server does not support
+     * it, rather than a problem with this request
+     */
+    private static boolean isUnsupported(int status, byte[] body) {
+        if (status == 501) {
+            return true;
+        }
+        if ((status != 403 && status != 409) || body.length == 0) {
+            return false;
+        }
+        try {
+            Element root = Host.getJDomDocument(new ByteArrayInputStream(body)).getRootElement();
+            return root.getChild("supported-report", RespUtils.NS_DAV) != null;
+        } catch (JDOMException | RuntimeException ex) {
+            log.trace("error body is not xml", ex);
+            return false;
+        }
+    }
+
+    private Changes compareTags(Folder folder, State state) throws IOException, HttpException, NotAuthorizedException, BadRequestException {
+        boolean cached = folder.isChildrenCached();
+        List<PropFindResponse> self = host._doPropFind(folder.encodedUrl(), 0, Collections.singletonList(CTAG));
+        String ctag = null;
+        if (self != null && !self.isEmpty()) {
+            Object o = self.get(0).getProperties().get(CTAG);
+            ctag = o == null ? null : o.toString();
+        }
+        if (cached && ctag != null && ctag.equals(state.ctag)) {
+            return new Changes(Collections.emptyList(), Collections.emptySet(), false, false);
+        }
+        List<PropFindResponse> list = host._doPropFind(folder.encodedUrl(), 1, FIELDS);
+        if (list == null) {
+            list = Collections.emptyList();
+        }
+        Map<String, String> etags = new HashMap<>();
+        List<PropFindResponse> changed = new ArrayList<>();
+        for (PropFindResponse resp : list) {
+            String name = Resource.decodePath(resp.getName());
+            String etag = resp.getEtag();
+            etags.put(name, etag);
+            if (!cached || !state.etags.containsKey(name) || etag == null || !etag.equals(state.etags.get(name))) {
+                changed.add(resp);
+            }
+        }
+        Set<String> removed = new HashSet<>();
+        if (cached) {
+            for (String name : state.etags.keySet()) {
+                if (!etags.containsKey(name)) {
+                    removed.add(name);
+                }
+            }
+        }
+        state.ctag = ctag;
+        state.etags = etags;
+        List<Resource> resources = folder.applyChanges(changed, removed, !cached);
+        return new Changes(resources, removed, !cached, false);
+    }
+
+    private String buildSyncCollectionXml(String token) {
+        try {
+            Element elSync = new Element("sync-collection", RespUtils.NS_DAV);
+            Document doc = new Document(elSync);
+            Element elToken = new Element("sync-token", RespUtils.NS_DAV);
+            if (token != null) {
+                elToken.setText(token);
+            }
+            elSync.addContent(elToken);
+            Element elLevel = new Element("sync-level", RespUtils.NS_DAV);
+            elLevel.setText("1");
+            elSync.addContent(elLevel);
+            Element elProp = new Element("prop", RespUtils.NS_DAV);
+            elSync.addContent(elProp);
+            for (QName qn : FIELDS) {
+                elProp.addContent(new Element(qn.getLocalPart(), qn.getPrefix(), qn.getNamespaceURI()));
+            }
+            XMLOutputter outputter = new XMLOutputter();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            outputter.output(doc, out);
+            return out.toString("UTF-8");
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void processResultCode(int status, String href) throws HttpException, NotAuthorizedException, BadRequestException {
+        try {
+            Utils.processResultCode(status, href);
+        } catch (ConflictException | NotFoundException ex) {
+            throw new GenericHttpException(status, href);
+        }
+    }
+
+    /**
+     *
+     * @param href - an absolute URL or path, percentage encoded
+     * @return - the decoded path, without a trailing slash
+     */
+    static String pathOf(String href) {
+        String path;
+        try {
+            path = new URI(href).getPath();
+        } catch (URISyntaxException ex) {
+            path = Resource.decodePath(href);
+        }
+        if (path == null) {
+            path = "";
+        }
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    private static String nameOf(String path) {
+        int pos = path.lastIndexOf('/');
+        return pos < 0 ? path : path.substring(pos + 1);
+    }
+
+    public int getMaxTruncatedRequests() {
+        return maxTruncatedRequests;
+    }
+
+    /**
+     * If the server truncates a sync-collection response (507 on the
+     * collection) the report is repeated with the new token, up to this many
+     * times
+     *
+     * @param maxTruncatedRequests
+     */
+    public void setMaxTruncatedRequests(int maxTruncatedRequests) {
+        this.maxTruncatedRequests = maxTruncatedRequests;
+    }
+
+    /**
+     * Sync state for a single collection
+     */
+    public static class State implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String syncToken;
+        private Boolean syncCollectionSupported;
+        private String ctag;
+        private Map<String, String> etags = new HashMap<>();
+
+        /**
+         *
+         * @return - the sync-token from the last sync-collection report, or
+         * null
+         */
+        public String getSyncToken() {
+            return syncToken;
+        }
+
+        /**
+         *
+         * @return - null if not yet known
+         */
+        public Boolean getSyncCollectionSupported() {
+            return syncCollectionSupported;
+        }
+
+        /**
+         *
+         * @return - the CTag from the last fallback sync, or null
+         */
+        public String getCtag() {
+            return ctag;
+        }
+    }
+
+    /**
+     * The result of a sync
+     */
+    public static class Changes {
+
+        private final List<Resource> changed;
+        private final Set<String> removed;
+        private final boolean fullListing;
+        private final boolean syncCollection;
+
+        Changes(List<Resource> changed, Set<String> removed, boolean fullListing, boolean syncCollection) {
+            this.changed = changed;
+            this.removed = removed;
+            this.fullListing = fullListing;
+            this.syncCollection = syncCollection;
+        }
+
+        /**
+         *
+         * @return - members which are new or modified. After a full listing
+         * this is every member
+         */
+        public List<Resource> getChanged() {
+            return changed;
+        }
+
+        /**
+         *
+         * @return - names of members which have been removed
+         */
+        public Set<String> getRemoved() {
+            return removed;
+        }
+
+        /**
+         *
+         * @return - true if the collection was listed in full, rather than
+         * as a delta against the previous sync
+         */
+        public boolean isFullListing() {
+            return fullListing;
+        }
+
+        /**
+         *
+         * @return - true if the sync-collection report was used
+         */
+        public boolean isSyncCollection() {
+            return syncCollection;
+        }
+
+        public boolean isEmpty() {
+            return changed.isEmpty() && removed.isEmpty();
+        }
+    }
+}
@@ -32,6 +32,8 @@ import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
@@ -353,21 +355,80 @@ public class Folder extends Resource {
     }
 
     void notifyOnChildAdded(Resource child) {
+        fireChildAdded(child);
+        // the list of children in the cache for this folder is no longer valid, so flush it
+        cache.remove(this);
+    }
+
+    void notifyOnChildRemoved(Resource child) {
+        fireChildRemoved(child);
+        // the list of children in the cache for this folder is no longer valid, so flush it
+        cache.remove(this);
+    }
+
+    private void fireChildAdded(Resource child) {
         List<FolderListener> l2 = new ArrayList<>(folderListeners); // defensive copy in case the folderListeners is changed by the listeners
         for (FolderListener l : l2) {
             l.onChildAdded(this, child);
         }
-        // the list of children in the cache for this folder is no longer valid, so flush it
-        cache.remove(this);
     }
 
-    void notifyOnChildRemoved(Resource child) {
+    private void fireChildRemoved(Resource child) {
         List<FolderListener> l2 = new ArrayList<>(folderListeners);// defensive copy in case the folderListeners is changed by the listeners
         for (FolderListener l : l2) {
             l.onChildRemoved(this, child);
         }
-        // the list of children in the cache for this folder is no longer valid, so flush it
-        cache.remove(this);
+    }
+
+    /**
+     *
+     * @return - true if the children of this folder are currently cached
+     */
+    boolean isChildrenCached() {
+        return cache.containsKey(this);
+    }
+
+    /**
+     * Merge a set of changes, as found by CollectionSync, into the cached
+     * children. Unlike notifyOnChildAdded this updates the cache rather than
+     * flushing it, so the next call to children() does not need a PROPFIND
+     *
+     * Listeners are told about removed members, and a modified member is
+     * reported as removed and then added
+     *
+     * @param changed - new or modified members
+     * @param removed - names of members which no longer exist
+     * @param replace - true if changed is the complete list of members
+     * @return - the resources created for the changed members
+     */
+    List<Resource> applyChanges(List<PropFindResponse> changed, Collection<String> removed, boolean replace) {
+        Map<String, Resource> before = new LinkedHashMap<>();
+        List<Resource> current = cache.get(this);
+        if (current != null) {
+            for (Resource r : current) {
+                before.put(r.name, r);
+            }
+        }
+        Map<String, Resource> after = replace ? new LinkedHashMap<>() : new LinkedHashMap<>(before);
+        for (String name : removed) {
+            after.remove(name);
+        }
+        List<Resource> added = new ArrayList<>();
+        for (PropFindResponse resp : changed) {
+            Resource r = Resource.fromResponse(this, resp, cache);
+            after.put(r.name, r);
+            added.add(r);
+        }
+        cache.put(this, new ArrayList<>(after.values()));
+        for (Resource old : before.values()) {
+            if (after.get(old.name) != old) {
+                fireChildRemoved(old);
+            }
+        }
+        for (Resource r : added) {
+            fireChildAdded(r);
+        }
+        return added;
     }
 
     @Override
@@ -32,51 +32,49 @@ import io.milton.common.LogUtils;
 import io.milton.http.DateUtils;
 import io.milton.http.DateUtils.DateParseException;
 import java.io.*;
+import java.net.ProxySelector;
 import java.net.SocketTimeoutException;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import javax.xml.namespace.QName;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.*;
 import org.apache.http.auth.*;
 import org.apache.http.client.*;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.params.HttpConnectionParams;
-import org.apache.http.params.HttpParams;
 import org.apache.http.client.methods.HttpOptions;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.protocol.ClientContext;
 import org.apache.http.client.protocol.HttpClientContext;
-import org.apache.http.conn.ClientConnectionManager;
-import org.apache.http.conn.ConnectionKeepAliveStrategy;
-import org.apache.http.conn.params.ConnRoutePNames;
-import org.apache.http.conn.routing.HttpRoutePlanner;
-import org.apache.http.conn.scheme.PlainSocketFactory;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeRegistry;
-import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.auth.DigestScheme;
 import org.apache.http.impl.client.BasicCookieStore;
-import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultRedirectStrategy;
-import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultRoutePlanner;
 import org.apache.http.impl.cookie.BasicClientCookie;
 import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.params.BasicHttpParams;
-import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.protocol.*;
 import org.jdom2.Document;
 import org.jdom2.Element;
@@ -109,6 +107,8 @@ public class Host extends Folder {
             + "</D:lockinfo>";
     private static final Set<String> WEBDAV_REDIRECTABLE = new HashSet<>(Arrays.asList("PROPFIND", "LOCK", "UNLOCK", "DELETE"));
     private static final Logger log = LoggerFactory.getLogger(Host.class);
+    private static final int DEFAULT_MAX_PER_ROUTE = 20;
+    private static final long DEFAULT_KEEP_ALIVE_MILLIS = 30000;
     public final String server;
     public final Integer port;
     public final String user;
@@ -118,14 +118,16 @@ public class Host extends Folder {
      * time in milliseconds to be used for all timeout parameters
      */
     private int timeout;
-    private final DefaultHttpClient client;
+    private final CloseableHttpClient client;
+    private final PoolingHttpClientConnectionManager connectionManager;
     private final TransferService transferService;
     private final FileSyncer fileSyncer;
-    private final List<ConnectionListener> connectionListeners = new ArrayList<>();
+    private final List<ConnectionListener> connectionListeners = new CopyOnWriteArrayList<>();
     private boolean secure; // use HTTPS if true
     private boolean usePreemptiveAuth = true;
     private boolean useDigestForPreemptiveAuth = true; // if true we will do pre-emptive auth with Digest, otherwise will use Basic
-    private final Map<String, String> cookies = new HashMap<>();
+    private final Map<String, String> cookies = new ConcurrentHashMap<>();
+    private volatile long keepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
 
     static {
 //    System.setProperty("org.apache.commons.logging.Log", "org.apache.commons.logging.impl.SimpleLog");
@@ -189,26 +191,22 @@ public class Host extends Folder {
         this.port = port;
         this.user = user;
         this.password = password;
-        HttpParams params = new BasicHttpParams();
-        HttpConnectionParams.setConnectionTimeout(params, timeoutMillis);
-        HttpConnectionParams.setSoTimeout(params, timeoutMillis);
-        HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
-
-        // Create and initialize scheme registry
-        SchemeRegistry schemeRegistry = new SchemeRegistry();
-        schemeRegistry.register(new Scheme("http", 80, PlainSocketFactory.getSocketFactory()));
-        schemeRegistry.register(new Scheme("https", 443, SSLSocketFactory.getSocketFactory()));
-
-        // Create an HttpClient with the ThreadSafeClientConnManager.
-        // This connection manager must be used if more than one thread will
-        // be using the HttpClient.
-        ThreadSafeClientConnManager cm = new ThreadSafeClientConnManager(schemeRegistry);
-        cm.setMaxTotal(200);
-
-        client = new MyDefaultHttpClient(cm, params);
-        HttpRequestRetryHandler handler = new NoRetryHttpRequestRetryHandler();
-        client.setHttpRequestRetryHandler(handler);
-        client.setRedirectStrategy(new DefaultRedirectStrategy() {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(200);
+        connectionManager.setDefaultMaxPerRoute(DEFAULT_MAX_PER_ROUTE);
+        connectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig.Builder requestConfig = RequestConfig.custom()
+                .setConnectTimeout(timeoutMillis)
+                .setSocketTimeout(timeoutMillis)
+                .setConnectionRequestTimeout(timeoutMillis);
+        CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultCredentialsProvider(credentialsProvider)
+                .setRetryHandler(new NoRetryHttpRequestRetryHandler())
+                .setKeepAliveStrategy(new KeepAliveStrategy());
+        builder.setRedirectStrategy(new DefaultRedirectStrategy() {
             @Override
             public boolean isRedirected(
                     final HttpRequest request,
@@ -234,27 +232,29 @@ public class Host extends Folder {
         });
 
         if (user != null) {
-            client.getCredentialsProvider().setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(user, password));
+            credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(user, password));
             PreemptiveAuthInterceptor interceptor = new PreemptiveAuthInterceptor();
-            client.addRequestInterceptor(interceptor, 0);
+            builder.addInterceptorFirst(interceptor);
         }
 
         if (proxyDetails != null) {
             if (proxyDetails.isUseSystemProxy()) {
                 System.setProperty("java.net.useSystemProxies", "true");
+                builder.setRoutePlanner(new SystemDefaultRoutePlanner(ProxySelector.getDefault()));
             } else {
                 System.setProperty("java.net.useSystemProxies", "false");
                 if (proxyDetails.getProxyHost() != null && proxyDetails.getProxyHost().length() > 0) {
                     HttpHost proxy = new HttpHost(proxyDetails.getProxyHost(), proxyDetails.getProxyPort(), "http");
-                    client.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, proxy);
+                    requestConfig.setProxy(proxy);
                     if (proxyDetails.hasAuth()) {
-                        client.getCredentialsProvider().setCredentials(
+                        credentialsProvider.setCredentials(
                                 new AuthScope(proxyDetails.getProxyHost(), proxyDetails.getProxyPort()),
                                 new UsernamePasswordCredentials(proxyDetails.getUserName(), proxyDetails.getPassword()));
                     }
                 }
             }
         }
+        client = builder.setDefaultRequestConfig(requestConfig.build()).build();
         transferService = new TransferService(client, connectionListeners);
         transferService.setTimeout(timeoutMillis);
         this.fileSyncer = fileSyncer;
@@ -334,7 +334,7 @@ public class Host extends Folder {
      * @throws NotFoundException
      * @throws URISyntaxException
      */
-    public synchronized int doMkCol(Path newUri) throws io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException, URISyntaxException {
+    public int doMkCol(Path newUri) throws io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException, URISyntaxException {
         String url = this.buildEncodedUrl(newUri);
         return doMkCol(url);
     }
@@ -345,7 +345,7 @@ public class Host extends Folder {
      * @return
      * @throws io.milton.httpclient.HttpException
      */
-    public synchronized int doMkCol(String newUri) throws io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException, URISyntaxException {
+    public int doMkCol(String newUri) throws io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException, URISyntaxException {
         notifyStartRequest();
         MkColMethod p = new MkColMethod(newUri);
         try {
@@ -372,7 +372,7 @@ public class Host extends Folder {
      * @param uri - must be encoded
      * @return
      */
-    public synchronized String doLock(String uri) throws io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException, URISyntaxException {
+    public String doLock(String uri) throws io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException, URISyntaxException {
         return doLock(uri, -1);
     }
 
@@ -385,7 +385,7 @@ public class Host extends Folder {
      * @return
      * @throws io.milton.httpclient.HttpException
      */
-    public synchronized String doLock(String uri, int timeout) throws io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException, URISyntaxException {
+    public String doLock(String uri, int timeout) throws io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException, URISyntaxException {
         notifyStartRequest();
         LockMethod p = new LockMethod(uri, timeout);
         try {
@@ -410,7 +410,7 @@ public class Host extends Folder {
      * @return
      * @throws io.milton.httpclient.HttpException
      */
-    public synchronized int doUnLock(String uri, String lockToken) throws io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException, URISyntaxException {
+    public int doUnLock(String uri, String lockToken) throws io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException, URISyntaxException {
         notifyStartRequest();
         UnLockMethod p = new UnLockMethod(uri, lockToken);
         try {
@@ -485,11 +485,35 @@ public class Host extends Folder {
      * @param contentType
      * @return - the result code
      */
-    public synchronized HttpResult doPut(String newUri, InputStream content, Long contentLength, String contentType, IfMatchCheck matchCheck, ProgressListener listener) {
+    public HttpResult doPut(String newUri, InputStream content, Long contentLength, String contentType, IfMatchCheck matchCheck, ProgressListener listener) {
         LogUtils.trace(log, "doPut", newUri);
         return transferService.put(newUri, content, contentLength, contentType, matchCheck, listener, newContext());
     }
 
+    /**
+     * Send a REPORT request. The status is returned rather than checked, so
+     * callers can distinguish an unsupported report from other failures
+     *
+     * @param url - fully qualified and encoded URL
+     * @param depth
+     * @param xml - the request body
+     * @param out - receives the response body
+     * @return - the status code
+     * @throws IOException
+     * @throws URISyntaxException
+     */
+    public int doReport(String url, int depth, String xml, OutputStream out) throws IOException, URISyntaxException {
+        notifyStartRequest();
+        ReportMethod m = new ReportMethod(url);
+        m.addHeader("Depth", depth + "");
+        m.setEntity(new StringEntity(xml, "text/xml", "UTF-8"));
+        try {
+            return Utils.executeHttpWithStatus(client, m, out, newContext());
+        } finally {
+            notifyFinishRequest();
+        }
+    }
+
     /**
      *
      * @param from - encoded source url
@@ -497,7 +521,7 @@ public class Host extends Folder {
      * @return
      * @throws io.milton.httpclient.HttpException
      */
-    public synchronized int doCopy(String from, String newUri) throws io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException, URISyntaxException {
+    public int doCopy(String from, String newUri) throws io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException, URISyntaxException {
         notifyStartRequest();
         CopyMethod m = new CopyMethod(from, newUri);
         m.addHeader("Overwrite", "T");
@@ -526,7 +550,7 @@ public class Host extends Folder {
      * @throws BadRequestException
      * @throws NotFoundException
      */
-    public synchronized int doDelete(Path path) throws IOException, io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException {
+    public int doDelete(Path path) throws IOException, io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException {
         String dest = buildEncodedUrl(path);
         return doDelete(dest);
     }
@@ -538,7 +562,7 @@ public class Host extends Folder {
      * @throws IOException
      * @throws io.milton.httpclient.HttpException
      */
-    public synchronized int doDelete(String url) throws IOException, io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException {
+    public int doDelete(String url) throws IOException, io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException {
         notifyStartRequest();
         HttpDelete m = new HttpDelete(url);
         try {
@@ -559,7 +583,7 @@ public class Host extends Folder {
      * @return
      * @throws IOException
      */
-    public synchronized int doMove(String sourceUrl, String newUri) throws IOException, io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException, URISyntaxException {
+    public int doMove(String sourceUrl, String newUri) throws IOException, io.milton.httpclient.HttpException, NotAuthorizedException, ConflictException, BadRequestException, NotFoundException, URISyntaxException {
         notifyStartRequest();
         MoveMethod m = new MoveMethod(sourceUrl, newUri);
         try {
@@ -571,12 +595,12 @@ public class Host extends Folder {
         }
     }
 
-    public synchronized List<PropFindResponse> propFind(Path path, int depth, QName... fields) throws IOException, io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException {
+    public List<PropFindResponse> propFind(Path path, int depth, QName... fields) throws IOException, io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException {
         List<QName> list = new ArrayList<>(Arrays.asList(fields));
         return propFind(path, depth, list);
     }
 
-    public synchronized List<PropFindResponse> propFind(String path, int depth, QName... fields) throws IOException, io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException {
+    public List<PropFindResponse> propFind(String path, int depth, QName... fields) throws IOException, io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException {
         List<QName> list = new ArrayList<>(Arrays.asList(fields));
         String href = baseHref() + rootPath + path;
         log.info("propFind: href={}", href);
@@ -596,7 +620,7 @@ public class Host extends Folder {
      * @throws NotAuthorizedException
      * @throws BadRequestException
      */
-    public synchronized List<PropFindResponse> propFind(Path path, int depth, List<QName> fields) throws IOException, io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException {
+    public List<PropFindResponse> propFind(Path path, int depth, List<QName> fields) throws IOException, io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException {
         String url = buildEncodedUrl(path);
         return _doPropFind(url, depth, fields);
     }
@@ -611,7 +635,7 @@ public class Host extends Folder {
      * @throws IOException
      * @throws io.milton.httpclient.HttpException
      */
-    public synchronized List<PropFindResponse> _doPropFind(final String url, final int depth, List<QName> fields) throws IOException, io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException {
+    public List<PropFindResponse> _doPropFind(final String url, final int depth, List<QName> fields) throws IOException, io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException {
         log.info("doPropFind: " + url);
         notifyStartRequest();
         final PropFindMethod m = new PropFindMethod(url);
@@ -707,7 +731,7 @@ public class Host extends Folder {
      * @throws io.milton.httpclient.HttpException
      * @throws io.milton.httpclient.Utils.CancelledException
      */
-    public synchronized void doGet(String url, StreamReceiver receiver, List<Range> rangeList, ProgressListener listener) throws io.milton.httpclient.HttpException, Utils.CancelledException, NotAuthorizedException, BadRequestException, ConflictException, NotFoundException {
+    public void doGet(String url, StreamReceiver receiver, List<Range> rangeList, ProgressListener listener) throws io.milton.httpclient.HttpException, Utils.CancelledException, NotAuthorizedException, BadRequestException, ConflictException, NotFoundException {
         transferService.get(url, receiver, rangeList, listener, newContext());
     }
 
@@ -724,7 +748,7 @@ public class Host extends Folder {
      * @throws BadRequestException
      * @throws ConflictException
      */
-    public synchronized void doGet(Path path, final java.io.File file, ProgressListener listener) throws IOException, NotFoundException, io.milton.httpclient.HttpException, CancelledException, NotAuthorizedException, BadRequestException, ConflictException {
+    public void doGet(Path path, final java.io.File file, ProgressListener listener) throws IOException, NotFoundException, io.milton.httpclient.HttpException, CancelledException, NotAuthorizedException, BadRequestException, ConflictException {
         LogUtils.trace(log, "doGet", path);
         if (fileSyncer != null) {
             fileSyncer.download(this, path, file, listener);
@@ -747,11 +771,11 @@ public class Host extends Folder {
         }
     }
 
-    public synchronized byte[] doGet(Path path) throws IOException, NotFoundException, io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException, ConflictException {
+    public byte[] doGet(Path path) throws IOException, NotFoundException, io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException, ConflictException {
         return doGet(path, null);
     }
 
-    public synchronized byte[] doGet(Path path, Map<String, String> queryParams) throws IOException, NotFoundException, io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException, ConflictException {
+    public byte[] doGet(Path path, Map<String, String> queryParams) throws IOException, NotFoundException, io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException, ConflictException {
         LogUtils.trace(log, "doGet", path);
         ByteArrayOutputStream bout = new ByteArrayOutputStream();
         doGet(path, bout, queryParams);
@@ -759,7 +783,7 @@ public class Host extends Folder {
 
     }
 
-    public synchronized void doGet(Path path, final OutputStream out, Map<String, String> queryParams) throws IOException, NotFoundException, io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException, ConflictException {
+    public void doGet(Path path, final OutputStream out, Map<String, String> queryParams) throws IOException, NotFoundException, io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException, ConflictException {
         String url = this.buildEncodedUrl(path);
         LogUtils.trace(log, "doGet", url);
         if (queryParams != null && queryParams.size() > 0) {
@@ -780,7 +804,7 @@ public class Host extends Folder {
      * @throws IOException
      * @throws io.milton.httpclient.HttpException
      */
-    public synchronized void options(String path) throws java.net.ConnectException, NotAuthorizedException, UnknownHostException, SocketTimeoutException, IOException, io.milton.httpclient.HttpException, NotFoundException {
+    public void options(String path) throws java.net.ConnectException, NotAuthorizedException, UnknownHostException, SocketTimeoutException, IOException, io.milton.httpclient.HttpException, NotFoundException {
         String url = this.encodedUrl() + path;
         doOptions(url);
     }
@@ -790,7 +814,7 @@ public class Host extends Folder {
         doOptions(dest);
     }
 
-    private synchronized void doOptions(String url) throws NotFoundException, NotAuthorizedException, IOException, io.milton.httpclient.HttpException {
+    private void doOptions(String url) throws NotFoundException, NotAuthorizedException, IOException, io.milton.httpclient.HttpException {
         notifyStartRequest();
         log.trace("doOptions: {}", url);
         HttpOptions m = new HttpOptions(url);
@@ -822,7 +846,7 @@ public class Host extends Folder {
      * @throws ConflictException
      * @throws NotFoundException
      */
-    public synchronized byte[] get(Path path) throws io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException, ConflictException, NotFoundException {
+    public byte[] get(Path path) throws io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException, ConflictException, NotFoundException {
         String url = buildEncodedUrl(path);
         final ByteArrayOutputStream out = new ByteArrayOutputStream();
         try {
@@ -851,7 +875,7 @@ public class Host extends Folder {
      * @throws io.milton.http.exceptions.ConflictException
      * @throws io.milton.http.exceptions.NotFoundException
      */
-    public synchronized byte[] get(String path) throws io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException, ConflictException, NotFoundException {
+    public byte[] get(String path) throws io.milton.httpclient.HttpException, NotAuthorizedException, BadRequestException, ConflictException, NotFoundException {
         String url = this.encodedUrl() + path;
         final ByteArrayOutputStream out = new ByteArrayOutputStream();
         try {
@@ -1043,6 +1067,80 @@ public class Host extends Folder {
         transferService.setTimeout(timeout);
     }
 
+    public int getMaxConnections() {
+        return connectionManager.getMaxTotal();
+    }
+
+    /**
+     * The maximum number of pooled connections. Defaults to 200
+     *
+     * @param maxConnections
+     */
+    public void setMaxConnections(int maxConnections) {
+        connectionManager.setMaxTotal(maxConnections);
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return connectionManager.getDefaultMaxPerRoute();
+    }
+
+    /**
+     * The maximum number of pooled connections to any one server, which
+     * is the number of requests which can run concurrently. Defaults to 20
+     *
+     * @param maxConnectionsPerRoute
+     */
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * How long to keep an idle connection open for reuse, if the server
+     * doesnt send a Keep-Alive timeout. Defaults to 30 seconds
+     *
+     * @param keepAliveMillis
+     */
+    public void setKeepAliveMillis(long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    /**
+     * Connection pool statistics, ie leased, available and pending
+     * connections
+     *
+     * @return
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Close pooled connections which have been idle for longer than the
+     * given time
+     *
+     * @param idleMillis
+     */
+    public void closeIdleConnections(long idleMillis) {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Close the client and all pooled connections. This host can not be used
+     * afterwards
+     */
+    public void shutdown() {
+        try {
+            client.close();
+        } catch (IOException ex) {
+            log.warn("Exception closing http client", ex);
+        }
+    }
+
     public Map<String, String> getCookies() {
         return cookies;
     }
@@ -1154,8 +1252,8 @@ public class Host extends Folder {
 
     static class PreemptiveAuthInterceptor implements HttpRequestInterceptor {
 
-        private String nonce;
-        private String realm;
+        private volatile String nonce;
+        private volatile String realm;
 
         public PreemptiveAuthInterceptor() {
         }
@@ -1215,20 +1313,16 @@ public class Host extends Folder {
         }
     }
 
-    static class MyDefaultHttpClient extends DefaultHttpClient {
-
-        public MyDefaultHttpClient(ClientConnectionManager cm, HttpParams params) {
-            super(cm, params);
-        }
-
-        @Override
-        protected HttpRequestRetryHandler createHttpRequestRetryHandler() {
-            return new NoRetryHttpRequestRetryHandler();
-        }
+    /**
+     * Keep connections alive for as long as the server says, or keepAliveMillis
+     * if it doesnt say
+     */
+    private class KeepAliveStrategy extends DefaultConnectionKeepAliveStrategy {
 
         @Override
-        protected RequestDirector createClientRequestDirector(HttpRequestExecutor requestExec, ClientConnectionManager conman, ConnectionReuseStrategy reustrat, ConnectionKeepAliveStrategy kastrat, HttpRoutePlanner rouplan, HttpProcessor httpProcessor, HttpRequestRetryHandler retryHandler, RedirectStrategy redirectStrategy, AuthenticationHandler targetAuthHandler, AuthenticationHandler proxyAuthHandler, UserTokenHandler stateHandler, HttpParams params) {
-            return super.createClientRequestDirector(requestExec, conman, reustrat, kastrat, rouplan, httpProcessor, retryHandler, redirectStrategy, targetAuthHandler, proxyAuthHandler, stateHandler, params);
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long millis = super.getKeepAliveDuration(response, context);
+            return millis > 0 ? millis : keepAliveMillis;
         }
     }
 }
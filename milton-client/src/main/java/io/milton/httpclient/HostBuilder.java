@@ -38,10 +38,22 @@ public class HostBuilder {
     private int timeoutMillis;
     private FileSyncer fileSyncer;
     private boolean secure = false;
+    private int maxConnections;
+    private int maxConnectionsPerRoute;
+    private long keepAliveMillis;
     
     public Host buildHost() {
         Host h = new Host(server, rootPath, port, user, password, proxy, timeoutMillis, cache, fileSyncer);
         h.setSecure(secure);
+        if (maxConnections > 0) {
+            h.setMaxConnections(maxConnections);
+        }
+        if (maxConnectionsPerRoute > 0) {
+            h.setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+        }
+        if (keepAliveMillis > 0) {
+            h.setKeepAliveMillis(keepAliveMillis);
+        }
         return h;
     }
 
@@ -157,5 +169,41 @@ public class HostBuilder {
         this.fileSyncer = fileSyncer;
     }
 
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * @param maxConnections the size of the connection pool, or 0 for the
+     * Host's default
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * @param maxConnectionsPerRoute the number of concurrent connections to
+     * the server, or 0 for the Host's default
+     */
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * @param keepAliveMillis how long idle connections are kept when the
+     * server doesnt say, or 0 for the Host's default
+     */
+    public void setKeepAliveMillis(long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
     
 }
@@ -21,6 +21,7 @@ package io.milton.httpclient;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Map;
 
 /**
  *
@@ -28,4 +29,17 @@ import java.io.InputStream;
  */
 public interface StreamReceiver {
     void receive( InputStream in ) throws IOException;
+
+    /**
+     * This is what TransferService calls, so receivers which need to see the
+     * response headers, such as the Content-Type of a multipart/byteranges
+     * response, can override it. By default the headers are ignored
+     *
+     * @param in
+     * @param headers - response headers, looked up case insensitively
+     * @throws IOException
+     */
+    default void receive( InputStream in, Map<String, String> headers ) throws IOException {
+        receive( in );
+    }
 }
@@ -0,0 +1,573 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.httpclient;
+
+import io.milton.common.Path;
+import io.milton.http.exceptions.ConflictException;
+import io.milton.httpclient.Utils.CancelledException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies whole trees between the local file system and a WebDAV server using
+ * many concurrent requests, instead of the one-request-at-a-time walk done by
+ * Folder.downloadTo and Folder.upload
+ *
+ * Work is run on a work-stealing ForkJoinPool. Each remote folder is listed
+ * with its own Depth:1 PROPFIND as soon as it is discovered, so listings of
+ * sibling folders overlap with each other and with file transfers. On upload
+ * a folder's children are only scheduled once its MKCOL has completed.
+ *
+ * Failed requests which look transient (IO errors, 5xx, 408 and 429) are
+ * retried with exponential backoff. Other failures are recorded against the
+ * href and the rest of the tree continues, see Result.getFailures
+ *
+ * The total size of files being transferred at once is bounded by
+ * maxInFlightBytes, so a few huge files do not starve everything else of
+ * connections. A file larger than the bound is transferred on its own.
+ *
+ * Progress for the whole job is reported through a single ProgressListener.
+ * onProgress and onComplete are called while holding a lock on the listener,
+ * onRead is called concurrently from the transfer threads.
+ *
+ * The number of concurrent transfers should not exceed the host's
+ * maxConnectionsPerRoute, or requests will just queue for a connection.
+ *
+ * @author brad
+ */
+public class TransferEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferEngine.class);
+
+    private final Host host;
+    private final ForkJoinPool pool;
+    private final ScheduledExecutorService retryTimer;
+    private int maxAttempts = 4;
+    private long initialBackoffMillis = 500;
+    private long maxBackoffMillis = 30000;
+    private long maxInFlightBytes = 64 * 1024 * 1024;
+
+    public TransferEngine(Host host) {
+        this(host, 8);
+    }
+
+    /**
+     *
+     * @param host
+     * @param parallelism - the number of requests to run at once
+     */
+    public TransferEngine(Host host, int parallelism) {
+        this.host = host;
+        this.pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "milton-transfer-retry");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        this.retryTimer = timer;
+    }
+
+    /**
+     * Download the remote folder and everything under it into a new directory
+     * of the same name within destFolder
+     *
+     * @param remote
+     * @param destFolder - must exist
+     * @param listener - optional
+     * @return
+     * @throws CancelledException - if the listener cancelled the transfer or
+     * the calling thread was interrupted
+     */
+    public Result download(Folder remote, java.io.File destFolder, ProgressListener listener) throws CancelledException {
+        Job job = new Job(listener);
+        java.io.File thisDir = new java.io.File(destFolder, remote.name);
+        job.submit(remote.href(), () -> listFolder(job, remote, thisDir));
+        return job.await();
+    }
+
+    /**
+     * Upload a local file or directory tree into the remote folder
+     *
+     * Files and folders beginning with a dot are skipped, as for
+     * Folder.upload
+     *
+     * @param local
+     * @param remote
+     * @param listener - optional
+     * @return
+     * @throws CancelledException - if the listener cancelled the transfer or
+     * the calling thread was interrupted
+     */
+    public Result upload(java.io.File local, Folder remote, ProgressListener listener) throws CancelledException {
+        Job job = new Job(listener);
+        Path parent = remote.path();
+        if (local.isDirectory()) {
+            scheduleUploadFolder(job, local, parent);
+        } else {
+            scheduleUploadFile(job, local, parent);
+        }
+        Result result = job.await();
+        try {
+            remote.flush();
+        } catch (IOException ex) {
+            log.warn("Failed to flush children of " + remote.href(), ex);
+        }
+        return result;
+    }
+
+    /**
+     * Stop the worker threads. Any jobs still running will not complete
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+        retryTimer.shutdownNow();
+    }
+
+    private void listFolder(Job job, Folder remote, java.io.File localDir) throws Exception {
+        if (!localDir.exists() && !localDir.mkdirs()) {
+            throw new IOException("Could not create directory: " + localDir.getAbsolutePath());
+        }
+        remote.flush(); // a retry must not see a half loaded listing
+        List<? extends Resource> children = remote.children();
+        job.folders.incrementAndGet();
+        for (Resource r : children) {
+            if (r instanceof Folder) {
+                Folder child = (Folder) r;
+                java.io.File childDir = new java.io.File(localDir, child.name);
+                job.submit(child.href(), () -> listFolder(job, child, childDir));
+            } else if (r instanceof File) {
+                File child = (File) r;
+                java.io.File dest = new java.io.File(localDir, child.name);
+                if (child.contentLength != null) {
+                    job.totalBytes.addAndGet(child.contentLength);
+                }
+                long size = child.contentLength == null ? 0 : child.contentLength;
+                job.submit(child.href(), () -> job.transfer(size, child.name, l -> host.doGet(child.path(), dest, l)));
+            }
+        }
+    }
+
+    private void scheduleUploadFolder(Job job, java.io.File localDir, Path parent) {
+        if (localDir.getName().startsWith(".")) {
+            return;
+        }
+        Path newPath = parent.child(localDir.getName());
+        job.submit(newPath.toString(), () -> {
+            int result;
+            try {
+                result = host.doMkCol(newPath);
+            } catch (MethodNotAllowedException e) {
+                result = 405; // already exists
+            }
+            if (result == 409 || result == 405) {
+                // usually means the folder already exists, but check that it really
+                // is a collection, otherwise the children would all fail one by one
+                List<PropFindResponse> list = host.propFind(newPath, 0);
+                if (list == null || list.isEmpty() || !list.get(0).isCollection()) {
+                    throw new ConflictException(newPath.toString());
+                }
+            }
+            job.folders.incrementAndGet();
+            java.io.File[] children = localDir.listFiles();
+            if (children == null) {
+                throw new IOException("Could not list directory: " + localDir.getAbsolutePath());
+            }
+            for (java.io.File f : children) {
+                if (f.isDirectory()) {
+                    scheduleUploadFolder(job, f, newPath);
+                } else {
+                    scheduleUploadFile(job, f, newPath);
+                }
+            }
+        });
+    }
+
+    private void scheduleUploadFile(Job job, java.io.File f, Path parent) {
+        if (f.getName().startsWith(".")) {
+            return;
+        }
+        Path newPath = parent.child(f.getName());
+        long size = f.length();
+        job.totalBytes.addAndGet(size);
+        job.submit(newPath.toString(), () -> job.transfer(size, f.getName(), l -> {
+            HttpResult result = host.doPut(newPath, f, null, l);
+            Utils.processResultCode(result.getStatusCode(), newPath.toString());
+        }));
+    }
+
+    /**
+     * Transient failures are worth retrying, anything which reflects the
+     * state of the resource (not found, conflict, not authorised, etc) is not
+     *
+     * @param e
+     * @return
+     */
+    protected boolean isRetryable(Throwable e) {
+        if (e instanceof CancelledException) {
+            return false;
+        }
+        if (e instanceof IOException) {
+            return true;
+        }
+        if (e instanceof HttpException) {
+            int status = ((HttpException) e).getResult();
+            if (status == 0) {
+                return e.getCause() instanceof IOException;
+            }
+            return status >= 500 || status == 408 || status == 429;
+        }
+        // TransferService and _doPropFind wrap some exceptions in RuntimeException
+        if (e instanceof RuntimeException && e.getCause() != null && e.getCause() != e) {
+            return isRetryable(e.getCause());
+        }
+        return false;
+    }
+
+    long backoffMillis(int attempt) {
+        long delay = initialBackoffMillis << Math.min(attempt - 1, 20);
+        return Math.min(delay, maxBackoffMillis);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * The number of times a request is tried, including the first attempt.
+     * Defaults to 4
+     *
+     * @param maxAttempts
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    /**
+     * Delay before the first retry. This is doubled for each following retry,
+     * up to maxBackoffMillis
+     *
+     * @param initialBackoffMillis
+     */
+    public void setInitialBackoffMillis(long initialBackoffMillis) {
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    public void setMaxBackoffMillis(long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public long getMaxInFlightBytes() {
+        return maxInFlightBytes;
+    }
+
+    /**
+     * Upper bound on the combined size of the files being transferred at any
+     * one time. Applies to jobs started after it is set. Defaults to 64MB
+     *
+     * @param maxInFlightBytes
+     */
+    public void setMaxInFlightBytes(long maxInFlightBytes) {
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Summary of a completed download or upload
+     */
+    public static class Result {
+
+        private final int files;
+        private final int folders;
+        private final long bytes;
+        private final Map<String, Throwable> failures;
+
+        Result(int files, int folders, long bytes, Map<String, Throwable> failures) {
+            this.files = files;
+            this.folders = folders;
+            this.bytes = bytes;
+            this.failures = failures;
+        }
+
+        /**
+         *
+         * @return - the number of files transferred successfully
+         */
+        public int getFiles() {
+            return files;
+        }
+
+        /**
+         *
+         * @return - the number of folders listed or created
+         */
+        public int getFolders() {
+            return folders;
+        }
+
+        /**
+         *
+         * @return - the total size of the files transferred successfully
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         *
+         * @return - hrefs or paths which could not be transferred, with the
+         * last error for each
+         */
+        public Map<String, Throwable> getFailures() {
+            return failures;
+        }
+
+        public boolean isSuccess() {
+            return failures.isEmpty();
+        }
+    }
+
+    private interface Step {
+
+        void run() throws Exception;
+    }
+
+    private interface TransferStep {
+
+        void run(ProgressListener listener) throws Exception;
+    }
+
+    /**
+     * State for a single call to download or upload
+     */
+    private class Job {
+
+        private final ProgressListener listener;
+        private final Semaphore inFlight;
+        private final int maxPermits;
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger files = new AtomicInteger();
+        private final AtomicInteger folders = new AtomicInteger();
+        private final AtomicLong bytesDone = new AtomicLong();
+        private final AtomicLong totalBytes = new AtomicLong();
+        private final Map<String, Throwable> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+        private volatile boolean cancelled;
+
+        Job(ProgressListener listener) {
+            this.listener = listener;
+            // permits are in KB so that large bounds fit in an int
+            this.maxPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxInFlightBytes / 1024));
+            this.inFlight = new Semaphore(maxPermits);
+        }
+
+        boolean isCancelled() {
+            if (!cancelled && listener != null && listener.isCancelled()) {
+                cancelled = true;
+            }
+            return cancelled;
+        }
+
+        void submit(String href, Step step) {
+            pending.incrementAndGet();
+            execute(href, step, 1);
+        }
+
+        /**
+         * Run an attempt on the pool. Each call must be matched by an
+         * increment of pending, which is given back if the pool rejects it
+         */
+        private void execute(String href, Step step, int attemptNum) {
+            try {
+                pool.execute(() -> attempt(href, step, attemptNum));
+            } catch (RejectedExecutionException e) {
+                rejected(href, e);
+            }
+        }
+
+        private void rejected(String href, RejectedExecutionException e) {
+            log.error("Could not run transfer of " + href + ", the engine has been shut down");
+            failures.put(href, e);
+            done();
+        }
+
+        private void attempt(String href, Step step, int attemptNum) {
+            try {
+                if (isCancelled()) {
+                    return;
+                }
+                step.run();
+            } catch (Throwable e) {
+                if (!isCancelled() && attemptNum < maxAttempts && isRetryable(e)) {
+                    long delay = backoffMillis(attemptNum);
+                    log.warn("Attempt " + attemptNum + " failed for " + href + ", retrying in " + delay + "ms: " + e);
+                    pending.incrementAndGet();
+                    try {
+                        retryTimer.schedule(() -> execute(href, step, attemptNum + 1), delay, TimeUnit.MILLISECONDS);
+                    } catch (RejectedExecutionException ex) {
+                        rejected(href, ex);
+                    }
+                } else if (!(e instanceof CancelledException)) {
+                    log.error("Failed to transfer " + href, e);
+                    failures.put(href, e);
+                }
+            } finally {
+                done();
+            }
+        }
+
+        private void done() {
+            if (pending.decrementAndGet() == 0) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        void transfer(long size, String fileName, TransferStep step) throws Exception {
+            int permits = (int) Math.min(maxPermits, Math.max(1, size / 1024));
+            inFlight.acquire(permits);
+            FileProgress progress = new FileProgress(this);
+            try {
+                step.run(progress);
+                progress.settle(size);
+                files.incrementAndGet();
+                notifyComplete(fileName);
+            } catch (Exception e) {
+                progress.rollback();
+                throw e;
+            } finally {
+                inFlight.release(permits);
+            }
+        }
+
+        private void notifyProgress(String fileName) {
+            if (listener == null) {
+                return;
+            }
+            synchronized (listener) {
+                listener.onProgress(bytesDone.get(), totalBytes.get(), fileName);
+            }
+        }
+
+        private void notifyComplete(String fileName) {
+            if (listener == null) {
+                return;
+            }
+            synchronized (listener) {
+                listener.onProgress(bytesDone.get(), totalBytes.get(), fileName);
+                listener.onComplete(fileName);
+            }
+        }
+
+        Result await() throws CancelledException {
+            synchronized (this) {
+                while (pending.get() > 0) {
+                    try {
+                        wait(1000);
+                    } catch (InterruptedException ex) {
+                        cancelled = true;
+                        Thread.currentThread().interrupt();
+                        throw new CancelledException();
+                    }
+                    isCancelled(); // poll, so queued work is dropped promptly
+                }
+            }
+            if (cancelled) {
+                throw new CancelledException();
+            }
+            return new Result(files.get(), folders.get(), bytesDone.get(), new LinkedHashMap<>(failures));
+        }
+    }
+
+    /**
+     * Listener given to each individual transfer. Adds its bytes to the job
+     * total and reports overall progress to the job's listener
+     */
+    private static class FileProgress implements ProgressListener {
+
+        private final Job job;
+        private long counted;
+
+        FileProgress(Job job) {
+            this.job = job;
+        }
+
+        @Override
+        public void onRead(int bytes) {
+            counted += bytes;
+            job.bytesDone.addAndGet(bytes);
+            if (job.listener != null) {
+                job.listener.onRead(bytes);
+            }
+        }
+
+        @Override
+        public void onProgress(long bytesRead, Long totalBytes, String fileName) {
+            job.notifyProgress(fileName);
+        }
+
+        @Override
+        public void onComplete(String fileName) {
+            // reported by the job once the transfer has really finished
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return job.isCancelled();
+        }
+
+        /**
+         * onRead reports requested rather than actual lengths, so correct the
+         * total to the real size once the transfer has finished
+         */
+        void settle(long size) {
+            job.bytesDone.addAndGet(size - counted);
+            counted = size;
+        }
+
+        void rollback() {
+            job.bytesDone.addAndGet(-counted);
+            counted = 0;
+        }
+    }
+}
@@ -29,7 +29,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
@@ -58,7 +61,7 @@ public class TransferService {
         this.connectionListeners = connectionListeners;
     }
 
-    public synchronized void get(String url, StreamReceiver receiver, List<Range> rangeList, ProgressListener listener, HttpContext context) throws io.milton.httpclient.HttpException, Utils.CancelledException, NotAuthorizedException, BadRequestException, ConflictException, NotFoundException {
+    public void get(String url, StreamReceiver receiver, List<Range> rangeList, ProgressListener listener, HttpContext context) throws io.milton.httpclient.HttpException, Utils.CancelledException, NotAuthorizedException, BadRequestException, ConflictException, NotFoundException {
         LogUtils.trace(log, "get: ", url);
         notifyStartRequest();
         HttpRequestBase m;
@@ -83,7 +86,11 @@ public class TransferService {
             in = entity.getContent();
             Utils.processResultCode(resp.getStatusLine().getStatusCode(), url);
             nin = new NotifyingFileInputStream(in, entity.getContentLength(), url, listener);
-            receiver.receive(nin);
+            Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (Header h : resp.getAllHeaders()) {
+                headers.put(h.getName(), h.getValue());
+            }
+            receiver.receive(nin, headers);
         } catch (Utils.CancelledException ex) {
             m.abort();
             throw ex;
@@ -23,13 +23,35 @@ import io.milton.http.Range;
 import io.milton.httpclient.File;
 import io.milton.httpclient.HttpException;
 import io.milton.httpclient.ProgressListener;
+import io.milton.httpclient.StreamReceiver;
 import io.milton.httpclient.Utils.CancelledException;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Loads ranges of a remote file over HTTP
+ *
+ * writeRanges streams each range, or each part of a multipart/byteranges
+ * response, straight into the destination channel, so memory use does not
+ * depend on the amount of data missing. Long range lists are split into
+ * several requests which run concurrently over the host's pooled connections.
  *
  * @author HP
  */
@@ -38,13 +60,23 @@ public class HttpRangeLoader implements RangeLoader {
 	private static final Logger log = LoggerFactory.getLogger(HttpRangeLoader.class);
 	private final File file;
 	private final ProgressListener listener;
-	private long numBytes;
+	private final AtomicLong numBytes = new AtomicLong();
+	private int maxRangesPerRequest = 50;
+	private long maxBytesPerRequest = 8 * 1024 * 1024;
+	private int parallelism = 4;
 
 	public HttpRangeLoader(File file, final ProgressListener listener) {
 		this.file = file;
 		this.listener = listener;
 	}
 
+	/**
+	 * Loads all of the ranges into memory with a single request. Prefer
+	 * writeRanges
+	 *
+	 * @param rangeList
+	 * @return
+	 */
 	@Override
 	public byte[] get(List<Range> rangeList) {
 		log.info("get: rangelist: " + rangeList.size());
@@ -62,10 +94,87 @@ public class HttpRangeLoader implements RangeLoader {
 //		if( expectedLength != bytes.length) {
 //			log.warn("Got an unexpected data size!!");
 //		}
-		numBytes += bytes.length;
+		numBytes.addAndGet(bytes.length);
 		return bytes;
 	}
 
+	@Override
+	public void writeRanges(List<Range> rangeList, FileChannel dest) throws Exception {
+		List<List<Range>> batches = split(rangeList);
+		log.info("writeRanges: ranges: " + rangeList.size() + " requests: " + batches.size());
+		if (batches.isEmpty()) {
+			return;
+		}
+		if (batches.size() == 1 || parallelism <= 1) {
+			for (List<Range> batch : batches) {
+				fetch(batch, dest);
+			}
+			return;
+		}
+		ExecutorService exec = Executors.newFixedThreadPool(Math.min(parallelism, batches.size()));
+		try {
+			List<Future<Void>> futures = new ArrayList<>();
+			for (List<Range> batch : batches) {
+				futures.add(exec.submit(() -> {
+					fetch(batch, dest);
+					return null;
+				}));
+			}
+			for (Future<Void> f : futures) {
+				try {
+					f.get();
+				} catch (ExecutionException ex) {
+					Throwable cause = ex.getCause();
+					if (cause instanceof Exception) {
+						throw (Exception) cause;
+					}
+					throw ex;
+				}
+			}
+		} finally {
+			exec.shutdownNow();
+		}
+	}
+
+	private void fetch(List<Range> ranges, FileChannel dest) throws Exception {
+		RangeWriter writer = new RangeWriter(ranges, dest);
+		file.host().doGet(file.encodedUrl(), writer, ranges, listener);
+		writer.checkComplete();
+	}
+
+	/**
+	 * Break the ranges into batches of at most maxRangesPerRequest ranges and
+	 * maxBytesPerRequest bytes. A single range bigger than maxBytesPerRequest
+	 * is itself split, so a whole file download can also run in parallel
+	 *
+	 * @param rangeList
+	 * @return
+	 */
+	List<List<Range>> split(List<Range> rangeList) {
+		List<List<Range>> batches = new ArrayList<>();
+		List<Range> batch = new ArrayList<>();
+		long batchBytes = 0;
+		for (Range r : rangeList) {
+			long start = r.getStart();
+			while (start <= r.getFinish()) {
+				long finish = Math.min(r.getFinish(), start + maxBytesPerRequest - 1);
+				long len = finish - start + 1;
+				if (!batch.isEmpty() && (batch.size() >= maxRangesPerRequest || batchBytes + len > maxBytesPerRequest)) {
+					batches.add(batch);
+					batch = new ArrayList<>();
+					batchBytes = 0;
+				}
+				batch.add(new Range(start, finish));
+				batchBytes += len;
+				start = finish + 1;
+			}
+		}
+		if (!batch.isEmpty()) {
+			batches.add(batch);
+		}
+		return batches;
+	}
+
 	public static long calcExpectedLength(List<Range> rangeList) {
 		long l = 0;
 		for (Range r : rangeList) {
@@ -75,6 +184,247 @@ public class HttpRangeLoader implements RangeLoader {
 	}
 
 	public long getBytesDownloaded() {
-		return numBytes;
+		return numBytes.get();
+	}
+
+	public int getMaxRangesPerRequest() {
+		return maxRangesPerRequest;
+	}
+
+	public void setMaxRangesPerRequest(int maxRangesPerRequest) {
+		this.maxRangesPerRequest = maxRangesPerRequest;
+	}
+
+	public long getMaxBytesPerRequest() {
+		return maxBytesPerRequest;
+	}
+
+	public void setMaxBytesPerRequest(long maxBytesPerRequest) {
+		this.maxBytesPerRequest = maxBytesPerRequest;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * The number of range requests to run at once. This should not exceed the
+	 * host's maxConnectionsPerRoute
+	 *
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Writes the response to a ranged GET into the channel. Copes with a
+	 * multipart/byteranges response, a single part 206 response, and a 200
+	 * response with the whole file from servers which ignore the Range header.
+	 *
+	 * Each part must lie within the requested ranges, and together the parts
+	 * must cover all of them, although a server may coalesce adjacent ranges
+	 */
+	private class RangeWriter implements StreamReceiver {
+
+		private final List<Range> ranges;
+		private final FileChannel dest;
+		private final byte[] buf = new byte[64 * 1024];
+		private final List<long[]> requested = new ArrayList<>();
+		private final List<long[]> received = new ArrayList<>();
+
+		RangeWriter(List<Range> ranges, FileChannel dest) {
+			this.ranges = ranges;
+			this.dest = dest;
+			for (Range r : ranges) {
+				requested.add(new long[]{r.getStart(), r.getFinish()});
+			}
+		}
+
+		void checkComplete() throws IOException {
+			for (long[] r : requested) {
+				if (!covers(received, r[0], r[1])) {
+					throw new IOException("Incomplete range response, bytes " + r[0] + "-" + r[1] + " were not received");
+				}
+			}
+		}
+
+		@Override
+		public void receive(InputStream in) throws IOException {
+			receive(in, Collections.emptyMap());
+		}
+
+		@Override
+		public void receive(InputStream in, Map<String, String> headers) throws IOException {
+			String contentType = headers.get("Content-Type");
+			String contentRange = headers.get("Content-Range");
+			if (contentType != null && contentType.toLowerCase().startsWith("multipart/byteranges")) {
+				String boundary = boundary(contentType);
+				if (boundary == null) {
+					throw new IOException("No boundary in content type: " + contentType);
+				}
+				readParts(in, boundary);
+			} else if (contentRange != null) {
+				copyPart(in, contentRange);
+			} else {
+				// the server has sent the whole file, so just keep the bits we asked for
+				List<Range> sorted = new ArrayList<>(ranges);
+				sorted.sort(Comparator.comparing(Range::getStart));
+				long pos = 0;
+				for (Range r : sorted) {
+					skipFully(in, r.getStart() - pos);
+					copy(in, r.getStart(), r.getLength());
+					received.add(new long[]{r.getStart(), r.getFinish()});
+					pos = r.getFinish() + 1;
+				}
+			}
+		}
+
+		private void readParts(InputStream in, String boundary) throws IOException {
+			String delimiter = "--" + boundary;
+			String close = delimiter + "--";
+			String line;
+			while ((line = readLine(in)) != null) {
+				if (line.equals(close)) {
+					break;
+				}
+				if (!line.equals(delimiter)) {
+					continue; // preamble, or the line break after the previous part
+				}
+				String contentRange = null;
+				while ((line = readLine(in)) != null && !line.isEmpty()) {
+					int pos = line.indexOf(':');
+					if (pos > 0 && line.substring(0, pos).trim().equalsIgnoreCase("Content-Range")) {
+						contentRange = line.substring(pos + 1).trim();
+					}
+				}
+				if (contentRange == null) {
+					throw new IOException("No Content-Range in multipart/byteranges part");
+				}
+				copyPart(in, contentRange);
+			}
+		}
+
+		private void copyPart(InputStream in, String contentRange) throws IOException {
+			long[] startFinish = parseContentRange(contentRange);
+			if (startFinish[1] < startFinish[0] || !covers(requested, startFinish[0], startFinish[1])) {
+				throw new IOException("Content-Range " + contentRange + " is not within the requested ranges: " + ranges);
+			}
+			copy(in, startFinish[0], startFinish[1] - startFinish[0] + 1);
+			received.add(startFinish);
+		}
+
+		private void copy(InputStream in, long destPos, long length) throws IOException {
+			long remaining = length;
+			while (remaining > 0) {
+				int n = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+				if (n < 0) {
+					throw new EOFException("Range response ended early at " + destPos);
+				}
+				ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+				while (bb.hasRemaining()) {
+					destPos += dest.write(bb, destPos);
+				}
+				remaining -= n;
+				numBytes.addAndGet(n);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return - true if every byte from start to finish inclusive is in one of
+	 * the given start and finish pairs
+	 */
+	static boolean covers(List<long[]> ranges, long start, long finish) {
+		List<long[]> sorted = new ArrayList<>(ranges);
+		sorted.sort(Comparator.comparingLong(r -> r[0]));
+		long pos = start;
+		for (long[] r : sorted) {
+			if (r[0] <= pos && r[1] >= pos) {
+				pos = r[1] + 1;
+			}
+			if (pos > finish) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static String boundary(String contentType) {
+		for (String param : contentType.split(";")) {
+			String p = param.trim();
+			if (p.toLowerCase().startsWith("boundary=")) {
+				String b = p.substring("boundary=".length()).trim();
+				if (b.length() > 1 && b.startsWith("\"") && b.endsWith("\"")) {
+					b = b.substring(1, b.length() - 1);
+				}
+				return b;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * @param contentRange - eg bytes 100-199/1000
+	 * @return - the start and inclusive finish
+	 * @throws IOException
+	 */
+	static long[] parseContentRange(String contentRange) throws IOException {
+		String s = contentRange.trim();
+		if (s.toLowerCase().startsWith("bytes")) {
+			s = s.substring(5).trim();
+		}
+		int slash = s.indexOf('/');
+		if (slash >= 0) {
+			s = s.substring(0, slash);
+		}
+		int dash = s.indexOf('-');
+		if (dash <= 0) {
+			throw new IOException("Invalid Content-Range: " + contentRange);
+		}
+		try {
+			return new long[]{Long.parseLong(s.substring(0, dash).trim()), Long.parseLong(s.substring(dash + 1).trim())};
+		} catch (NumberFormatException ex) {
+			throw new IOException("Invalid Content-Range: " + contentRange, ex);
+		}
+	}
+
+	/**
+	 *
+	 * @return - the line without its line ending, or null at the end of the
+	 * stream
+	 */
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) != -1) {
+			if (b == '\n') {
+				break;
+			}
+			line.write(b);
+		}
+		if (b == -1 && line.size() == 0) {
+			return null;
+		}
+		String s = new String(line.toByteArray(), StandardCharsets.ISO_8859_1);
+		if (s.endsWith("\r")) {
+			s = s.substring(0, s.length() - 1);
+		}
+		return s;
+	}
+
+	private static void skipFully(InputStream in, long n) throws IOException {
+		while (n > 0) {
+			long skipped = in.skip(n);
+			if (skipped <= 0) {
+				if (in.read() < 0) {
+					throw new EOFException();
+				}
+				skipped = 1;
+			}
+			n -= skipped;
+		}
 	}
 }
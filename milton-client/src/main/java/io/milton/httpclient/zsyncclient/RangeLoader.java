@@ -20,6 +20,8 @@
 package io.milton.httpclient.zsyncclient;
 
 import io.milton.http.Range;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.List;
 
 /**
@@ -37,5 +39,31 @@ public interface RangeLoader {
 	 * @throws Exception 
 	 */
     byte[] get(List<Range> rangeList) throws Exception;
-	
+
+	/**
+	 * Fetch a set of ranges and write each one into the channel at the
+	 * position of its start, so the channel becomes a copy of the remote file
+	 * over those ranges. Each range must have a start and an inclusive finish
+	 *
+	 * The default implementation loads everything with get, and expects the
+	 * data for each range to follow on from the previous one. Implementations
+	 * should override this to avoid holding all of the data in memory
+	 *
+	 * @param rangeList
+	 * @param dest
+	 * @throws Exception
+	 */
+	default void writeRanges(List<Range> rangeList, FileChannel dest) throws Exception {
+		byte[] data = get(rangeList);
+		int pos = 0;
+		for (Range r : rangeList) {
+			int len = r.getLength().intValue();
+			ByteBuffer buf = ByteBuffer.wrap(data, pos, len);
+			long destPos = r.getStart();
+			while (buf.hasRemaining()) {
+				destPos += dest.write(buf, destPos);
+			}
+			pos += len;
+		}
+	}
 }
@@ -20,7 +20,10 @@
 package io.milton.zsync;
 
 import io.milton.httpclient.zsyncclient.RangeLoader;
+import io.milton.http.Range;
 import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Collections;
 
 /**
  * Downloads a whole file, no delta
@@ -29,8 +32,23 @@ import java.io.File;
  */
 public class FileDownloader {
 
-	public void downloadWholeFile(RangeLoader rangeLoader, File dest) {
-		throw new UnsupportedOperationException("Not yet implemented");
+	/**
+	 * Fetch the whole file as a single range. The range loader may split it
+	 * into several concurrent requests
+	 *
+	 * @param rangeLoader
+	 * @param dest
+	 * @param length - the length of the remote file
+	 * @throws Exception
+	 */
+	public void downloadWholeFile(RangeLoader rangeLoader, File dest, long length) throws Exception {
+		try (RandomAccessFile raf = new RandomAccessFile(dest, "rw")) {
+			raf.setLength(length);
+			if (length > 0) {
+				rangeLoader.writeRanges(Collections.singletonList(new Range(0L, length - 1)), raf.getChannel());
+			}
+			raf.getChannel().force(false);
+		}
 	}
 	
 }
@@ -104,7 +104,7 @@ public class FileMaker {
         dest = File.createTempFile("zsyncM_", "_" + inputFile.getName());
         if (complete == 0) {
             log.info("local file has no corresponding blocks, so download whole file");
-            fileDownloader.downloadWholeFile(rangeLoader, dest);
+            fileDownloader.downloadWholeFile(rangeLoader, dest, mfr.getLength());
         } else {
             fileUpdater.update(inputFile, mfr, rangeLoader, makeContext, dest);
         }
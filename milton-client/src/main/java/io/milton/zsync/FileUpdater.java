@@ -48,8 +48,8 @@ import io.milton.httpclient.zsyncclient.RangeLoader;
 import io.milton.http.Range;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
@@ -64,62 +64,47 @@ import org.slf4j.LoggerFactory;
 public class FileUpdater {
 
     private static final Logger log = LoggerFactory.getLogger(FileUpdater.class);
-    /**
-     * Maximum ranges to download in the range header
-     */
-    private final int maxRanges = 100;
-
     /**
      * Method for completing file
+     *
+     * Blocks found in the local file are copied to their place in the new
+     * file, then the missing blocks are handed to the range loader as merged
+     * ranges, which writes them straight into the new file
      */
     public void update(File inputFile, MetaFileReader mfr, RangeLoader rangeLoader, MakeContext mc, File newFile) throws Exception {
         log.trace("fileMaker: input: " + inputFile.getAbsolutePath());
+        int blocksize = mfr.getBlocksize();
+        long length = mfr.getLength();
         try {
-            double a = 10;
-            int range = 0;
-            int blockLength = 0;
-            List<Range> rangeList = new ArrayList<>();
-            byte[] data = null;
-            FileChannel wChannel = null;
-
             newFile.createNewFile();
             log.trace("Writing new file: " + newFile.getAbsolutePath());
-            wChannel = new FileOutputStream(newFile, true).getChannel();
-
-            ByteBuffer buffer = ByteBuffer.allocate(mfr.getBlocksize());
-            log.trace("Reading from file: " + inputFile.getAbsolutePath());
-            FileChannel rChannel = new FileInputStream(inputFile).getChannel();
-            log.trace("number of map entries: " + mc.fileMap.length);
-            for (int i = 0; i < mc.fileMap.length; i++) {
-                mc.fileOffset = mc.fileMap[i];
-                if (mc.fileOffset != -1) {
-                    log.trace("  read block from local file: " + mc.fileOffset);
-                    rChannel.read(buffer, mc.fileOffset);
-                    buffer.flip();
-                    wChannel.write(buffer);
-                    buffer.clear();
-                } else {
-                    log.trace("   read block from remote file");
-                    if (!mc.rangeQueue) {
-                        rangeList = rangeLookUp(i, mfr.getBlocksize(), mc);
-                        range = rangeList.size();
-                        data = rangeLoader.get(rangeList);
-                        //System.out.println("got data length: " + data.length);
-                    } else {
-                        log.trace("     already have queued ranges: " + rangeList.size());
-                    }
-                    blockLength = calcBlockLength(i, mfr.getBlocksize(), (int) mfr.getLength());
-                    int offset = (range - rangeList.size()) * mfr.getBlocksize();
-                    //System.out.println("blockLength: " + blockLength + " data.length: " + data.length + "  offset: " + offset);
-                    buffer.put(data, offset, blockLength);
-                    buffer.flip();
-                    wChannel.write(buffer);
-                    buffer.clear();
-                    rangeList.remove(0);
-                    if (rangeList.isEmpty()) {
-                        mc.rangeQueue = false;
+            try (RandomAccessFile raf = new RandomAccessFile(newFile, "rw"); FileInputStream fin = new FileInputStream(inputFile)) {
+                raf.setLength(length);
+                FileChannel wChannel = raf.getChannel();
+                FileChannel rChannel = fin.getChannel();
+                ByteBuffer buffer = ByteBuffer.allocate(blocksize);
+                log.trace("Reading from file: " + inputFile.getAbsolutePath());
+                log.trace("number of map entries: " + mc.fileMap.length);
+                for (int i = 0; i < mc.fileMap.length; i++) {
+                    mc.fileOffset = mc.fileMap[i];
+                    if (mc.fileOffset != -1) {
+                        log.trace("  read block from local file: " + mc.fileOffset);
+                        buffer.limit(calcBlockLength(i, blocksize, length));
+                        while (buffer.hasRemaining() && rChannel.read(buffer, mc.fileOffset + buffer.position()) >= 0) {
+                            // keep reading until the block is full
+                        }
+                        buffer.flip();
+                        long pos = (long) i * blocksize;
+                        while (buffer.hasRemaining()) {
+                            pos += wChannel.write(buffer, pos);
+                        }
+                        buffer.clear();
                     }
                 }
+                List<Range> missing = findMissingRanges(mc, blocksize, length);
+                log.info("Fetching " + missing.size() + " missing ranges");
+                rangeLoader.writeRanges(missing, wChannel);
+                wChannel.force(false);
             }
             log.info("Completed file: " + newFile.getAbsolutePath());
             log.info("Checking checksums...");
@@ -129,55 +114,44 @@ public class FileUpdater {
 
             if (actual.equals(expected)) {
                 log.info("checksum matches OK");
-//				System.out.println("used " + (mfr.getLength() - (mfr.getBlocksize() * missing)) + " " + "local, fetched " + (mfr.getBlocksize() * missing));
-//				new File(mfr.getFilename()).renameTo(new File(mfr.getFilename() + ".zs-old"));
-//				newFile.renameTo(new File(mfr.getFilename()));
-//				allData += mfr.getLengthOfMetafile();
-//				System.out.println("really downloaded " + allData);
-//				double overhead = ((double) (allData - (mfr.getBlocksize() * missing)) / ((double) (mfr.getBlocksize() * missing))) * 100;
-//				System.out.println("overhead: " + df.format(overhead) + "%");
             } else {
                 log.error("Checksums don't match - expected: " + expected + "  actual: " + actual);
                 throw new RuntimeException("Checksums don't match - expected: " + expected + "  actual: " + actual);
             }
         } catch (IOException ex) {
-            throw new RuntimeException("Can't read or write, check your permissions.");
+            throw new RuntimeException("Can't read or write, check your permissions.", ex);
         }
     }
 
     /**
-     * Instead of downloading single blocks, we can look into fieMap and collect
-     * amount of missing blocks or end of map accurs. Single ranges are stored
-     * in ArrayList
+     * Collect the blocks which are not in the local file, merging runs of
+     * adjacent blocks into a single range
      *
-     * @param i Offset in fileMap where to start looking
-     * @return ArrayList with ranges for requesting
+     * @return - ranges with inclusive finish, clamped to the file length
      */
-    private List<Range> rangeLookUp(int i, int blocksize, MakeContext mc) {
+    static List<Range> findMissingRanges(MakeContext mc, int blocksize, long length) {
         List<Range> ranges = new ArrayList<>();
-        for (; i < mc.fileMap.length; i++) {
-            if (mc.fileMap[i] == -1) {
-                ranges.add(new Range((long) i * blocksize, (i * blocksize) + (long) blocksize));
+        int i = 0;
+        while (i < mc.fileMap.length) {
+            if (mc.fileMap[i] != -1) {
+                i++;
+                continue;
             }
-            if (ranges.size() >= maxRanges) {
-                break;
+            int first = i;
+            while (i < mc.fileMap.length && mc.fileMap[i] == -1) {
+                i++;
+            }
+            long start = (long) first * blocksize;
+            long finish = Math.min((long) i * blocksize, length) - 1;
+            if (finish >= start) {
+                ranges.add(new Range(start, finish));
             }
-        }
-        if (!ranges.isEmpty()) {
-            mc.rangeQueue = true;
         }
         return ranges;
     }
 
-    private int calcBlockLength(int i, int blockSize, int length) {
-        if ((i + 1) * blockSize < length) {
-            return blockSize;
-        } else {
-            return calcBlockLength_b(i, blockSize, length);
-        }
-    }
-
-    private int calcBlockLength_b(int i, int blockSize, int length) {
-        return blockSize + (length - (i * blockSize + blockSize));
+    private int calcBlockLength(int i, int blockSize, long length) {
+        long start = (long) i * blockSize;
+        return (int) Math.min(blockSize, length - start);
     }
 }
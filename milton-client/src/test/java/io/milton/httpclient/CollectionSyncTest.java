@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2012 McEvoy Software Ltd
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.milton.httpclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import junit.framework.TestCase;
+import org.apache.commons.io.IOUtils;
+
+/**
+ *
+ * @author brad
+ */
+public class CollectionSyncTest extends TestCase {
+
+    private static final Pattern TOKEN = Pattern.compile("sync-token>([^<]*)<");
+
+    private TestServer server;
+    private Host host;
+    private Folder folder;
+    private CollectionSync sync;
+    // members of /col/, name to etag
+    private final Map<String, String> members = new LinkedHashMap<>();
+    // change log, each entry is the name changed at version i + 1
+    private final List<String> changeLog = new ArrayList<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    // if set, the status and error body REPORT fails with
+    private volatile int reportStatus;
+    private volatile String reportError;
+    private volatile int oldestToken;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        server = new TestServer(1, this::handle);
+        host = server.newHost();
+        folder = new Folder(host, "col", new ConcurrentHashMap<>());
+        sync = new CollectionSync(host);
+        put("a.txt");
+        put("b.txt");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        host.shutdown();
+        server.stop();
+        super.tearDown();
+    }
+
+    public void testSyncCollection() throws Exception {
+        CollectionSync.Changes changes = sync.sync(folder);
+        assertTrue(changes.isSyncCollection());
+        assertTrue(changes.isFullListing());
+        assertEquals(2, changes.getChanged().size());
+        assertEquals("[REPORT ]", requests.toString());
+
+        put("c.txt");
+        put("a.txt");
+        remove("b.txt");
+        requests.clear();
+        changes = sync.sync(folder);
+
+        assertFalse(changes.isFullListing());
+        assertEquals("[REPORT http://localhost/sync/2]", requests.toString());
+        assertEquals(2, changes.getChanged().size());
+        assertEquals("[b.txt]", changes.getRemoved().toString());
+        assertEquals("http://localhost/sync/5", sync.getState(folder).getSyncToken());
+
+        // the cache was updated in place, so listing needs no requests
+        requests.clear();
+        assertEquals("[a.txt, c.txt]", names(folder.children()));
+        assertEquals(0, requests.size());
+
+        requests.clear();
+        assertTrue(sync.sync(folder).isEmpty());
+    }
+
+    public void testSyncCollection_TokenExpired() throws Exception {
+        sync.sync(folder);
+        put("c.txt");
+        oldestToken = 3;
+        requests.clear();
+
+        CollectionSync.Changes changes = sync.sync(folder);
+
+        assertTrue(changes.isFullListing());
+        assertEquals("[REPORT http://localhost/sync/2, REPORT ]", requests.toString());
+        assertEquals("[a.txt, b.txt, c.txt]", names(folder.children()));
+    }
+
+    public void testFallbackToCtag() throws Exception {
+        reportStatus = 501;
+        CollectionSync.Changes changes = sync.sync(folder);
+        assertFalse(changes.isSyncCollection());
+        assertTrue(changes.isFullListing());
+        assertEquals(2, changes.getChanged().size());
+        assertEquals(Boolean.FALSE, sync.getState(folder).getSyncCollectionSupported());
+
+        // nothing changed, so only the ctag is checked
+        requests.clear();
+        assertTrue(sync.sync(folder).isEmpty());
+        assertEquals("[PROPFIND 0]", requests.toString());
+
+        put("a.txt");
+        remove("b.txt");
+        requests.clear();
+        changes = sync.sync(folder);
+
+        assertEquals("[PROPFIND 0, PROPFIND 1]", requests.toString());
+        assertFalse(changes.isFullListing());
+        assertEquals("[a.txt]", names(changes.getChanged()));
+        assertEquals("[b.txt]", changes.getRemoved().toString());
+        requests.clear();
+        assertEquals("[a.txt]", names(folder.children()));
+        assertEquals(0, requests.size());
+    }
+
+    public void testFallback_SupportedReportPrecondition() throws Exception {
+        reportStatus = 403;
+        reportError = "<?xml version=\"1.0\" encoding=\"utf-8\"?><d:error xmlns:d=\"DAV:\"><d:supported-report/></d:error>";
+        assertFalse(sync.sync(folder).isSyncCollection());
+        assertEquals(Boolean.FALSE, sync.getState(folder).getSyncCollectionSupported());
+    }
+
+    public void testFallback_OtherFailureNotPersisted() throws Exception {
+        reportStatus = 400;
+        CollectionSync.Changes changes = sync.sync(folder);
+        assertFalse(changes.isSyncCollection());
+        assertEquals(2, changes.getChanged().size());
+        assertNull(sync.getState(folder).getSyncCollectionSupported());
+
+        // so the next sync tries the REPORT again
+        reportStatus = 0;
+        put("c.txt");
+        requests.clear();
+        changes = sync.sync(folder);
+        assertTrue(changes.isSyncCollection());
+        assertEquals("[REPORT ]", requests.toString());
+        assertEquals("[a.txt, b.txt, c.txt]", names(folder.children()));
+    }
+
+    private static String names(List<? extends Resource> list) {
+        List<String> names = new ArrayList<>();
+        for (Resource r : list) {
+            names.add(r.name);
+        }
+        java.util.Collections.sort(names);
+        return names.toString();
+    }
+
+    private synchronized void put(String name) {
+        changeLog.add(name);
+        members.put(name, "\"" + name + "-" + changeLog.size() + "\"");
+    }
+
+    private synchronized void remove(String name) {
+        changeLog.add(name);
+        members.remove(name);
+    }
+
+    private synchronized void handle(HttpExchange exchange) throws IOException {
+        String body = IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+        String method = exchange.getRequestMethod();
+        String depth = exchange.getRequestHeaders().getFirst("Depth");
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>");
+        sb.append("<d:multistatus xmlns:d=\"DAV:\" xmlns:cs=\"http://calendarserver.org/ns/\">");
+        if (method.equals("REPORT")) {
+            Matcher m = TOKEN.matcher(body);
+            String token = m.find() ? m.group(1) : "";
+            requests.add("REPORT " + token);
+            if (reportStatus != 0) {
+                send(exchange, reportStatus, reportError);
+                return;
+            }
+            int since = token.isEmpty() ? 0 : Integer.parseInt(token.substring(token.lastIndexOf('/') + 1));
+            if (!token.isEmpty() && since < oldestToken) {
+                send(exchange, 403, null);
+                return;
+            }
+            for (String name : new java.util.TreeSet<>(changeLog.subList(since, changeLog.size()))) {
+                if (members.containsKey(name)) {
+                    member(sb, name);
+                } else if (since > 0) {
+                    sb.append("<d:response><d:href>/col/").append(name).append("</d:href><d:status>HTTP/1.1 404 Not Found</d:status></d:response>");
+                }
+            }
+            sb.append("<d:sync-token>http://localhost/sync/").append(changeLog.size()).append("</d:sync-token>");
+        } else if (method.equals("PROPFIND")) {
+            requests.add("PROPFIND " + depth);
+            sb.append("<d:response><d:href>/col/</d:href><d:propstat><d:prop><d:resourcetype><d:collection/></d:resourcetype>");
+            sb.append("<cs:getctag>").append(changeLog.size()).append("</cs:getctag>");
+            sb.append("</d:prop><d:status>HTTP/1.1 200 OK</d:status></d:propstat></d:response>");
+            if ("1".equals(depth)) {
+                for (String name : members.keySet()) {
+                    member(sb, name);
+                }
+            }
+        } else {
+            send(exchange, 405, null);
+            return;
+        }
+        sb.append("</d:multistatus>");
+        send(exchange, 207, sb.toString());
+    }
+
+    private void member(StringBuilder sb, String name) {
+        sb.append("<d:response><d:href>/col/").append(name).append("</d:href><d:propstat><d:prop><d:resourcetype/>");
+        sb.append("<d:getetag>").append(members.get(name).replace("\"", "&quot;")).append("</d:getetag>");
+        sb.append("</d:prop><d:status>HTTP/1.1 200 OK</d:status></d:propstat></d:response>");
+    }
+
+    private static void send(HttpExchange exchange, int status, String xml) throws IOException {
+        if (xml != null) {
+            exchange.getResponseHeaders().set("Content-Type", "text/xml");
+        }
+        TestServer.send(exchange, status, xml == null ? null : xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
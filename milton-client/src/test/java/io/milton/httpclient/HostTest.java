@@ -16,6 +16,15 @@
  */
 package io.milton.httpclient;
 
+import io.milton.common.Path;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import junit.framework.TestCase;
 
 /**
@@ -75,6 +84,42 @@ public class HostTest extends TestCase {
         assertEquals("http://localhost/", h.href());
     }       
     
+    /**
+     * The server only responds once all of the requests have arrived, so this
+     * can only pass if one Host runs them concurrently
+     */
+    public void testConcurrentRequests() throws Exception {
+        final int n = 4;
+        final CyclicBarrier barrier = new CyclicBarrier(n);
+        TestServer server = new TestServer(n, exchange -> {
+            try {
+                barrier.await(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                TestServer.send(exchange, 500, null);
+                return;
+            }
+            TestServer.send(exchange, 200, exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8));
+        });
+        ExecutorService exec = Executors.newFixedThreadPool(n);
+        Host h = server.newHost();
+        h.setMaxConnectionsPerRoute(n);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                final Path p = Path.path("/file" + i);
+                results.add(exec.submit(() -> h.doGet(p)));
+            }
+            for (int i = 0; i < n; i++) {
+                assertEquals("/file" + i, new String(results.get(i).get(10, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+            }
+            assertEquals(0, h.getPoolStats().getLeased());
+        } finally {
+            h.shutdown();
+            exec.shutdownNow();
+            server.stop();
+        }
+    }
+
 //    public void testPut() throws Exception{
 //        Host h = new Host("localhost", 8085, "admin", "password8", null, null);
 //        h.setUseDigestForPreemptiveAuth(false);
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2012 McEvoy Software Ltd
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.milton.httpclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An HTTP server on a free port of localhost for tests to run a Host against,
+ * which passes every request to the given handler
+ *
+ * @author brad
+ */
+public class TestServer {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     *
+     * @param threads - the number of requests the server handles at once
+     * @param handler
+     * @throws IOException
+     */
+    public TestServer(int threads, HttpHandler handler) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/", handler);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     *
+     * @return - a new Host for this server, which the caller must shut down
+     */
+    public Host newHost() {
+        return new Host("localhost", getPort(), null, null, null);
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Send a response and close the exchange
+     *
+     * @param exchange
+     * @param status
+     * @param data - the response body, or null for none
+     * @throws IOException
+     */
+    public static void send(HttpExchange exchange, int status, byte[] data) throws IOException {
+        if (data == null) {
+            exchange.sendResponseHeaders(status, -1);
+        } else {
+            exchange.sendResponseHeaders(status, data.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(data);
+            }
+        }
+        exchange.close();
+    }
+}
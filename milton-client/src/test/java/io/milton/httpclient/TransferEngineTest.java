@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2012 McEvoy Software Ltd
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.milton.httpclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ *
+ * @author brad
+ */
+public class TransferEngineTest extends TestCase {
+
+    private TestServer server;
+    private Host host;
+    private TransferEngine engine;
+    private File tmp;
+    // in memory DAV store, collections have a trailing slash
+    private final Map<String, byte[]> store = new ConcurrentHashMap<>();
+    private final Set<String> failOnce = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger puts = new AtomicInteger();
+    private final List<Long> putTimes = new CopyOnWriteArrayList<>();
+    private volatile String putBeforeMkcol;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        store.put("/", new byte[0]);
+        server = new TestServer(8, this::handle);
+        host = server.newHost();
+        engine = new TransferEngine(host, 4);
+        engine.setInitialBackoffMillis(10);
+        tmp = Files.createTempDirectory("transfer").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        engine.shutdown();
+        host.shutdown();
+        server.stop();
+        FileUtils.deleteQuietly(tmp);
+        super.tearDown();
+    }
+
+    public void testUpload() throws Exception {
+        File root = new File(tmp, "root");
+        write(new File(root, "a.txt"), "aaa");
+        write(new File(root, "sub/b.txt"), "bbbb");
+        write(new File(root, "sub/deeper/c.txt"), "c");
+        write(new File(root, ".hidden/d.txt"), "d");
+        failOnce.add("/root/sub/b.txt");
+        Progress progress = new Progress();
+
+        TransferEngine.Result result = engine.upload(root, host, progress);
+
+        assertTrue(result.getFailures().toString(), result.isSuccess());
+        assertEquals(3, result.getFiles());
+        assertEquals(3, result.getFolders());
+        assertEquals(8, result.getBytes());
+        assertNull("PUT arrived before its parent MKCOL: " + putBeforeMkcol, putBeforeMkcol);
+        assertEquals("aaa", read("/root/a.txt"));
+        assertEquals("bbbb", read("/root/sub/b.txt"));
+        assertEquals("c", read("/root/sub/deeper/c.txt"));
+        assertFalse(store.containsKey("/root/.hidden/"));
+        assertEquals(4, puts.get()); // includes the retried PUT
+        assertEquals(3, progress.completed.get());
+        assertEquals(8, progress.lastBytes.get());
+    }
+
+    public void testUpload_GivesUpOnPermanentFailure() throws Exception {
+        File root = new File(tmp, "root");
+        write(new File(root, "a.txt"), "aaa");
+        write(new File(root, "b.txt"), "bbb");
+        store.put("/root/b.txt/", new byte[0]); // makes PUT to b.txt fail with a 409
+
+        TransferEngine.Result result = engine.upload(root, host, null);
+
+        assertEquals(1, result.getFiles());
+        assertEquals(1, result.getFailures().size());
+        assertTrue(result.getFailures().containsKey("/root/b.txt"));
+        assertEquals("aaa", read("/root/a.txt"));
+    }
+
+    public void testDownload() throws Exception {
+        store.put("/root/", new byte[0]);
+        store.put("/root/a.txt", bytes("aaa"));
+        store.put("/root/sub/", new byte[0]);
+        store.put("/root/sub/b.txt", bytes("bbbb"));
+        store.put("/root/sub/deeper/", new byte[0]);
+        store.put("/root/sub/deeper/c.txt", bytes("c"));
+        failOnce.add("/root/sub/");
+        Progress progress = new Progress();
+
+        TransferEngine.Result result = engine.download(host.getFolder("/root"), tmp, progress);
+
+        assertTrue(result.getFailures().toString(), result.isSuccess());
+        assertEquals(3, result.getFiles());
+        assertEquals(3, result.getFolders());
+        assertEquals(8, result.getBytes());
+        assertEquals("aaa", FileUtils.readFileToString(new File(tmp, "root/a.txt"), StandardCharsets.UTF_8));
+        assertEquals("bbbb", FileUtils.readFileToString(new File(tmp, "root/sub/b.txt"), StandardCharsets.UTF_8));
+        assertEquals("c", FileUtils.readFileToString(new File(tmp, "root/sub/deeper/c.txt"), StandardCharsets.UTF_8));
+        assertEquals(3, progress.completed.get());
+    }
+
+    public void testRetry_BacksOff() throws Exception {
+        engine.setInitialBackoffMillis(200);
+        File f = new File(tmp, "a.txt");
+        write(f, "aaa");
+        failOnce.add("/a.txt");
+
+        TransferEngine.Result result = engine.upload(f, host, null);
+
+        assertTrue(result.getFailures().toString(), result.isSuccess());
+        assertEquals(1, result.getFiles());
+        assertEquals("aaa", read("/a.txt"));
+        assertEquals(2, putTimes.size());
+        long gap = putTimes.get(1) - putTimes.get(0);
+        assertTrue("retried after " + gap + "ms", gap >= 200);
+        assertEquals(400, engine.backoffMillis(2));
+    }
+
+    public void testUpload_AfterShutdown() throws Exception {
+        File root = new File(tmp, "root");
+        write(new File(root, "a.txt"), "aaa");
+        engine.shutdown();
+
+        TransferEngine.Result result = engine.upload(root, host, null);
+
+        assertFalse(result.isSuccess());
+        assertTrue(result.getFailures().toString(), result.getFailures().containsKey("/root"));
+        assertEquals(0, puts.get());
+    }
+
+    public void testCancel() throws Exception {
+        File root = new File(tmp, "root");
+        write(new File(root, "a.txt"), "aaa");
+        Progress progress = new Progress();
+        progress.cancelled = true;
+        try {
+            engine.upload(root, host, progress);
+            fail("expected cancellation");
+        } catch (Utils.CancelledException e) {
+            // expected
+        }
+        assertEquals(0, puts.get());
+    }
+
+    private void handle(HttpExchange exchange) throws java.io.IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        byte[] body = IOUtils.toByteArray(exchange.getRequestBody());
+        if (method.equals("PUT")) {
+            puts.incrementAndGet();
+            putTimes.add(System.currentTimeMillis());
+        }
+        if (failOnce.remove(path)) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        String dirPath = path.endsWith("/") ? path : path + "/";
+        switch (method) {
+            case "MKCOL":
+                if (store.containsKey(dirPath)) {
+                    exchange.sendResponseHeaders(405, -1);
+                } else {
+                    store.put(dirPath, new byte[0]);
+                    exchange.sendResponseHeaders(201, -1);
+                }
+                break;
+            case "PUT":
+                String parent = path.substring(0, path.lastIndexOf('/') + 1);
+                if (!store.containsKey(parent)) {
+                    putBeforeMkcol = path;
+                    exchange.sendResponseHeaders(409, -1);
+                } else if (store.containsKey(dirPath)) {
+                    exchange.sendResponseHeaders(409, -1);
+                } else {
+                    store.put(path, body);
+                    exchange.sendResponseHeaders(201, -1);
+                }
+                break;
+            case "GET":
+                byte[] data = store.get(path);
+                if (data == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+                    exchange.sendResponseHeaders(200, data.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(data);
+                    }
+                }
+                break;
+            case "PROPFIND":
+                propFind(exchange, path, dirPath);
+                break;
+            default:
+                exchange.sendResponseHeaders(405, -1);
+        }
+        exchange.close();
+    }
+
+    private void propFind(HttpExchange exchange, String path, String dirPath) throws java.io.IOException {
+        boolean depth0 = "0".equals(exchange.getRequestHeaders().getFirst("Depth"));
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?><d:multistatus xmlns:d=\"DAV:\">");
+        if (store.containsKey(dirPath)) {
+            response(sb, dirPath);
+            if (!depth0) {
+                for (String key : store.keySet()) {
+                    String rest = key.startsWith(dirPath) ? key.substring(dirPath.length()) : "";
+                    int slash = rest.indexOf('/');
+                    if (!rest.isEmpty() && (slash < 0 || slash == rest.length() - 1)) {
+                        response(sb, key);
+                    }
+                }
+            }
+        } else if (store.containsKey(path)) {
+            response(sb, path);
+        } else {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        sb.append("</d:multistatus>");
+        byte[] xml = bytes(sb.toString());
+        exchange.getResponseHeaders().set("Content-Type", "text/xml");
+        exchange.sendResponseHeaders(207, xml.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(xml);
+        }
+    }
+
+    private void response(StringBuilder sb, String key) {
+        sb.append("<d:response><d:href>").append(key).append("</d:href><d:propstat><d:prop>");
+        if (key.endsWith("/")) {
+            sb.append("<d:resourcetype><d:collection/></d:resourcetype>");
+        } else {
+            sb.append("<d:resourcetype/><d:getcontentlength>").append(store.get(key).length).append("</d:getcontentlength>");
+        }
+        sb.append("</d:prop><d:status>HTTP/1.1 200 OK</d:status></d:propstat></d:response>");
+    }
+
+    private String read(String path) {
+        byte[] data = store.get(path);
+        return data == null ? null : new String(data, StandardCharsets.UTF_8);
+    }
+
+    private static void write(File f, String content) throws java.io.IOException {
+        FileUtils.writeStringToFile(f, content, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class Progress implements ProgressListener {
+
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicLong lastBytes = new AtomicLong();
+        volatile boolean cancelled;
+
+        @Override
+        public void onRead(int bytes) {
+        }
+
+        @Override
+        public void onProgress(long bytesRead, Long totalBytes, String fileName) {
+            lastBytes.set(bytesRead);
+        }
+
+        @Override
+        public void onComplete(String fileName) {
+            completed.incrementAndGet();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
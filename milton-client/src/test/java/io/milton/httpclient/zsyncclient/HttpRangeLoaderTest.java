@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2012 McEvoy Software Ltd
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.milton.httpclient.zsyncclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import io.milton.http.Range;
+import io.milton.httpclient.File;
+import io.milton.httpclient.Host;
+import io.milton.httpclient.TestServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class HttpRangeLoaderTest extends TestCase {
+
+    private final byte[] content = new byte[256 * 1024];
+    private TestServer server;
+    private Host host;
+    private HttpRangeLoader loader;
+    private java.io.File dest;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private volatile boolean ignoreRanges;
+    // if set, the server answers with one part for all the requested ranges
+    private volatile boolean coalesce;
+    // added to each range the server sends
+    private volatile int shift;
+    // if set, the server leaves out the last requested range
+    private volatile boolean dropLast;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        new Random(1).nextBytes(content);
+        server = new TestServer(8, this::handle);
+        host = server.newHost();
+        File file = new File(host, "data.bin", null, (long) content.length, null);
+        loader = new HttpRangeLoader(file, null);
+        dest = Files.createTempFile("ranges", ".bin").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        host.shutdown();
+        server.stop();
+        dest.delete();
+        super.tearDown();
+    }
+
+    public void testWriteRanges_Multipart() throws Exception {
+        List<Range> ranges = new ArrayList<>();
+        for (long start = 0; start < content.length; start += 2048) {
+            ranges.add(new Range(start, start + 999));
+        }
+        loader.setMaxRangesPerRequest(20);
+        loader.setParallelism(4);
+
+        write(ranges);
+
+        assertEquals((ranges.size() + 19) / 20, requests.get());
+        assertTrue("expected concurrent requests, max was " + maxActive.get(), maxActive.get() > 1);
+        assertEquals(ranges.size() * 1000L, loader.getBytesDownloaded());
+        byte[] actual = Files.readAllBytes(dest.toPath());
+        for (int i = 0; i < content.length; i++) {
+            byte expected = (i % 2048) < 1000 ? content[i] : 0;
+            assertEquals("byte " + i, expected, actual[i]);
+        }
+    }
+
+    public void testWriteRanges_SingleRangeSplit() throws Exception {
+        loader.setMaxBytesPerRequest(50000);
+
+        write(Arrays.asList(new Range(0L, (long) content.length - 1)));
+
+        assertEquals(6, requests.get());
+        assertTrue(Arrays.equals(content, Files.readAllBytes(dest.toPath())));
+    }
+
+    public void testWriteRanges_ServerIgnoresRanges() throws Exception {
+        ignoreRanges = true;
+
+        write(Arrays.asList(new Range(10L, 19L), new Range(1000L, 1999L)));
+
+        byte[] actual = Files.readAllBytes(dest.toPath());
+        assertEquals(content[10], actual[10]);
+        assertEquals(content[1999], actual[1999]);
+        assertEquals(0, actual[20]);
+        assertEquals(0, actual[2000]);
+    }
+
+    public void testWriteRanges_Coalesced() throws Exception {
+        coalesce = true;
+
+        write(Arrays.asList(new Range(10L, 19L), new Range(20L, 29L)));
+
+        byte[] actual = Files.readAllBytes(dest.toPath());
+        assertTrue(Arrays.equals(Arrays.copyOfRange(content, 10, 30), Arrays.copyOfRange(actual, 10, 30)));
+    }
+
+    public void testWriteRanges_UnrequestedPart() throws Exception {
+        shift = 5;
+        try {
+            write(Arrays.asList(new Range(10L, 19L), new Range(100L, 119L)));
+            fail("expected the response to be rejected");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("not within the requested ranges"));
+        }
+    }
+
+    public void testWriteRanges_MissingPart() throws Exception {
+        dropLast = true;
+        try {
+            write(Arrays.asList(new Range(10L, 19L), new Range(100L, 119L)));
+            fail("expected the response to be rejected");
+        } catch (IOException ex) {
+            assertEquals("Incomplete range response, bytes 100-119 were not received", ex.getMessage());
+        }
+    }
+
+    public void testCovers() {
+        List<long[]> list = Arrays.asList(new long[]{20, 29}, new long[]{0, 9}, new long[]{10, 15});
+        assertTrue(HttpRangeLoader.covers(list, 0, 15));
+        assertTrue(HttpRangeLoader.covers(list, 5, 5));
+        assertFalse(HttpRangeLoader.covers(list, 0, 20));
+        assertFalse(HttpRangeLoader.covers(list, 16, 16));
+        assertTrue(HttpRangeLoader.covers(list, 20, 29));
+    }
+
+    public void testSplit() {
+        loader.setMaxRangesPerRequest(2);
+        loader.setMaxBytesPerRequest(100);
+        List<List<Range>> batches = loader.split(Arrays.asList(new Range(0L, 9L), new Range(20L, 29L), new Range(40L, 289L)));
+        assertEquals(4, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals("0-9,20-29", ranges(batches.get(0)));
+        assertEquals("40-139", ranges(batches.get(1)));
+        assertEquals("140-239", ranges(batches.get(2)));
+        assertEquals("240-289", ranges(batches.get(3)));
+    }
+
+    private void write(List<Range> ranges) throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(dest, "rw")) {
+            raf.setLength(content.length);
+            loader.writeRanges(ranges, raf.getChannel());
+        }
+    }
+
+    private static String ranges(List<Range> list) {
+        StringBuilder sb = new StringBuilder();
+        for (Range r : list) {
+            if (sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append(r.getRange());
+        }
+        return sb.toString();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(50); // give the other requests a chance to overlap
+            String header = exchange.getRequestHeaders().getFirst("Range");
+            if (header == null || ignoreRanges) {
+                TestServer.send(exchange, 200, content);
+                return;
+            }
+            List<Range> requested = new ArrayList<>();
+            for (String spec : header.substring("bytes=".length()).split(",")) {
+                Range r = Range.parse(spec);
+                requested.add(new Range(r.getStart() + shift, r.getFinish() + shift));
+            }
+            if (dropLast) {
+                requested.remove(requested.size() - 1);
+            }
+            if (coalesce) {
+                requested = Arrays.asList(new Range(requested.get(0).getStart(), requested.get(requested.size() - 1).getFinish()));
+            }
+            if (requested.size() == 1) {
+                Range r = requested.get(0);
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + r.getStart() + "-" + r.getFinish() + "/" + content.length);
+                TestServer.send(exchange, 206, Arrays.copyOfRange(content, r.getStart().intValue(), r.getFinish().intValue() + 1));
+                return;
+            }
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            for (Range r : requested) {
+                String partHeader = "\r\n--XYZ\r\nContent-Type: application/octet-stream\r\nContent-Range: bytes "
+                        + r.getStart() + "-" + r.getFinish() + "/" + content.length + "\r\n\r\n";
+                bout.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+                bout.write(content, r.getStart().intValue(), r.getLength().intValue());
+            }
+            bout.write("\r\n--XYZ--\r\n".getBytes(StandardCharsets.US_ASCII));
+            exchange.getResponseHeaders().set("Content-Type", "multipart/byteranges; boundary=XYZ");
+            TestServer.send(exchange, 206, bout.toByteArray());
+        } catch (InterruptedException ex) {
+            throw new IOException(ex);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+}
@@ -16,6 +16,8 @@
 
 package io.milton.cache;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -24,5 +26,36 @@ import java.util.Map;
  * @author brad
  */
 public interface CacheManager {
+
+	/**
+	 * Get a map which may be bounded, ie entries might be evicted. Suitable
+	 * for data which can be reloaded
+	 *
+	 * @param name
+	 * @return
+	 */
 	Map getMap(String name);
+
+	/**
+	 * Get a map which behaves as described by the spec. Use a DURABLE spec for
+	 * state such as locks and properties, which must not be evicted.
+	 *
+	 * The default implementation ignores the spec and calls getMap(name), so
+	 * implementations which can evict entries should override this
+	 *
+	 * @param spec
+	 * @return
+	 */
+	default <K, V> Map<K, V> getMap(MapSpec<K, V> spec) {
+		return getMap(spec.getName());
+	}
+
+	/**
+	 *
+	 * @return - size and eviction figures for the maps created by this cache
+	 * manager, if it records them
+	 */
+	default List<MapStats> getStats() {
+		return Collections.emptyList();
+	}
 }
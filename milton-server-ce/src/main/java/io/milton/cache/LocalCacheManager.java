@@ -3,18 +3,42 @@
  */
 package io.milton.cache;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 
 /**
- * Attempts to connect to a hazelcast cluster. To use this, be sure to include
- * the optional hazelcast dependencies
+ * A CacheManager which holds everything in memory, using Caffeine.
+ *
+ * CACHE maps are limited to maximumWeightedCapacity entries unless the spec
+ * says otherwise, and evict the least used entries when full. DURABLE maps
+ * are unbounded, so entries are only removed explicitly or when they expire.
+ *
+ * Maps are shared by name, so asking for the same name twice returns the same
+ * map. Asking for an existing name with a different kind, maximum size or
+ * time to live is an error. Statistics are recorded for each map, where get
+ * and getOrDefault count as hits or misses.
  *
  * @author brad
  */
 public class LocalCacheManager implements CacheManager {
 
+	private final Map<String, NamedCache> caches = new ConcurrentHashMap<>();
+
 	private int maximumWeightedCapacity = 1000;
 
     public LocalCacheManager() {
@@ -23,11 +47,54 @@ public class LocalCacheManager implements CacheManager {
 
 	@Override
     public Map getMap(String name) {
-        return Caffeine.newBuilder()
-                .maximumSize(maximumWeightedCapacity)
-                .build().asMap();
+        return getMap(MapSpec.cache(name));
     }
 
+	@Override
+	public <K, V> Map<K, V> getMap(MapSpec<K, V> spec) {
+		NamedCache nc = caches.computeIfAbsent(spec.getName(), k -> create(spec));
+		if (nc.kind != spec.getKind() || !Objects.equals(nc.maximumSize, maximumSize(spec)) || nc.expiring != (spec.getTimeToLive() != null)) {
+			throw new IllegalArgumentException("Map " + spec.getName() + " already exists with a different spec: " + nc.kind + " max=" + nc.maximumSize + " expiring=" + nc.expiring);
+		}
+		return (Map<K, V>) nc.map;
+	}
+
+	@Override
+	public List<MapStats> getStats() {
+		List<MapStats> list = new ArrayList<>();
+		for (Map.Entry<String, NamedCache> e : caches.entrySet()) {
+			NamedCache nc = e.getValue();
+			CacheStats stats = nc.cache.stats();
+			list.add(new MapStats(e.getKey(), nc.kind, nc.cache.estimatedSize(), nc.maximumSize, stats.evictionCount(), stats.hitCount(), stats.missCount()));
+		}
+		return list;
+	}
+
+	private <K, V> NamedCache create(MapSpec<K, V> spec) {
+		Caffeine<Object, Object> builder = Caffeine.newBuilder().recordStats();
+		Long max = maximumSize(spec);
+		if (max != null) {
+			builder.maximumSize(max);
+		}
+		Cache<K, V> cache;
+		if (spec.getTimeToLive() != null) {
+			cache = builder.expireAfter(new TimeToLiveExpiry<>(spec.getTimeToLive())).build();
+		} else {
+			cache = builder.build();
+		}
+		return new NamedCache(cache, spec.getKind(), max, spec.getTimeToLive() != null);
+	}
+
+	/**
+	 * The maximum size for a CACHE map, or null for a DURABLE map
+	 */
+	private Long maximumSize(MapSpec<?, ?> spec) {
+		if (spec.getKind() != MapSpec.Kind.CACHE) {
+			return null;
+		}
+		return spec.getMaximumSize() != null ? spec.getMaximumSize() : (long) maximumWeightedCapacity;
+	}
+
 	public int getMaximumWeightedCapacity() {
 		return maximumWeightedCapacity;
 	}
@@ -35,4 +102,194 @@ public class LocalCacheManager implements CacheManager {
 	public void setMaximumWeightedCapacity(int maximumWeightedCapacity) {
 		this.maximumWeightedCapacity = maximumWeightedCapacity;
 	}
+
+	private static class NamedCache {
+
+		final Cache<?, ?> cache;
+		final Map<?, ?> map;
+		final MapSpec.Kind kind;
+		final Long maximumSize;
+		final boolean expiring;
+
+		<K, V> NamedCache(Cache<K, V> cache, MapSpec.Kind kind, Long maximumSize, boolean expiring) {
+			this.cache = cache;
+			this.map = new StatsMap<>(cache);
+			this.kind = kind;
+			this.maximumSize = maximumSize;
+			this.expiring = expiring;
+		}
+	}
+
+	/**
+	 * The cache's map view, except that reads go through the cache so they are
+	 * counted as hits and misses. Caffeine does not record statistics for
+	 * reads through its map view
+	 */
+	private static class StatsMap<K, V> implements ConcurrentMap<K, V> {
+
+		private final Cache<K, V> cache;
+		private final ConcurrentMap<K, V> map;
+
+		StatsMap(Cache<K, V> cache) {
+			this.cache = cache;
+			this.map = cache.asMap();
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V get(Object key) {
+			if (key == null) {
+				throw new NullPointerException();
+			}
+			return cache.getIfPresent((K) key);
+		}
+
+		@Override
+		public V getOrDefault(Object key, V defaultValue) {
+			V v = get(key);
+			return v != null ? v : defaultValue;
+		}
+
+		@Override
+		public int size() {
+			return map.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return map.isEmpty();
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return map.containsKey(key);
+		}
+
+		@Override
+		public boolean containsValue(Object value) {
+			return map.containsValue(value);
+		}
+
+		@Override
+		public V put(K key, V value) {
+			return map.put(key, value);
+		}
+
+		@Override
+		public V remove(Object key) {
+			return map.remove(key);
+		}
+
+		@Override
+		public void putAll(Map<? extends K, ? extends V> m) {
+			map.putAll(m);
+		}
+
+		@Override
+		public void clear() {
+			map.clear();
+		}
+
+		@Override
+		public Set<K> keySet() {
+			return map.keySet();
+		}
+
+		@Override
+		public Collection<V> values() {
+			return map.values();
+		}
+
+		@Override
+		public Set<Entry<K, V>> entrySet() {
+			return map.entrySet();
+		}
+
+		@Override
+		public V putIfAbsent(K key, V value) {
+			return map.putIfAbsent(key, value);
+		}
+
+		@Override
+		public boolean remove(Object key, Object value) {
+			return map.remove(key, value);
+		}
+
+		@Override
+		public boolean replace(K key, V oldValue, V newValue) {
+			return map.replace(key, oldValue, newValue);
+		}
+
+		@Override
+		public V replace(K key, V value) {
+			return map.replace(key, value);
+		}
+
+		@Override
+		public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+			return map.computeIfAbsent(key, mappingFunction);
+		}
+
+		@Override
+		public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+			return map.computeIfPresent(key, remappingFunction);
+		}
+
+		@Override
+		public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+			return map.compute(key, remappingFunction);
+		}
+
+		@Override
+		public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+			return map.merge(key, value, remappingFunction);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return map.equals(o);
+		}
+
+		@Override
+		public int hashCode() {
+			return map.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return map.toString();
+		}
+	}
+
+	/**
+	 * Sets the expiry of each entry from the spec's time to live when it is
+	 * added or replaced. Reads do not change it
+	 */
+	private static class TimeToLiveExpiry<K, V> implements Expiry<K, V> {
+
+		private final ToLongBiFunction<K, V> timeToLive;
+
+		TimeToLiveExpiry(ToLongBiFunction<K, V> timeToLive) {
+			this.timeToLive = timeToLive;
+		}
+
+		@Override
+		public long expireAfterCreate(K key, V value, long currentTime) {
+			long millis = timeToLive.applyAsLong(key, value);
+			if (millis == Long.MAX_VALUE) {
+				return Long.MAX_VALUE;
+			}
+			return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+		}
+
+		@Override
+		public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+			return expireAfterCreate(key, value, currentTime);
+		}
+
+		@Override
+		public long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+			return currentDuration;
+		}
+	}
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.milton.cache;
+
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Describes how a map obtained from a CacheManager should behave.
+ *
+ * A CACHE map holds data which can be reloaded, so it is bounded and may
+ * evict entries when full. A DURABLE map holds state such as locks and dead
+ * properties which must not be lost, so it is never evicted for size. Either
+ * kind may give a time to live for each entry, eg from a lock's timeout.
+ *
+ * @author brad
+ * @param <K>
+ * @param <V>
+ */
+public class MapSpec<K, V> {
+
+	public enum Kind {
+		CACHE,
+		DURABLE
+	}
+
+	/**
+	 * A bounded map for data which can be reloaded
+	 *
+	 * @param name
+	 * @return
+	 */
+	public static <K, V> MapSpec<K, V> cache(String name) {
+		return new MapSpec<>(name, Kind.CACHE);
+	}
+
+	/**
+	 * A map whose entries are only removed explicitly or when they expire
+	 *
+	 * @param name
+	 * @return
+	 */
+	public static <K, V> MapSpec<K, V> durable(String name) {
+		return new MapSpec<>(name, Kind.DURABLE);
+	}
+
+	private final String name;
+	private final Kind kind;
+	private Long maximumSize;
+	private ToLongBiFunction<K, V> timeToLive;
+
+	private MapSpec(String name, Kind kind) {
+		this.name = name;
+		this.kind = kind;
+	}
+
+	/**
+	 * Set the maximum number of entries for a CACHE map. If not set the cache
+	 * manager's default is used. Ignored for DURABLE maps
+	 *
+	 * @param maximumSize
+	 * @return
+	 */
+	public MapSpec<K, V> maximumSize(long maximumSize) {
+		this.maximumSize = maximumSize;
+		return this;
+	}
+
+	/**
+	 * Give each entry a time to live, calculated from the entry when it is
+	 * added or replaced. The function should return Long.MAX_VALUE for entries
+	 * which do not expire
+	 *
+	 * @param timeToLive - returns milliseconds to live for the key and value
+	 * @return
+	 */
+	public MapSpec<K, V> expireAfter(ToLongBiFunction<K, V> timeToLive) {
+		this.timeToLive = timeToLive;
+		return this;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public Long getMaximumSize() {
+		return maximumSize;
+	}
+
+	public ToLongBiFunction<K, V> getTimeToLive() {
+		return timeToLive;
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.milton.cache;
+
+/**
+ * Size and eviction figures for a map obtained from a CacheManager
+ *
+ * @author brad
+ */
+public class MapStats {
+
+	private final String name;
+	private final MapSpec.Kind kind;
+	private final long size;
+	private final Long maximumSize;
+	private final long evictionCount;
+	private final long hitCount;
+	private final long missCount;
+
+	public MapStats(String name, MapSpec.Kind kind, long size, Long maximumSize, long evictionCount, long hitCount, long missCount) {
+		this.name = name;
+		this.kind = kind;
+		this.size = size;
+		this.maximumSize = maximumSize;
+		this.evictionCount = evictionCount;
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public MapSpec.Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 *
+	 * @return - the approximate number of entries
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @return - the maximum number of entries, or null if unbounded
+	 */
+	public Long getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 *
+	 * @return - the number of entries removed because of size or expiry
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	public long getMissCount() {
+		return missCount;
+	}
+
+	@Override
+	public String toString() {
+		return name + " (" + kind + ") size=" + size + " max=" + maximumSize + " evictions=" + evictionCount + " hits=" + hitCount + " misses=" + missCount;
+	}
+}
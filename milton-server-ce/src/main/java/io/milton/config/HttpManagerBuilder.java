@@ -26,9 +26,11 @@ import io.milton.common.Stoppable;
 import io.milton.context.RootContext;
 import io.milton.event.EventManager;
 import io.milton.event.EventManagerImpl;
+import io.milton.http.AuthenticationCache;
 import io.milton.http.AuthenticationHandler;
 import io.milton.http.AuthenticationService;
 import io.milton.http.AuthorisationListener;
+import io.milton.http.CompressedVariantCache;
 import io.milton.http.CompressingResponseHandler;
 import io.milton.http.Filter;
 import io.milton.http.HandlerHelper;
@@ -153,6 +155,7 @@ public class HttpManagerBuilder {
     protected int nonceValiditySeconds = 60 * 60 * 24;
     protected NonceProvider nonceProvider;
     protected AuthenticationService authenticationService;
+    protected AuthenticationCache authenticationCache;
     protected ExpiredNonceRemover expiredNonceRemover;
     protected List<Stoppable> shutdownHandlers = new CopyOnWriteArrayList<>();
     protected ResourceTypeHelper resourceTypeHelper;
@@ -183,6 +186,8 @@ public class HttpManagerBuilder {
     protected ResourceHandlerHelper resourceHandlerHelper;
     protected boolean initDone;
     protected boolean enableCompression = true;
+    protected boolean enableStreamingCompression;
+    protected CompressedVariantCache compressedVariantCache;
     protected boolean enabledJson = true;
     protected boolean enableBasicAuth = true;
     protected boolean enableDigestAuth = true;
@@ -224,6 +229,9 @@ public class HttpManagerBuilder {
     private String cookieSigningKeysFile;
     private boolean useLongLivedCookies = true;
     private boolean enableQuota = false;
+    private boolean enablePropFindStreaming = false;
+    private boolean enableAnnotationChildrenCache = false;
+    private long annotationChildrenCacheSize = 1000;
 
     private OAuth2AuthenticationHandler oAuth2Handler;
 
@@ -288,6 +296,10 @@ public class HttpManagerBuilder {
         if (mainResourceFactory instanceof AnnotationResourceFactory arf) {
             log.info("Set AnnotationResourceFactory context path to: {}", contextPath);
             arf.setContextPath(contextPath);
+            if (enableAnnotationChildrenCache) {
+                log.info("Enabled AnnotationResourceFactory children cache for up to {} collections", annotationChildrenCacheSize);
+                arf.setChildrenCacheSize(annotationChildrenCacheSize);
+            }
         }
 
         log.info("Using mainResourceFactory: {}", mainResourceFactory.getClass());
@@ -369,6 +381,7 @@ public class HttpManagerBuilder {
                 }
             }
             authenticationService = new AuthenticationService(authenticationHandlers);
+            authenticationService.setAuthenticationCache(authenticationCache);
             rootContext.put(authenticationService);
             if (cookieAuthenticationHandler != null) {
                 rootContext.put(cookieAuthenticationHandler);
@@ -438,6 +451,8 @@ public class HttpManagerBuilder {
         if (enableCompression) {
             final CompressingResponseHandler compressingResponseHandler = new CompressingResponseHandler(webdavResponseHandler);
             compressingResponseHandler.setBuffering(buffering);
+            compressingResponseHandler.setStreaming(enableStreamingCompression);
+            compressingResponseHandler.setVariantCache(compressedVariantCache);
             outerWebdavResponseHandler = compressingResponseHandler;
             showLog("webdavResponseHandler", webdavResponseHandler);
         }
@@ -620,6 +635,7 @@ public class HttpManagerBuilder {
         }
         if (webDavProtocol == null && webdavEnabled) {
             webDavProtocol = new WebDavProtocol(handlerHelper, resourceTypeHelper, webdavResponseHandler, propertySources, quotaDataAccessor, propPatchSetter, initPropertyAuthoriser(), eTagGenerator, urlAdapter, resourceHandlerHelper, userAgentHelper(), propFindRequestFieldParser(), propFindPropertyBuilder(), displayNameFormatter, enableTextContentProperty);
+            webDavProtocol.getPropFindHandler().setStreaming(enablePropFindStreaming);
         }
     }
 
@@ -954,6 +970,52 @@ public class HttpManagerBuilder {
         this.enableCompression = enableCompression;
     }
 
+    public boolean isEnableStreamingCompression() {
+        return enableStreamingCompression;
+    }
+
+    /**
+     * If true, compressed responses are streamed with chunked transfer
+     * encoding instead of being buffered to find their length. Only applies if
+     * enableCompression is true
+     *
+     * @param enableStreamingCompression
+     */
+    public void setEnableStreamingCompression(boolean enableStreamingCompression) {
+        this.enableStreamingCompression = enableStreamingCompression;
+    }
+
+    public AuthenticationCache getAuthenticationCache() {
+        return authenticationCache;
+    }
+
+    /**
+     * If set, successful Basic logins are cached so that clients which send
+     * credentials with every request are not verified each time. Eg
+     * LocalAuthenticationCache. Only used if the authenticationService is
+     * created by this builder
+     *
+     * @param authenticationCache
+     */
+    public void setAuthenticationCache(AuthenticationCache authenticationCache) {
+        this.authenticationCache = authenticationCache;
+    }
+
+    public CompressedVariantCache getCompressedVariantCache() {
+        return compressedVariantCache;
+    }
+
+    /**
+     * If set, compressed content is cached here and repeated requests for the
+     * same representation are served without compressing again. Only applies
+     * if enableCompression is true
+     *
+     * @param compressedVariantCache
+     */
+    public void setCompressedVariantCache(CompressedVariantCache compressedVariantCache) {
+        this.compressedVariantCache = compressedVariantCache;
+    }
+
     public boolean isEnabledJson() {
         return enabledJson;
     }
@@ -1407,6 +1469,51 @@ public class HttpManagerBuilder {
         this.enableQuota = enableQuota;
     }
 
+    public boolean isEnablePropFindStreaming() {
+        return enablePropFindStreaming;
+    }
+
+    /**
+     * If true, PROPFIND responses are streamed to the client as each resource
+     * is processed (with chunked transfer encoding) instead of being built in
+     * memory first. Recommended for very large collections
+     *
+     * @param enablePropFindStreaming
+     */
+    public void setEnablePropFindStreaming(boolean enablePropFindStreaming) {
+        this.enablePropFindStreaming = enablePropFindStreaming;
+    }
+
+    public boolean isEnableAnnotationChildrenCache() {
+        return enableAnnotationChildrenCache;
+    }
+
+    /**
+     * If true, and the main resource factory is an AnnotationResourceFactory,
+     * the results of ChildrenOf methods are cached in memory across requests,
+     * and reused while the collection's ctag is unchanged.
+     *
+     * @see AnnotationResourceFactory#setChildrenCacheSize
+     * @param enableAnnotationChildrenCache
+     */
+    public void setEnableAnnotationChildrenCache(boolean enableAnnotationChildrenCache) {
+        this.enableAnnotationChildrenCache = enableAnnotationChildrenCache;
+    }
+
+    public long getAnnotationChildrenCacheSize() {
+        return annotationChildrenCacheSize;
+    }
+
+    /**
+     * The maximum number of collections to cache children for, when
+     * enableAnnotationChildrenCache is true. Default is 1000
+     *
+     * @param annotationChildrenCacheSize
+     */
+    public void setAnnotationChildrenCacheSize(long annotationChildrenCacheSize) {
+        this.annotationChildrenCacheSize = annotationChildrenCacheSize;
+    }
+
     /**
      * Default max-age to use for certain resource types which can use a default
      * value
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http;
+
+/**
+ * Remembers credentials which have recently been verified, so that clients
+ * which send Basic credentials with every request, as most WebDAV clients do,
+ * dont need them to be verified again each time. This matters when
+ * verification is deliberately slow, eg comparing against bcrypt hashes.
+ * <p>
+ * Only successful logins are cached. Implementations must not hold passwords
+ * in a recoverable form.
+ *
+ * @author brad
+ */
+public interface AuthenticationCache {
+
+    /**
+     * Find the login token from an earlier successful authentication with
+     * exactly these credentials
+     *
+     * @param realm
+     * @param user
+     * @param password
+     * @return - null if not cached
+     */
+    Object get(String realm, String user, String password);
+
+    /**
+     * Record a successful authentication
+     *
+     * @param realm
+     * @param user
+     * @param password
+     * @param loginToken - the object returned by the authentication handler
+     */
+    void put(String realm, String user, String password, Object loginToken);
+
+    /**
+     * Remove all cached logins for the user, eg when their password is
+     * changed
+     *
+     * @param user
+     */
+    void invalidate(String user);
+
+    /**
+     * Remove all cached logins
+     */
+    void invalidateAll();
+}
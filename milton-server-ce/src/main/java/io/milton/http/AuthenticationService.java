@@ -38,6 +38,7 @@ public class AuthenticationService {
     private final List<AuthenticationHandler> authenticationHandlers;
     private List<ExternalIdentityProvider> externalIdentityProviders;
     private boolean disableExternal;
+    private AuthenticationCache authenticationCache;
     private final String[] browserIds = {"msie", "firefox", "chrome", "safari", "opera"};
 
     /**
@@ -102,7 +103,7 @@ public class AuthenticationService {
 
         for (AuthenticationHandler h : authenticationHandlers) {
             if (h.supports(resource, request)) {
-                Object loginToken = h.authenticate(resource, request);
+                Object loginToken = authenticate(h, resource, request, auth);
                 if (loginToken == null) {
                     log.warn("authentication failed by AuthenticationHandler:" + h.getClass());
                     return new AuthStatus(auth, true);
@@ -131,6 +132,27 @@ public class AuthenticationService {
         return null;
     }
 
+    /**
+     * Authenticate with the handler, unless Basic credentials have recently
+     * been verified and are in the authenticationCache
+     */
+    private Object authenticate(AuthenticationHandler h, Resource resource, Request request, Auth auth) {
+        if (authenticationCache == null || auth == null || auth.getScheme() != Auth.Scheme.BASIC || auth.getUser() == null || auth.getPassword() == null) {
+            return h.authenticate(resource, request);
+        }
+        String realm = request.getHostHeader() + "/" + (resource == null ? null : resource.getRealm());
+        Object loginToken = authenticationCache.get(realm, auth.getUser(), auth.getPassword());
+        if (loginToken != null) {
+            log.trace("authenticated from cache");
+            return loginToken;
+        }
+        loginToken = h.authenticate(resource, request);
+        if (loginToken != null) {
+            authenticationCache.put(realm, auth.getUser(), auth.getPassword(), loginToken);
+        }
+        return loginToken;
+    }
+
     /**
      * Generates a list of http authentication challenges, one for each
      * supported authentication method, to be sent to the client.
@@ -164,6 +186,21 @@ public class AuthenticationService {
         this.externalIdentityProviders = externalIdentityProviders;
     }
 
+    public AuthenticationCache getAuthenticationCache() {
+        return authenticationCache;
+    }
+
+    /**
+     * If set, successful Basic logins are remembered here so that repeated
+     * requests with the same credentials skip the authentication handler. Null
+     * by default
+     *
+     * @param authenticationCache
+     */
+    public void setAuthenticationCache(AuthenticationCache authenticationCache) {
+        this.authenticationCache = authenticationCache;
+    }
+
     public boolean isDisableExternal() {
         return disableExternal;
     }
@@ -0,0 +1,427 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A shared, size bounded cache of compressed representations, so that
+ * CompressingResponseHandler can serve repeated GETs of the same content
+ * without compressing it again.
+ * <p>
+ * Entries are keyed on the resource's unique ID, its ETag and the content
+ * coding, so a new version of a resource is simply a different key and the old
+ * one ages out. Variants up to maxMemoryEntrySize are held on the heap, bounded
+ * in total by maxMemoryBytes. Larger ones are written to files in diskDir,
+ * bounded by maxDiskBytes, if a diskDir has been set. Each store is evicted in
+ * least recently used order.
+ * <p>
+ * Files for evicted entries are deleted, so diskDir should be a directory
+ * used only by this cache.
+ *
+ * @author brad
+ */
+public class CompressedVariantCache {
+
+    private static final Logger log = LoggerFactory.getLogger(CompressedVariantCache.class);
+
+    private final LinkedHashMap<String, Variant> variants = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private int maxMemoryEntrySize = 64 * 1024;
+    private long maxMemoryBytes = 16 * 1024 * 1024;
+    private long maxDiskBytes = 256 * 1024 * 1024;
+    private File diskDir;
+    private long memoryBytes;
+    private long diskBytes;
+    private long fileCounter;
+
+    public CompressedVariantCache() {
+    }
+
+    /**
+     *
+     * @param diskDir - directory to hold large variants, or null to only
+     * cache on the heap
+     */
+    public CompressedVariantCache(File diskDir) {
+        this.diskDir = diskDir;
+    }
+
+    /**
+     * Build the cache key for a representation. Request parameters are
+     * included, since a resource might generate different content for them
+     *
+     * @param uniqueId
+     * @param etag
+     * @param encoding
+     * @param params - request parameters, may be null
+     * @return - null if the representation can't be identified, ie the
+     * uniqueId or etag is null
+     */
+    public static String key(String uniqueId, String etag, Response.ContentEncoding encoding, Map<String, String> params) {
+        if (uniqueId == null || etag == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(uniqueId).append('|').append(etag).append('|').append(encoding.code);
+        if (params != null && !params.isEmpty()) {
+            sb.append('|').append(new TreeMap<>(params));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Find a cached variant, recording a hit or miss
+     *
+     * @param key
+     * @return - null if not cached
+     */
+    public Variant get(String key) {
+        Variant v;
+        synchronized (this) {
+            v = variants.get(key);
+        }
+        if (v == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+            bytesSaved.addAndGet(v.originalLength);
+        }
+        return v;
+    }
+
+    /**
+     * Whether a variant of the given compressed length can be stored
+     *
+     * @param length
+     * @return
+     */
+    public boolean isCacheable(long length) {
+        return isMemorySized(length) || (diskDir != null && length <= maxDiskBytes);
+    }
+
+    private boolean isMemorySized(long length) {
+        return length <= maxMemoryEntrySize && length <= maxMemoryBytes;
+    }
+
+    /**
+     * Copy the given compressed content into the cache. The input stream is
+     * always closed.
+     *
+     * If there is already an entry for the key it is kept and returned, so
+     * concurrent misses for the same representation only store it once
+     *
+     * @param key
+     * @param compressed - the compressed content
+     * @param length - the length of the compressed content
+     * @param originalLength - the length of the content before compression
+     * @return - the cached variant, or null if it is not cacheable
+     * @throws IOException
+     */
+    public Variant put(String key, InputStream compressed, long length, long originalLength) throws IOException {
+        Variant v;
+        try {
+            v = create(compressed, length, originalLength);
+        } finally {
+            IOUtils.closeQuietly(compressed);
+        }
+        if (v == null) {
+            return null;
+        }
+        synchronized (this) {
+            Variant stored = add(key, v);
+            evict();
+            return stored;
+        }
+    }
+
+    /**
+     * As for put, but opens the stored content before anything is evicted, so
+     * it can be sent even if another request evicts it straight away
+     *
+     * If the content is not cacheable the input stream is not read or closed,
+     * so the caller can send it instead
+     *
+     * @param key
+     * @param compressed - the compressed content
+     * @param length - the length of the compressed content
+     * @param originalLength - the length of the content before compression
+     * @return - the cached content, or null if it is not cacheable
+     * @throws IOException
+     */
+    public InputStream putAndOpen(String key, InputStream compressed, long length, long originalLength) throws IOException {
+        Variant v;
+        try {
+            v = create(compressed, length, originalLength);
+        } catch (IOException | RuntimeException ex) {
+            IOUtils.closeQuietly(compressed);
+            throw ex;
+        }
+        if (v == null) {
+            return null;
+        }
+        IOUtils.closeQuietly(compressed);
+        synchronized (this) {
+            InputStream in = add(key, v).getInputStream();
+            evict();
+            return in;
+        }
+    }
+
+    private Variant create(InputStream compressed, long length, long originalLength) throws IOException {
+        if (isMemorySized(length)) {
+            byte[] data = IOUtils.toByteArray(compressed);
+            return new Variant(data, null, data.length, originalLength);
+        } else if (diskDir != null && length <= maxDiskBytes) {
+            return new Variant(null, writeFile(compressed), length, originalLength);
+        } else {
+            log.trace("put: too large to cache: {}", length);
+            return null;
+        }
+    }
+
+    /**
+     * Add a variant, or return the existing one for the key. Must be called
+     * while synchronized on this cache
+     */
+    private Variant add(String key, Variant v) {
+        Variant existing = variants.get(key);
+        if (existing != null) {
+            v.delete();
+            return existing;
+        }
+        variants.put(key, v);
+        if (v.isInMemory()) {
+            memoryBytes += v.length;
+        } else {
+            diskBytes += v.length;
+        }
+        return v;
+    }
+
+    /**
+     * Remove all entries, deleting any files
+     */
+    public synchronized void clear() {
+        for (Variant v : variants.values()) {
+            v.delete();
+        }
+        variants.clear();
+        memoryBytes = 0;
+        diskBytes = 0;
+    }
+
+    private void evict() {
+        Iterator<Variant> it = variants.values().iterator();
+        while ((memoryBytes > maxMemoryBytes || diskBytes > maxDiskBytes) && it.hasNext()) {
+            Variant v = it.next();
+            if (v.isInMemory() && memoryBytes > maxMemoryBytes) {
+                memoryBytes -= v.length;
+            } else if (!v.isInMemory() && diskBytes > maxDiskBytes) {
+                diskBytes -= v.length;
+                v.delete();
+            } else {
+                continue;
+            }
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private File writeFile(InputStream in) throws IOException {
+        if (!diskDir.exists() && !diskDir.mkdirs()) {
+            throw new IOException("Couldnt create cache directory: " + diskDir.getAbsolutePath());
+        }
+        long n;
+        synchronized (this) {
+            n = fileCounter++;
+        }
+        File f = new File(diskDir, "variant-" + n + ".bin");
+        try (OutputStream out = new FileOutputStream(f)) {
+            IOUtils.copy(in, out);
+        } catch (IOException e) {
+            f.delete();
+            throw e;
+        }
+        return f;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * The number of uncompressed bytes which did not need to be compressed
+     * because a cached variant was served instead
+     *
+     * @return
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized int getSize() {
+        return variants.size();
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    public int getMaxMemoryEntrySize() {
+        return maxMemoryEntrySize;
+    }
+
+    /**
+     * Variants up to this size are held in memory, larger ones go to disk.
+     * Defaults to 64KB
+     *
+     * @param maxMemoryEntrySize
+     */
+    public void setMaxMemoryEntrySize(int maxMemoryEntrySize) {
+        this.maxMemoryEntrySize = maxMemoryEntrySize;
+    }
+
+    public long getMaxMemoryBytes() {
+        return maxMemoryBytes;
+    }
+
+    /**
+     * Total size of variants held in memory. Defaults to 16MB
+     *
+     * @param maxMemoryBytes
+     */
+    public void setMaxMemoryBytes(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    public long getMaxDiskBytes() {
+        return maxDiskBytes;
+    }
+
+    /**
+     * Total size of variants held on disk. Defaults to 256MB
+     *
+     * @param maxDiskBytes
+     */
+    public void setMaxDiskBytes(long maxDiskBytes) {
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    public File getDiskDir() {
+        return diskDir;
+    }
+
+    /**
+     * Directory for variants larger than maxMemoryEntrySize. If null, only
+     * small variants are cached
+     *
+     * @param diskDir
+     */
+    public void setDiskDir(File diskDir) {
+        this.diskDir = diskDir;
+    }
+
+    /**
+     * A cached compressed representation
+     */
+    public static class Variant {
+
+        private final byte[] data;
+        private final File file;
+        private final long length;
+        private final long originalLength;
+
+        private Variant(byte[] data, File file, long length, long originalLength) {
+            this.data = data;
+            this.file = file;
+            this.length = length;
+            this.originalLength = originalLength;
+        }
+
+        /**
+         * Open the compressed content
+         *
+         * @return
+         * @throws FileNotFoundException - if the file has been evicted and
+         * deleted since this variant was looked up
+         */
+        public InputStream getInputStream() throws FileNotFoundException {
+            if (data != null) {
+                return new ByteArrayInputStream(data);
+            }
+            return new FileInputStream(file);
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getOriginalLength() {
+            return originalLength;
+        }
+
+        public boolean isInMemory() {
+            return data != null;
+        }
+
+        private void delete() {
+            if (file != null && !file.delete()) {
+                log.warn("Couldnt delete cached variant: {}", file.getAbsolutePath());
+                file.deleteOnExit();
+            }
+        }
+    }
+}
@@ -21,6 +21,7 @@ package io.milton.http;
 import io.milton.common.BufferingOutputStream;
 import io.milton.common.FileUtils;
 import io.milton.http.entity.CompressedResourceEntity;
+import io.milton.http.entity.CompressingEntity;
 import io.milton.http.entity.InputStreamEntity;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
@@ -31,20 +32,40 @@ import io.milton.http.http11.DefaultHttp11ResponseHandler;
 import io.milton.http.webdav.WebDavResponseHandler;
 import io.milton.resource.GetableResource;
 import io.milton.resource.Resource;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Deflater;
 
 /**
  * Response Handler which wraps another, and compresses content if appropriate
  * <p>
  * Usually, this will wrap a DefaultResponseHandler, but custom implementations
  * can be wrapped as well.
+ * <p>
+ * By default the compressed content is buffered, spilling to a temp file
+ * over maxMemorySize, so that the Content-Length can be set. If streaming is
+ * true the content is compressed as it is sent instead, without a
+ * Content-Length, so it goes out with chunked transfer encoding.
+ * <p>
+ * The content codings to use are given by encodings, in order of preference,
+ * and the first one the client accepts is used. Resources whose
+ * getContentLength is less than minCompressSize are not compressed.
+ * <p>
+ * If a variantCache is set, compressed content for resources with a unique ID,
+ * ETag and modified date is kept in it and repeated requests are served from
+ * there. Such resources are always buffered on a cache miss, even if streaming
+ * is true, so the result can be cached.
  *
  * @author brad
  */
@@ -55,7 +76,12 @@ public class CompressingResponseHandler extends AbstractWrappingResponseHandler
      * The size to buffer in memory before switching to disk cache.
      */
     private int maxMemorySize = 100000;
+    private boolean streaming;
+    private List<Response.ContentEncoding> encodings = new ArrayList<>(Arrays.asList(Response.ContentEncoding.GZIP));
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private long minCompressSize = 0;
     private CacheControlHelper cacheControlHelper = new DefaultCacheControlHelper();
+    private CompressedVariantCache variantCache;
 
     public CompressingResponseHandler() {
     }
@@ -104,17 +130,38 @@ public class CompressingResponseHandler extends AbstractWrappingResponseHandler
                 }
             }
 
-            if (canCompress(r, contentType, acceptableEncodings)) {
+            Response.ContentEncoding encoding = canCompress(r, contentType, acceptableEncodings) ? selectEncoding(acceptableEncodings) : null;
+            String variantKey = null;
+            if (encoding != null && variantCache != null && r.getModifiedDate() != null) {
+                variantKey = CompressedVariantCache.key(r.getUniqueId(), wrapped.generateEtag(r), encoding, params);
+                if (variantKey != null) {
+                    CompressedVariantCache.Variant variant = variantCache.get(variantKey);
+                    InputStream in = openVariant(variant);
+                    if (in != null) {
+                        log.trace("respondContent: cached variant");
+                        setCompressedHeaders(r, response, request, encoding, contentType, variant.getLength());
+                        response.setEntity(new InputStreamEntity(in));
+                        return;
+                    }
+                }
+            }
+            if (encoding != null && streaming && variantKey == null) {
+                log.trace("respondContent: compressable, streaming");
+                setCompressedHeaders(r, response, request, encoding, contentType, null);
+                response.setEntity(new CompressingEntity(r, params, contentType, encoding, compressionLevel));
+            } else if (encoding != null) {
                 log.trace("respondContent: compressable");
 
                 // get the zipped content before sending so we can determine its
                 // compressed size
                 BufferingOutputStream tempOut = new BufferingOutputStream(maxMemorySize);
+                CountingOutputStream countingOut;
                 try {
-                    OutputStream gzipOut = new GZIPOutputStream(tempOut);
-                    r.sendContent(gzipOut, null, params, contentType);
-                    gzipOut.flush();
-                    gzipOut.close();
+                    OutputStream zipOut = CompressingEntity.compress(tempOut, encoding, compressionLevel);
+                    countingOut = new CountingOutputStream(zipOut);
+                    r.sendContent(countingOut, null, params, contentType);
+                    zipOut.flush();
+                    zipOut.close();
                     tempOut.flush();
                 } catch (NotFoundException e) {
                     tempOut.deleteTempFileIfExists();
@@ -127,14 +174,20 @@ public class CompressingResponseHandler extends AbstractWrappingResponseHandler
                 }
 
                 log.trace("respondContent-compressed: " + resource.getClass());
-                setRespondContentCommonHeaders(response, resource, Response.Status.SC_OK, request.getAuthorization());
-                response.setContentEncodingHeader(Response.ContentEncoding.GZIP);
-                response.setVaryHeader("Accept-Encoding");
                 long contentLength = tempOut.getSize();
-                response.setContentLengthHeader(contentLength);
-                response.setContentTypeHeader(contentType);
-                cacheControlHelper.setCacheControl(r, response, request.getAuthorization());
-                response.setEntity(new InputStreamEntity(tempOut.getInputStream()));
+                InputStream in = tempOut.getInputStream();
+                if (variantKey != null) {
+                    try {
+                        InputStream cached = variantCache.putAndOpen(variantKey, in, contentLength, countingOut.getByteCount());
+                        if (cached != null) {
+                            in = cached;
+                        }
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+                setCompressedHeaders(r, response, request, encoding, contentType, contentLength);
+                response.setEntity(new InputStreamEntity(in));
             } else {
                 log.trace("respondContent: not compressable");
                 // We really should set this header, but it causes IE to not cache files (eg images)
@@ -146,6 +199,33 @@ public class CompressingResponseHandler extends AbstractWrappingResponseHandler
         }
     }
 
+    private void setCompressedHeaders(GetableResource r, Response response, Request request, Response.ContentEncoding encoding, String contentType, Long contentLength) {
+        setRespondContentCommonHeaders(response, r, Response.Status.SC_OK, request.getAuthorization());
+        response.setContentEncodingHeader(encoding);
+        response.setVaryHeader("Accept-Encoding");
+        if (contentLength != null) {
+            response.setContentLengthHeader(contentLength);
+        }
+        response.setContentTypeHeader(contentType);
+        cacheControlHelper.setCacheControl(r, response, request.getAuthorization());
+    }
+
+    /**
+     * Open a cached variant, or return null if there isnt one. Files for large
+     * variants might have been evicted since the variant was looked up
+     */
+    private InputStream openVariant(CompressedVariantCache.Variant variant) {
+        if (variant == null) {
+            return null;
+        }
+        try {
+            return variant.getInputStream();
+        } catch (FileNotFoundException e) {
+            log.trace("cached variant has been evicted");
+            return null;
+        }
+    }
+
     protected void setRespondContentCommonHeaders(Response response, Resource resource, Response.Status status, Auth auth) {
         response.setDateHeader(new Date());
         if (response.getStatus() == null || response.getStatus().code == 200) { // if status is not set (normal case) or is defaulted to 200 (often the case) set it
@@ -167,14 +247,61 @@ public class CompressingResponseHandler extends AbstractWrappingResponseHandler
             // This list really should be from a parameter - TODO
             boolean contentIsCompressable = contentType.contains("text") || contentType.contains("css") || contentType.contains("js") || contentType.contains("javascript");
             if (contentIsCompressable) {
-                boolean supportsGzip = (acceptableEncodings != null && acceptableEncodings.toLowerCase().contains("gzip"));
-                log.trace("supports gzip: " + supportsGzip);
-                return supportsGzip;
+                Long contentLength = r.getContentLength();
+                if (contentLength != null && contentLength < minCompressSize) {
+                    log.trace("too small to compress: " + contentLength);
+                    return false;
+                }
+                return acceptableEncodings != null;
             }
         }
         return false;
     }
 
+    /**
+     * Find the first of our encodings which the client accepts, ie which is
+     * listed in the Accept-Encoding header without q=0, or is matched by *
+     *
+     * @param acceptableEncodings
+     * @return - null if none are acceptable
+     */
+    Response.ContentEncoding selectEncoding(String acceptableEncodings) {
+        if (acceptableEncodings == null) {
+            return null;
+        }
+        boolean wildcard = false;
+        List<String> accepted = new ArrayList<>();
+        List<String> refused = new ArrayList<>();
+        for (String s : acceptableEncodings.toLowerCase().split(",")) {
+            String[] parts = s.split(";");
+            String coding = parts[0].trim();
+            boolean zero = false;
+            for (int i = 1; i < parts.length; i++) {
+                String p = parts[i].trim();
+                if (p.startsWith("q=")) {
+                    try {
+                        zero = Double.parseDouble(p.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        log.trace("Invalid q value: " + p);
+                    }
+                }
+            }
+            if (zero) {
+                refused.add(coding);
+            } else if (coding.equals("*")) {
+                wildcard = true;
+            } else {
+                accepted.add(coding);
+            }
+        }
+        for (Response.ContentEncoding enc : encodings) {
+            if (accepted.contains(enc.code) || (wildcard && !refused.contains(enc.code))) {
+                return enc;
+            }
+        }
+        return null;
+    }
+
     public void setMaxMemorySize(int maxMemorySize) {
         this.maxMemorySize = maxMemorySize;
     }
@@ -182,4 +309,73 @@ public class CompressingResponseHandler extends AbstractWrappingResponseHandler
     public int getMaxMemorySize() {
         return maxMemorySize;
     }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * If true compressed content is streamed with chunked transfer encoding,
+     * rather than being buffered to find its length
+     *
+     * @param streaming
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public List<Response.ContentEncoding> getEncodings() {
+        return encodings;
+    }
+
+    /**
+     * The content codings to use, in order of preference. Defaults to gzip
+     *
+     * @param encodings
+     */
+    public void setEncodings(List<Response.ContentEncoding> encodings) {
+        this.encodings = encodings;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * The Deflater level, from Deflater.BEST_SPEED (1) to
+     * Deflater.BEST_COMPRESSION (9). Defaults to Deflater.DEFAULT_COMPRESSION
+     *
+     * @param compressionLevel
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public long getMinCompressSize() {
+        return minCompressSize;
+    }
+
+    /**
+     * Resources with a known content length less than this are sent
+     * uncompressed. Defaults to 0, ie always compress
+     *
+     * @param minCompressSize
+     */
+    public void setMinCompressSize(long minCompressSize) {
+        this.minCompressSize = minCompressSize;
+    }
+
+    public CompressedVariantCache getVariantCache() {
+        return variantCache;
+    }
+
+    /**
+     * Cache of compressed content to serve repeated requests from. May be
+     * null, which is the default, to compress on every request
+     *
+     * @param variantCache
+     */
+    public void setVariantCache(CompressedVariantCache variantCache) {
+        this.variantCache = variantCache;
+    }
 }
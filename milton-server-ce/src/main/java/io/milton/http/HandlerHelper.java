@@ -201,7 +201,19 @@ public class HandlerHelper {
 			return false;
 		}
 		LockableResource lr = (LockableResource) inResource;
-		LockToken token = lr.getCurrentLock();
+		return isLockedOut(inRequest, lr.getCurrentLock());
+	}
+
+	/**
+	 * Check if the given lock prevents the current user from modifying the
+	 * resource, ie it is held by someone else and the request does not supply
+	 * its token
+	 *
+	 * @param inRequest
+	 * @param token - the lock to check, may be null
+	 * @return
+	 */
+	public static boolean isLockedOut(Request inRequest, LockToken token) {
 		if (token != null) {
 			Auth auth = inRequest.getAuthorization();
 			String sUser = null;
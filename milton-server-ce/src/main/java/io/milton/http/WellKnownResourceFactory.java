@@ -23,7 +23,10 @@ import io.milton.resource.Resource;
 import io.milton.common.Path;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -42,7 +45,7 @@ import java.util.Map;
  *
  * @author brad
  */
-public class WellKnownResourceFactory implements ResourceFactory {
+public class WellKnownResourceFactory implements BatchResourceFactory {
 
 	public static final String URI_PREFIX = "/.well-known";
 	
@@ -89,6 +92,25 @@ public class WellKnownResourceFactory implements ResourceFactory {
 		}
 		return wrapped.getResource(host, sPath);
 	}
+
+	/**
+	 * Locates .well-known paths singly, and passes everything else to the
+	 * wrapped factory as a batch
+	 */
+	@Override
+	public Map<String, Resource> getResources(String host, Collection<String> paths) throws NotAuthorizedException, BadRequestException {
+		Map<String, Resource> map = new LinkedHashMap<>();
+		List<String> others = new ArrayList<>();
+		for (String sPath : paths) {
+			if (sPath.startsWith(URI_PREFIX)) {
+				map.put(sPath, getResource(host, sPath));
+			} else {
+				others.add(sPath);
+			}
+		}
+		map.putAll(BatchResourceFactory.getResources(wrapped, host, others));
+		return map;
+	}
 	
 	public final void addHandler(WellKnownHandler handler) {
 		mapOfWellKnownHandlers.put(handler.getWellKnownName(), handler);
@@ -30,6 +30,9 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.beanutils.PropertyUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,6 +51,22 @@ public abstract class AbstractAnnotationHandler implements AnnotationHandler {
 	 * Map of methods for this annotation, keyed on the class of the source
 	 */
 	final List<ControllerMethod> controllerMethods = new ArrayList<>();
+	/**
+	 * Results of getBestMethod, keyed on source class, content type and return
+	 * type. Only used when the result cannot depend on request parameters.
+	 * Cleared when controllers are parsed
+	 */
+	private final Map<DispatchKey, ControllerMethod> dispatchCache = new ConcurrentHashMap<>();
+	/**
+	 * True if any method has a Get or Post annotation with params, so the best
+	 * method can depend on request parameters
+	 */
+	private volatile boolean hasParamMatchers;
+	/**
+	 * Content types given on Get annotations. Any other content type matches
+	 * the same methods as no content type
+	 */
+	private final Set<String> declaredContentTypes = ConcurrentHashMap.newKeySet();
 
 	public AbstractAnnotationHandler(AnnotationResourceFactory outer, Class annoClass, Method... methods) {
 		this.annoResourceFactory = outer;
@@ -72,8 +91,15 @@ public abstract class AbstractAnnotationHandler implements AnnotationHandler {
 				Class sourceType = params[0];
 				ControllerMethod cm = new ControllerMethod(controller, m, sourceType, a);
 				controllerMethods.add(cm);
+				if (paramMatchers(a) != null) {
+					hasParamMatchers = true;
+				}
+				if (a instanceof Get && !((Get) a).contentType().isEmpty()) {
+					declaredContentTypes.add(((Get) a).contentType());
+				}
 			}
 		}
+		dispatchCache.clear();
 	}
 
 	ControllerMethod getBestMethod(Class sourceClass) {
@@ -85,6 +111,22 @@ public abstract class AbstractAnnotationHandler implements AnnotationHandler {
 	}
 
 	ControllerMethod getBestMethod(Class sourceClass, String contentType, Map<String, String> params, Class returnType) {
+		if (params == null || params.isEmpty() || !hasParamMatchers) {
+			// the result cannot depend on the params (as if there are none), so can be cached
+			// normalise undeclared content types so the cache is bounded by what controllers declare
+			String keyContentType = contentType != null && declaredContentTypes.contains(contentType) ? contentType : null;
+			DispatchKey key = new DispatchKey(sourceClass, keyContentType, returnType);
+			ControllerMethod cm = dispatchCache.get(key);
+			if (cm == null) {
+				cm = findBestMethod(sourceClass, keyContentType, null, returnType);
+				dispatchCache.put(key, cm == null ? NO_METHOD : cm);
+			}
+			return cm == NO_METHOD ? null : cm;
+		}
+		return findBestMethod(sourceClass, contentType, params, returnType);
+	}
+
+	private ControllerMethod findBestMethod(Class sourceClass, String contentType, Map<String, String> params, Class returnType) {
 		ControllerMethod foundMethod = null;
 		int foundMethodScore = -1;
 		for (ControllerMethod cm : controllerMethods) {
@@ -239,6 +281,26 @@ public abstract class AbstractAnnotationHandler implements AnnotationHandler {
 	}
 
 	private int isParamMatch(Map<String, String> params, Annotation anno) {
+		String[] matchParams = paramMatchers(anno);
+		if (matchParams != null) {
+			for (String paramName : matchParams) {
+				if (params == null || !params.containsKey(paramName)) {
+					return -1; // does not match
+				}
+			}
+			return matchParams.length;
+		} else {
+			return 0;
+		}
+	}
+
+	/**
+	 *
+	 * @param anno
+	 * @return - the request parameters required by the annotation, or null if
+	 * there are none
+	 */
+	private String[] paramMatchers(Annotation anno) {
 		String[] matchParams;
 		if (anno instanceof Get) {
 			Get g = (Get) anno;
@@ -250,26 +312,20 @@ public abstract class AbstractAnnotationHandler implements AnnotationHandler {
 			matchParams = null;
 		}
 		if (matchParams != null && matchParams.length > 0) {
-			for (String paramName : matchParams) {
-				if (params == null || !params.containsKey(paramName)) {
-					return -1; // does not match
-				}
-			}
-			return matchParams.length;
-		} else {
-			return 0;
+			return matchParams;
 		}
+		return null;
 	}
 
 	protected Object invoke(ControllerMethod cm, AnnoResource sourceRes, Object... values) throws Exception {
 		try {
 			Object[] args;
 			if (values == null || values.length == 0) {
-				args = annoResourceFactory.buildInvokeArgs(sourceRes, cm.method);
+				args = annoResourceFactory.buildInvokeArgs(sourceRes, cm);
 			} else {
-				args = annoResourceFactory.buildInvokeArgs(sourceRes, cm.method, values);
+				args = annoResourceFactory.buildInvokeArgs(sourceRes, cm, values);
 			}
-			return cm.method.invoke(cm.controller, args);
+			return cm.invoke(args);
 
 		} catch(java.lang.reflect.InvocationTargetException e) {
 			Throwable cause = e.getCause();
@@ -307,4 +363,38 @@ public abstract class AbstractAnnotationHandler implements AnnotationHandler {
 	public List<ControllerMethod> getControllerMethods() {
 		return controllerMethods;
 	}
+
+	/**
+	 * Placeholder in the dispatch cache for lookups which found no method
+	 */
+	private static final ControllerMethod NO_METHOD = new ControllerMethod(null, null, null, null);
+
+	private static final class DispatchKey {
+
+		private final Class sourceClass;
+		private final String contentType;
+		private final Class returnType;
+		private final int hash;
+
+		DispatchKey(Class sourceClass, String contentType, Class returnType) {
+			this.sourceClass = sourceClass;
+			this.contentType = contentType;
+			this.returnType = returnType;
+			this.hash = Objects.hash(sourceClass, contentType, returnType);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof DispatchKey)) {
+				return false;
+			}
+			DispatchKey other = (DispatchKey) obj;
+			return sourceClass == other.sourceClass && returnType == other.returnType && Objects.equals(contentType, other.contentType);
+		}
+	}
 }
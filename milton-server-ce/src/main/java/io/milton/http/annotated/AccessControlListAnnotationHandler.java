@@ -89,7 +89,7 @@ public class AccessControlListAnnotationHandler extends AbstractAnnotationHandle
 		} else {
 			try {
 				for (ControllerMethod cm : availMethods) {
-					addPrivsFromMethod(cm.method, cm.controller, acl, curUser, res, auth);
+					addPrivsFromMethod(cm, acl, curUser, res, auth);
 				}
 			} catch (Exception e) {
 				throw new RuntimeException(e);
@@ -98,7 +98,7 @@ public class AccessControlListAnnotationHandler extends AbstractAnnotationHandle
 		return acl;
 	}
 
-	private void addPrivsFromMethod(java.lang.reflect.Method method, Object target, Set<AccessControlledResource.Priviledge> acl, Object curUser, AnnoResource res, Auth auth) throws Exception {
+	private void addPrivsFromMethod(ControllerMethod cm, Set<AccessControlledResource.Priviledge> acl, Object curUser, AnnoResource res, Auth auth) throws Exception {
 		Object currentUserSource = null;
 		if (curUser != null) {
 			if (curUser instanceof AnnoResource) {
@@ -110,20 +110,20 @@ public class AccessControlListAnnotationHandler extends AbstractAnnotationHandle
 		}
 
 		// Check that currentUserSource is compatible with the 2nd arg of the method
-		if (method.getParameterTypes().length < 2) {
+		if (cm.paramTypes.length < 2) {
 			return;
 		}
 		if (currentUserSource != null) {
-			Class<?> pt = method.getParameterTypes()[1];
+			Class<?> pt = cm.paramTypes[1];
 			if (!pt.isAssignableFrom(currentUserSource.getClass())) {
 				log.info("ACL method second arg {} is not assignable from current user type {}", pt, currentUserSource.getClass());
 				return;
 			}
 		}
 
-		Object[] args = annoResourceFactory.buildInvokeArgsExt(res, currentUserSource, true, method, curUser, res, auth);
+		Object[] args = annoResourceFactory.buildInvokeArgsExt(res, currentUserSource, true, cm, curUser, res, auth);
 
-		Object result = method.invoke(target, args);
+		Object result = cm.invoke(args);
 		if (result == null) {
 			// ignore
 		} else if (result instanceof Collection) {
@@ -34,7 +34,10 @@ import io.milton.resource.PutableResource;
 import io.milton.resource.Resource;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -129,6 +132,56 @@ public class AnnoCollectionResource extends AnnoResource implements CollectionRe
 		return null;
 	}
 
+	/**
+	 * Locate a number of children by name. Any @ChildrenOfNames methods are
+	 * used first so that the children can be loaded together, and anything not
+	 * found by them is located with child(name)
+	 *
+	 * @param childNames
+	 * @return - the children found, keyed on name, in the given order
+	 * @throws NotAuthorizedException
+	 * @throws BadRequestException
+	 */
+	public Map<String, Resource> children(Collection<String> childNames) throws NotAuthorizedException, BadRequestException {
+		List<String> toLoad = new ArrayList<>();
+		for (String childName : childNames) {
+			if (!isLoaded(childName)) {
+				toLoad.add(childName);
+			}
+		}
+		Map<String, AnnoResource> found = null;
+		if (!toLoad.isEmpty()) {
+			try {
+				found = annoFactory.childrenOfNamesAnnotationHandler.execute(this, toLoad);
+			} catch (NotFoundException ex) {
+				log.warn("Failed to lookup children", ex);
+			}
+			if (found != null && !found.isEmpty()) {
+				if (singlyLoadedChildItems == null) {
+					singlyLoadedChildItems = new ResourceList();
+				}
+				for (AnnoResource r : found.values()) {
+					singlyLoadedChildItems.add(r);
+				}
+			}
+		}
+		Map<String, Resource> result = new LinkedHashMap<>();
+		for (String childName : childNames) {
+			Resource r = child(childName); // anything found above is now in singlyLoadedChildItems
+			if (r != null) {
+				result.put(childName, r);
+			}
+		}
+		return result;
+	}
+
+	private boolean isLoaded(String childName) {
+		if (singlyLoadedChildItems != null && singlyLoadedChildItems.hasChild(childName)) {
+			return true;
+		}
+		return children != null && children.hasChild(childName);
+	}
+
 	@Override
 	public List<? extends Resource> getChildren() throws NotAuthorizedException, BadRequestException {
 		return getResourceList();
@@ -213,6 +266,7 @@ public class AnnoCollectionResource extends AnnoResource implements CollectionRe
 		if (children != null) {
 			children.add(r);
 		}
+		annoFactory.invalidateRequestCache();
 		return r;
 	}
 
@@ -223,6 +277,7 @@ public class AnnoCollectionResource extends AnnoResource implements CollectionRe
 		if (children != null) {
 			children.add(r);
 		}
+		annoFactory.invalidateRequestCache();
 		return r;
 	}
 
@@ -237,6 +292,7 @@ public class AnnoCollectionResource extends AnnoResource implements CollectionRe
 			}
 			children.add(newRes);
 		}
+		annoFactory.invalidateRequestCache();
 		return newRes;
 	}
 
@@ -256,9 +312,25 @@ public class AnnoCollectionResource extends AnnoResource implements CollectionRe
 			CommonResource cr = annoFactory.instantiate(r, parent);
 			children.add(cr);
 		}
+		annoFactory.invalidateRequestCache();
 		return new LockToken(r.getId().toString(), lockInfo, timeout);
 	}
 
+	/**
+	 * Called when a child has been deleted or moved away, so it is no longer
+	 * returned from this instance
+	 *
+	 * @param name
+	 */
+	void removeChild(String name) {
+		if (singlyLoadedChildItems != null) {
+			singlyLoadedChildItems.remove(name);
+		}
+		if (children != null) {
+			children.remove(name);
+		}
+	}
+
 	void removeLockHolder(String name) {
 		if (children != null) {
 			children.removeIf(r -> r instanceof LockNullResource && r.getName().equals(name));
@@ -274,7 +274,12 @@ public abstract class AnnoResource implements GetableResource, PropFindableResou
 
     @Override
     public void delete() throws NotAuthorizedException, ConflictException, BadRequestException {
+        String name = getName();
         annoFactory.deleteAnnotationHandler.execute(this);
+        if (parent != null) {
+            parent.removeChild(name);
+        }
+        annoFactory.invalidateRequestCache();
     }
 
     @Override
@@ -307,8 +312,13 @@ public abstract class AnnoResource implements GetableResource, PropFindableResou
 
     @Override
     public void moveTo(CollectionResource rDest, String name) throws ConflictException, NotAuthorizedException, BadRequestException {
+        String oldName = getName();
         nameOverride = null; // reset any explicitly set name (eg for creating new resources)
         annoFactory.moveAnnotationHandler.execute(this, rDest, name);
+        if (parent != null) {
+            parent.removeChild(oldName);
+        }
+        annoFactory.invalidateRequestCache();
     }
 
     public Object getSource() {
@@ -327,6 +337,7 @@ public abstract class AnnoResource implements GetableResource, PropFindableResou
     @Override
     public void copyTo(CollectionResource toCollection, String name) throws NotAuthorizedException, BadRequestException, ConflictException {
         annoFactory.copyAnnotationHandler.execute(this, toCollection, name);
+        annoFactory.invalidateRequestCache();
     }
 
     @Override
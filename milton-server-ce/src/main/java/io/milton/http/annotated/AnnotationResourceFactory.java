@@ -18,6 +18,8 @@
  */
 package io.milton.http.annotated;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.milton.annotations.AccessControlList;
 import io.milton.annotations.AddressBooks;
 import io.milton.annotations.Authenticate;
@@ -31,6 +33,7 @@ import io.milton.annotations.CalendarUserType;
 import io.milton.annotations.Calendars;
 import io.milton.annotations.ChildOf;
 import io.milton.annotations.ChildrenOf;
+import io.milton.annotations.ChildrenOfNames;
 import io.milton.annotations.ContactData;
 import io.milton.annotations.ContentLength;
 import io.milton.annotations.ContentType;
@@ -58,13 +61,13 @@ import io.milton.annotations.Users;
 import io.milton.common.Path;
 import io.milton.http.Auth;
 import io.milton.http.AuthenticationService;
+import io.milton.http.BatchResourceFactory;
 import io.milton.http.HttpManager;
 import io.milton.http.LockInfo;
 import io.milton.http.LockManager;
 import io.milton.http.LockTimeout;
 import io.milton.http.Request;
 import io.milton.http.Request.Method;
-import io.milton.http.ResourceFactory;
 import io.milton.http.Response;
 import io.milton.http.caldav.CalendarSearchService;
 import io.milton.http.exceptions.BadRequestException;
@@ -86,11 +89,13 @@ import java.util.Date;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -101,7 +106,7 @@ import org.slf4j.LoggerFactory;
  * Using this with milton is equivalent to using the dav servlet in tomcat
  *
  */
-public final class AnnotationResourceFactory implements ResourceFactory {
+public final class AnnotationResourceFactory implements BatchResourceFactory {
 
 	private static final Logger log = LoggerFactory.getLogger(AnnotationResourceFactory.class);
 	private AuthenticationService authenticationService;
@@ -116,6 +121,10 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 	 * Replace with a suitable cluster enabled Map for cluster support
 	 */
 	private Map<String, List<LockHolder>> mapOfTempResources = new ConcurrentHashMap<>();
+	private boolean requestCacheEnabled = true;
+	private Cache<String, ChildrenOfAnnotationHandler.CachedChildren> childrenCache;
+	private final AtomicLong requestCacheHits = new AtomicLong();
+	private final AtomicLong requestCacheMisses = new AtomicLong();
 	private final Map<Class, AnnotationHandler> mapOfAnnotationHandlers = new HashMap<>(); // keyed on annotation class
 	private final Map<Method, AnnotationHandler> mapOfAnnotationHandlersByMethod = new EnumMap<>(Method.class); // keyed on http method
 	final RootAnnotationHandler rootAnnotationHandler = new RootAnnotationHandler(this);
@@ -123,6 +132,7 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 	final PostAnnotationHandler postAnnotationHandler = new PostAnnotationHandler(this);
 	final ChildrenOfAnnotationHandler childrenOfAnnotationHandler = new ChildrenOfAnnotationHandler(this);
 	final ChildOfAnnotationHandler childOfAnnotationHandler = new ChildOfAnnotationHandler(this);
+	final ChildrenOfNamesAnnotationHandler childrenOfNamesAnnotationHandler = new ChildrenOfNamesAnnotationHandler(this);
 	final DisplayNameAnnotationHandler displayNameAnnotationHandler = new DisplayNameAnnotationHandler(this);
 	final DisplayNameSetterAnnotationHandler displayNameSetterAnnotationHandler = new DisplayNameSetterAnnotationHandler(this);
 	final MakeCollectionAnnotationHandler makCollectionAnnotationHandler = new MakeCollectionAnnotationHandler(this);
@@ -168,6 +178,7 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 		mapOfAnnotationHandlers.put(Post.class, postAnnotationHandler);
 		mapOfAnnotationHandlers.put(ChildrenOf.class, childrenOfAnnotationHandler);
 		mapOfAnnotationHandlers.put(ChildOf.class, childOfAnnotationHandler);
+		mapOfAnnotationHandlers.put(ChildrenOfNames.class, childrenOfNamesAnnotationHandler);
 		mapOfAnnotationHandlers.put(Name.class, nameAnnotationHandler);
 		mapOfAnnotationHandlers.put(DisplayNameAnnotationHandler.class, displayNameAnnotationHandler);
 		mapOfAnnotationHandlers.put(DisplayNameSetterAnnotationHandler.class, displayNameSetterAnnotationHandler);		
@@ -237,7 +248,7 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 			r = hostRoot;
 		} else {
 			Path path = Path.path(url);
-			r = findFromRoot(hostRoot, path);
+			r = findCached(hostRoot, path, requestCache(host, HttpManager.request()));
 			if (log.isTraceEnabled()) {
 				if (r == null) {
 					log.trace("Resource not found: host=" + host + " path=" + path);
@@ -254,6 +265,110 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 		return r;
 	}
 
+	/**
+	 * Locates the given resources, grouping them by parent collection so that
+	 * each parent is only located once and its children can be loaded together
+	 * with a @ChildrenOfNames method
+	 *
+	 * @param host
+	 * @param paths
+	 * @return
+	 * @throws NotAuthorizedException
+	 * @throws BadRequestException
+	 */
+	@Override
+	public Map<String, Resource> getResources(String host, Collection<String> paths) throws NotAuthorizedException, BadRequestException {
+		Map<String, Resource> result = new LinkedHashMap<>();
+		AnnoCollectionResource hostRoot = locateHostRoot(host, HttpManager.request());
+		if (hostRoot == null) {
+			log.warn("getResources: Could not find a root resource for host: " + host);
+			return result;
+		}
+
+		// group child names by parent path, keeping the original paths to key the result on
+		Map<Path, Resource> cache = requestCache(host, HttpManager.request());
+		Map<Path, Map<String, List<String>>> byParent = new LinkedHashMap<>();
+		for (String url : paths) {
+			String stripped = stripContext(url);
+			if (stripped.equals("/") || stripped.isEmpty()) {
+				result.put(url, hostRoot);
+				continue;
+			}
+			Path path = Path.path(stripped);
+			Path parentPath = path.getParent();
+			if (parentPath == null || path.getName() == null) {
+				result.put(url, findCached(hostRoot, path, cache));
+				continue;
+			}
+			if (cache != null) {
+				Resource cached = cache.get(path);
+				if (cached != null) {
+					requestCacheHits.incrementAndGet();
+					result.put(url, cached);
+					continue;
+				}
+				requestCacheMisses.incrementAndGet();
+			}
+			Map<String, List<String>> names = byParent.computeIfAbsent(parentPath, k -> new LinkedHashMap<>());
+			names.computeIfAbsent(path.getName(), k -> new ArrayList<>()).add(url);
+		}
+
+		for (Map.Entry<Path, Map<String, List<String>>> e : byParent.entrySet()) {
+			Resource parent = e.getKey().isRoot() ? hostRoot : findCached(hostRoot, e.getKey(), cache);
+			if (!(parent instanceof AnnoCollectionResource)) {
+				if (log.isTraceEnabled()) {
+					log.trace("getResources: parent not found or not a collection: " + e.getKey());
+				}
+				continue;
+			}
+			AnnoCollectionResource col = (AnnoCollectionResource) parent;
+			Map<String, Resource> found = col.children(e.getValue().keySet());
+			if (log.isTraceEnabled()) {
+				log.trace("getResources: found " + found.size() + " of " + e.getValue().size() + " in " + e.getKey());
+			}
+			for (Map.Entry<String, List<String>> n : e.getValue().entrySet()) {
+				Resource r = found.get(n.getKey());
+				if (cache != null && r != null) {
+					cache.put(e.getKey().child(n.getKey()), r);
+				}
+				for (String url : n.getValue()) {
+					result.put(url, r);
+				}
+			}
+		}
+
+		// return in the order requested
+		Map<String, Resource> ordered = new LinkedHashMap<>();
+		for (String url : paths) {
+			Resource r = result.get(url);
+			if (r != null) {
+				ordered.put(url, r);
+			}
+		}
+		return ordered;
+	}
+
+	/**
+	 * Locate the resource at the given path, using and populating the request
+	 * cache if there is one
+	 */
+	private Resource findCached(AnnoCollectionResource hostRoot, Path path, Map<Path, Resource> cache) throws NotAuthorizedException, BadRequestException {
+		Resource r;
+		if (cache != null) {
+			r = cache.get(path);
+			if (r != null) {
+				requestCacheHits.incrementAndGet();
+				return r;
+			}
+			requestCacheMisses.incrementAndGet();
+		}
+		r = findFromRoot(hostRoot, path);
+		if (cache != null && r != null) {
+			cache.put(path, r);
+		}
+		return r;
+	}
+
 	public Resource findFromRoot(AnnoCollectionResource rootFolder, Path p) throws NotAuthorizedException, BadRequestException {
 		CollectionResource col = rootFolder;
 		Resource r = null;
@@ -428,6 +543,41 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 		this.viewResolver = viewResolver;
 	}
 
+	/**
+	 * Get the map of resources already located in the current request, keyed
+	 * on path. Returns null if there is no current request or the request cache
+	 * is disabled
+	 */
+	private Map<Path, Resource> requestCache(String host, Request request) {
+		if (!requestCacheEnabled || request == null) {
+			return null;
+		}
+		Map<String, Object> atts = request.getAttributes();
+		ResourceCacheMap cache = (ResourceCacheMap) atts.get("ResCache_" + host);
+		if (cache == null) {
+			cache = new ResourceCacheMap();
+			atts.put("ResCache_" + host, cache);
+		}
+		return cache;
+	}
+
+	/**
+	 * Discard any resources cached in the current request. This is called
+	 * whenever a resource is created, deleted, moved or copied, since any of
+	 * those can change what a path resolves to
+	 */
+	public void invalidateRequestCache() {
+		Request request = HttpManager.request();
+		if (request == null) {
+			return;
+		}
+		for (Object o : request.getAttributes().values()) {
+			if (o instanceof ResourceCacheMap) {
+				((ResourceCacheMap) o).clear();
+			}
+		}
+	}
+
 	private AnnoCollectionResource locateHostRoot(String host, Request request) {
 		AnnoCollectionResource rootRes;
 		if (request != null) {
@@ -490,6 +640,33 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 	 * @throws Exception
 	 */
 	public Object[] buildInvokeArgsExt(AnnoResource sourceRes, Object mandatorySecondArg, boolean forceUseSecondArg, java.lang.reflect.Method m, Object... otherValues) throws Exception {
+		Class[] paramTypes = m.getParameterTypes();
+		boolean[] principalParams = new boolean[paramTypes.length];
+		for (int i = 0; i < paramTypes.length; i++) {
+			principalParams[i] = isPrincipalArg(m, i);
+		}
+		return buildInvokeArgs(sourceRes, mandatorySecondArg, forceUseSecondArg, m, paramTypes, principalParams, otherValues);
+	}
+
+	/**
+	 * As for buildInvokeArgs(AnnoResource, Method, Object...), but uses the
+	 * parameter information already read by the ControllerMethod
+	 *
+	 * @param sourceRes
+	 * @param cm
+	 * @param otherValues
+	 * @return
+	 * @throws Exception
+	 */
+	public Object[] buildInvokeArgs(AnnoResource sourceRes, ControllerMethod cm, Object... otherValues) throws Exception {
+		return buildInvokeArgs(sourceRes, null, false, cm.method, cm.paramTypes, cm.principalParams, otherValues);
+	}
+
+	public Object[] buildInvokeArgsExt(AnnoResource sourceRes, Object mandatorySecondArg, boolean forceUseSecondArg, ControllerMethod cm, Object... otherValues) throws Exception {
+		return buildInvokeArgs(sourceRes, mandatorySecondArg, forceUseSecondArg, cm.method, cm.paramTypes, cm.principalParams, otherValues);
+	}
+
+	private Object[] buildInvokeArgs(AnnoResource sourceRes, Object mandatorySecondArg, boolean forceUseSecondArg, java.lang.reflect.Method m, Class[] paramTypes, boolean[] principalParams, Object... otherValues) throws Exception {
 		if (log.isTraceEnabled()) {
 			log.trace("buildInvokeArgsExt: source=" + sourceRes.getSource() + " on method: " + m);
 		}
@@ -503,7 +680,7 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 			}
 		}
 
-		Object[] args = new Object[m.getParameterTypes().length];
+		Object[] args = new Object[paramTypes.length];
 		List list = new ArrayList();
 
 		list.add(sourceRes.getSource()); // First argument MUST be the source object!!!
@@ -525,11 +702,11 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 			r = r.getParent();
 		}
 
-		for (int i = 0; i < m.getParameterTypes().length; i++) {
+		for (int i = 0; i < paramTypes.length; i++) {
 			if (i == 1 && forceUseSecondArg) {
 				args[i] = mandatorySecondArg; // hack for methods which can have a null 2nd arg. Without this any other matching object would be provided
 			} else {
-				if (isPrincipalArg(m, i)) {
+				if (principalParams[i]) {
 					principal = checkAuthentication(sourceRes, principal);
 					if (principal != null) {
 						args[i] = principal.source;
@@ -538,7 +715,7 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 						args[i] = null;
 					}
 				} else {
-					Class type = m.getParameterTypes()[i];
+					Class type = paramTypes[i];
 					Object argValue;
 					try {
 						argValue = findArgValue(type, request, response, list);
@@ -739,6 +916,7 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 		}
 		list.removeAll(toRemove);
 		parent.removeLockHolder(name);
+		invalidateRequestCache();
 	}
 
 	public Map<String, List<LockHolder>> getMapOfTempResources() {
@@ -832,6 +1010,89 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 		return null;
 	}
 
+	/**
+	 * If true (the default) resources located by getResource and getResources
+	 * are remembered for the rest of the request, so that repeated lookups of
+	 * the same path (eg by handlers, lock checks and event listeners) do not
+	 * walk the controller methods again
+	 *
+	 * @return
+	 */
+	public boolean isRequestCacheEnabled() {
+		return requestCacheEnabled;
+	}
+
+	public void setRequestCacheEnabled(boolean requestCacheEnabled) {
+		this.requestCacheEnabled = requestCacheEnabled;
+	}
+
+	/**
+	 * @return - number of getResource calls answered from the request cache
+	 */
+	public long getRequestCacheHits() {
+		return requestCacheHits.get();
+	}
+
+	/**
+	 * @return - number of getResource calls which had to locate the resource
+	 */
+	public long getRequestCacheMisses() {
+		return requestCacheMisses.get();
+	}
+
+	/**
+	 * Enable caching of the objects returned from ChildrenOf methods across
+	 * requests. Cached lists are only used while the collection's ctag (or if
+	 * it has no ctag, its modified date) is unchanged, so this should only be
+	 * enabled if your ctag or modified date changes whenever a member is added,
+	 * removed or changed. Collections with no unique ID, or with neither a ctag
+	 * nor a modified date, are not cached
+	 *
+	 * The cache is held in this process only, since it holds controller
+	 * methods and the source objects themselves. Those objects are given to
+	 * later requests, so they should be safe to share between threads and not
+	 * be bound to a session or transaction.
+	 *
+	 * @param maxCollections - the maximum number of collections to cache
+	 * children for, or 0 to disable
+	 */
+	public void setChildrenCacheSize(long maxCollections) {
+		if (maxCollections <= 0) {
+			this.childrenCache = null;
+		} else {
+			this.childrenCache = Caffeine.newBuilder().maximumSize(maxCollections).build();
+		}
+	}
+
+	Cache<String, ChildrenOfAnnotationHandler.CachedChildren> getChildrenCache() {
+		return childrenCache;
+	}
+
+	/**
+	 * Find a value which will change when the collection's members change, for
+	 * validating cached children lists. This is the ctag if there is one,
+	 * otherwise the modified date. Never derives a ctag from the members.
+	 *
+	 * @param col
+	 * @return - null if there is no such value
+	 */
+	String childrenCacheValidator(AnnoCollectionResource col) {
+		String ctag = cTagAnnotationHandler.execute(col, false);
+		if (ctag != null) {
+			return ctag;
+		}
+		Date modDate = modifiedDateAnnotationHandler.get(col);
+		if (modDate != null) {
+			return "M" + modDate.getTime();
+		}
+		return null;
+	}
+
+	private static class ResourceCacheMap extends HashMap<Path, Resource> {
+
+		private static final long serialVersionUID = 1L;
+	}
+
 	public static class AnnotationsDisplayNameFormatter implements DisplayNameFormatter {
 
 		private final DisplayNameFormatter wrapped;
@@ -61,6 +61,17 @@ public class CTagAnnotationHandler extends AbstractAnnotationHandler {
 	}
 
 	public String execute(AnnoCollectionResource col) {
+		return execute(col, true);
+	}
+
+	/**
+	 *
+	 * @param col
+	 * @param allowDerived - if false, return null rather than derive a ctag by
+	 * listing the collection's members when there is no ctag method or property
+	 * @return
+	 */
+	public String execute(AnnoCollectionResource col, boolean allowDerived) {
 		Object source = col.getSource();
 		try {
 			Object rawId = null;
@@ -85,7 +96,7 @@ public class CTagAnnotationHandler extends AbstractAnnotationHandler {
 							break;
 						}
 					}
-					if (rawId == null) {
+					if (rawId == null && allowDerived) {
 						// last ditch effort, use latest mod date on the collection or any member
 						rawId = deriveCtag(col);
 						if (log.isInfoEnabled()) {
@@ -95,7 +106,7 @@ public class CTagAnnotationHandler extends AbstractAnnotationHandler {
 
 				}
 			} else {
-				rawId = cm.method.invoke(cm.controller, source);
+				rawId = cm.invoke(source);
 				if (log.isDebugEnabled()) {
 					log.debug("Got ctag from annotated method. ctag=" + rawId);
 				}
@@ -107,7 +118,9 @@ public class CTagAnnotationHandler extends AbstractAnnotationHandler {
 				}
 				return s;
 			} else {
-				log.warn("CTAG value is null");
+				if (allowDerived) {
+					log.warn("CTAG value is null");
+				}
 				return null;
 			}
 		} catch (Exception e) {
@@ -44,7 +44,7 @@ public class CalendarInvitationsCTagAnnotationHandler extends AbstractAnnotation
 		if( cm != null ) {
 			Object rawId;
 			try {
-				rawId = cm.method.invoke(cm.controller, source);
+				rawId = cm.invoke(source);
 			} catch (IllegalAccessException | InvocationTargetException | IllegalArgumentException ex) {
 				throw new RuntimeException(ex);
 			}
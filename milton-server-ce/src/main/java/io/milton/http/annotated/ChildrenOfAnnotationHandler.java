@@ -16,15 +16,21 @@
  */
 package io.milton.http.annotated;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import io.milton.annotations.ChildrenOf;
+import io.milton.http.HttpManager;
+import io.milton.http.Request;
 import io.milton.http.Request.Method;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.http.exceptions.NotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *
@@ -32,6 +38,9 @@ import java.util.Set;
  */
 public class ChildrenOfAnnotationHandler extends AbstractAnnotationHandler {
 
+	private final AtomicLong childrenCacheHits = new AtomicLong();
+	private final AtomicLong childrenCacheMisses = new AtomicLong();
+
 	public ChildrenOfAnnotationHandler(final AnnotationResourceFactory outer) {
 		super(outer, ChildrenOf.class, Method.PROPFIND);
 	}
@@ -61,11 +70,36 @@ public class ChildrenOfAnnotationHandler extends AbstractAnnotationHandler {
 			}
 		}
 
+		Cache<String, CachedChildren> cache = annoResourceFactory.getChildrenCache();
+		String cacheKey = null;
+		String validator = null;
+		if (cache != null) {
+			cacheKey = cacheKey(parent, isChildLookup);
+			if (cacheKey != null) {
+				validator = annoResourceFactory.childrenCacheValidator(parent);
+			}
+			if (validator != null) {
+				CachedChildren cached = cache.getIfPresent(cacheKey);
+				if (cached != null && cached.validator.equals(validator)) {
+					childrenCacheHits.incrementAndGet();
+					for (int i = 0; i < cached.methods.size(); i++) {
+						annoResourceFactory.createAndAppend(result, cached.sources.get(i), parent, cached.methods.get(i));
+					}
+					return result;
+				}
+				childrenCacheMisses.incrementAndGet();
+			}
+		}
+
+		List<ControllerMethod> invokedMethods = new ArrayList<>();
+		List<Object> sources = new ArrayList<>();
 		for (ControllerMethod cm : candidateMethods) {
 			try {
 				if (lookupPermitted(isChildLookup, cm)) {
 					Object o = invoke(cm, parent);
 					annoResourceFactory.createAndAppend(result, o, parent, cm);
+					invokedMethods.add(cm);
+					sources.add(o);
 				}
 			} catch (NotAuthorizedException | NotFoundException | BadRequestException e) {
 				throw e;
@@ -74,9 +108,62 @@ public class ChildrenOfAnnotationHandler extends AbstractAnnotationHandler {
 			}
 
 		}
+		if (validator != null) {
+			cache.put(cacheKey, new CachedChildren(validator, invokedMethods, sources));
+		}
 		return result;
 	}
 
+	/**
+	 * Keyed on the collection's unique ID and the current user, since
+	 * ChildrenOf methods may return different results for different users. Null
+	 * if the collection has no unique ID, in which case it is not cached
+	 */
+	private String cacheKey(AnnoCollectionResource parent, boolean isChildLookup) {
+		String id = parent.getUniqueId();
+		if (id == null) {
+			return null;
+		}
+		String user = null;
+		Request req = HttpManager.request();
+		if (req != null && req.getAuthorization() != null) {
+			user = req.getAuthorization().getUser();
+		}
+		return parent.getSource().getClass().getName() + ":" + id + ":" + isChildLookup + ":" + user;
+	}
+
+	/**
+	 * @return - number of children lists which were taken from the children cache
+	 */
+	public long getChildrenCacheHits() {
+		return childrenCacheHits.get();
+	}
+
+	/**
+	 * @return - number of children lists which were loaded and then cached
+	 */
+	public long getChildrenCacheMisses() {
+		return childrenCacheMisses.get();
+	}
+
+	/**
+	 * The source objects returned by each ChildrenOf method for a collection,
+	 * along with the ctag or modified date of the collection when they were
+	 * loaded
+	 */
+	static class CachedChildren {
+
+		final String validator;
+		final List<ControllerMethod> methods;
+		final List<Object> sources;
+
+		CachedChildren(String validator, List<ControllerMethod> methods, List<Object> sources) {
+			this.validator = validator;
+			this.methods = Collections.unmodifiableList(methods);
+			this.sources = Collections.unmodifiableList(sources);
+		}
+	}
+
 	private boolean lookupPermitted(boolean childLookup, ControllerMethod cm) {
 		ChildrenOf anno = (ChildrenOf) cm.anno;
 		if (childLookup) {
@@ -0,0 +1,113 @@
+/*
+ *
+ * Copyright 2014 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.milton.http.annotated;
+
+import io.milton.annotations.ChildrenOfNames;
+import io.milton.http.exceptions.BadRequestException;
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.http.exceptions.NotFoundException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Locates several children of a parent in one call, using methods annotated
+ * with {@code @ChildrenOfNames}
+ *
+ * @author brad
+ */
+public class ChildrenOfNamesAnnotationHandler extends AbstractAnnotationHandler {
+
+	private static final Logger log = LoggerFactory.getLogger(ChildrenOfNamesAnnotationHandler.class);
+
+	public ChildrenOfNamesAnnotationHandler(final AnnotationResourceFactory outer) {
+		super(outer, ChildrenOfNames.class);
+	}
+
+	/**
+	 * Locate children of the given parent with the given names.
+	 *
+	 * Returns null if there is no method for the parent's source type, otherwise
+	 * a map (possibly empty) of the resources found, keyed on name. Names which
+	 * are not in the map might still be found by a ChildOf or ChildrenOf method
+	 *
+	 * @param parent
+	 * @param childNames
+	 * @return - null if not attempted, otherwise the resources found
+	 * @throws NotAuthorizedException
+	 * @throws BadRequestException
+	 * @throws NotFoundException
+	 */
+	public Map<String, AnnoResource> execute(AnnoCollectionResource parent, Collection<String> childNames) throws NotAuthorizedException, BadRequestException, NotFoundException {
+		Object source = parent.getSource();
+		List<ControllerMethod> availMethods = getMethods(source.getClass());
+		if (availMethods.isEmpty()) {
+			return null;
+		}
+		Map<String, AnnoResource> result = new LinkedHashMap<>();
+		try {
+			for (ControllerMethod cm : availMethods) {
+				List<String> names = new ArrayList<>();
+				for (String name : childNames) {
+					if (!result.containsKey(name) && matchesSuffix(cm, name)) {
+						names.add(name);
+					}
+				}
+				if (names.isEmpty()) {
+					continue;
+				}
+				Object o = invoke(cm, parent, names);
+				if (o == null) {
+					continue;
+				}
+				if (!(o instanceof Map)) {
+					throw new RuntimeException("ChildrenOfNames method must return a Map keyed on name: " + cm.method);
+				}
+				Map<?, ?> found = (Map) o;
+				for (String name : names) {
+					Object childObject = found.get(name);
+					if (childObject != null) {
+						AnnoResource r = annoResourceFactory.instantiate(childObject, parent, cm.method);
+						r.setNameOverride(name);
+						result.put(name, r);
+					}
+				}
+				if (log.isTraceEnabled()) {
+					log.trace("execute: found " + found.size() + " of " + names.size() + " children with method: " + cm.method);
+				}
+			}
+		} catch (NotAuthorizedException | NotFoundException | BadRequestException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+		return result;
+	}
+
+	private boolean matchesSuffix(ControllerMethod cm, String childName) {
+		ChildrenOfNames a = (ChildrenOfNames) cm.anno;
+		if (!a.pathSuffix().isEmpty()) {
+			return childName.endsWith(a.pathSuffix());
+		} else {
+			return true;
+		}
+	}
+}
@@ -16,24 +16,161 @@
  */
 package io.milton.http.annotated;
 
+import io.milton.annotations.Principal;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
+ * A controller method found by an annotation handler.
+ *
+ * The method is compiled to a MethodHandle bound to the controller when this
+ * is created, and the parameter types and @Principal positions are read once,
+ * so that invoking it does not need any reflective lookups.
  *
  * @author brad
  */
 public class ControllerMethod {
 
+	private static final Logger log = LoggerFactory.getLogger(ControllerMethod.class);
+
 	final Object controller;
 	final java.lang.reflect.Method method;
 	final Class sourceType;
 	final Annotation anno;
+	/**
+	 * Parameter types of the method, in order
+	 */
+	final Class[] paramTypes;
+	/**
+	 * For each parameter, true if it is annotated with @Principal
+	 */
+	final boolean[] principalParams;
+	/**
+	 * Parameter types with primitives replaced by their wrapper types, for
+	 * checking arguments before invoking the handle
+	 */
+	private final Class[] boxedParamTypes;
+	/**
+	 * Takes an Object[] of arguments and returns Object. Null if the method
+	 * could not be compiled to a handle, in which case reflection is used
+	 */
+	private final MethodHandle handle;
 
 	public ControllerMethod(Object controller, java.lang.reflect.Method method, Class sourceType, final Annotation anno) {
 		this.controller = controller;
 		this.method = method;
 		this.sourceType = sourceType;
 		this.anno = anno;
+		if (method != null) {
+			this.paramTypes = method.getParameterTypes();
+			this.boxedParamTypes = boxed(paramTypes);
+			this.principalParams = findPrincipalParams(method);
+			this.handle = createHandle(controller, method);
+		} else {
+			this.paramTypes = new Class[0];
+			this.boxedParamTypes = paramTypes;
+			this.principalParams = new boolean[0];
+			this.handle = null;
+		}
+	}
+
+	/**
+	 * Invoke the method on the controller. As for Method.invoke, any exception
+	 * thrown by the method is wrapped in an InvocationTargetException, and
+	 * arguments which do not match the parameter types give an
+	 * IllegalArgumentException
+	 *
+	 * @param args
+	 * @return
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 */
+	public Object invoke(Object... args) throws IllegalAccessException, InvocationTargetException {
+		if (handle == null) {
+			return method.invoke(controller, args);
+		}
+		if (args.length != paramTypes.length) {
+			throw new IllegalArgumentException("Wrong number of arguments for " + method + ": " + args.length);
+		}
+		if (!argsMatch(args)) {
+			// let reflection apply widening conversions, or reject the arguments
+			return method.invoke(controller, args);
+		}
+		try {
+			return (Object) handle.invokeExact(args);
+		} catch (Throwable e) {
+			throw new InvocationTargetException(e);
+		}
+	}
+
+	/**
+	 * True if each argument can be passed to the handle as is, ie it is an
+	 * instance of the parameter type (or its wrapper type) and is not null
+	 * for a primitive
+	 */
+	private boolean argsMatch(Object[] args) {
+		for (int i = 0; i < args.length; i++) {
+			if (args[i] == null) {
+				if (paramTypes[i].isPrimitive()) {
+					return false;
+				}
+			} else if (!boxedParamTypes[i].isInstance(args[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Class[] boxed(Class[] types) {
+		Class[] arr = new Class[types.length];
+		for (int i = 0; i < types.length; i++) {
+			arr[i] = MethodType.methodType(types[i]).wrap().returnType();
+		}
+		return arr;
+	}
+
+	boolean isCompiled() {
+		return handle != null;
+	}
+
+	private static MethodHandle createHandle(Object controller, java.lang.reflect.Method method) {
+		if (controller == null || Modifier.isStatic(method.getModifiers())) {
+			return null;
+		}
+		try {
+			MethodHandle mh;
+			if (Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+				mh = MethodHandles.publicLookup().unreflect(method);
+			} else {
+				method.setAccessible(true);
+				mh = MethodHandles.lookup().unreflect(method);
+			}
+			return mh.bindTo(controller)
+					.asSpreader(Object[].class, method.getParameterCount())
+					.asType(MethodType.methodType(Object.class, Object[].class));
+		} catch (IllegalAccessException | RuntimeException e) {
+			log.debug("Could not create a method handle for {}, will use reflection: {}", method, e.toString());
+			return null;
+		}
+	}
+
+	private static boolean[] findPrincipalParams(java.lang.reflect.Method method) {
+		Annotation[][] paramAnnos = method.getParameterAnnotations();
+		boolean[] arr = new boolean[paramAnnos.length];
+		for (int i = 0; i < paramAnnos.length; i++) {
+			for (Annotation a : paramAnnos[i]) {
+				if (a.annotationType().equals(Principal.class)) {
+					arr[i] = true;
+				}
+			}
+		}
+		return arr;
 	}
 
 	@Override
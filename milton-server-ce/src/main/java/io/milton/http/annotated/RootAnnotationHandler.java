@@ -38,9 +38,9 @@ public class RootAnnotationHandler implements AnnotationHandler {
 			try {
 				Object root;
 				if (cm.method.getParameterTypes().length == 0) {
-					root = cm.method.invoke(cm.controller);
+					root = cm.invoke();
 				} else {
-					root = cm.method.invoke(cm.controller, host); // TODO: other args like request, response, etc
+					root = cm.invoke(host); // TODO: other args like request, response, etc
 					// TODO: other args like request, response, etc
 					// TODO: other args like request, response, etc
 				}
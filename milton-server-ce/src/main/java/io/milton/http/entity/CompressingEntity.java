@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.entity;
+
+import io.milton.http.Response;
+import io.milton.resource.GetableResource;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses the content of a resource as it is written, so the response is
+ * streamed without knowing its length in advance, ie with chunked transfer
+ * encoding.
+ *
+ * @author brad
+ */
+public class CompressingEntity implements Response.Entity {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Wrap the output stream with a compressor for the content coding. Closing
+	 * or finishing the returned stream does not close the given stream
+	 *
+	 * @param out
+	 * @param encoding - gzip or deflate
+	 * @param level - the Deflater compression level, eg
+	 * Deflater.DEFAULT_COMPRESSION or Deflater.BEST_SPEED
+	 * @return
+	 * @throws IOException
+	 */
+	public static DeflaterOutputStream compress(OutputStream out, Response.ContentEncoding encoding, final int level) throws IOException {
+		OutputStream target = new FilterOutputStream(out) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+		switch (encoding) {
+			case GZIP:
+				return new GZIPOutputStream(target, BUFFER_SIZE) {
+					{
+						def.setLevel(level);
+					}
+				};
+			case DEFLATE:
+				final Deflater deflater = new Deflater(level);
+				return new DeflaterOutputStream(target, deflater, BUFFER_SIZE) {
+					@Override
+					public void close() throws IOException {
+						try {
+							super.close();
+						} finally {
+							deflater.end();
+						}
+					}
+				};
+			default:
+				throw new IllegalArgumentException("Unsupported encoding: " + encoding);
+		}
+	}
+
+	private final GetableResource resource;
+	private final Map<String, String> params;
+	private final String contentType;
+	private final Response.ContentEncoding encoding;
+	private final int level;
+
+	public CompressingEntity(GetableResource resource, Map<String, String> params, String contentType, Response.ContentEncoding encoding, int level) {
+		this.resource = resource;
+		this.params = params;
+		this.contentType = contentType;
+		this.encoding = encoding;
+		this.level = level;
+	}
+
+	@Override
+	public void write(Response response, OutputStream outputStream) throws Exception {
+		// closed even if sendContent fails, so the Deflater's native memory is released
+		try (DeflaterOutputStream out = compress(outputStream, encoding, level)) {
+			resource.sendContent(out, null, params, contentType);
+		}
+	}
+}
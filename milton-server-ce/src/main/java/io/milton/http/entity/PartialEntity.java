@@ -23,11 +23,14 @@ import io.milton.http.Range;
 import io.milton.http.Response;
 import io.milton.http.http11.MultipleRangeWritingOutputStream;
 import io.milton.resource.GetableResource;
+import io.milton.resource.RandomAccessGetableResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import org.apache.commons.io.IOUtils;
@@ -67,6 +70,10 @@ public class PartialEntity implements Response.Entity {
 	public void write(Response response, OutputStream outputStream) throws Exception {
 
 		Long contentLength = resource.getContentLength();
+		if (contentLength != null && resource instanceof RandomAccessGetableResource && ((RandomAccessGetableResource) resource).isRandomAccess()) {
+			writeSeekable(response, outputStream, contentLength);
+			return;
+		}
 		if (contentLength == null) {
 			log.warn("Couldnt calculate range end position because the resource is not reporting a content length, and no end position was requested by the client: " + resource.getName() + " - " + resource.getClass());
 			contentLength = -1L;
@@ -80,6 +87,7 @@ public class PartialEntity implements Response.Entity {
 
 			// This will only write content to the buffer, not output to client
 			resource.sendContent(multiOut, null, params, contentType); // do not pass ranges, we need full content to extract ranges
+			bufOut.write(closingBoundary());
 
 			response.setContentLengthHeader(bufOut.getSize());
 			bufOut.close();
@@ -92,4 +100,44 @@ public class PartialEntity implements Response.Entity {
 			IOUtils.closeQuietly(outputStream);
 		}
 	}
+
+	/**
+	 * Send each range by asking the resource for just that range, so nothing
+	 * outside the ranges is read. Since the size of each part is known the
+	 * content length can be set before sending, without buffering
+	 */
+	private void writeSeekable(Response response, OutputStream outputStream, long contentLength) throws Exception {
+		List<Range> parts = new ArrayList<>();
+		List<byte[]> headers = new ArrayList<>();
+		long total = 0;
+		for (Range r : ranges) {
+			long start = r.getStart() == null ? 0 : r.getStart();
+			long finish = r.getFinish() == null ? contentLength - 1 : Math.min(r.getFinish(), contentLength - 1);
+			if (start > finish) {
+				log.debug("writeSeekable: ignoring unsatisfiable range: " + r);
+				continue;
+			}
+			byte[] header = MultipleRangeWritingOutputStream.rangeHeader(multipartBoundary, contentType, start, finish, contentLength);
+			parts.add(new Range(start, finish));
+			headers.add(header);
+			total += header.length + finish - start + 1;
+		}
+		byte[] closing = closingBoundary();
+		response.setContentLengthHeader(total + closing.length);
+		try {
+			for (int i = 0; i < parts.size(); i++) {
+				outputStream.write(headers.get(i));
+				resource.sendContent(outputStream, parts.get(i), params, contentType);
+			}
+			outputStream.write(closing);
+			outputStream.flush();
+		} catch (IOException ex) {
+			log.warn("IOException writing response: " + ex.getMessage());
+			IOUtils.closeQuietly(outputStream);
+		}
+	}
+
+	private byte[] closingBoundary() {
+		return ("\n--" + multipartBoundary + "--\n").getBytes(StandardCharsets.UTF_8);
+	}
 }
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.entity;
+
+import io.milton.http.Response;
+import io.milton.http.webdav.PropFindResponse;
+import io.milton.http.webdav.PropFindXmlFooter;
+import io.milton.http.webdav.PropFindXmlGenerator;
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes a multistatus document for a list of PropFindResponse objects
+ * directly to the response output stream, without first rendering it to a
+ * String or byte array
+ *
+ * @author brad
+ */
+public class PropFindXmlEntity implements Response.Entity {
+
+	private final PropFindXmlGenerator xmlGenerator;
+	private final List<PropFindResponse> propFindResponses;
+	private final PropFindXmlFooter footerGenerator;
+
+	public PropFindXmlEntity(PropFindXmlGenerator xmlGenerator, List<PropFindResponse> propFindResponses) {
+		this(xmlGenerator, propFindResponses, null);
+	}
+
+	/**
+	 *
+	 * @param xmlGenerator
+	 * @param propFindResponses
+	 * @param footerGenerator - optional, writes additional elements at the end of the multistatus
+	 */
+	public PropFindXmlEntity(PropFindXmlGenerator xmlGenerator, List<PropFindResponse> propFindResponses, PropFindXmlFooter footerGenerator) {
+		this.xmlGenerator = xmlGenerator;
+		this.propFindResponses = propFindResponses;
+		this.footerGenerator = footerGenerator;
+	}
+
+	public List<PropFindResponse> getPropFindResponses() {
+		return propFindResponses;
+	}
+
+	@Override
+	public void write(Response response, OutputStream outputStream) throws Exception {
+		// XmlWriter writes many small fragments, so buffer them into reasonable sized chunks
+		BufferedOutputStream bufOut = new BufferedOutputStream(outputStream);
+		xmlGenerator.generate(propFindResponses, bufOut, footerGenerator);
+		bufOut.flush();
+	}
+}
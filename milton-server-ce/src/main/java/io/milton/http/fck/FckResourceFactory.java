@@ -21,13 +21,19 @@ package io.milton.http.fck;
 import io.milton.common.Path;
 import io.milton.resource.CollectionResource;
 import io.milton.resource.Resource;
+import io.milton.http.BatchResourceFactory;
 import io.milton.http.ResourceFactory;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class FckResourceFactory implements ResourceFactory {
+public class FckResourceFactory implements BatchResourceFactory {
 
 	private static final Logger log = LoggerFactory.getLogger(FckResourceFactory.class);
 	private final ResourceFactory wrappedFactory;
@@ -53,6 +59,26 @@ public class FckResourceFactory implements ResourceFactory {
 		return wrappedFactory.getResource(host, url);
 	}
 
+	/**
+	 * Locates the FCK resources singly, and passes everything else to the
+	 * wrapped factory as a batch
+	 */
+	@Override
+	public Map<String, Resource> getResources(String host, Collection<String> paths) throws NotAuthorizedException, BadRequestException {
+		Map<String, Resource> map = new LinkedHashMap<>();
+		List<String> others = new ArrayList<>();
+		for (String url : paths) {
+			Path path = Path.path(url);
+			if (FckFileManagerResource.URL.equals(path) || FckQuickUploaderResource.URL.equals(path)) {
+				map.put(url, getResource(host, url));
+			} else {
+				others.add(url);
+			}
+		}
+		map.putAll(BatchResourceFactory.getResources(wrappedFactory, host, others));
+		return map;
+	}
+
 	private CollectionResource getParent(String host, Path path) throws NotAuthorizedException, BadRequestException {
 		Resource r = wrappedFactory.getResource(host, path.toString());
 		if (r instanceof CollectionResource) {
@@ -20,7 +20,7 @@ package io.milton.http.fs;
 
 import io.milton.resource.DigestResource;
 import io.milton.resource.PostableResource;
-import io.milton.resource.GetableResource;
+import io.milton.resource.RandomAccessGetableResource;
 import io.milton.common.ContentTypeUtils;
 import io.milton.common.Path;
 import io.milton.common.RangeUtils;
@@ -32,9 +32,14 @@ import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.ConflictException;
 import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.http.http11.auth.DigestResponse;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Date;
 import java.util.Map;
 import org.slf4j.Logger;
@@ -66,12 +71,12 @@ public class ClassPathResourceFactory implements ResourceFactory {
 		}
 
 		// try to locate a resource with the given path
-		InputStream content = this.getClass().getResourceAsStream(p.toString());
-		if (content == null) {
+		URL url = this.getClass().getResource(p.toString());
+		if (url == null) {
 			return null;
 		} else {
 			log.trace("return class path resource");
-			return new ClassPathResource(host, p, content);
+			return new ClassPathResource(host, p, url);
 		}
 	}
 
@@ -131,27 +136,76 @@ public class ClassPathResourceFactory implements ResourceFactory {
 		this.securityManager = securityManager;
 	}
 
-	public class ClassPathResource implements GetableResource, DigestResource, PostableResource {
+	/**
+	 * A resource on the classpath. When created from a URL the content is
+	 * opened on each call to sendContent, and read from a FileChannel if the
+	 * URL is for a file, so it supports random access. When created from an
+	 * InputStream it can only be sent once.
+	 */
+	public class ClassPathResource implements RandomAccessGetableResource, DigestResource, PostableResource {
 
 		private final String host;
 		private final Path path;
 		private final InputStream content;
+		private final URL url;
+		private Long contentLength;
 
 		public ClassPathResource(String host, Path path, InputStream content) {
 			this.host = host;
 			this.path = path;
 			this.content = content;
+			this.url = null;
 			if (content == null) {
 				throw new IllegalArgumentException("content cannot be null");
 			}
 		}
 
+		public ClassPathResource(String host, Path path, URL url) {
+			this.host = host;
+			this.path = path;
+			this.content = null;
+			this.url = url;
+			if (url == null) {
+				throw new IllegalArgumentException("url cannot be null");
+			}
+		}
+
 		@Override
 		public void sendContent(OutputStream out, Range range, Map<String, String> params, String contentType) throws IOException, NotAuthorizedException, BadRequestException {
+			if (url == null) {
+				try {
+					RangeUtils.writeRange(content, range, out);
+				} catch (NullPointerException npe) {
+					log.debug("NullPointerException, this is often expected");
+				}
+				return;
+			}
+			File file = toFile();
+			if (file != null) {
+				try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+					RangeUtils.writeRange(channel, range, out);
+				}
+			} else {
+				try (InputStream in = url.openStream()) {
+					RangeUtils.writeRange(in, range, out);
+				}
+			}
+		}
+
+		@Override
+		public boolean isRandomAccess() {
+			return url != null;
+		}
+
+		private File toFile() {
+			if (!"file".equals(url.getProtocol())) {
+				return null;
+			}
 			try {
-				RangeUtils.writeRange(content, range, out);
-			} catch (NullPointerException npe) {
-				log.debug("NullPointerException, this is often expected");
+				return new File(url.toURI());
+			} catch (URISyntaxException | IllegalArgumentException e) {
+				log.trace("not a file url: {}", url);
+				return null;
 			}
 		}
 
@@ -170,14 +224,42 @@ public class ClassPathResourceFactory implements ResourceFactory {
 			return s;
 		}
 
+		/**
+		 * The length is only known for resources created from a URL
+		 */
 		@Override
 		public Long getContentLength() {
-			return null;
+			if (url == null) {
+				return null;
+			}
+			if (contentLength == null) {
+				File file = toFile();
+				long l;
+				if (file != null) {
+					l = file.length();
+				} else {
+					try {
+						l = url.openConnection().getContentLengthLong();
+					} catch (IOException e) {
+						log.debug("Couldnt get length of: {}", url, e);
+						l = -1;
+					}
+				}
+				if (l < 0) {
+					return null;
+				}
+				contentLength = l;
+			}
+			return contentLength;
 		}
 
+		/**
+		 * Classpath content doesnt change while running, so the path
+		 * identifies it. The etag also includes the factory's modified date
+		 */
 		@Override
 		public String getUniqueId() {
-			return null;
+			return "classpath:" + path;
 		}
 
 		@Override
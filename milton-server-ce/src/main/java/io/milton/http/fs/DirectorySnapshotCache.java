@@ -0,0 +1,369 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.fs;
+
+import io.milton.common.Service;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches directory listings, with the attributes of each entry, so that
+ * listing a directory and reading the properties of its members does not
+ * need a system call per member per request.
+ *
+ * A listing is read with a single directory stream, reading the
+ * BasicFileAttributes of each entry once. The snapshot is shared across
+ * requests until the directory's modified date changes, it is older than
+ * maxAgeMillis, or it is invalidated. FsResource invalidates the snapshots
+ * affected by changes made through milton. Changes made outside milton to a
+ * file's content do not change the directory's modified date, so to see those
+ * promptly call start(), which uses a WatchService to invalidate snapshots
+ * when anything in a listed directory changes. Only directories with a cached
+ * snapshot are watched, with one WatchKey each, which is cancelled when the
+ * snapshot is evicted or invalidated.
+ *
+ * @author brad
+ */
+public class DirectorySnapshotCache implements Service {
+
+	private static final Logger log = LoggerFactory.getLogger(DirectorySnapshotCache.class);
+
+	private final Map<Path, Snapshot> snapshots;
+	private final Map<WatchKey, Path> watchKeys = new ConcurrentHashMap<>();
+	/**
+	 * The key watching each directory in snapshots. Guarded by snapshots
+	 */
+	private final Map<Path, WatchKey> keysByDir = new HashMap<>();
+	/**
+	 * Incremented when a directory hashing to the stripe is invalidated, so
+	 * that a listing read before the invalidation is not stored. Guarded by
+	 * snapshots
+	 */
+	private final long[] generations = new long[64];
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private long maxAgeMillis = 5000;
+	private WatchService watchService;
+	private Thread watchThread;
+
+	public DirectorySnapshotCache() {
+		this(1000);
+	}
+
+	/**
+	 *
+	 * @param maxDirectories - the most recently used snapshots to keep
+	 */
+	public DirectorySnapshotCache(final int maxDirectories) {
+		this.snapshots = Collections.synchronizedMap(new LinkedHashMap<Path, Snapshot>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Path, Snapshot> eldest) {
+				if (size() > maxDirectories) {
+					unwatch(eldest.getKey());
+					return true;
+				}
+				return false;
+			}
+		});
+	}
+
+	@Override
+	public synchronized void start() {
+		if (watchService != null) {
+			return;
+		}
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+		} catch (IOException ex) {
+			log.warn("WatchService is not available, snapshots will be checked by modified date and age only", ex);
+			return;
+		}
+		final WatchService ws = watchService;
+		watchThread = new Thread(() -> watch(ws), DirectorySnapshotCache.class.getCanonicalName());
+		watchThread.setDaemon(true);
+		watchThread.start();
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException ex) {
+				log.warn("Exception closing WatchService", ex);
+			}
+			watchService = null;
+			watchThread = null;
+			synchronized (snapshots) {
+				watchKeys.clear();
+				keysByDir.clear();
+			}
+		}
+	}
+
+	/**
+	 * Get a current snapshot of the directory, reading it if there is none
+	 *
+	 * @param dir
+	 * @return
+	 * @throws IOException
+	 */
+	public Snapshot get(File dir) throws IOException {
+		Path path = dir.toPath();
+		Snapshot s = snapshots.get(path);
+		if (s != null && isCurrent(s, dir)) {
+			hits.incrementAndGet();
+			return s;
+		}
+		misses.incrementAndGet();
+		long generation;
+		synchronized (snapshots) {
+			generation = generations[stripe(path)];
+		}
+		s = load(path);
+		synchronized (snapshots) {
+			// if invalidated while loading the listing might be stale, so only return it
+			if (generations[stripe(path)] == generation) {
+				snapshots.put(path, s);
+				watch(path);
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * Discard the snapshot of the directory, if any
+	 *
+	 * @param dir
+	 */
+	public void invalidate(File dir) {
+		if (dir != null) {
+			remove(dir.toPath());
+		}
+	}
+
+	public void invalidateAll() {
+		synchronized (snapshots) {
+			for (Path p : new ArrayList<>(keysByDir.keySet())) {
+				unwatch(p);
+			}
+			for (int i = 0; i < generations.length; i++) {
+				generations[i]++;
+			}
+			snapshots.clear();
+		}
+	}
+
+	/**
+	 *
+	 * @return - the number of directories being watched for changes
+	 */
+	int getWatchedCount() {
+		synchronized (snapshots) {
+			return keysByDir.size();
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 *
+	 * @return - hits as a proportion of all lookups, or zero if there have been
+	 * none
+	 */
+	public double getHitRatio() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	public long getMaxAgeMillis() {
+		return maxAgeMillis;
+	}
+
+	/**
+	 * Snapshots older than this are re-read. Zero or less means snapshots are
+	 * kept until the directory's modified date changes or they are invalidated
+	 *
+	 * @param maxAgeMillis
+	 */
+	public void setMaxAgeMillis(long maxAgeMillis) {
+		this.maxAgeMillis = maxAgeMillis;
+	}
+
+	private boolean isCurrent(Snapshot s, File dir) {
+		if (maxAgeMillis > 0 && System.currentTimeMillis() - s.created > maxAgeMillis) {
+			return false;
+		}
+		return dir.lastModified() == s.dirModified;
+	}
+
+	Snapshot load(Path dir) throws IOException {
+		long dirModified = dir.toFile().lastModified();
+		long created = System.currentTimeMillis();
+		List<Entry> entries = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for (Path p : stream) {
+				try {
+					BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					entries.add(new Entry(p.toFile(), attrs));
+				} catch (IOException ex) {
+					log.debug("Could not read attributes of {}, it may have been deleted", p);
+				}
+			}
+		}
+		entries.sort(Comparator.comparing((Entry e) -> e.attributes.isDirectory()).reversed().thenComparing(e -> e.file.getName()));
+		return new Snapshot(dirModified, created, Collections.unmodifiableList(entries));
+	}
+
+	private void remove(Path dir) {
+		synchronized (snapshots) {
+			generations[stripe(dir)]++;
+			snapshots.remove(dir);
+			unwatch(dir);
+		}
+	}
+
+	private int stripe(Path dir) {
+		return (dir.hashCode() & Integer.MAX_VALUE) % generations.length;
+	}
+
+	/**
+	 * Start watching the directory, unless it already is. Must hold the lock
+	 * on snapshots
+	 */
+	private void watch(Path dir) {
+		WatchService ws = watchService;
+		if (ws == null) {
+			return;
+		}
+		WatchKey existing = keysByDir.get(dir);
+		if (existing != null && existing.isValid()) {
+			return;
+		}
+		try {
+			WatchKey key = dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+			keysByDir.put(dir, key);
+			watchKeys.put(key, dir);
+		} catch (IOException | ClosedWatchServiceException ex) {
+			log.debug("Could not watch directory {}", dir, ex);
+		}
+	}
+
+	/**
+	 * Stop watching the directory. Must hold the lock on snapshots
+	 */
+	private void unwatch(Path dir) {
+		WatchKey key = keysByDir.remove(dir);
+		if (key != null) {
+			watchKeys.remove(key);
+			key.cancel();
+		}
+	}
+
+	private void watch(WatchService ws) {
+		try {
+			while (true) {
+				WatchKey key = ws.take();
+				key.pollEvents();
+				Path dir = watchKeys.get(key);
+				if (dir != null) {
+					// the key is cancelled, and a new one registered when the directory is next read
+					remove(dir);
+				} else {
+					key.cancel();
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException ex) {
+			log.debug("stopped watching directories");
+		}
+	}
+
+	/**
+	 * The members of a directory, with their attributes, sorted with
+	 * directories first and then by name
+	 */
+	public static class Snapshot {
+
+		private final long dirModified;
+		private final long created;
+		private final List<Entry> entries;
+
+		Snapshot(long dirModified, long created, List<Entry> entries) {
+			this.dirModified = dirModified;
+			this.created = created;
+			this.entries = entries;
+		}
+
+		public List<Entry> getEntries() {
+			return entries;
+		}
+	}
+
+	public static class Entry {
+
+		private final File file;
+		private final BasicFileAttributes attributes;
+
+		Entry(File file, BasicFileAttributes attributes) {
+			this.file = file;
+			this.attributes = attributes;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 *
+		 * @return - the attributes of the entry itself, not following links
+		 */
+		public BasicFileAttributes getAttributes() {
+			return attributes;
+		}
+	}
+}
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 
 /**
  * Abstraction for storing and retrieving 
@@ -32,4 +33,20 @@ import java.io.InputStream;
 public interface FileContentService {
 	void setFileContent(File file, InputStream in) throws IOException;
 	InputStream getFileContent(File file) throws FileNotFoundException;
+
+	/**
+	 * Open a read only channel on the file content, so that it can be sent
+	 * with FileChannel.transferTo and ranges can be read directly from their
+	 * offset.
+	 *
+	 * Return null if the content is not stored as a plain file, eg if it is
+	 * transformed when read, in which case getFileContent will be used
+	 *
+	 * @param file
+	 * @return - a channel which the caller must close, or null
+	 * @throws IOException
+	 */
+	default FileChannel getFileChannel(File file) throws IOException {
+		return null;
+	}
 }
@@ -20,12 +20,14 @@
 package io.milton.http.fs;
 
 import io.milton.common.Path;
+import io.milton.http.HierarchicalLockManager;
 import io.milton.http.LockManager;
 import io.milton.http.PropertyManager;
 import io.milton.http.ResourceFactory;
 import io.milton.http.WSManager;
 import io.milton.resource.Resource;
 import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Optional;
 
 import org.slf4j.Logger;
@@ -52,6 +54,8 @@ public final class FileSystemResourceFactory implements ResourceFactory {
     String defaultPage;
     boolean digestAllowed = true;
     private String ssoPrefix;
+    private DirectorySnapshotCache directorySnapshotCache;
+    private boolean bulkDelete;
 
     /**
      * Creates and (optionally) initialises the factory. This looks for a
@@ -157,7 +161,7 @@ public final class FileSystemResourceFactory implements ResourceFactory {
             log.debug("file not found: " + file.getAbsolutePath());
             return null;
         } else if (file.isDirectory()) {
-            r = new FsDirectoryResource(host, this, file, contentService);
+            r = newDirectoryResource(host, file, null);
         } else {
             r = new FsFileResource(host, this, file, contentService);
         }
@@ -255,6 +259,65 @@ public final class FileSystemResourceFactory implements ResourceFactory {
         this.lockManager = lockManager;
     }
 
+    public boolean isBulkDelete() {
+        return bulkDelete;
+    }
+
+    /**
+     * If true, or if the lock manager is a HierarchicalLockManager,
+     * directories are deleted along with everything in them in one operation,
+     * rather than by deleting each member in turn. This avoids listing the
+     * tree, but no DeleteEvent is fired for the members. False by default
+     *
+     * @param bulkDelete
+     */
+    public void setBulkDelete(boolean bulkDelete) {
+        this.bulkDelete = bulkDelete;
+    }
+
+    /**
+     * Create the resource for a directory, which will be a
+     * DeletableCollectionResource if directories are to be deleted in bulk
+     *
+     * @param attributes - attributes already read for the directory, or null
+     * to check the directory now
+     */
+    FsDirectoryResource newDirectoryResource(String host, File dir, BasicFileAttributes attributes) {
+        boolean bulk = bulkDelete || lockManager instanceof HierarchicalLockManager;
+        if (attributes == null) {
+            return bulk ? new FsBulkDeleteDirectoryResource(host, this, dir, contentService) : new FsDirectoryResource(host, this, dir, contentService);
+        }
+        return bulk ? new FsBulkDeleteDirectoryResource(host, this, dir, contentService, attributes) : new FsDirectoryResource(host, this, dir, contentService, attributes);
+    }
+
+    public DirectorySnapshotCache getDirectorySnapshotCache() {
+        return directorySnapshotCache;
+    }
+
+    /**
+     * If set, directory listings and the attributes of their members are
+     * cached across requests. Null by default, so directories are listed on
+     * each request
+     *
+     * @param directorySnapshotCache
+     */
+    public void setDirectorySnapshotCache(DirectorySnapshotCache directorySnapshotCache) {
+        this.directorySnapshotCache = directorySnapshotCache;
+    }
+
+    /**
+     * Called when the file has been created, changed or removed, to discard
+     * any cached listing of its directory
+     *
+     * @param file
+     */
+    void onFileChanged(File file) {
+        if (directorySnapshotCache != null) {
+            directorySnapshotCache.invalidate(file.getParentFile());
+            directorySnapshotCache.invalidate(file);
+        }
+    }
+
     public PropertyManager getPropertyManager() {
         return propertyManager;
     }
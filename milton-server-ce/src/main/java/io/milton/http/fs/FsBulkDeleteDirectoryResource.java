@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.fs;
+
+import io.milton.http.HandlerHelper;
+import io.milton.http.HierarchicalLockManager;
+import io.milton.http.LockToken;
+import io.milton.http.Request;
+import io.milton.resource.DeletableCollectionResource;
+import io.milton.resource.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A directory which is deleted along with everything in it in one operation,
+ * instead of DeleteHelper deleting each member in turn. No DeleteEvent is
+ * fired for the members.
+ *
+ * Used by FileSystemResourceFactory when bulkDelete is set, or when the lock
+ * manager is a HierarchicalLockManager, in which case locks anywhere in the
+ * tree can be checked and removed by path without listing it.
+ *
+ */
+public class FsBulkDeleteDirectoryResource extends FsDirectoryResource implements DeletableCollectionResource {
+
+    private static final Logger log = LoggerFactory.getLogger(FsBulkDeleteDirectoryResource.class);
+
+    public FsBulkDeleteDirectoryResource(String host, FileSystemResourceFactory factory, File dir, FileContentService contentService) {
+        super(host, factory, dir, contentService);
+    }
+
+    FsBulkDeleteDirectoryResource(String host, FileSystemResourceFactory factory, File dir, FileContentService contentService, BasicFileAttributes attributes) {
+        super(host, factory, dir, contentService, attributes);
+    }
+
+    /**
+     * If the lock manager is a HierarchicalLockManager this only looks at the
+     * locks held within this directory, otherwise it walks the directory tree
+     * checking each resource
+     */
+    @Override
+    public boolean isLockedOutRecursive(Request request) {
+        if (factory.getLockManager() instanceof HierarchicalLockManager) {
+            HierarchicalLockManager hlm = (HierarchicalLockManager) factory.getLockManager();
+            for (LockToken token : hlm.getLocksWithin(getLockPath())) {
+                if (HandlerHelper.isLockedOut(request, token)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return isLockedOutRecursive(request, this);
+    }
+
+    private static boolean isLockedOutRecursive(Request request, FsDirectoryResource dir) {
+        if (HandlerHelper.isLockedOut(request, dir.getCurrentLock())) {
+            return true;
+        }
+        for (Resource r : dir.getChildren()) {
+            if (r instanceof FsDirectoryResource) {
+                if (isLockedOutRecursive(request, (FsDirectoryResource) r)) {
+                    return true;
+                }
+            } else if (r instanceof FsResource) {
+                if (HandlerHelper.isLockedOut(request, ((FsResource) r).getCurrentLock())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Deletes the directory and everything in it. FsResource.delete then
+     * removes any locks and properties within it
+     */
+    @Override
+    protected boolean deleteFile() {
+        try {
+            FileUtils.deleteDirectory(file);
+            return true;
+        } catch (IOException ex) {
+            log.warn("Failed to delete directory: " + file.getAbsolutePath(), ex);
+            return false;
+        }
+    }
+}
@@ -24,6 +24,7 @@ import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.resource.*;
 import java.io.*;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 
 import org.apache.commons.io.FileUtils;
@@ -54,6 +55,16 @@ public class FsDirectoryResource extends FsResource implements MakeCollectionabl
         }
     }
 
+    /**
+     * Create from attributes which have already been read, without checking
+     * the directory again
+     */
+    FsDirectoryResource(String host, FileSystemResourceFactory factory, File dir, FileContentService contentService, BasicFileAttributes attributes) {
+        super(host, factory, dir);
+        this.contentService = contentService;
+        this.attributes = attributes;
+    }
+
     @Override
     public CollectionResource createCollection(String name) {
         String safeName = validatePathComponent(name);
@@ -62,8 +73,9 @@ public class FsDirectoryResource extends FsResource implements MakeCollectionabl
         if (!ok) {
             throw new RuntimeException("Failed to create: " + fnew.getAbsolutePath());
         }
+        factory.onFileChanged(fnew);
         factory.getWsManager().ifPresent(wsManager -> wsManager.notifyCreated(factory.toResourcePath(fnew)));
-        return new FsDirectoryResource(host, factory, fnew, contentService);
+        return factory.newDirectoryResource(host, fnew, null);
     }
 
     @Override
@@ -76,6 +88,14 @@ public class FsDirectoryResource extends FsResource implements MakeCollectionabl
 
     @Override
     public List<? extends Resource> getChildren() {
+        DirectorySnapshotCache snapshots = factory.getDirectorySnapshotCache();
+        if (snapshots != null) {
+            try {
+                return getChildren(snapshots.get(file));
+            } catch (IOException ex) {
+                log.warn("Couldnt list directory {}, reading it directly", file.getAbsolutePath(), ex);
+            }
+        }
         ArrayList<FsResource> list = new ArrayList<>();
         File[] files = Arrays.stream(Optional.ofNullable(this.file.listFiles()).orElse(new File[0]))
                 .sorted(Comparator.comparing(File::isDirectory).reversed().thenComparing(File::getName))
@@ -91,6 +111,30 @@ public class FsDirectoryResource extends FsResource implements MakeCollectionabl
         return list;
     }
 
+    /**
+     * Build children from the cached listing, using the attributes read for
+     * each entry rather than checking each file again. Symbolic links are
+     * resolved through the factory so they are checked against the root
+     */
+    private List<FsResource> getChildren(DirectorySnapshotCache.Snapshot snapshot) {
+        ArrayList<FsResource> list = new ArrayList<>();
+        for (DirectorySnapshotCache.Entry e : snapshot.getEntries()) {
+            FsResource res;
+            if (e.getAttributes().isSymbolicLink()) {
+                res = factory.resolveFile(this.host, e.getFile());
+            } else if (e.getAttributes().isDirectory()) {
+                res = factory.newDirectoryResource(host, e.getFile(), e.getAttributes());
+            } else {
+                res = new FsFileResource(host, factory, e.getFile(), contentService, e.getAttributes());
+            }
+            if (res != null) {
+                res.ssoPrefix = factory.getSsoPrefix();
+                list.add(res);
+            }
+        }
+        return list;
+    }
+
     /**
      * Will redirect if a default page has been specified on the factory
      *
@@ -120,6 +164,7 @@ public class FsDirectoryResource extends FsResource implements MakeCollectionabl
         }
 
         contentService.setFileContent(dest, in);
+        factory.onFileChanged(dest);
         factory.getWsManager().ifPresent(wsManager -> wsManager.notifyCreated(factory.toResourcePath(dest)));
         return factory.resolveFile(this.host, dest);
 
@@ -156,6 +201,7 @@ public class FsDirectoryResource extends FsResource implements MakeCollectionabl
         FileOutputStream fout = null;
         try {
             fout = new FileOutputStream(file);
+            factory.onFileChanged(file);
             factory.getWsManager().ifPresent(wsManager -> wsManager.notifyCreated(factory.toResourcePath(file)));
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -39,6 +39,8 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
 import java.util.Map;
 
@@ -52,7 +54,7 @@ import javax.xml.namespace.QName;
 /**
  *
  */
-public class FsFileResource extends FsResource implements CopyableResource, DeletableResource, GetableResource, MoveableResource, PropFindableResource, ReplaceableResource, MultiNamespaceCustomPropertyResource {
+public class FsFileResource extends FsResource implements CopyableResource, DeletableResource, RandomAccessGetableResource, MoveableResource, PropFindableResource, ReplaceableResource, MultiNamespaceCustomPropertyResource {
 
     private static final Logger log = LoggerFactory.getLogger(FsFileResource.class);
     
@@ -69,9 +71,18 @@ public class FsFileResource extends FsResource implements CopyableResource, Dele
         this.contentService = contentService;
     }
 
+    /**
+     * Create from attributes which have already been read, eg from a
+     * DirectorySnapshotCache
+     */
+    FsFileResource(String host, FileSystemResourceFactory factory, File file, FileContentService contentService, BasicFileAttributes attributes) {
+        this(host, factory, file, contentService);
+        this.attributes = attributes;
+    }
+
     @Override
     public Long getContentLength() {
-        return file.length();
+        return length();
     }
 
     @Override
@@ -91,6 +102,24 @@ public class FsFileResource extends FsResource implements CopyableResource, Dele
 
     @Override
     public void sendContent(OutputStream out, Range range, Map<String, String> params, String contentType) throws IOException, NotFoundException {
+        FileChannel channel;
+        try {
+            channel = contentService.getFileChannel(file);
+        } catch (FileNotFoundException e) {
+            throw new NotFoundException("Couldnt locate content");
+        }
+        if (channel != null) {
+            try {
+                if (log.isDebugEnabled()) {
+                    log.debug("sendContent: transfer from channel: " + file.getAbsolutePath() + " range: " + range);
+                }
+                RangeUtils.writeRange(channel, range, out);
+                out.flush();
+            } finally {
+                channel.close();
+            }
+            return;
+        }
         InputStream in = null;
         try {
             in = contentService.getFileContent(file);
@@ -111,6 +140,15 @@ public class FsFileResource extends FsResource implements CopyableResource, Dele
         }
     }
 
+    /**
+     * Ranges are read directly from the file channel, or skipped to in the
+     * content stream
+     */
+    @Override
+    public boolean isRandomAccess() {
+        return true;
+    }
+
     /**
      * @{@inheritDoc}
      */
@@ -135,6 +173,8 @@ public class FsFileResource extends FsResource implements CopyableResource, Dele
 	public void replaceContent(InputStream in, Long length) throws BadRequestException, ConflictException, NotAuthorizedException {
 		try {
 			contentService.setFileContent(file, in);
+			attributes = null;
+			factory.onFileChanged(file);
             factory.getWsManager().ifPresent(wsManager -> wsManager.notifyUpdated(factory.toResourcePath(file)));
 		} catch (IOException ex) {
 			throw new BadRequestException("Couldnt write to: " + file.getAbsolutePath(), ex);
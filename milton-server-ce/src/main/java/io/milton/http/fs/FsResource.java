@@ -25,6 +25,7 @@ import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.http.http11.auth.DigestResponse;
 import io.milton.resource.*;
 import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Date;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +40,11 @@ public abstract class FsResource implements Resource, MoveableResource, Copyable
     final FileSystemResourceFactory factory;
     final String host;
     String ssoPrefix;
+    /**
+     * attributes read when the parent directory was listed, if it was listed
+     * through a DirectorySnapshotCache. Null means read from the file
+     */
+    BasicFileAttributes attributes;
 
     protected abstract void doCopy(File dest) throws NotAuthorizedException;
 
@@ -54,7 +60,7 @@ public abstract class FsResource implements Resource, MoveableResource, Copyable
 
     @Override
     public String getUniqueId() {
-        String s = file.lastModified() + "_" + file.length() + "_" + file.getAbsolutePath();
+        String s = lastModified() + "_" + length() + "_" + file.getAbsolutePath();
         return s.hashCode() + "";
     }
 
@@ -96,7 +102,15 @@ public abstract class FsResource implements Resource, MoveableResource, Copyable
 
 	@Override
     public Date getModifiedDate() {
-        return new Date(file.lastModified());
+        return new Date(lastModified());
+    }
+
+    long lastModified() {
+        return attributes != null ? attributes.lastModifiedTime().toMillis() : file.lastModified();
+    }
+
+    long length() {
+        return attributes != null ? attributes.size() : file.length();
     }
 
     public Date getCreateDate() {
@@ -115,7 +129,14 @@ public abstract class FsResource implements Resource, MoveableResource, Copyable
             if (!ok) {
                 throw new RuntimeException("Failed to move to: " + dest.getAbsolutePath());
             }
+            removeLocksWithin(); // locks are not moved with the resource
+            if (factory.getPropertyManager() instanceof PersistentPropertyManager) {
+                ((PersistentPropertyManager) factory.getPropertyManager()).moveWithin(factory.toResourcePath(file), factory.toResourcePath(dest));
+            }
+            factory.onFileChanged(file);
+            factory.onFileChanged(dest);
             this.file = dest;
+            attributes = null;
             factory.getWsManager().ifPresent(wsManager -> wsManager.notifyMoved(factory.toResourcePath(newFsParent.getFile()), factory.toResourcePath(file)));
         } else {
             throw new RuntimeException("Destination is an unknown type. Must be a FsDirectoryResource, is a: " + newParent.getClass());
@@ -127,6 +148,7 @@ public abstract class FsResource implements Resource, MoveableResource, Copyable
             FsDirectoryResource newFsParent = (FsDirectoryResource) newParent;
             File dest = new File(newFsParent.getFile(), newName);
             doCopy(dest);
+            factory.onFileChanged(dest);
             factory.getWsManager().ifPresent(wsManager -> wsManager.notifyCreated(factory.toResourcePath(dest)));
         } else {
             throw new RuntimeException("Destination is an unknown type. Must be a FsDirectoryResource, is a: " + newParent.getClass());
@@ -134,32 +156,72 @@ public abstract class FsResource implements Resource, MoveableResource, Copyable
     }
 
     public void delete() {
-        boolean ok = file.delete();
+        boolean ok = deleteFile();
         if (!ok) {
             throw new RuntimeException("Failed to delete");
         }
+        factory.onFileChanged(file);
+        removeLocksWithin();
+        if (factory.getPropertyManager() instanceof PersistentPropertyManager) {
+            ((PersistentPropertyManager) factory.getPropertyManager()).removeWithin(factory.toResourcePath(file));
+        }
         factory.getWsManager().ifPresent(wsManager -> wsManager.notifyDeleted(factory.toResourcePath(file)));
     }
 
+    protected boolean deleteFile() {
+        return file.delete();
+    }
+
+    /**
+     *
+     * @return - the path of this resource within the factory root, used to key
+     * locks when the lock manager is a HierarchicalLockManager
+     */
+    protected String getLockPath() {
+        return factory.toResourcePath(file);
+    }
+
+    private void removeLocksWithin() {
+        if (factory.getLockManager() instanceof HierarchicalLockManager) {
+            ((HierarchicalLockManager) factory.getLockManager()).removeLocksWithin(getLockPath());
+        }
+    }
+
     public LockResult lock(LockTimeout timeout, LockInfo lockInfo) throws NotAuthorizedException {
-        final LockResult lockResult = factory.getLockManager().lock(timeout, lockInfo, this);
+        final LockResult lockResult;
+        if (factory.getLockManager() instanceof HierarchicalLockManager) {
+            lockResult = ((HierarchicalLockManager) factory.getLockManager()).lock(timeout, lockInfo, this, getLockPath());
+        } else {
+            lockResult = factory.getLockManager().lock(timeout, lockInfo, this);
+        }
         factory.getWsManager().ifPresent(wsManager -> wsManager.notifyLocked(factory.toResourcePath(file)));
         return lockResult;
     }
 
     public LockResult refreshLock(String token, LockTimeout timeout) throws NotAuthorizedException {
-        final LockResult lockResult = factory.getLockManager().refresh(token, timeout, this);
+        final LockResult lockResult;
+        if (factory.getLockManager() instanceof HierarchicalLockManager) {
+            lockResult = ((HierarchicalLockManager) factory.getLockManager()).refresh(token, timeout, this, getLockPath());
+        } else {
+            lockResult = factory.getLockManager().refresh(token, timeout, this);
+        }
         factory.getWsManager().ifPresent(wsManager -> wsManager.notifyLocked(factory.toResourcePath(file)));
         return lockResult;
     }
 
     public void unlock(String tokenId) throws NotAuthorizedException {
-        factory.getLockManager().unlock(tokenId, this);
+        if (factory.getLockManager() instanceof HierarchicalLockManager) {
+            ((HierarchicalLockManager) factory.getLockManager()).unlock(tokenId, this, getLockPath());
+        } else {
+            factory.getLockManager().unlock(tokenId, this);
+        }
         factory.getWsManager().ifPresent(wsManager -> wsManager.notifyUnlocked(factory.toResourcePath(file)));
     }
 
     public LockToken getCurrentLock() {
-        if (factory.getLockManager() != null) {
+        if (factory.getLockManager() instanceof HierarchicalLockManager) {
+            return ((HierarchicalLockManager) factory.getLockManager()).getCurrentToken(this, getLockPath());
+        } else if (factory.getLockManager() != null) {
             return factory.getLockManager().getCurrentToken(this);
         } else {
             log.warn("getCurrentLock called, but no lock manager: file: " + file.getAbsolutePath());
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.fs;
+
+import io.milton.http.fs.StripedLockManager.LockRecord;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A trie of locks keyed on path segments. Each node knows how many locks are
+ * held at or below it, so finding the locks within a path only descends into
+ * branches which have some, and finding a covering lock only looks at the
+ * ancestors of the path.
+ *
+ * Lookups do not block. Changes are synchronized on the index
+ *
+ * @author brad
+ */
+class LockPathIndex {
+
+	private final Node root = new Node();
+
+	/**
+	 * Split a path into its segments, ignoring empty segments so that leading,
+	 * trailing and doubled slashes do not matter
+	 */
+	static List<String> segments(String path) {
+		List<String> list = new ArrayList<>();
+		if (path != null) {
+			for (String s : path.split("/")) {
+				if (!s.isEmpty()) {
+					list.add(s);
+				}
+			}
+		}
+		return list;
+	}
+
+	static String normalise(String path) {
+		return "/" + String.join("/", segments(path));
+	}
+
+	LockRecord get(String path) {
+		Node n = find(path);
+		return n == null ? null : n.lock;
+	}
+
+	/**
+	 * Find the lock which applies to the path, being either the lock on the
+	 * path itself or a depth infinity lock on an ancestor
+	 *
+	 * @param path
+	 * @param now
+	 * @return - null if none, ignoring expired locks
+	 */
+	LockRecord findCovering(String path, long now) {
+		Node n = root;
+		for (String s : segments(path)) {
+			if (n.count == 0) {
+				return null;
+			}
+			LockRecord rec = n.lock;
+			if (rec != null && rec.isDepthInfinity() && !rec.isExpired(now)) {
+				return rec;
+			}
+			n = n.children.get(s);
+			if (n == null) {
+				return null;
+			}
+		}
+		LockRecord rec = n.lock;
+		if (rec != null && !rec.isExpired(now)) {
+			return rec;
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * @param path
+	 * @return - all locks held on the path or below it, including expired
+	 * locks which have not yet been removed
+	 */
+	List<LockRecord> findWithin(String path) {
+		List<LockRecord> list = new ArrayList<>();
+		Node n = find(path);
+		if (n != null) {
+			collect(n, list);
+		}
+		return list;
+	}
+
+	synchronized void put(String path, LockRecord rec) {
+		Node n = root;
+		for (String s : segments(path)) {
+			n = n.children.computeIfAbsent(s, k -> new Node());
+		}
+		if (n.lock != null) {
+			throw new IllegalStateException("Path is already locked: " + path);
+		}
+		n.lock = rec;
+		changeCounts(path, 1);
+	}
+
+	synchronized boolean replace(String path, LockRecord oldRec, LockRecord newRec) {
+		Node n = find(path);
+		if (n == null || n.lock != oldRec) {
+			return false;
+		}
+		n.lock = newRec;
+		return true;
+	}
+
+	synchronized boolean remove(String path, LockRecord rec) {
+		Node n = find(path);
+		if (n == null || n.lock != rec) {
+			return false;
+		}
+		n.lock = null;
+		changeCounts(path, -1);
+		return true;
+	}
+
+	int size() {
+		return root.count;
+	}
+
+	synchronized void clear() {
+		root.children.clear();
+		root.lock = null;
+		root.count = 0;
+	}
+
+	private Node find(String path) {
+		Node n = root;
+		for (String s : segments(path)) {
+			if (n.count == 0) {
+				return null;
+			}
+			n = n.children.get(s);
+			if (n == null) {
+				return null;
+			}
+		}
+		return n;
+	}
+
+	private void collect(Node n, List<LockRecord> list) {
+		if (n.count == 0) {
+			return;
+		}
+		LockRecord rec = n.lock;
+		if (rec != null) {
+			list.add(rec);
+		}
+		for (Node child : n.children.values()) {
+			collect(child, list);
+		}
+	}
+
+	/**
+	 * Adjust the counts of all nodes from the root to the path, and prune
+	 * branches which no longer hold any locks
+	 */
+	private void changeCounts(String path, int delta) {
+		Node n = root;
+		n.count += delta;
+		for (String s : segments(path)) {
+			Node child = n.children.get(s);
+			child.count += delta;
+			if (child.count == 0) {
+				n.children.remove(s);
+				return;
+			}
+			n = child;
+		}
+	}
+
+	private static class Node {
+
+		final Map<String, Node> children = new ConcurrentHashMap<>();
+		volatile LockRecord lock;
+		volatile int count;
+	}
+}
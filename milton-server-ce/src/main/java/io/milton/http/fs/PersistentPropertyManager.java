@@ -0,0 +1,580 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.fs;
+
+import io.milton.common.Service;
+import io.milton.http.PropertyManager;
+import io.milton.http.webdav.WebDavProtocol;
+import io.milton.property.PropertySource;
+import io.milton.resource.MultiNamespaceCustomPropertyResource;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import javax.xml.namespace.QName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A PropertyManager which stores dead properties in an append-only file, so
+ * they survive restarts and are not held on the heap.
+ *
+ * Properties are keyed on the path of the resource within the
+ * FileSystemResourceFactory's root, rather than getUniqueId, which changes
+ * whenever a file is written. FsResource removes or moves the properties when
+ * the resource is deleted or moved.
+ *
+ * Each change appends a record holding all properties of the resource, and an
+ * in-memory index holds the file offset of the latest record for each
+ * resource. The index is sorted on path, so the resources within a path are
+ * found without scanning it. Reads are positional reads of the file, so are served from the
+ * OS page cache. The file is compacted in the background once more than half
+ * of it is superseded records, and is fsync'd every syncIntervalMillis rather
+ * than on every write. Records have a checksum, and a torn record at the end
+ * of the file, eg after a crash, is discarded on startup.
+ *
+ * Values are stored as strings.
+ *
+ * Call start() to begin background syncing and compaction, and stop() to
+ * sync and close the file.
+ *
+ * @author brad
+ */
+public class PersistentPropertyManager implements PropertyManager, Service {
+
+	private static final Logger log = LoggerFactory.getLogger(PersistentPropertyManager.class);
+
+	private static final int HEADER_SIZE = 12; // int length, long crc
+
+	private final File storeFile;
+	private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+	private NavigableMap<String, Long> offsets = new TreeMap<>();
+	private FileChannel channel;
+	private long liveBytes;
+	private boolean dirty;
+	private ScheduledExecutorService scheduler;
+	private long syncIntervalMillis = 1000;
+	private long minCompactBytes = 1024 * 1024;
+
+	public PersistentPropertyManager(File storeFile) throws IOException {
+		this.storeFile = storeFile;
+		open();
+	}
+
+	@Override
+	public synchronized void start() {
+		if (scheduler == null) {
+			scheduler = Executors.newScheduledThreadPool(1, new DaemonThreadFactory());
+			scheduler.scheduleWithFixedDelay(this::maintain, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdown();
+			scheduler = null;
+		}
+		rwLock.writeLock().lock();
+		try {
+			if (channel != null) {
+				channel.force(false);
+				channel.close();
+				channel = null;
+			}
+		} catch (IOException ex) {
+			log.error("Exception closing property store: " + storeFile.getAbsolutePath(), ex);
+		} finally {
+			rwLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public Object getProperty(QName name, MultiNamespaceCustomPropertyResource resource) {
+		Map<QName, String> props = read(keyOf(resource));
+		return props == null ? null : props.get(name);
+	}
+
+	@Override
+	public void setProperty(QName name, Object value, MultiNamespaceCustomPropertyResource resource) {
+		String key = keyOf(resource);
+		rwLock.writeLock().lock();
+		try {
+			Map<QName, String> props = read(key);
+			if (props == null) {
+				if (value == null) {
+					return;
+				}
+				props = new LinkedHashMap<>();
+			}
+			if (value == null) {
+				props.remove(name);
+			} else {
+				props.put(name, value.toString());
+			}
+			write(key, props.isEmpty() ? null : props);
+		} finally {
+			rwLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public PropertySource.PropertyMetaData getPropertyMetaData(QName name, MultiNamespaceCustomPropertyResource resource) {
+		if (!name.getNamespaceURI().equals(WebDavProtocol.NS_DAV.getName()) && !name.getNamespaceURI().contains("caldav") && !name.getNamespaceURI().contains("carddav")) {
+			Map<QName, String> props = read(keyOf(resource));
+			if (props != null && props.containsKey(name)) {
+				return new PropertySource.PropertyMetaData(PropertySource.PropertyAccessibility.WRITABLE, String.class);
+			} else {
+				return new PropertySource.PropertyMetaData(PropertySource.PropertyAccessibility.UNKNOWN, String.class, true);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public List<QName> getAllPropertyNames(MultiNamespaceCustomPropertyResource resource) {
+		Map<QName, String> props = read(keyOf(resource));
+		if (props != null) {
+			return new ArrayList<>(props.keySet());
+		}
+		return null;
+	}
+
+	/**
+	 * Remove the properties of the resource at the path and of everything
+	 * within it
+	 *
+	 * @param path - path within the factory root
+	 */
+	public void removeWithin(String path) {
+		rwLock.writeLock().lock();
+		try {
+			for (String key : keysWithin(path)) {
+				write(key, null);
+			}
+		} finally {
+			rwLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Move the properties of the resource at the path and of everything
+	 * within it to the new path
+	 *
+	 * @param fromPath
+	 * @param toPath
+	 */
+	public void moveWithin(String fromPath, String toPath) {
+		String from = LockPathIndex.normalise(fromPath);
+		String to = LockPathIndex.normalise(toPath);
+		rwLock.writeLock().lock();
+		try {
+			for (String key : keysWithin(from)) {
+				Map<QName, String> props = read(key);
+				write(key, null);
+				write(to + key.substring(from.length()), props);
+			}
+		} finally {
+			rwLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Write any buffered changes to disk
+	 */
+	public void sync() {
+		rwLock.writeLock().lock();
+		try {
+			if (dirty && channel != null) {
+				channel.force(false);
+				dirty = false;
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		} finally {
+			rwLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Rewrite the file with only the current record for each resource
+	 */
+	public void compact() {
+		rwLock.writeLock().lock();
+		try {
+			File tmp = new File(storeFile.getAbsolutePath() + ".compact");
+			NavigableMap<String, Long> newOffsets = new TreeMap<>();
+			try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				for (Map.Entry<String, Long> e : offsets.entrySet()) {
+					ByteBuffer record = readRecord(e.getValue());
+					newOffsets.put(e.getKey(), out.position());
+					while (record.hasRemaining()) {
+						out.write(record);
+					}
+				}
+				out.force(false);
+			}
+			channel.close();
+			try {
+				replaceStoreFile(tmp.toPath(), storeFile.toPath());
+			} catch (IOException ex) {
+				// the original file is unchanged, so carry on using it
+				channel = FileChannel.open(storeFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+				channel.position(channel.size());
+				Files.deleteIfExists(tmp.toPath());
+				throw ex;
+			}
+			channel = FileChannel.open(storeFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+			channel.position(channel.size());
+			offsets = newOffsets;
+			liveBytes = channel.size();
+			dirty = false;
+			log.info("compacted property store: {} resources, {} bytes", offsets.size(), liveBytes);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		} finally {
+			rwLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Replace the store file with the compacted file
+	 */
+	void replaceStoreFile(Path compacted, Path store) throws IOException {
+		Files.move(compacted, store, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 *
+	 * @return - the number of resources with properties
+	 */
+	public int getResourceCount() {
+		rwLock.readLock().lock();
+		try {
+			return offsets.size();
+		} finally {
+			rwLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @return - the size of the file, including superseded records
+	 */
+	public long getFileSize() {
+		rwLock.readLock().lock();
+		try {
+			return channel == null ? 0 : channel.size();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		} finally {
+			rwLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @return - the number of bytes used by current records
+	 */
+	public long getLiveBytes() {
+		rwLock.readLock().lock();
+		try {
+			return liveBytes;
+		} finally {
+			rwLock.readLock().unlock();
+		}
+	}
+
+	public long getSyncIntervalMillis() {
+		return syncIntervalMillis;
+	}
+
+	/**
+	 * How often changes are fsync'd, and compaction is checked for. Must be
+	 * set before start() is called
+	 *
+	 * @param syncIntervalMillis
+	 */
+	public void setSyncIntervalMillis(long syncIntervalMillis) {
+		this.syncIntervalMillis = syncIntervalMillis;
+	}
+
+	public long getMinCompactBytes() {
+		return minCompactBytes;
+	}
+
+	/**
+	 * The file is not compacted until it is at least this big
+	 *
+	 * @param minCompactBytes
+	 */
+	public void setMinCompactBytes(long minCompactBytes) {
+		this.minCompactBytes = minCompactBytes;
+	}
+
+	private void maintain() {
+		try {
+			sync();
+			long size = getFileSize();
+			if (size > minCompactBytes && getLiveBytes() < size / 2) {
+				compact();
+			}
+		} catch (Throwable e) {
+			log.error("Exception maintaining property store: " + storeFile.getAbsolutePath(), e);
+		}
+	}
+
+	private String keyOf(MultiNamespaceCustomPropertyResource resource) {
+		if (resource instanceof FsResource) {
+			FsResource r = (FsResource) resource;
+			return LockPathIndex.normalise(r.factory.toResourcePath(r.getFile()));
+		}
+		return resource.getUniqueId();
+	}
+
+	private List<String> keysWithin(String path) {
+		String p = LockPathIndex.normalise(path);
+		String prefix = p.equals("/") ? "/" : p + "/";
+		List<String> list = new ArrayList<>();
+		if (!p.equals(prefix) && offsets.containsKey(p)) {
+			list.add(p);
+		}
+		list.addAll(offsets.subMap(prefix, true, prefix + '\uffff', true).keySet());
+		return list;
+	}
+
+	private Map<QName, String> read(String key) {
+		rwLock.readLock().lock();
+		try {
+			Long offset = offsets.get(key);
+			if (offset == null) {
+				return null;
+			}
+			ByteBuffer record = readRecord(offset);
+			record.position(HEADER_SIZE);
+			return decode(record).props;
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		} finally {
+			rwLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Append a record for the key, or a tombstone if props is null. Must hold
+	 * the write lock
+	 */
+	private void write(String key, Map<QName, String> props) {
+		try {
+			Long oldOffset = offsets.get(key);
+			if (oldOffset == null && props == null) {
+				return;
+			}
+			ByteBuffer record = encode(key, props);
+			int size = record.remaining();
+			long pos = channel.size();
+			while (record.hasRemaining()) {
+				channel.write(record, pos + record.position());
+			}
+			dirty = true;
+			if (oldOffset != null) {
+				liveBytes -= recordSize(oldOffset);
+			}
+			if (props == null) {
+				offsets.remove(key);
+			} else {
+				offsets.put(key, pos);
+				liveBytes += size;
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private void open() throws IOException {
+		File dir = storeFile.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.exists() && !dir.mkdirs()) {
+			throw new IOException("Could not create directory: " + dir.getAbsolutePath());
+		}
+		channel = FileChannel.open(storeFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		long pos = 0;
+		long size = channel.size();
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while (pos + HEADER_SIZE <= size) {
+			header.clear();
+			readFully(header, pos);
+			header.flip();
+			int len = header.getInt();
+			long crc = header.getLong();
+			if (len < 0 || pos + HEADER_SIZE + len > size) {
+				break;
+			}
+			ByteBuffer payload = ByteBuffer.allocate(len);
+			readFully(payload, pos + HEADER_SIZE);
+			payload.flip();
+			if (checksum(payload) != crc) {
+				break;
+			}
+			Decoded d = decode(payload);
+			Long oldOffset = offsets.get(d.key);
+			if (oldOffset != null) {
+				liveBytes -= recordSize(oldOffset);
+			}
+			if (d.props == null) {
+				offsets.remove(d.key);
+			} else {
+				offsets.put(d.key, pos);
+				liveBytes += HEADER_SIZE + len;
+			}
+			pos += HEADER_SIZE + len;
+		}
+		if (pos < size) {
+			log.warn("Discarding incomplete or corrupt data at the end of property store: " + storeFile.getAbsolutePath() + " from offset " + pos);
+			channel.truncate(pos);
+		}
+		log.info("opened property store: {} with {} resources", storeFile.getAbsolutePath(), offsets.size());
+	}
+
+	private long recordSize(long offset) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(4);
+		readFully(header, offset);
+		header.flip();
+		return HEADER_SIZE + header.getInt();
+	}
+
+	/**
+	 *
+	 * @return - the whole record, including its header
+	 */
+	private ByteBuffer readRecord(long offset) throws IOException {
+		ByteBuffer record = ByteBuffer.allocate((int) recordSize(offset));
+		readFully(record, offset);
+		record.flip();
+		return record;
+	}
+
+	private void readFully(ByteBuffer buf, long pos) throws IOException {
+		while (buf.hasRemaining()) {
+			int n = channel.read(buf, pos + buf.position());
+			if (n < 0) {
+				throw new IOException("Unexpected end of property store: " + storeFile.getAbsolutePath());
+			}
+		}
+	}
+
+	private static ByteBuffer encode(String key, Map<QName, String> props) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bout);
+		writeString(out, key);
+		if (props == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(props.size());
+			for (Map.Entry<QName, String> e : props.entrySet()) {
+				writeString(out, e.getKey().getNamespaceURI());
+				writeString(out, e.getKey().getLocalPart());
+				writeString(out, e.getValue());
+			}
+		}
+		out.flush();
+		byte[] payload = bout.toByteArray();
+		ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+		buf.putInt(payload.length);
+		buf.putLong(checksum(ByteBuffer.wrap(payload)));
+		buf.put(payload);
+		buf.flip();
+		return buf;
+	}
+
+	private static Decoded decode(ByteBuffer payload) {
+		String key = readString(payload);
+		int count = payload.getInt();
+		if (count < 0) {
+			return new Decoded(key, null);
+		}
+		Map<QName, String> props = new LinkedHashMap<>();
+		for (int i = 0; i < count; i++) {
+			String ns = readString(payload);
+			String local = readString(payload);
+			props.put(new QName(ns, local), readString(payload));
+		}
+		return new Decoded(key, props);
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buf) {
+		byte[] bytes = new byte[buf.getInt()];
+		buf.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static long checksum(ByteBuffer payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload.duplicate());
+		return crc.getValue();
+	}
+
+	private static class Decoded {
+
+		final String key;
+		final Map<QName, String> props;
+
+		Decoded(String key, Map<QName, String> props) {
+			this.key = key;
+			this.props = props;
+		}
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, PersistentPropertyManager.class.getCanonicalName());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
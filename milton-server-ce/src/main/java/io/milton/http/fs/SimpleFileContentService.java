@@ -20,6 +20,9 @@
 package io.milton.http.fs;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import org.apache.commons.io.IOUtils;
 
 /**
@@ -43,4 +46,13 @@ public class SimpleFileContentService implements FileContentService {
     public InputStream getFileContent(File file) throws FileNotFoundException {
         return new FileInputStream(file);
     }
+
+    @Override
+    public FileChannel getFileChannel(File file) throws IOException {
+        try {
+            return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(file.getAbsolutePath());
+        }
+    }
 }
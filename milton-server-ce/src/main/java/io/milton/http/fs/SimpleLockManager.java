@@ -19,6 +19,7 @@
 package io.milton.http.fs;
 
 import io.milton.cache.CacheManager;
+import io.milton.cache.MapSpec;
 import io.milton.http.Auth;
 import io.milton.http.HttpManager;
 import io.milton.http.LockManager;
@@ -75,15 +76,39 @@ public class SimpleLockManager implements LockManager {
         return id + "\n" + token + "\n" + tm + "\n" + lockedBy + "\n" + (secs != null ? secs : "");
     }
 
+    /**
+     * Milliseconds until the lock expires, so the cache manager can remove it
+     * then. Note that locks are also checked for expiry when read
+     */
+    private static long timeToLive(String key, String formattedLock) {
+        CurrentLock lock = toCurrentLock(formattedLock);
+        if (lock == null || lock.token.timeout == null || lock.token.timeout.getSeconds() == null) {
+            return Long.MAX_VALUE;
+        }
+        long from = lock.token.getFrom().getTime();
+        long secs = lock.token.timeout.getSeconds();
+        if (secs >= (Long.MAX_VALUE - from) / 1000) {
+            // Infinite, or too long to represent in millis
+            return Long.MAX_VALUE;
+        }
+        return from + secs * 1000 - System.currentTimeMillis();
+    }
+
     /**
      * maps current locks by the file associated with the resource
      */
     private final Map<String, String> locksByUniqueId;
     private final Map<String, String> locksByToken;
 
+    /**
+     * Locks are held in DURABLE maps, so they are never evicted because there
+     * are too many, only when they expire or are unlocked
+     *
+     * @param cacheManager
+     */
     public SimpleLockManager(CacheManager cacheManager) {
-        locksByUniqueId = cacheManager.getMap("fuse-locks-byuniqueId");
-        locksByToken = cacheManager.getMap("fuse-locks-bytoken");
+        locksByUniqueId = cacheManager.getMap(MapSpec.<String, String>durable("fuse-locks-byuniqueId").expireAfter(SimpleLockManager::timeToLive));
+        locksByToken = cacheManager.getMap(MapSpec.<String, String>durable("fuse-locks-bytoken").expireAfter(SimpleLockManager::timeToLive));
     }
 
     @Override
@@ -156,6 +181,10 @@ public class SimpleLockManager implements LockManager {
         } else {
             curLock.token.setTimeout(timeout);
             curLock.token.setFrom(new Date());
+            // store the refreshed lock, so the new timeout is used for expiry
+            String sNewLock = curLock.toString();
+            locksByUniqueId.put(curLock.id, sNewLock);
+            locksByToken.put(curLock.token.tokenId, sNewLock);
             return LockResult.success(curLock.token);
         }
     }
@@ -1,6 +1,7 @@
 package io.milton.http.fs;
 
 import io.milton.cache.CacheManager;
+import io.milton.cache.MapSpec;
 import io.milton.http.PropertyManager;
 import io.milton.http.webdav.WebDavProtocol;
 import io.milton.property.PropertySource;
@@ -20,7 +21,7 @@ public class SimplePropertyManager implements PropertyManager {
     private final Map<String, Map<QName, Object>> propertiesByUniqueId;
 
     public SimplePropertyManager(CacheManager cacheManager) {
-        this.propertiesByUniqueId = cacheManager.getMap("fuse-properties-byuniqueId");
+        this.propertiesByUniqueId = cacheManager.getMap(MapSpec.durable("fuse-properties-byuniqueId"));
     }
 
     @Override
@@ -0,0 +1,408 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.fs;
+
+import io.milton.common.Service;
+import io.milton.http.Auth;
+import io.milton.http.HierarchicalLockManager;
+import io.milton.http.HttpManager;
+import io.milton.http.LockInfo;
+import io.milton.http.LockManager;
+import io.milton.http.LockResult;
+import io.milton.http.LockTimeout;
+import io.milton.http.LockToken;
+import io.milton.http.Request;
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.resource.LockableResource;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory LockManager for high concurrency. Keys on getUniqueID of the
+ * locked resource, like SimpleLockManager.
+ *
+ * Locks are held as immutable records in ConcurrentHashMaps and are changed
+ * with atomic compute/replace operations, so there is no global monitor and
+ * requests for different resources do not contend with each other.
+ *
+ * Expired locks are removed as they are found, and also by a sweeper which
+ * runs every few seconds once start() has been called. The sweeper takes
+ * expired entries from a DelayQueue, so it only looks at locks which have
+ * actually expired.
+ *
+ * Locks taken through the HierarchicalLockManager methods are keyed on path
+ * instead, and held in a LockPathIndex. This supports depth infinity locks,
+ * and finding the locks within a collection without listing its members.
+ * Taking a path lock is serialised through the index, since it must check the
+ * ancestors and descendants of the path together, but looking up locks is not.
+ *
+ * @author brad
+ */
+public class StripedLockManager implements HierarchicalLockManager, Service, Runnable {
+
+	private static final Logger log = LoggerFactory.getLogger(StripedLockManager.class);
+
+	private static final int INTERVAL = 5;
+
+	private final Map<String, LockRecord> locksByUniqueId = new ConcurrentHashMap<>();
+	private final Map<String, LockRecord> locksByToken = new ConcurrentHashMap<>();
+	private final LockPathIndex pathIndex = new LockPathIndex();
+	private final DelayQueue<LockRecord> expiryQueue = new DelayQueue<>();
+	private ScheduledExecutorService scheduler;
+
+	@Override
+	public synchronized void start() {
+		if (scheduler == null) {
+			log.debug("scheduling checks for expired locks every {} seconds", INTERVAL);
+			scheduler = Executors.newScheduledThreadPool(1, new DaemonThreadFactory());
+			scheduler.scheduleWithFixedDelay(this, INTERVAL, INTERVAL, TimeUnit.SECONDS);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdown();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * Remove all expired locks
+	 */
+	@Override
+	public void run() {
+		LockRecord rec;
+		while ((rec = expiryQueue.poll()) != null) {
+			// only remove if this is still the current record, ie not refreshed or unlocked
+			if (discard(rec)) {
+				log.debug("removed expired lock: {}", rec.tokenId);
+			}
+		}
+	}
+
+	@Override
+	public LockResult lock(LockTimeout timeout, LockInfo lockInfo, LockableResource resource) {
+		return lock(timeout, lockInfo, resource.getUniqueId(), UUID.randomUUID().toString());
+	}
+
+	public LockResult lock(LockTimeout timeout, LockInfo lockInfo, String uniqueId, String tokenId) {
+		LockRecord newLock = new LockRecord(uniqueId, null, tokenId, lockInfo, currentUser(lockInfo.lockedByUser), timeout, System.currentTimeMillis());
+		long now = newLock.from;
+		LockRecord[] replaced = new LockRecord[1];
+		LockRecord result = locksByUniqueId.compute(uniqueId, (id, cur) -> {
+			if (cur != null && !cur.isExpired(now)) {
+				return cur;
+			}
+			replaced[0] = cur;
+			return newLock;
+		});
+		if (result != newLock) {
+			return LockResult.failed(LockResult.FailureReason.ALREADY_LOCKED);
+		}
+		if (replaced[0] != null) {
+			locksByToken.remove(replaced[0].tokenId, replaced[0]);
+		}
+		locksByToken.put(tokenId, newLock);
+		schedule(newLock);
+		return LockResult.success(newLock.toToken());
+	}
+
+	@Override
+	public LockResult refresh(String tokenId, LockTimeout timeout, LockableResource resource) {
+		long now = System.currentTimeMillis();
+		LockRecord cur = locksByToken.get(tokenId);
+		if (cur == null) {
+			// Some clients (yes thats you cadaver) send etags instead of lock tokens in the If header
+			// So if the resource is locked just do a normal refresh
+			cur = locksByUniqueId.get(resource.getUniqueId());
+		}
+		if (cur == null || cur.isExpired(now)) {
+			log.warn("attempt to refresh missing token/etag: " + tokenId + " on resource: " + resource.getName() + " will create a new lock");
+			LockInfo lockInfo = new LockInfo(LockInfo.LockScope.EXCLUSIVE, LockInfo.LockType.WRITE, null, LockInfo.LockDepth.ZERO);
+			return lock(timeout, lockInfo, resource.getUniqueId(), UUID.randomUUID().toString());
+		}
+		return refresh(cur, timeout, now);
+	}
+
+	private LockResult refresh(LockRecord cur, LockTimeout timeout, long now) {
+		LockRecord refreshed = cur.refresh(timeout, now);
+		boolean replaced;
+		if (cur.path == null) {
+			replaced = locksByUniqueId.replace(cur.uniqueId, cur, refreshed);
+		} else {
+			replaced = pathIndex.replace(cur.path, cur, refreshed);
+		}
+		if (!replaced) {
+			// unlocked, or refreshed by someone else, since we read it
+			return LockResult.failed(LockResult.FailureReason.PRECONDITION_FAILED);
+		}
+		locksByToken.put(refreshed.tokenId, refreshed);
+		schedule(refreshed);
+		return LockResult.success(refreshed.toToken());
+	}
+
+	@Override
+	public void unlock(String tokenId, LockableResource r) throws NotAuthorizedException {
+		LockRecord cur = locksByUniqueId.get(r.getUniqueId());
+		if (cur == null || cur.isExpired(System.currentTimeMillis())) {
+			log.debug("not locked");
+			return;
+		}
+		if (!cur.tokenId.equals(tokenId)) {
+			throw new NotAuthorizedException("Non-matching tokens: " + tokenId + " != " + cur.tokenId, r);
+		}
+		discard(cur);
+	}
+
+	@Override
+	public LockToken getCurrentToken(LockableResource r) {
+		if (r == null) {
+			return null;
+		}
+		if (r.getUniqueId() == null) {
+			log.warn("No uniqueID for resource: " + r.getName() + " :: " + r.getClass());
+			return null;
+		}
+		LockRecord cur = locksByUniqueId.get(r.getUniqueId());
+		if (cur == null) {
+			return null;
+		}
+		if (cur.isExpired(System.currentTimeMillis())) {
+			discard(cur);
+			return null;
+		}
+		return cur.toToken();
+	}
+
+	@Override
+	public LockResult lock(LockTimeout timeout, LockInfo lockInfo, LockableResource resource, String path) {
+		String p = LockPathIndex.normalise(path);
+		LockRecord newLock = new LockRecord(resource.getUniqueId(), p, UUID.randomUUID().toString(), lockInfo, currentUser(lockInfo.lockedByUser), timeout, System.currentTimeMillis());
+		long now = newLock.from;
+		synchronized (pathIndex) {
+			if (pathIndex.findCovering(p, now) != null) {
+				return LockResult.failed(LockResult.FailureReason.ALREADY_LOCKED);
+			}
+			if (newLock.isDepthInfinity()) {
+				for (LockRecord rec : pathIndex.findWithin(p)) {
+					if (!rec.isExpired(now)) {
+						return LockResult.failed(LockResult.FailureReason.ALREADY_LOCKED);
+					}
+				}
+			}
+			LockRecord expired = pathIndex.get(p);
+			if (expired != null) {
+				discard(expired);
+			}
+			pathIndex.put(p, newLock);
+		}
+		locksByToken.put(newLock.tokenId, newLock);
+		schedule(newLock);
+		return LockResult.success(newLock.toToken());
+	}
+
+	@Override
+	public LockResult refresh(String tokenId, LockTimeout timeout, LockableResource resource, String path) {
+		long now = System.currentTimeMillis();
+		LockRecord cur = locksByToken.get(tokenId);
+		if (cur == null || cur.path == null) {
+			// as above, the client might have sent an etag
+			cur = pathIndex.findCovering(path, now);
+		}
+		if (cur == null || cur.isExpired(now)) {
+			log.warn("attempt to refresh missing token/etag: " + tokenId + " on path: " + path + " will create a new lock");
+			LockInfo lockInfo = new LockInfo(LockInfo.LockScope.EXCLUSIVE, LockInfo.LockType.WRITE, null, LockInfo.LockDepth.ZERO);
+			return lock(timeout, lockInfo, resource, path);
+		}
+		return refresh(cur, timeout, now);
+	}
+
+	@Override
+	public void unlock(String tokenId, LockableResource r, String path) throws NotAuthorizedException {
+		long now = System.currentTimeMillis();
+		LockRecord covering = pathIndex.findCovering(path, now);
+		if (covering == null) {
+			log.debug("not locked");
+			return;
+		}
+		if (!covering.tokenId.equals(tokenId)) {
+			throw new NotAuthorizedException("Non-matching tokens: " + tokenId + " != " + covering.tokenId, r);
+		}
+		discard(covering);
+	}
+
+	@Override
+	public LockToken getCurrentToken(LockableResource resource, String path) {
+		LockRecord rec = pathIndex.findCovering(path, System.currentTimeMillis());
+		return rec == null ? null : rec.toToken();
+	}
+
+	@Override
+	public List<LockToken> getLocksWithin(String path) {
+		long now = System.currentTimeMillis();
+		List<LockToken> list = new ArrayList<>();
+		for (LockRecord rec : pathIndex.findWithin(path)) {
+			if (!rec.isExpired(now)) {
+				list.add(rec.toToken());
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public void removeLocksWithin(String path) {
+		for (LockRecord rec : pathIndex.findWithin(path)) {
+			discard(rec);
+		}
+	}
+
+	/**
+	 * @return - the number of locks held, including any which have expired but
+	 * not yet been removed
+	 */
+	public int getLockCount() {
+		return locksByUniqueId.size() + pathIndex.size();
+	}
+
+	public void clearLocks() {
+		log.warn("CLEARING LOCKS!!!");
+		locksByUniqueId.clear();
+		locksByToken.clear();
+		pathIndex.clear();
+		expiryQueue.clear();
+	}
+
+	/**
+	 * Remove the lock, unless it has already been removed or replaced
+	 *
+	 * @return - true if it was removed
+	 */
+	private boolean discard(LockRecord rec) {
+		boolean removed;
+		if (rec.path == null) {
+			removed = locksByUniqueId.remove(rec.uniqueId, rec);
+		} else {
+			removed = pathIndex.remove(rec.path, rec);
+		}
+		locksByToken.remove(rec.tokenId, rec);
+		return removed;
+	}
+
+	private void schedule(LockRecord rec) {
+		if (rec.expiresAt != Long.MAX_VALUE) {
+			expiryQueue.add(rec);
+		}
+	}
+
+	private String currentUser(String lockedByUser) {
+		Request req = HttpManager.request();
+		if (req != null) {
+			Auth auth = req.getAuthorization();
+			if (auth != null && auth.getUser() != null) {
+				return auth.getUser();
+			}
+		}
+		return lockedByUser;
+	}
+
+	/**
+	 * Immutable record of a lock. A refresh creates a new record
+	 */
+	static final class LockRecord implements Delayed {
+
+		final String uniqueId;
+		final String path;
+		final String tokenId;
+		final LockInfo info;
+		final String lockedByUser;
+		final LockTimeout timeout;
+		final long from;
+		final long expiresAt;
+
+		LockRecord(String uniqueId, String path, String tokenId, LockInfo info, String lockedByUser, LockTimeout timeout, long from) {
+			this.uniqueId = uniqueId;
+			this.path = path;
+			this.tokenId = tokenId;
+			this.info = info;
+			this.lockedByUser = lockedByUser;
+			this.timeout = timeout;
+			this.from = from;
+			Long secs = timeout == null ? null : timeout.getSeconds();
+			// Infinite is Long.MAX_VALUE seconds, so guard against overflow
+			if (secs == null || secs >= (Long.MAX_VALUE - from) / 1000) {
+				this.expiresAt = Long.MAX_VALUE;
+			} else {
+				this.expiresAt = from + secs * 1000;
+			}
+		}
+
+		LockRecord refresh(LockTimeout newTimeout, long now) {
+			return new LockRecord(uniqueId, path, tokenId, info, lockedByUser, newTimeout, now);
+		}
+
+		boolean isDepthInfinity() {
+			return info != null && info.depth == LockInfo.LockDepth.INFINITY;
+		}
+
+		boolean isExpired(long now) {
+			return now > expiresAt;
+		}
+
+		LockToken toToken() {
+			LockInfo li = new LockInfo(LockInfo.LockScope.EXCLUSIVE, LockInfo.LockType.WRITE, lockedByUser, info == null ? LockInfo.LockDepth.ZERO : info.depth);
+			LockToken token = new LockToken(tokenId, li, timeout);
+			token.setFrom(new Date(from));
+			return token;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(expiresAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed o) {
+			return Long.compare(expiresAt, ((LockRecord) o).expiresAt);
+		}
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, StripedLockManager.class.getCanonicalName());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
@@ -103,14 +103,31 @@ public class MultipleRangeWritingOutputStream extends OutputStream {
 	}
 
 	private void writeRangeHeader(Range r) throws IOException {
+		out.write(rangeHeader(boundary, contentType, currentByte, r.getFinish() == null ? -1 : r.getFinish(), totalResourceLength));
+	}
+
+	/**
+	 * The boundary and part headers which precede each range in a
+	 * multipart/byteranges response
+	 *
+	 * @param boundary
+	 * @param contentType - may be null
+	 * @param start
+	 * @param finish - -1 if not known
+	 * @param totalResourceLength
+	 * @return
+	 */
+	public static byte[] rangeHeader(String boundary, String contentType, long start, long finish, long totalResourceLength) {
 //--3d6b6a416f9b5
 //Content-Type: text/html
 //Content-Range: bytes 100-200/1270
-		out.write(("\n--" + boundary + "\n").getBytes(StandardCharsets.UTF_8));
+		StringBuilder sb = new StringBuilder();
+		sb.append("\n--").append(boundary).append("\n");
 		if (contentType != null) {
-			out.write(("Content-Type: " + contentType + "\n").getBytes(StandardCharsets.UTF_8));
+			sb.append("Content-Type: ").append(contentType).append("\n");
 		}
-		out.write(("Content-Range: " + RangeUtils.toRangeString(currentByte, r.getFinish(), totalResourceLength) + "\n\n").getBytes(StandardCharsets.UTF_8));
+		sb.append("Content-Range: ").append(RangeUtils.toRangeString(start, finish, totalResourceLength)).append("\n\n");
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
 	}
 
 }
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.http11.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.milton.http.AuthenticationCache;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * An AuthenticationCache held in memory, using Caffeine.
+ * <p>
+ * Entries are keyed on an HMAC-SHA256 of the realm, user and password, using a
+ * random key generated for each instance, so the cache never holds passwords
+ * and its keys are of no use outside this process. Entries expire a fixed time
+ * after the login was verified, so a changed password is picked up within
+ * that time even without calling invalidate.
+ *
+ * @author brad
+ */
+public class LocalAuthenticationCache implements AuthenticationCache {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final Cache<String, CachedLogin> cache;
+    private final SecretKeySpec secret;
+    private final long timeToLiveSeconds;
+    private final long maximumSize;
+
+    /**
+     * Cache up to 10000 logins for 5 minutes
+     */
+    public LocalAuthenticationCache() {
+        this(300, 10000);
+    }
+
+    /**
+     *
+     * @param timeToLiveSeconds - how long a verified login is remembered
+     * @param maximumSize - the maximum number of logins to remember
+     */
+    public LocalAuthenticationCache(long timeToLiveSeconds, long maximumSize) {
+        this.timeToLiveSeconds = timeToLiveSeconds;
+        this.maximumSize = maximumSize;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(timeToLiveSeconds, TimeUnit.SECONDS)
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.secret = new SecretKeySpec(key, HMAC_ALGORITHM);
+    }
+
+    @Override
+    public Object get(String realm, String user, String password) {
+        CachedLogin login = cache.getIfPresent(key(realm, user, password));
+        return login == null ? null : login.loginToken;
+    }
+
+    @Override
+    public void put(String realm, String user, String password, Object loginToken) {
+        if (loginToken == null) {
+            return;
+        }
+        cache.put(key(realm, user, password), new CachedLogin(user, loginToken));
+    }
+
+    @Override
+    public void invalidate(String user) {
+        cache.asMap().values().removeIf(login -> login.user.equals(user));
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private String key(String realm, String user, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secret);
+            // lengths are included so that no two combinations of values give the same input
+            String s = realm.length() + ":" + realm + user.length() + ":" + user + password;
+            return Base64.encodeBase64String(mac.doFinal(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new RuntimeException(HMAC_ALGORITHM, e);
+        }
+    }
+
+    public long getHits() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMisses() {
+        return cache.stats().missCount();
+    }
+
+    public double getHitRatio() {
+        return cache.stats().hitRate();
+    }
+
+    public long getEvictions() {
+        return cache.stats().evictionCount();
+    }
+
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    public long getTimeToLiveSeconds() {
+        return timeToLiveSeconds;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    private static class CachedLogin {
+
+        final String user;
+        final Object loginToken;
+
+        CachedLogin(String user, Object loginToken) {
+            this.user = user;
+            this.loginToken = loginToken;
+        }
+    }
+}
@@ -19,8 +19,10 @@
 
 package io.milton.http.json;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.milton.common.LogUtils;
+import io.milton.common.Utils;
 import io.milton.http.Range;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
@@ -39,11 +41,31 @@ import org.slf4j.LoggerFactory;
 import javax.xml.namespace.QName;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.util.*;
 import java.util.Map.Entry;
 
 /**
+ * Generates the json response for a PROPFIND done with a GET request, eg
+ * /folder/_DAV/PROPFIND?fields=name,getlastmodified&amp;depth=1
+ *
+ * As well as fields and depth, these parameters are supported:
+ * <ul>
+ * <li>where - the name of a boolean property, optionally prefixed with !, to
+ * filter results on</li>
+ * <li>sort - the name of a property to sort members on, prefixed with - for
+ * descending order</li>
+ * <li>offset and limit - select a page of members</li>
+ * </ul>
+ *
+ * The requested resource is always the first result (if it matches the where
+ * filter), and sort, offset and limit apply to the results after it.
+ *
+ * For depth 1 on a collection the where and sort properties are evaluated on
+ * each member first, and the requested fields are only built for the members
+ * on the requested page, so the cost depends on the page size rather than the
+ * size of the collection. Results are written as they are built.
  *
  * @author brad
  */
@@ -51,61 +73,190 @@ public class JsonPropFindHandler {
 
     private static final Logger log = LoggerFactory.getLogger(JsonPropFindHandler.class);
     private final PropFindPropertyBuilder propertyBuilder;
-    private final Helper helper;
 
     public JsonPropFindHandler(PropFindPropertyBuilder propertyBuilder) {
         this.propertyBuilder = propertyBuilder;
-        helper = new Helper();
     }
 
     public void sendContent(PropFindableResource wrappedResource, String encodedUrl, OutputStream out, Range range, Map<String, String> params, String contentType) throws IOException, NotAuthorizedException, BadRequestException {
         log.debug("sendContent: {}", encodedUrl);
         ObjectMapper mapper = ObjectMapperFactory.mapper();
 
-        Object json;
-        String[] arr;
         if (propertyBuilder == null) {
+            Object json;
             if (wrappedResource instanceof CollectionResource) {
                 List<? extends Resource> children = Optional.ofNullable(((CollectionResource) wrappedResource).getChildren()).orElse(List.of());
                 json = toSimpleList(children);
             } else {
                 json = toSimple(wrappedResource);
             }
-        } else {
-            // use propfind handler
-            String sFields = params.get("fields");
-            Set<QName> fields = new HashSet<>();
-            Map<QName, String> aliases = new HashMap<>();
-            if (sFields != null && !sFields.isEmpty()) {
-                arr = sFields.split(",");
-                for (String s : arr) {
-                    parseField(s, fields, aliases);
-                }
+            mapper.writeValue(out, json);
+            return;
+        }
+        // use propfind handler
+        String sFields = params.get("fields");
+        Set<QName> fields = new HashSet<>();
+        Map<QName, String> aliases = new HashMap<>();
+        if (sFields != null && !sFields.isEmpty()) {
+            for (String s : sFields.split(",")) {
+                parseField(s, fields, aliases);
             }
+        }
 
-            String sDepth = params.get("depth");
-            int depth = 1;
-            if (sDepth != null && !sDepth.trim().isEmpty()) {
-                depth = Integer.parseInt(sDepth);
+        int depth = intParam(wrappedResource, params, "depth", 1);
+        int offset = intParam(wrappedResource, params, "offset", 0);
+        int limit = intParam(wrappedResource, params, "limit", -1);
+        Condition condition = Condition.parse(params.get("where"), this);
+        SortOrder order = SortOrder.parse(params.get("sort"), this);
+
+        String href = encodedUrl.replace("/_DAV/PROPFIND", "");
+        LogUtils.debug(log, "prop builder: ", propertyBuilder.getClass(), "href", href);
+        boolean members = depth == 1 && wrappedResource instanceof CollectionResource;
+        Set<QName> hidden = new HashSet<>();
+        if (!members) {
+            // other depths filter and sort on the built responses, so the where
+            // and sort properties are built too, but only written if requested
+            if (condition != null && !fields.contains(condition.name)) {
+                hidden.add(condition.name);
+            }
+            if (order != null && !fields.contains(order.name)) {
+                hidden.add(order.name);
+            }
+        }
+        Set<QName> names = new HashSet<>(fields);
+        names.addAll(hidden);
+        PropertiesRequest parseResult = new PropertiesRequest(toProperties(names));
+        ResultWriter writer = new ResultWriter(mapper.getFactory().createGenerator(out), mapper, aliases, hidden, offset, limit);
+        try {
+            if (members) {
+                sendMembers(wrappedResource, href, parseResult, condition, order, writer);
+            } else {
+                sendAll(wrappedResource, href, depth, parseResult, condition, order, writer);
             }
+        } catch (URISyntaxException ex) {
+            throw new RuntimeException("Requested url is not properly encoded: " + href, ex);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        writer.close();
+    }
 
+    /**
+     * Depth 1 on a collection. Evaluates the where and sort properties on each
+     * member, and only builds the requested fields for members on the page
+     */
+    private void sendMembers(PropFindableResource col, String href, PropertiesRequest parseResult, Condition condition, SortOrder order, ResultWriter writer) throws URISyntaxException, NotAuthorizedException, BadRequestException {
+        List<PropFindResponse> self = propertyBuilder.buildProperties(col, 0, parseResult, href);
+        if (self.isEmpty()) {
+            return;
+        }
+        PropFindResponse selfResponse = self.get(0);
+        if (condition == null || condition.matches(getProperty(condition.name, col))) {
+            writer.writeFirst(selfResponse);
+        }
+        String collectionHref = selfResponse.getHref();
 
-            String href = encodedUrl.replace("/_DAV/PROPFIND", "");
-            PropertiesRequest parseResult = new PropertiesRequest(toProperties(fields));
-            LogUtils.debug(log, "prop builder: ", propertyBuilder.getClass(), "href", href);
-            List<PropFindResponse> props;
-            try {
-                props = propertyBuilder.buildProperties(wrappedResource, depth, parseResult, href);
-            } catch (URISyntaxException ex) {
-                throw new RuntimeException("Requested url is not properly encoded: " + href, ex);
+        List<? extends Resource> children = Optional.ofNullable(((CollectionResource) col).getChildren()).orElse(List.of());
+        List<SortKey> page = new ArrayList<>();
+        for (Resource child : children) {
+            if (!(child instanceof PropFindableResource) || child.getName() == null) {
+                continue;
+            }
+            if (condition != null && !condition.matches(getProperty(condition.name, child))) {
+                continue;
+            }
+            if (order == null) {
+                if (writer.isPastPage()) {
+                    break;
+                }
+                if (writer.skip()) {
+                    continue;
+                }
+                writer.write(buildMember((PropFindableResource) child, collectionHref, parseResult));
+            } else {
+                ValueAndType vt = getProperty(order.name, child);
+                page.add(new SortKey(child, vt == null ? null : vt.getValue()));
+            }
+        }
+        if (order != null) {
+            page.sort(order);
+            for (SortKey k : page) {
+                if (writer.isPastPage()) {
+                    break;
+                }
+                if (writer.skip()) {
+                    continue;
+                }
+                writer.write(buildMember((PropFindableResource) k.item, collectionHref, parseResult));
             }
+        }
+    }
 
-            String where = params.get("where");
-            filterResults(props, where);
+    private PropFindResponse buildMember(PropFindableResource child, String collectionHref, PropertiesRequest parseResult) throws NotAuthorizedException, BadRequestException {
+        List<PropFindResponse> list = new ArrayList<>(1);
+        String childHref = collectionHref + Utils.percentEncode(child.getName());
+        propertyBuilder.processResource(list, child, parseResult, childHref, 0, 0, collectionHref);
+        return list.get(0);
+    }
 
-            json = helper.toMap(props, aliases);
+    /**
+     * Get a where or sort property, treating one the current user may not
+     * read as absent, like the property builder does for the requested fields
+     */
+    private ValueAndType getProperty(QName name, Resource r) throws BadRequestException {
+        try {
+            return propertyBuilder.getProperty(name, r);
+        } catch (NotAuthorizedException ex) {
+            LogUtils.debug(log, "getProperty: not authorized to read", name, "on", r.getName());
+            return null;
+        }
+    }
+
+    /**
+     * Any other depth. Results are built by the property builder, filtered
+     * and paged as they arrive, unless they must be sorted first
+     */
+    private void sendAll(PropFindableResource resource, String href, int depth, PropertiesRequest parseResult, Condition condition, SortOrder order, ResultWriter writer) throws URISyntaxException, NotAuthorizedException, BadRequestException {
+        List<SortKey> members = new ArrayList<>();
+        boolean[] first = {true};
+        propertyBuilder.buildProperties(resource, depth, parseResult, href, response -> {
+            boolean isFirst = first[0];
+            first[0] = false;
+            if (condition != null && !condition.matches(response.getKnownProperties().get(condition.name))) {
+                return;
+            }
+            if (isFirst) {
+                writer.writeFirst(response);
+            } else if (order != null) {
+                ValueAndType vt = response.getKnownProperties().get(order.name);
+                members.add(new SortKey(response, vt == null ? null : vt.getValue()));
+            } else if (!writer.isPastPage() && !writer.skip()) {
+                writer.write(response);
+            }
+        });
+        if (order != null) {
+            members.sort(order);
+            for (SortKey k : members) {
+                if (writer.isPastPage()) {
+                    break;
+                }
+                if (!writer.skip()) {
+                    writer.write((PropFindResponse) k.item);
+                }
+            }
+        }
+    }
+
+    private static int intParam(Resource r, Map<String, String> params, String name, int defaultValue) throws BadRequestException {
+        String s = params.get(name);
+        if (s == null || s.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(s.trim());
+        } catch (NumberFormatException ex) {
+            throw new BadRequestException(r, "Invalid " + name + ": " + s);
         }
-        mapper.writeValue(out, json);
     }
 
     private Set<Property> toProperties(Set<QName> set) {
@@ -175,59 +326,166 @@ public class JsonPropFindHandler {
     }
 
     /**
-     * If the where argument is given, removes results where it does not
-     * evaluate to true
-     * <p>
-     * If the given where argument starts with ! the condition is negated
-     *
-     * @param results
-     * @param where
+     * A where argument, ie the name of a boolean property, negated if it
+     * starts with !
      */
-    private void filterResults(List<PropFindResponse> results, String where) {
-        if (where != null && !where.isEmpty()) {
+    private static class Condition {
+
+        static Condition parse(String where, JsonPropFindHandler handler) {
+            if (where == null || where.isEmpty()) {
+                return null;
+            }
             boolean negate = where.startsWith("!");
             if (negate) {
                 where = where.substring(1);
             }
-            QName qnWhere = parseQName(where);
-            Iterator<PropFindResponse> it = results.iterator();
-            while (it.hasNext()) {
-                PropFindResponse result = it.next();
-                boolean isTrue = eval(qnWhere, result);
-                // eg !iscollection for a folder -> false == false = true, so remove
-                // eg !iscollection for a file -> true == false = false, dont remove
-                // eg iscollection for a folder -> false == true = false, so dont remove
-                if (isTrue == negate) {
-                    it.remove();
-                }
-            }
+            return new Condition(handler.parseQName(where), negate);
+        }
+
+        final QName name;
+        final boolean negate;
+
+        Condition(QName name, boolean negate) {
+            this.name = name;
+            this.negate = negate;
+        }
+
+        /**
+         * Absence of the property, or a value which cannot be interpreted as
+         * boolean, implies false.
+         */
+        boolean matches(ValueAndType prop) {
+            boolean isTrue = prop != null && Boolean.TRUE.equals(prop.getValue());
+            // eg !iscollection for a folder -> true != true = false, so exclude
+            return isTrue != negate;
         }
     }
 
     /**
-     * Find a boolean value from the given propery name on the propfind
-     * result.
-     * <p>
-     * Absense of the property, or a value which
-     * cannot be interpreted as boolean, implies false.
-     *
-     * @param qnWhere
-     * @param result
-     * @return
+     * A sort argument, ie the name of a property, in descending order if it
+     * starts with -. Missing values sort last
      */
-    private boolean eval(QName qnWhere, PropFindResponse result) {
-        ValueAndType prop = result.getKnownProperties().get(qnWhere);
-        if (prop != null) {
-            Object val = prop.getValue();
-            if (val instanceof Boolean) {
-                return (Boolean) val;
+    private static class SortOrder implements Comparator<SortKey> {
+
+        static SortOrder parse(String sort, JsonPropFindHandler handler) {
+            if (sort == null || sort.isEmpty()) {
+                return null;
+            }
+            boolean descending = sort.startsWith("-");
+            if (descending) {
+                sort = sort.substring(1);
+            }
+            return new SortOrder(handler.parseQName(sort), descending);
+        }
+
+        final QName name;
+        final boolean descending;
+
+        SortOrder(QName name, boolean descending) {
+            this.name = name;
+            this.descending = descending;
+        }
+
+        @Override
+        public int compare(SortKey o1, SortKey o2) {
+            if (o1.value == null || o2.value == null) {
+                return o1.value == null ? (o2.value == null ? 0 : 1) : -1;
+            }
+            int i;
+            if (o1.value instanceof Comparable && o1.value.getClass().isInstance(o2.value)) {
+                i = ((Comparable) o1.value).compareTo(o2.value);
             } else {
-                return false;
+                i = o1.value.toString().compareTo(o2.value.toString());
+            }
+            return descending ? -i : i;
+        }
+    }
+
+    private static class SortKey {
+
+        final Object item;
+        final Object value;
+
+        SortKey(Object item, Object value) {
+            this.item = item;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Writes results to a json array as they are produced, and keeps track of
+     * the requested page of results after the first
+     */
+    private static class ResultWriter {
+
+        private final JsonGenerator generator;
+        private final ObjectMapper mapper;
+        private final Map<QName, String> aliases;
+        private final Set<QName> hidden;
+        private int toSkip;
+        private int remaining;
+        private boolean started;
+
+        ResultWriter(JsonGenerator generator, ObjectMapper mapper, Map<QName, String> aliases, Set<QName> hidden, int offset, int limit) {
+            this.generator = generator;
+            this.mapper = mapper;
+            this.aliases = aliases;
+            this.hidden = hidden;
+            this.toSkip = offset;
+            this.remaining = limit < 0 ? Integer.MAX_VALUE : limit;
+        }
+
+        /**
+         * Write the result for the requested resource, which is not counted in
+         * the page
+         */
+        void writeFirst(PropFindResponse r) {
+            writeResponse(r);
+        }
+
+        boolean isPastPage() {
+            return remaining <= 0;
+        }
+
+        /**
+         *
+         * @return - true if the next result is before the requested page, in
+         * which case it has been counted and should not be written
+         */
+        boolean skip() {
+            if (toSkip > 0) {
+                toSkip--;
+                return true;
             }
-        } else {
             return false;
         }
 
+        void write(PropFindResponse r) {
+            remaining--;
+            writeResponse(r);
+        }
+
+        void close() throws IOException {
+            start();
+            generator.writeEndArray();
+            generator.close();
+        }
+
+        private void writeResponse(PropFindResponse r) {
+            try {
+                start();
+                mapper.writeValue(generator, Helper.toMap(r, aliases, hidden));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        private void start() throws IOException {
+            if (!started) {
+                started = true;
+                generator.writeStartArray();
+            }
+        }
     }
 
     public static class SimpleResource {
@@ -249,22 +507,19 @@ public class JsonPropFindHandler {
 
     static class Helper {
 
-        private List<Map<String, Object>> toMap(List<PropFindResponse> props, Map<QName, String> aliases) {
-            List<Map<String, Object>> list = new ArrayList<>();
-            Object val;
-            for (PropFindResponse prop : props) {
-                Map<String, Object> map = new HashMap<>();
-                list.add(map);
-                for (Entry<QName, ValueAndType> p : prop.getKnownProperties().entrySet()) {
-                    String name = aliases.get(p.getKey());
-                    if (name == null) {
-                        name = p.getKey().getLocalPart();
-                    }
-                    val = p.getValue().getValue();
-                    map.put(name, val);
+        private static Map<String, Object> toMap(PropFindResponse prop, Map<QName, String> aliases, Set<QName> hidden) {
+            Map<String, Object> map = new HashMap<>();
+            for (Entry<QName, ValueAndType> p : prop.getKnownProperties().entrySet()) {
+                if (hidden.contains(p.getKey())) {
+                    continue;
+                }
+                String name = aliases.get(p.getKey());
+                if (name == null) {
+                    name = p.getKey().getLocalPart();
                 }
+                map.put(name, p.getValue().getValue());
             }
-            return list;
+            return map;
         }
     }
 }
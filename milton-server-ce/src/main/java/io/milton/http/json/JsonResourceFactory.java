@@ -22,6 +22,7 @@ package io.milton.http.json;
 import io.milton.common.LogUtils;
 import io.milton.common.Path;
 import io.milton.event.EventManager;
+import io.milton.http.BatchResourceFactory;
 import io.milton.http.HttpManager;
 import io.milton.http.Request;
 import io.milton.http.ResourceFactory;
@@ -34,8 +35,12 @@ import io.milton.resource.PropFindableResource;
 import io.milton.resource.PutableResource;
 import io.milton.resource.Resource;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,7 +48,7 @@ import org.slf4j.LoggerFactory;
 /**
  *
  */
-public class JsonResourceFactory implements ResourceFactory {
+public class JsonResourceFactory implements BatchResourceFactory {
 
 	private static final Logger log = LoggerFactory.getLogger(JsonResourceFactory.class);
 	private final ResourceFactory wrapped;
@@ -99,6 +104,25 @@ public class JsonResourceFactory implements ResourceFactory {
 		return null;
 	}
 
+	/**
+	 * Ajax paths are located singly, everything else is passed to the wrapped
+	 * factory as a batch
+	 */
+	@Override
+	public Map<String, Resource> getResources(String host, Collection<String> paths) throws NotAuthorizedException, BadRequestException {
+		Map<String, Resource> map = new LinkedHashMap<>();
+		List<String> others = new ArrayList<>();
+		for (String sPath : paths) {
+			if (isMatchingPath(Path.path(sPath).getParent()) || isAjaxLoginPath(sPath)) {
+				map.put(sPath, getResource(host, sPath));
+			} else {
+				others.add(sPath);
+			}
+		}
+		map.putAll(BatchResourceFactory.getResources(wrapped, host, others));
+		return map;
+	}
+
 	private boolean isMatchingPath(Path parent) {
 		return parent != null && parent.getName() != null && parent.getName().equals(DAV_FOLDER);
 	}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.report;
+
+import io.milton.http.Response;
+import io.milton.http.exceptions.BadRequestException;
+import io.milton.http.exceptions.ConflictException;
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.resource.Resource;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * A report which reads its request body incrementally from a StAX reader,
+ * instead of from a JDOM document. This avoids building an element tree for
+ * large request bodies (eg a multiget with thousands of hrefs), and allows
+ * processing to start before the whole body has been read.
+ *
+ * ReportHandler will call this method for reports which implement it. The
+ * Document form of processStreaming is still required, for callers which
+ * already have a parsed document.
+ *
+ * @author brad
+ */
+public interface PullParsedReport extends StreamingReport {
+
+	/**
+	 *
+	 * @param host
+	 * @param path
+	 * @param r
+	 * @param reader - positioned on the START_ELEMENT of the report's root element.
+	 * The implementation should read up to the matching END_ELEMENT
+	 * @return an entity to write the response body
+	 */
+	Response.Entity processStreaming(String host, String path, Resource r, XMLStreamReader reader) throws BadRequestException, ConflictException, NotAuthorizedException, XMLStreamException;
+}
@@ -27,6 +27,9 @@ import io.milton.http.exceptions.NotAuthorizedException;
 /**
  * Represents a known report type, is delegated to by the ReportHandler
  *
+ * Reports which may produce large responses should implement StreamingReport
+ * so the response can be written directly to the output stream
+ *
  * @author brad
  */
 public interface Report {
@@ -36,8 +36,13 @@ import io.milton.resource.ReportableResource;
 import io.milton.http.entity.ByteArrayEntity;
 import java.io.IOException;
 import java.util.Map;
-import java.util.logging.Level;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.jdom2.Element;
 import org.jdom2.JDOMException;
+import org.jdom2.input.StAXStreamBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,6 +56,7 @@ public class ReportHandler implements ExistingEntityHandler {
 	private final WebDavResponseHandler responseHandler;
 	private final ResourceHandlerHelper resourceHandlerHelper;
 	private final Map<String, Report> reports;
+	private static final XMLInputFactory xmlInputFactory = createXmlInputFactory();
 
 	public ReportHandler(WebDavResponseHandler responseHandler, ResourceHandlerHelper resourceHandlerHelper, Map<String, Report> reports) {
 		this.responseHandler = responseHandler;
@@ -75,35 +81,85 @@ public class ReportHandler implements ExistingEntityHandler {
 
 	@Override
 	public void processExistingResource(HttpManager manager, Request request, Response response, Resource resource) throws NotAuthorizedException, BadRequestException, ConflictException {
+		XMLStreamReader reader = null;
 		try {
-			org.jdom2.input.SAXBuilder builder = new org.jdom2.input.SAXBuilder();
-			// Prevent possibily of malicious clients using remote the parser to load remote resources
-			builder.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-			builder.setExpandEntities(false);
-			org.jdom2.Document doc = builder.build(request.getInputStream());
-			String reportName = doc.getRootElement().getName();
+			reader = xmlInputFactory.createXMLStreamReader(request.getInputStream());
+			moveToRootElement(reader, resource);
+			String reportName = reader.getLocalName();
 			Report r = reports.get(reportName);
 			if (r == null) {
 				log.error("report not known: " + reportName);
 				throw new BadRequestException(resource);
 			} else {
 				log.info("process report: " + reportName + " with : " + r.getClass());
-				String xml = r.process(request.getHostHeader(), request.getAbsolutePath(), resource, doc);
-				if(log.isTraceEnabled()) {
-					log.trace("Report XML:\n" + xml);
+				Response.Entity entity;
+				if (r instanceof PullParsedReport) {
+					entity = ((PullParsedReport) r).processStreaming(request.getHostHeader(), request.getAbsolutePath(), resource, reader);
+				} else {
+					// Only build a document for reports which need one
+					Element root = (Element) new StAXStreamBuilder().fragment(reader);
+					org.jdom2.Document doc = new org.jdom2.Document(root);
+					if (r instanceof StreamingReport) {
+						entity = ((StreamingReport) r).processStreaming(request.getHostHeader(), request.getAbsolutePath(), resource, doc);
+					} else {
+						// legacy reports return the whole document as a String
+						String xml = r.process(request.getHostHeader(), request.getAbsolutePath(), resource, doc);
+						if(log.isTraceEnabled()) {
+							log.trace("Report XML:\n" + xml);
+						}
+						entity = new ByteArrayEntity(xml.getBytes("UTF-8"));
+					}
 				}
 				response.setStatus(Response.Status.SC_MULTI_STATUS);
 				response.setContentTypeHeader("text/xml");
-				response.setEntity(new ByteArrayEntity(xml.getBytes("UTF-8")));
+				response.setEntity(entity);
 			}
-		} catch (JDOMException ex) {
-			java.util.logging.Logger.getLogger(ReportHandler.class.getName()).log(Level.SEVERE, null, ex);
+		} catch (XMLStreamException | JDOMException ex) {
+			log.warn("Exception parsing REPORT request body", ex);
+			throw new BadRequestException(resource, "Invalid REPORT request body: " + ex.getMessage());
 		} catch (WritingException ex) {
 			throw new RuntimeException(ex);
 		} catch (IOException ex) {
 			throw new RuntimeException(ex);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException ex) {
+					log.debug("Exception closing reader", ex);
+				}
+			}
 		}
-    }
+	}
+
+	/**
+	 * Advance the reader to the START_ELEMENT of the root element. Like the
+	 * previous SAX configuration, documents with a DOCTYPE are rejected to
+	 * prevent malicious clients using the parser to load remote resources
+	 */
+	private void moveToRootElement(XMLStreamReader reader, Resource resource) throws XMLStreamException, BadRequestException {
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				return;
+			} else if (event == XMLStreamConstants.DTD) {
+				throw new BadRequestException(resource, "DOCTYPE is not allowed in REPORT requests");
+			}
+		}
+		throw new BadRequestException(resource, "No root element in REPORT request");
+	}
+
+	/**
+	 * The factory is created once and shared by all requests. Readers created
+	 * from it are not shared
+	 */
+	private static XMLInputFactory createXmlInputFactory() {
+		XMLInputFactory f = XMLInputFactory.newInstance();
+		f.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+		f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return f;
+	}
 
 	@Override
 	public boolean isCompatible(Resource res) {
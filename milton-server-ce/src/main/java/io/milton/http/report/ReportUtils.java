@@ -23,6 +23,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.Namespace;
@@ -109,6 +112,51 @@ public class ReportUtils {
 		return findRecursively(childElement, name);
 	}
 
+	/**
+	 * Read the names of the child elements of a prop element, such as in a
+	 * multiget or sync-collection request. Nested content of each property
+	 * element is skipped
+	 *
+	 * @param reader - positioned on the START_ELEMENT of the prop element. On
+	 * return it will be positioned on the matching END_ELEMENT
+	 * @return
+	 * @throws XMLStreamException
+	 */
+	public static Set<QName> readProps(XMLStreamReader reader) throws XMLStreamException {
+		Set<QName> set = new HashSet<>();
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				QName name = reader.getName();
+				String prefix = name.getPrefix() == null ? "" : name.getPrefix();
+				set.add(new QName(name.getNamespaceURI(), name.getLocalPart(), prefix));
+				skipElement(reader);
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				break;
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * Skip over the current element and all of its content
+	 *
+	 * @param reader - positioned on a START_ELEMENT. On return it will be
+	 * positioned on the matching END_ELEMENT
+	 * @throws XMLStreamException
+	 */
+	public static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0 && reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
 	public static Set<QName> getProps(Document doc, Namespace propNs) {
 		Element elProp = doc.getRootElement().getChild("prop", propNs);
 		if (elProp == null) {
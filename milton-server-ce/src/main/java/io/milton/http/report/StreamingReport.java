@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.report;
+
+import io.milton.http.Response;
+import io.milton.http.exceptions.BadRequestException;
+import io.milton.http.exceptions.ConflictException;
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.resource.Resource;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A report which produces its response as an entity which is written directly
+ * to the response output stream, rather than as a String. This avoids holding
+ * the whole response in memory as a String and then again as a byte array.
+ *
+ * ReportHandler will use processStreaming for reports which implement this
+ * interface, and will adapt the String returned by process for reports which
+ * do not.
+ *
+ * @author brad
+ */
+public interface StreamingReport extends Report {
+
+	/**
+	 * Process the requested report body, and return an entity which will write
+	 * the response body. Errors should be detected here where possible, since
+	 * once the entity starts writing the response status can no longer be
+	 * changed.
+	 *
+	 * Must be a multistatus response.
+	 *
+	 * @param host
+	 * @param path
+	 * @param r
+	 * @param doc
+	 * @return an entity to write the response body, usually xml
+	 */
+	Response.Entity processStreaming(String host, String path, Resource r, org.jdom2.Document doc) throws BadRequestException, ConflictException, NotAuthorizedException;
+
+	/**
+	 * Renders the entity from processStreaming into a String, for callers which
+	 * still use the String form. The entity is passed a null Response, so
+	 * it must only write to the given output stream
+	 */
+	@Override
+	default String process(String host, String path, Resource r, org.jdom2.Document doc) throws BadRequestException, ConflictException, NotAuthorizedException {
+		Response.Entity entity = processStreaming(host, path, r, doc);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			entity.write(null, out);
+		} catch (Exception ex) {
+			throw new RuntimeException(ex);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -83,10 +83,28 @@ public class DefaultPropFindPropertyBuilder implements PropFindPropertyBuilder {
         LogUtils.trace(log, "buildProperties: ", pfr.getClass(), "url:", url);
         url = fixUrlForWindows(url);
         List<PropFindResponse> propFindResponses = new ArrayList<>();
-        appendResponses(propFindResponses, pfr, depth, parseResult, url);
+        appendResponses(propFindResponses::add, pfr, depth, parseResult, url);
         return propFindResponses;
     }
 
+    /**
+     * Streaming form of buildProperties. Responses are passed to the callback
+     * as each resource is processed, and are not retained by this class.
+     *
+     * @param pfr         - the resource to interrogate
+     * @param depth       - the depth header
+     * @param parseResult - contains the list of fields, or a true boolean
+     *                    indicating all properties
+     * @param url         - the URL of the given resource - MUST be correctly encoded
+     * @param callback    - receives each response in document order
+     */
+    @Override
+    public void buildProperties(PropFindableResource pfr, int depth, PropertiesRequest parseResult, String url, PropFindResponseCallback callback) throws URISyntaxException, NotAuthorizedException, BadRequestException {
+        LogUtils.trace(log, "buildProperties(streaming): ", pfr.getClass(), "url:", url);
+        url = fixUrlForWindows(url);
+        appendResponses(callback, pfr, depth, parseResult, url);
+    }
+
     @Override
     public ValueAndType getProperty(QName field, Resource resource) throws NotAuthorizedException, BadRequestException {
         for (PropertySource source : propertySources) {
@@ -100,17 +118,21 @@ public class DefaultPropFindPropertyBuilder implements PropFindPropertyBuilder {
         return null;
     }
 
-    private void appendResponses(List<PropFindResponse> responses, PropFindableResource resource, int requestedDepth, PropertiesRequest parseResult, String encodedCollectionUrl) throws URISyntaxException, NotAuthorizedException, BadRequestException {
+    private void appendResponses(PropFindResponseCallback callback, PropFindableResource resource, int requestedDepth, PropertiesRequest parseResult, String encodedCollectionUrl) throws URISyntaxException, NotAuthorizedException, BadRequestException {
         String collectionHref = suffixSlash(resource, encodedCollectionUrl);
         URI parentUri = new URI(collectionHref);
 
         collectionHref = parentUri.toASCIIString();
-        processResource(responses, resource, parseResult, collectionHref, requestedDepth, 0, collectionHref);
+        processResource(callback, resource, parseResult, collectionHref, requestedDepth, 0, collectionHref);
 
     }
 
     @Override
     public void processResource(List<PropFindResponse> responses, PropFindableResource resource, PropertiesRequest parseResult, String href, int requestedDepth, int currentDepth, String collectionHref) throws NotAuthorizedException, BadRequestException {
+        processResource(responses::add, resource, parseResult, href, requestedDepth, currentDepth, collectionHref);
+    }
+
+    private void processResource(PropFindResponseCallback callback, PropFindableResource resource, PropertiesRequest parseResult, String href, int requestedDepth, int currentDepth, String collectionHref) throws NotAuthorizedException, BadRequestException {
         final LinkedHashMap<QName, ValueAndType> knownProperties = new LinkedHashMap<>();
         final ArrayList<NameAndError> unknownProperties = new ArrayList<>();
         if (resource instanceof CollectionResource) {
@@ -177,7 +199,7 @@ public class DefaultPropFindPropertyBuilder implements PropFindPropertyBuilder {
         Map<Status, List<NameAndError>> errorProperties = new EnumMap<>(Status.class);
         errorProperties.put(Status.SC_NOT_FOUND, unknownProperties);
         PropFindResponse r = new PropFindResponse(href, knownProperties, errorProperties);
-        responses.add(r);
+        callback.onResponse(r);
 
         if (requestedDepth > currentDepth && resource instanceof CollectionResource) {
             CollectionResource col = (CollectionResource) resource;
@@ -189,7 +211,7 @@ public class DefaultPropFindPropertyBuilder implements PropFindPropertyBuilder {
                     } else {
                         String childHref = href + Utils.percentEncode(childName);
                         // Note that the new collection href, is just the current href
-                        processResource(responses, (PropFindableResource) child, parseResult, childHref, requestedDepth, currentDepth + 1, href);
+                        processResource(callback, (PropFindableResource) child, parseResult, childHref, requestedDepth, currentDepth + 1, href);
                     }
                 }
             }
@@ -34,13 +34,18 @@ import io.milton.http.http11.Bufferable;
 import io.milton.http.http11.DefaultHttp11ResponseHandler.BUFFERING;
 import io.milton.http.http11.Http11ResponseHandler;
 import io.milton.http.quota.StorageChecker.StorageErrorReason;
+import io.milton.resource.PropFindableResource;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import javax.xml.namespace.QName;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,6 +60,7 @@ public class DefaultWebDavResponseHandler implements WebDavResponseHandler, Buff
 	protected final Http11ResponseHandler wrapped;
 	protected final ResourceTypeHelper resourceTypeHelper;
 	protected final PropFindXmlGenerator propFindXmlGenerator;
+	private static final int STREAMING_BUFFER_SIZE = 8192;
 
 	public DefaultWebDavResponseHandler(Http11ResponseHandler wrapped, ResourceTypeHelper resourceTypeHelper, PropFindXmlGenerator propFindXmlGenerator) {
 		this.wrapped = wrapped;
@@ -218,6 +224,36 @@ public class DefaultWebDavResponseHandler implements WebDavResponseHandler, Buff
 		}
 	}
 
+	/**
+	 * Streams the multistatus document to the output as each response is
+	 * built. No content length is set, so the response is chunked.
+	 */
+	@Override
+	public void respondPropFind(PropFindPropertyBuilder propertyBuilder, PropFindableResource pfr, int depth, PropertiesRequest parseResult, String url, Response response, Request request) throws URISyntaxException, NotAuthorizedException, BadRequestException {
+		log.trace("respondPropFind(streaming)");
+		response.setStatus(Status.SC_MULTI_STATUS);
+		response.setDateHeader(new Date());
+		List<String> supportedLevels = resourceTypeHelper.getSupportedLevels(pfr);
+		String s = Utils.toCsv(supportedLevels);
+		response.setDavHeader(s);
+
+		Set<QName> expectedFields;
+		if (parseResult.isAllProp() || parseResult.isPropname()) {
+			expectedFields = propertyBuilder.findAllProps(pfr);
+		} else {
+			expectedFields = parseResult.getNames();
+		}
+		// XmlWriter writes many small fragments, so buffer them into reasonable sized chunks
+		BufferedOutputStream bufOut = new BufferedOutputStream(response.getOutputStream(), STREAMING_BUFFER_SIZE);
+		boolean sendErrorProps = !isBriefHeader(request);
+		PropFindXmlStreamWriter streamWriter = propFindXmlGenerator.createStreamWriter(bufOut, expectedFields, sendErrorProps);
+		propertyBuilder.buildProperties(pfr, depth, parseResult, url, streamWriter);
+		streamWriter.finish(null);
+		if (log.isTraceEnabled()) {
+			log.trace("respondPropFind(streaming): wrote responses: " + streamWriter.getCount());
+		}
+	}
+
 	@Override
 	public void respondInsufficientStorage(Request request, Response response, StorageErrorReason storageErrorReason) {
 		response.setStatus(Status.SC_INSUFFICIENT_STORAGE);
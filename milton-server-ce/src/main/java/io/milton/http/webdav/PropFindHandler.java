@@ -50,6 +50,7 @@ public class PropFindHandler implements ExistingEntityHandler, PropertyHandler {
     private final WebDavResponseHandler responseHandler;
     private final PropFindPropertyBuilder propertyBuilder;
     private final PropertyAuthoriser permissionService = new DefaultPropertyAuthoriser();
+    private boolean streaming;
 
 //    /**
 //     *
@@ -136,17 +137,20 @@ public class PropFindHandler implements ExistingEntityHandler, PropertyHandler {
                 }
                 log.trace("---");
             }
-            List<PropFindResponse> propFindResponses;
             try {
-                propFindResponses = propertyBuilder.buildProperties(pfr, depth, parseResult, url);
+                if (streaming) {
+                    responseHandler.respondPropFind(propertyBuilder, pfr, depth, parseResult, url, response, request);
+                } else {
+                    List<PropFindResponse> propFindResponses = propertyBuilder.buildProperties(pfr, depth, parseResult, url);
+                    if (log.isTraceEnabled()) {
+                        log.trace("responses: " + propFindResponses.size());
+                    }
+                    responseHandler.respondPropFind(propFindResponses, response, request, pfr);
+                }
             } catch (URISyntaxException ex) {
                 log.error("Exception parsing url. request class: " + request.getClass() + ". Please check the client application is usign percentage encoding (see http://en.wikipedia.org/wiki/Percent-encoding)");
                 throw new RuntimeException("Exception parsing url, indicating the requested URL is not correctly encoded. Please check the client application. Requested url is: " + url, ex);
             }
-            if (log.isTraceEnabled()) {
-                log.trace("responses: " + propFindResponses.size());
-            }
-            responseHandler.respondPropFind(propFindResponses, response, request, pfr);
         }
     }
 
@@ -164,4 +168,21 @@ public class PropFindHandler implements ExistingEntityHandler, PropertyHandler {
     public PropertyAuthoriser getPermissionService() {
         return permissionService;
     }
+
+    /**
+     * If true, responses are written to the client as they are built, using
+     * chunked transfer encoding, instead of building the whole multistatus
+     * document in memory. This keeps memory use bounded for very large
+     * collections, but means that an error part way through can only be
+     * reported by terminating the response
+     *
+     * @return
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
 }
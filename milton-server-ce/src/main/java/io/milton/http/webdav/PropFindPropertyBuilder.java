@@ -59,6 +59,27 @@ public interface PropFindPropertyBuilder {
 	 */
 	List<PropFindResponse> buildProperties(PropFindableResource pfr, int depth, PropertiesRequest parseResult, String url) throws URISyntaxException, NotAuthorizedException, BadRequestException;
 
+	/**
+	 * Streaming form of buildProperties. Each PropFindResponse is passed to
+	 * the callback as soon as it has been built, so implementations which
+	 * support it do not need to hold the whole result in memory.
+	 *
+	 * The default implementation builds the complete list and then passes
+	 * each item to the callback, so existing implementations continue to work
+	 * but without the memory benefit.
+	 *
+	 * @param pfr - the resource to interrogate
+	 * @param depth - the depth header. 0 means only look at the given resource. 1 is to include children
+	 * @param parseResult - contains the list of fields, or a true boolean indicating all properties
+	 * @param url - the URL of the given resource - MUST be correctly encoded
+	 * @param callback - receives each response in document order
+	 */
+	default void buildProperties(PropFindableResource pfr, int depth, PropertiesRequest parseResult, String url, PropFindResponseCallback callback) throws URISyntaxException, NotAuthorizedException, BadRequestException {
+		for (PropFindResponse r : buildProperties(pfr, depth, parseResult, url)) {
+			callback.onResponse(r);
+		}
+	}
+
 	ValueAndType getProperty(QName field, Resource resource) throws NotAuthorizedException, BadRequestException;
 
 	void processResource(List<PropFindResponse> responses, PropFindableResource resource, PropertiesRequest parseResult, String href, int requestedDepth, int currentDepth, String collectionHref) throws NotAuthorizedException, BadRequestException;
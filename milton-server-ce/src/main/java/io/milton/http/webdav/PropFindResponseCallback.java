@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.webdav;
+
+/**
+ * Receives PropFindResponse objects one at a time as they are built, so that
+ * they can be written out immediately rather than being accumulated into a
+ * list first.
+ *
+ * Used by the streaming form of PROPFIND processing, see
+ * PropFindPropertyBuilder#buildProperties(PropFindableResource, int, PropertiesRequest, String, PropFindResponseCallback)
+ *
+ * @author brad
+ */
+public interface PropFindResponseCallback {
+
+	/**
+	 * Called once for each resource included in the response, in document order
+	 *
+	 * @param response
+	 */
+	void onResponse(PropFindResponse response);
+}
@@ -25,9 +25,12 @@ import io.milton.http.XmlWriter;
 import io.milton.http.values.ValueWriters;
 import java.io.OutputStream;
 import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.commons.io.output.TeeOutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import javax.xml.namespace.QName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,6 +68,22 @@ public class PropFindXmlGenerator {
         writer.flush();
     }
 
+    /**
+     * Create a writer which generates the multistatus document incrementally,
+     * as each PropFindResponse is passed to it.
+     *
+     * @param responseOutput
+     * @param expectedProperties - property names expected in the responses, used to
+     * declare namespaces on the multistatus element. Other namespaces are declared
+     * on the response elements that need them
+     * @param writeErrorProps
+     * @return - a callback to pass responses to. Must be finished when all responses have been written
+     */
+    public PropFindXmlStreamWriter createStreamWriter( OutputStream responseOutput, Collection<QName> expectedProperties, boolean writeErrorProps ) {
+        Map<String, String> mapOfNamespaces = helper.findNameSpaces( expectedProperties );
+        return new PropFindXmlStreamWriter( helper, responseOutput, mapOfNamespaces, writeErrorProps );
+    }
+
     public void generate( List<PropFindResponse> propFindResponses, OutputStream responseOutput, boolean writeErrorProps ) {
         generate(propFindResponses, responseOutput, writeErrorProps, null);
     }
@@ -73,42 +92,58 @@ public class PropFindXmlGenerator {
         return generate(propFindResponses, null);
     }
 
+    /**
+     * Render the multistatus document once into memory and return it as a String.
+     *
+     * Prefer generate(List, OutputStream, PropFindXmlFooter) where the result
+     * is only going to be written to an output stream
+     */
     public String generate( List<PropFindResponse> propFindResponses, PropFindXmlFooter footerGenerator ) {
-        boolean writeErrorProps = true;
-        Request req = HttpManager.request();
-        if( req != null ) {
-            writeErrorProps = isBriefHeader(req);
-        }
-		
         ByteArrayOutputStream responseOutput = new ByteArrayOutputStream();
-		
-        generate(propFindResponses, responseOutput, writeErrorProps, footerGenerator);
-		
-        Map<String, String> mapOfNamespaces = helper.findNameSpaces( propFindResponses );
-        ByteArrayOutputStream generatedXml = new ByteArrayOutputStream();
-        XmlWriter writer = new XmlWriter( generatedXml );
-        writer.writeXMLHeader();
-        writer.open(WebDavProtocol.NS_DAV.getPrefix() ,"multistatus" + helper.generateNamespaceDeclarations( mapOfNamespaces ) );
-        writer.newLine();
-        helper.appendResponses( writer, propFindResponses, mapOfNamespaces, writeErrorProps );
-        if (footerGenerator != null) {
-            footerGenerator.footer(writer);
-        }
-        writer.close(WebDavProtocol.NS_DAV.getPrefix(),"multistatus" );
-        writer.flush();
+        generate(propFindResponses, responseOutput, isWriteErrorProps(), footerGenerator);
         if(log.isTraceEnabled()) {
-            log.trace("---- PROPFIND response START: " + HttpManager.request().getAbsolutePath() + " -----");
-            log.trace( generatedXml.toString() );
-            log.trace("---- PROPFIND response END -----");
+            logTrace( responseOutput );
         }
-		
         try {
             return responseOutput.toString("UTF-8");
         } catch( UnsupportedEncodingException ex ) {
             throw new RuntimeException( ex );
         }
     }
-	
+
+    /**
+     * Render the multistatus document directly to the given output stream, in
+     * a single pass. A copy is only kept in memory if trace logging is enabled
+     *
+     * @param footerGenerator  Use this parameter for writing additional footer elements.
+     */
+    public void generate( List<PropFindResponse> propFindResponses, OutputStream responseOutput, PropFindXmlFooter footerGenerator ) {
+        boolean writeErrorProps = isWriteErrorProps();
+        if(log.isTraceEnabled()) {
+            ByteArrayOutputStream traceCopy = new ByteArrayOutputStream();
+            generate(propFindResponses, new TeeOutputStream(responseOutput, traceCopy), writeErrorProps, footerGenerator);
+            logTrace( traceCopy );
+        } else {
+            generate(propFindResponses, responseOutput, writeErrorProps, footerGenerator);
+        }
+    }
+
+    private boolean isWriteErrorProps() {
+        boolean writeErrorProps = true;
+        Request req = HttpManager.request();
+        if( req != null ) {
+            writeErrorProps = isBriefHeader(req);
+        }
+        return writeErrorProps;
+    }
+
+    private void logTrace( ByteArrayOutputStream generatedXml ) {
+        Request req = HttpManager.request();
+        log.trace("---- PROPFIND response START: " + (req == null ? "" : req.getAbsolutePath()) + " -----");
+        log.trace( generatedXml.toString() );
+        log.trace("---- PROPFIND response END -----");
+    }
+
     private boolean isBriefHeader(Request request) {
         String b = request.getHeaders().get("Brief");
         return "t".equals(b);
@@ -28,6 +28,7 @@ import io.milton.http.webdav.PropFindResponse.NameAndError;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -56,14 +57,7 @@ public class PropFindXmlGeneratorHelper {
 	 */
 	Map<String, String> findNameSpaces(List<PropFindResponse> propFindResponses) {
 		int i = 1;
-		Map<String, String> map = new HashMap<>();
-		// always add webdav namespace
-		map.put(WebDavProtocol.NS_DAV.getName(), WebDavProtocol.NS_DAV.getPrefix());
-		// Hack for caldav!!! Temporary only!!!
-		//xmlns:cal="urn:ietf:params:xml:ns:caldav" xmlns:cs="http://calendarserver.org/ns/"
-		map.put("urn:ietf:params:xml:ns:caldav", "cal");
-		map.put("http://calendarserver.org/ns/", "cs");
-		map.put("urn:ietf:params:xml:ns:carddav", "card");
+		Map<String, String> map = defaultNameSpaces();
 		for (PropFindResponse r : propFindResponses) {
 			for (QName p : r.getKnownProperties().keySet()) {
 				String uri = p.getNamespaceURI();
@@ -76,6 +70,56 @@ public class PropFindXmlGeneratorHelper {
 		return map;
 	}
 
+	/**
+	 * Find namespaces from a set of property names known before any responses
+	 * have been built, such as the names requested in a PROPFIND. Used when
+	 * streaming, where the multistatus element must be written before the
+	 * responses are available
+	 *
+	 * @param propertyNames
+	 * @return - map where key is the uri, and value is the prefix
+	 */
+	Map<String, String> findNameSpaces(Collection<QName> propertyNames) {
+		Map<String, String> map = defaultNameSpaces();
+		if (propertyNames != null) {
+			for (QName p : propertyNames) {
+				addNameSpace(map, p.getNamespaceURI());
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Add a prefix for the given uri if there isnt already one
+	 *
+	 * @param map
+	 * @param uri
+	 * @return - the prefix if one was added, otherwise null
+	 */
+	String addNameSpace(Map<String, String> map, String uri) {
+		if (map.containsKey(uri)) {
+			return null;
+		}
+		String prefix = "ns" + map.size();
+		while (map.containsValue(prefix)) {
+			prefix = prefix + "_";
+		}
+		map.put(uri, prefix);
+		return prefix;
+	}
+
+	private Map<String, String> defaultNameSpaces() {
+		Map<String, String> map = new HashMap<>();
+		// always add webdav namespace
+		map.put(WebDavProtocol.NS_DAV.getName(), WebDavProtocol.NS_DAV.getPrefix());
+		// Hack for caldav!!! Temporary only!!!
+		//xmlns:cal="urn:ietf:params:xml:ns:caldav" xmlns:cs="http://calendarserver.org/ns/"
+		map.put("urn:ietf:params:xml:ns:caldav", "cal");
+		map.put("http://calendarserver.org/ns/", "cs");
+		map.put("urn:ietf:params:xml:ns:carddav", "card");
+		return map;
+	}
+
 	String generateNamespaceDeclarations(Map<String, String> mapOfNamespaces) {
 		StringBuilder decs = new StringBuilder();
 		for (String uri : mapOfNamespaces.keySet()) {
@@ -93,7 +137,26 @@ public class PropFindXmlGeneratorHelper {
 	}
 
 	public void appendResponse(XmlWriter writer, PropFindResponse r, Map<String, String> mapOfNamespaces, boolean writeErrorProps) {
+		appendResponse(writer, r, mapOfNamespaces, writeErrorProps, null);
+	}
+
+	/**
+	 * Write a single response element
+	 *
+	 * @param writer
+	 * @param r
+	 * @param mapOfNamespaces - all namespaces in scope for this response
+	 * @param writeErrorProps
+	 * @param localNamespaces - optional, namespaces which were not declared on the
+	 * multistatus element and so must be declared on this response element
+	 */
+	void appendResponse(XmlWriter writer, PropFindResponse r, Map<String, String> mapOfNamespaces, boolean writeErrorProps, Map<String, String> localNamespaces) {
       XmlWriter.Element el = writer.begin(WebDavProtocol.NS_DAV.getPrefix(), "response");
+      if (localNamespaces != null) {
+          for (Map.Entry<String, String> e : localNamespaces.entrySet()) {
+              el.writeAtt("xmlns:" + e.getValue(), e.getKey());
+          }
+      }
       el.open();
       writer.writeProperty(WebDavProtocol.NS_DAV.getPrefix(), "href", r.getHref());
       if (r.getStatus() != null) {
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.webdav;
+
+import io.milton.http.XmlWriter;
+import io.milton.http.webdav.PropFindResponse.NameAndError;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.namespace.QName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a multistatus document incrementally, one response at a time, as
+ * responses are passed to onResponse. Nothing is retained once a response
+ * has been written, so memory use does not depend on the number of responses.
+ *
+ * Because the multistatus element is written before the responses are known,
+ * namespaces must be provided up front (usually from the requested property
+ * names). Any namespace which turns up later is declared on the response
+ * element which uses it.
+ *
+ * Create with PropFindXmlGenerator#createStreamWriter, and call finish once all
+ * responses have been written.
+ *
+ * @author brad
+ */
+public class PropFindXmlStreamWriter implements PropFindResponseCallback {
+
+	private static final Logger log = LoggerFactory.getLogger(PropFindXmlStreamWriter.class);
+	private final PropFindXmlGeneratorHelper helper;
+	private final XmlWriter writer;
+	private final Map<String, String> mapOfNamespaces;
+	private final boolean writeErrorProps;
+	private boolean started;
+	private int count;
+
+	PropFindXmlStreamWriter(PropFindXmlGeneratorHelper helper, OutputStream out, Map<String, String> mapOfNamespaces, boolean writeErrorProps) {
+		this.helper = helper;
+		this.writer = new XmlWriter(out);
+		this.mapOfNamespaces = mapOfNamespaces;
+		this.writeErrorProps = writeErrorProps;
+	}
+
+	@Override
+	public void onResponse(PropFindResponse response) {
+		start();
+		Map<String, String> local = findUndeclaredNameSpaces(response);
+		if (local == null) {
+			helper.appendResponse(writer, response, mapOfNamespaces, writeErrorProps, null);
+		} else {
+			Map<String, String> inScope = new HashMap<>(mapOfNamespaces);
+			inScope.putAll(local);
+			helper.appendResponse(writer, response, inScope, writeErrorProps, local);
+		}
+		count++;
+	}
+
+	/**
+	 * Write the closing multistatus element and flush the output
+	 *
+	 * @param footerGenerator - optional, used to write additional footer elements
+	 */
+	public void finish(PropFindXmlFooter footerGenerator) {
+		start();
+		if (footerGenerator != null) {
+			footerGenerator.footer(writer);
+		}
+		writer.close(WebDavProtocol.NS_DAV.getPrefix(), "multistatus");
+		writer.flush();
+		if (log.isTraceEnabled()) {
+			log.trace("finish: wrote responses: " + count);
+		}
+	}
+
+	/**
+	 *
+	 * @return - the number of responses written so far
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * The header is written lazily so that errors which occur before the
+	 * first response is available can still be reported with a proper status
+	 */
+	private void start() {
+		if (started) {
+			return;
+		}
+		started = true;
+		writer.writeXMLHeader();
+		writer.open(WebDavProtocol.NS_DAV.getPrefix(), "multistatus" + helper.generateNamespaceDeclarations(mapOfNamespaces));
+		writer.newLine();
+	}
+
+	private Map<String, String> findUndeclaredNameSpaces(PropFindResponse response) {
+		Map<String, String> local = null;
+		if (response.getKnownProperties() != null) {
+			for (QName p : response.getKnownProperties().keySet()) {
+				local = addIfUndeclared(local, p.getNamespaceURI());
+			}
+		}
+		if (writeErrorProps && response.getErrorProperties() != null) {
+			for (List<NameAndError> list : response.getErrorProperties().values()) {
+				for (NameAndError ne : list) {
+					local = addIfUndeclared(local, ne.getName().getNamespaceURI());
+				}
+			}
+		}
+		return local;
+	}
+
+	private Map<String, String> addIfUndeclared(Map<String, String> local, String uri) {
+		if (mapOfNamespaces.containsKey(uri) || (local != null && local.containsKey(uri))) {
+			return local;
+		}
+		if (local == null) {
+			local = new LinkedHashMap<>();
+		}
+		Map<String, String> all = new HashMap<>(mapOfNamespaces);
+		all.putAll(local);
+		String prefix = helper.addNameSpace(all, uri);
+		local.put(uri, prefix);
+		return local;
+	}
+}
@@ -85,6 +85,7 @@ public class WebDavProtocol implements HttpExtension, PropertySource {
 	private final DisplayNameFormatter displayNameFormatter;
 	private final MkColHandler mkColHandler;
 	private final PropPatchHandler propPatchHandler;
+	private final PropFindHandler propFindHandler;
 	private List<CustomPostHandler> customPostHandlers;
 
 	public WebDavProtocol(HandlerHelper handlerHelper, ResourceTypeHelper resourceTypeHelper, WebDavResponseHandler responseHandler, List<PropertySource> propertySources, QuotaDataAccessor quotaDataAccessor, PropPatchSetter patchSetter, PropertyAuthoriser propertyAuthoriser, ETagGenerator eTagGenerator, UrlAdapter urlAdapter, ResourceHandlerHelper resourceHandlerHelper, UserAgentHelper userAgentHelper, PropFindRequestFieldParser requestFieldParser, PropFindPropertyBuilder propertyBuilder, DisplayNameFormatter displayNameFormatter, boolean enableTextContentProperty) {
@@ -142,7 +143,7 @@ public class WebDavProtocol implements HttpExtension, PropertySource {
 			patchSetter = new PropertySourcePatchSetter(propertySources, valueWriters);
 		}
 		//handlers.add(new PropFindHandler(resourceHandlerHelper, resourceTypeHelper, responseHandler, propertySources));
-		PropFindHandler propFindHandler = new PropFindHandler(resourceHandlerHelper, requestFieldParser, responseHandler, propertyBuilder);
+		propFindHandler = new PropFindHandler(resourceHandlerHelper, requestFieldParser, responseHandler, propertyBuilder);
 		handlers.add(propFindHandler);
 		mkColHandler = new MkColHandler(responseHandler, handlerHelper);
 		handlers.add(mkColHandler);
@@ -582,4 +583,8 @@ public class WebDavProtocol implements HttpExtension, PropertySource {
 	public PropPatchHandler getPropPatchHandler() {
 		return propPatchHandler;
 	}
+
+	public PropFindHandler getPropFindHandler() {
+		return propFindHandler;
+	}
 }
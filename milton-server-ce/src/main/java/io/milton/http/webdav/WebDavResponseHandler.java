@@ -24,7 +24,11 @@ import io.milton.http.Request;
 import io.milton.resource.Resource;
 import io.milton.http.Response;
 import io.milton.http.http11.Http11ResponseHandler;
+import io.milton.http.exceptions.BadRequestException;
+import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.http.quota.StorageChecker.StorageErrorReason;
+import io.milton.resource.PropFindableResource;
+import java.net.URISyntaxException;
 import java.util.List;
 
 /**
@@ -44,6 +48,29 @@ public interface WebDavResponseHandler extends Http11ResponseHandler{
      */
     void respondPropFind( List<PropFindResponse> propFindResponses, Response response, Request request, Resource r );
 
+    /**
+     * Generate a streaming response for a PROPFIND. Responses are built by the
+     * property builder and written as they become available, without setting
+     * a content length, so the container will use chunked transfer encoding
+     * and memory use does not grow with the size of the collection.
+     *
+     * The default implementation builds the whole list of responses and then
+     * calls respondPropFind, so implementations which do not support streaming
+     * still behave correctly.
+     *
+     * @param propertyBuilder - used to build the responses
+     * @param pfr - the resource the PROPFIND was made against
+     * @param depth - the depth header
+     * @param parseResult - the requested properties
+     * @param url - the encoded url of pfr
+     * @param response
+     * @param request
+     */
+    default void respondPropFind( PropFindPropertyBuilder propertyBuilder, PropFindableResource pfr, int depth, PropertiesRequest parseResult, String url, Response response, Request request ) throws URISyntaxException, NotAuthorizedException, BadRequestException {
+        List<PropFindResponse> propFindResponses = propertyBuilder.buildProperties(pfr, depth, parseResult, url);
+        respondPropFind(propFindResponses, response, request, pfr);
+    }
+
     void respondInsufficientStorage( Request request, Response response, StorageErrorReason storageErrorReason );
 
     void respondLocked( Request request, Response response, Resource existingResource );
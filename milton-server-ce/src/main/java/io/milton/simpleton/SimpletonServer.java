@@ -22,6 +22,7 @@ import io.milton.http.http11.Http11ResponseHandler;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.concurrent.RejectedExecutionException;
 import org.simpleframework.http.Request;
 import org.simpleframework.http.Response;
 import org.simpleframework.http.core.Container;
@@ -38,6 +39,7 @@ public class SimpletonServer implements Container {
 
     private static final Logger log = LoggerFactory.getLogger(SimpletonServer.class);
     protected final Stage<Task> dispatchStage;
+    protected final VirtualThreadStage virtualStage;
 	private final HttpManager httpManager;
     private final Http11ResponseHandler responseHandler;
     private int httpPort = 80;
@@ -51,11 +53,30 @@ public class SimpletonServer implements Container {
 
     public SimpletonServer(HttpManager httpManager, Http11ResponseHandler responseHandler, int capacity, int numThreads) {
 		this.httpManager = httpManager;
+        virtualStage = null;
         dispatchStage = new Stage<>("dispatchStage", capacity, numThreads, false);
         this.responseHandler = responseHandler;
         thMonitor = new Thread(new TaskMonitor());
     }
 
+    /**
+     * Dispatch requests with a VirtualThreadStage instead of a Stage, so each
+     * request runs on its own virtual thread where available. The stage's
+     * maxQueueTimeMillis is kept, and requests it rejects get a 503
+     *
+     * @param httpManager
+     * @param responseHandler
+     * @param virtualStage
+     */
+    public SimpletonServer(HttpManager httpManager, Http11ResponseHandler responseHandler, VirtualThreadStage virtualStage) {
+        this.httpManager = httpManager;
+        this.dispatchStage = null;
+        this.virtualStage = virtualStage;
+        this.responseHandler = responseHandler;
+        this.maxQueueTimeMillis = (int) virtualStage.getMaxQueueTimeMillis();
+        thMonitor = new Thread(new TaskMonitor());
+    }
+
 
     public void start() {
         stopped = false;
@@ -87,7 +108,11 @@ public class SimpletonServer implements Container {
 
     public void stop() {
         try {
-            dispatchStage.close();
+            if (virtualStage != null) {
+                virtualStage.close();
+            } else {
+                dispatchStage.close();
+            }
         } catch (IOException ex) {
             log.error("exception closing dispatchStage", ex);
         }
@@ -104,7 +129,14 @@ public class SimpletonServer implements Container {
     public void handle(Request request, Response response) {
         Task task = new Task(httpManager, request, response);
         try {
-            dispatchStage.enqueue(task);
+            if (virtualStage != null) {
+                virtualStage.enqueue(task);
+            } else {
+                dispatchStage.enqueue(task);
+            }
+        } catch (RejectedExecutionException e) {
+            log.debug("request rejected: " + e.getMessage());
+            task.respondError(503);
         } catch (Exception e) {
             log.debug("exception dispatching request: " + e.getMessage());
             SimpleMiltonRequest req = new SimpleMiltonRequest(request);
@@ -166,6 +198,9 @@ public class SimpletonServer implements Container {
 
     public void setMaxQueueTimeMillis(int maxQueueTimeMillis) {
         this.maxQueueTimeMillis = maxQueueTimeMillis;
+        if (virtualStage != null) {
+            virtualStage.setMaxQueueTimeMillis(maxQueueTimeMillis);
+        }
     }
 
     public class TaskMonitor implements Runnable {
@@ -186,6 +221,17 @@ public class SimpletonServer implements Container {
 
     private void checkTasks() {
         long l;
+        if (virtualStage != null) {
+            // queue time is enforced by the stage, so only check process time
+            for (Task t : virtualStage.inFlight) {
+                l = System.currentTimeMillis() - t.startTime;
+                if (t.startTime > 0 && l > maxProcessTimeMillis) {
+                    log.warn("**** task is too long being processed: " + l + "ms. " + t);
+                    t.thisThread.interrupt();
+                }
+            }
+            return;
+        }
         for (Task t : this.dispatchStage.queue) {
             // check enqueue time
             l = System.currentTimeMillis() - t.enqueueTime;
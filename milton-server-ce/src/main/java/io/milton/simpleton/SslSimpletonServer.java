@@ -36,6 +36,7 @@ import java.security.cert.X509Certificate;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
@@ -60,6 +61,7 @@ public class SslSimpletonServer implements Container {
     private static final Logger log = LoggerFactory.getLogger( SslSimpletonServer.class );
     public static final String DEFAULT_KEYSTORE_ALGORITHM = ( Security.getProperty( "ssl.KeyManagerFactory.algorithm" ) == null ? "SunX509" : Security.getProperty( "ssl.KeyManagerFactory.algorithm" ) );
     protected final Stage<Task> dispatchStage;
+    protected final VirtualThreadStage virtualStage;
 	private final HttpManager httpManager;
     private final Http11ResponseHandler responseHandler;
     private int sslPort = 443;
@@ -78,11 +80,30 @@ public class SslSimpletonServer implements Container {
 
     public SslSimpletonServer(HttpManager httpManager, Http11ResponseHandler responseHandler, int capacity, int numThreads) {
 		this.httpManager = httpManager;
+        virtualStage = null;
         dispatchStage = new Stage<>("dispatchStage", capacity, numThreads, false);
         this.responseHandler = responseHandler;
 		thMonitor = new Thread(new TaskMonitor());
     }
 
+    /**
+     * Dispatch requests with a VirtualThreadStage instead of a Stage, so each
+     * request runs on its own virtual thread where available. The stage's
+     * maxQueueTimeMillis is kept, and requests it rejects get a 503
+     *
+     * @param httpManager
+     * @param responseHandler
+     * @param virtualStage
+     */
+    public SslSimpletonServer( HttpManager httpManager, Http11ResponseHandler responseHandler, VirtualThreadStage virtualStage ) {
+        this.httpManager = httpManager;
+        this.dispatchStage = null;
+        this.virtualStage = virtualStage;
+        this.responseHandler = responseHandler;
+        this.maxQueueTimeMillis = (int) virtualStage.getMaxQueueTimeMillis();
+        thMonitor = new Thread( new TaskMonitor() );
+    }
+
     public void start() {
         stopped = false;
 
@@ -150,7 +171,11 @@ public class SslSimpletonServer implements Container {
 
     public void stop() {
         try {
-            dispatchStage.close();
+            if( virtualStage != null ) {
+                virtualStage.close();
+            } else {
+                dispatchStage.close();
+            }
         } catch( IOException ex ) {
             log.error( "exception closing dispatchStage", ex );
         }
@@ -178,7 +203,14 @@ public class SslSimpletonServer implements Container {
     public void handle( Request request, Response response ) {
         Task task = new Task( httpManager, request, response );
         try {
-            dispatchStage.enqueue( task );
+            if( virtualStage != null ) {
+                virtualStage.enqueue( task );
+            } else {
+                dispatchStage.enqueue( task );
+            }
+        } catch( RejectedExecutionException e ) {
+            log.warn( "request rejected: " + e.getMessage() );
+            task.respondError( 503 );
         } catch( Exception e ) {
             log.warn( "exception dispatching request: " + e.getMessage() );
             SimpleMiltonRequest req = new SimpleMiltonRequest( request );
@@ -265,6 +297,9 @@ public class SslSimpletonServer implements Container {
 
     public void setMaxQueueTimeMillis( int maxQueueTimeMillis ) {
         this.maxQueueTimeMillis = maxQueueTimeMillis;
+        if( virtualStage != null ) {
+            virtualStage.setMaxQueueTimeMillis( maxQueueTimeMillis );
+        }
     }
 
     public class TaskMonitor implements Runnable {
@@ -285,6 +320,17 @@ public class SslSimpletonServer implements Container {
 
     private void checkTasks() {
         long l;
+        if( virtualStage != null ) {
+            // queue time is enforced by the stage, so only check process time
+            for( Task t : virtualStage.inFlight ) {
+                l = System.currentTimeMillis() - t.startTime;
+                if( t.startTime > 0 && l > maxProcessTimeMillis ) {
+                    log.warn( "**** task is too long being processed: " + l + "ms. " + t );
+                    t.thisThread.interrupt();
+                }
+            }
+            return;
+        }
         for( Task t : this.dispatchStage.queue ) {
             // check enqueue time
             l = System.currentTimeMillis() - t.enqueueTime;
@@ -33,7 +33,7 @@ public class Task implements Runnable {
 	private static final Logger log = LoggerFactory.getLogger(Task.class);
 	
 	final long enqueueTime;
-	long startTime;
+	volatile long startTime;
 	final HttpManager httpManager;
 	final Response response;
 	final Request request;
@@ -68,11 +68,21 @@ public class Task implements Runnable {
 	}
 
 	private void respondFinalError(Task t) {
+		t.respondError(500);
+	}
+
+	/**
+	 * Set the given status and close the response, for when the request could
+	 * not be processed
+	 *
+	 * @param code
+	 */
+	void respondError(int code) {
 		try {
 			log.warn("setting error status becaue request could not be processed");
-			t.response.setCode(500);
-			//            t.response.commit();
-			t.response.close();
+			response.setCode(code);
+			//            response.commit();
+			response.close();
 		} catch (Exception e) {
 			log.error("error setting last chance error status", e);
 		}
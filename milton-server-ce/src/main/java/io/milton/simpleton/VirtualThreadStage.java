@@ -0,0 +1,303 @@
+/*
+ *
+ * Copyright 2014 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.milton.simpleton;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An alternative to Stage which runs each task on its own virtual thread, when
+ * running on JDK 21 or later. On older JDKs it falls back to a fixed pool of
+ * maxConcurrent platform threads.
+ * <p>
+ * At most maxConcurrent tasks run at once, controlled by a semaphore. Tasks
+ * which cant get a permit within maxQueueTimeMillis of being enqueued are
+ * rejected with a 503, as are new tasks while more than maxWaiting are already
+ * waiting. Since a virtual thread waiting for a permit is cheap, bursts are
+ * absorbed rather than rejected as long as they clear within the queue time.
+ * <p>
+ * close() stops accepting tasks and waits up to drainTimeoutMillis for those
+ * already accepted to complete before interrupting them. Tasks which had not
+ * started by then are rejected with a 503.
+ *
+ * @author brad
+ */
+public class VirtualThreadStage implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadStage.class);
+
+    final String name;
+    final Set<Task> inFlight = ConcurrentHashMap.newKeySet();
+    private final int maxConcurrent;
+    private final int maxWaiting;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalQueueMillis = new AtomicLong();
+    private final AtomicLong maxQueueMillis = new AtomicLong();
+    private volatile long maxQueueTimeMillis = 10000;
+    private long drainTimeoutMillis = 30000;
+    private volatile boolean closed;
+
+    public VirtualThreadStage(String name, int maxConcurrent, int maxWaiting) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaiting = maxWaiting;
+        this.permits = new Semaphore(maxConcurrent);
+        ExecutorService exec = newVirtualThreadExecutor();
+        this.virtual = exec != null;
+        if (exec == null) {
+            log.info(name + ": virtual threads not available, using " + maxConcurrent + " platform threads");
+            AtomicInteger counter = new AtomicInteger();
+            exec = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "Stage-" + name + "-" + counter.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        this.executor = exec;
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor is only available from JDK 21,
+     * so look it up reflectively
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method m = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Accept a task for processing
+     *
+     * @param task
+     * @throws RejectedExecutionException - if closed, or too many tasks are
+     * already waiting
+     */
+    public void enqueue(Task task) {
+        if (closed) {
+            throw new RejectedExecutionException(name + " is closed");
+        }
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException(name + " has too many waiting tasks: " + maxWaiting);
+        }
+        try {
+            executor.execute(new Admission(task));
+        } catch (RejectedExecutionException e) {
+            waiting.decrementAndGet();
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private void admitAndRun(Task task) {
+        boolean ok;
+        try {
+            long remaining = maxQueueTimeMillis - (System.currentTimeMillis() - task.enqueueTime);
+            // with platform threads the wait may have been in the executor queue
+            ok = remaining > 0 && permits.tryAcquire(remaining, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            ok = false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+        long queueTime = System.currentTimeMillis() - task.enqueueTime;
+        if (!ok) {
+            log.warn(name + ": task waited too long to be admitted: " + queueTime + "ms. " + task);
+            task.respondError(503);
+            rejected.incrementAndGet();
+            return;
+        }
+        admitted.incrementAndGet();
+        totalQueueMillis.addAndGet(queueTime);
+        maxQueueMillis.accumulateAndGet(queueTime, Math::max);
+        inFlight.add(task);
+        try {
+            task.run();
+        } catch (Exception e) {
+            log.error("exception processing: " + task, e);
+        } finally {
+            inFlight.remove(task);
+            permits.release();
+        }
+    }
+
+    /**
+     * Stop accepting tasks and wait for accepted ones to finish, up to
+     * drainTimeoutMillis, then interrupt any still running and reject any not
+     * yet started
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(drainTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.warn(name + ": tasks did not complete within " + drainTimeoutMillis + "ms, interrupting");
+                rejectAll(executor.shutdownNow());
+            }
+        } catch (InterruptedException e) {
+            rejectAll(executor.shutdownNow());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Respond to tasks removed from the executor's queue, which would
+     * otherwise never get a response
+     */
+    private void rejectAll(List<Runnable> drained) {
+        for (Runnable r : drained) {
+            if (r instanceof Admission) {
+                Task task = ((Admission) r).task;
+                waiting.decrementAndGet();
+                rejected.incrementAndGet();
+                task.respondError(503);
+            }
+        }
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getMaxWaiting() {
+        return maxWaiting;
+    }
+
+    /**
+     * Number of tasks currently running
+     *
+     * @return
+     */
+    public int getActive() {
+        return inFlight.size();
+    }
+
+    /**
+     * Number of tasks accepted but not yet admitted
+     *
+     * @return
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Average time admitted tasks spent between being enqueued and starting
+     *
+     * @return
+     */
+    public double getAverageQueueTimeMillis() {
+        long n = admitted.get();
+        return n == 0 ? 0 : (double) totalQueueMillis.get() / n;
+    }
+
+    /**
+     * Longest time an admitted task spent between being enqueued and starting
+     *
+     * @return
+     */
+    public long getLongestQueueTimeMillis() {
+        return maxQueueMillis.get();
+    }
+
+    public long getMaxQueueTimeMillis() {
+        return maxQueueTimeMillis;
+    }
+
+    /**
+     * Tasks not admitted within this time of being enqueued are rejected.
+     * Defaults to 10 seconds
+     *
+     * @param maxQueueTimeMillis
+     */
+    public void setMaxQueueTimeMillis(long maxQueueTimeMillis) {
+        this.maxQueueTimeMillis = maxQueueTimeMillis;
+    }
+
+    public long getDrainTimeoutMillis() {
+        return drainTimeoutMillis;
+    }
+
+    /**
+     * How long close waits for accepted tasks to complete. Defaults to 30
+     * seconds
+     *
+     * @param drainTimeoutMillis
+     */
+    public void setDrainTimeoutMillis(long drainTimeoutMillis) {
+        this.drainTimeoutMillis = drainTimeoutMillis;
+    }
+
+    private class Admission implements Runnable {
+
+        final Task task;
+
+        Admission(Task task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            admitAndRun(task);
+        }
+    }
+}
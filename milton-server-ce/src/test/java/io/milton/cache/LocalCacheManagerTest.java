@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.milton.cache;
+
+import java.util.Map;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class LocalCacheManagerTest extends TestCase {
+
+	LocalCacheManager cacheManager;
+
+	@Override
+	protected void setUp() throws Exception {
+		cacheManager = new LocalCacheManager();
+		cacheManager.setMaximumWeightedCapacity(10);
+	}
+
+	public void testDurable_NotEvicted() {
+		Map<String, String> map = cacheManager.getMap(MapSpec.durable("locks"));
+		for (int i = 0; i < 100; i++) {
+			map.put("k" + i, "v" + i);
+		}
+		assertEquals(100, map.size());
+		assertEquals("v0", map.get("k0"));
+	}
+
+	public void testExpireAfter() {
+		Map<String, Long> map = cacheManager.getMap(MapSpec.<String, Long>durable("expiring").expireAfter((k, v) -> v));
+		map.put("expired", -1L);
+		map.put("current", 60000L);
+		map.put("forever", Long.MAX_VALUE);
+		assertNull(map.get("expired"));
+		assertEquals(Long.valueOf(60000L), map.get("current"));
+		assertEquals(Long.valueOf(Long.MAX_VALUE), map.get("forever"));
+	}
+
+	public void testGetMap_SharedByName() {
+		Map a = cacheManager.getMap("a");
+		a.put("x", "y");
+		assertSame(a, cacheManager.getMap("a"));
+		assertNotSame(a, cacheManager.getMap("b"));
+	}
+
+	public void testGetMap_SpecMismatch() {
+		cacheManager.getMap(MapSpec.durable("locks"));
+		assertNotNull(cacheManager.getMap(MapSpec.durable("locks")));
+		try {
+			cacheManager.getMap("locks");
+			fail("Expected exception for a CACHE spec on a DURABLE map");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			cacheManager.getMap(MapSpec.<String, Long>durable("locks").expireAfter((k, v) -> v));
+			fail("Expected exception for a spec with a time to live");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		cacheManager.getMap(MapSpec.cache("c").maximumSize(5));
+		try {
+			cacheManager.getMap(MapSpec.cache("c"));
+			fail("Expected exception for a different maximum size");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testGetStats() {
+		Map<String, String> map = cacheManager.getMap(MapSpec.cache("c"));
+		map.put("x", "y");
+		map.get("x");
+		map.get("x");
+		map.get("missing");
+		cacheManager.getMap(MapSpec.durable("d"));
+
+		assertEquals(2, cacheManager.getStats().size());
+		for (MapStats stats : cacheManager.getStats()) {
+			if (stats.getName().equals("c")) {
+				assertEquals(MapSpec.Kind.CACHE, stats.getKind());
+				assertEquals(Long.valueOf(10), stats.getMaximumSize());
+				assertEquals(1, stats.getSize());
+				assertEquals(2, stats.getHitCount());
+				assertEquals(1, stats.getMissCount());
+			} else {
+				assertEquals(MapSpec.Kind.DURABLE, stats.getKind());
+				assertNull(stats.getMaximumSize());
+			}
+		}
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ *
+ * @author brad
+ */
+public class CompressedVariantCacheTest extends TestCase {
+
+	File dir;
+	CompressedVariantCache cache;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = Files.createTempDirectory("variants").toFile();
+		cache = new CompressedVariantCache(dir);
+		cache.setMaxMemoryEntrySize(100);
+		cache.setMaxMemoryBytes(250);
+		cache.setMaxDiskBytes(1000);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		cache.clear();
+		FileUtils.deleteDirectory(dir);
+	}
+
+	public void testKey() {
+		assertNull(CompressedVariantCache.key(null, "e", Response.ContentEncoding.GZIP, null));
+		assertNull(CompressedVariantCache.key("id", null, Response.ContentEncoding.GZIP, null));
+		assertFalse(CompressedVariantCache.key("id", "e", Response.ContentEncoding.GZIP, null).equals(
+				CompressedVariantCache.key("id", "e", Response.ContentEncoding.DEFLATE, null)));
+		assertFalse(CompressedVariantCache.key("id", "e", Response.ContentEncoding.GZIP, null).equals(
+				CompressedVariantCache.key("id", "e", Response.ContentEncoding.GZIP, Collections.singletonMap("v", "1"))));
+	}
+
+	public void testHitAndMiss() throws Exception {
+		assertNull(cache.get("a"));
+		CompressedVariantCache.Variant v = cache.put("a", stream(50), 50, 400);
+		assertTrue(v.isInMemory());
+		assertSame(v, cache.get("a"));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(400, cache.getBytesSaved());
+		assertEquals(0.5, cache.getHitRatio());
+		assertTrue(Arrays.equals(bytes(50), read(v)));
+	}
+
+	public void testLargeVariantsGoToDisk() throws Exception {
+		CompressedVariantCache.Variant v = cache.put("a", stream(300), 300, 3000);
+		assertFalse(v.isInMemory());
+		assertEquals(300, cache.getDiskBytes());
+		assertEquals(1, dir.list().length);
+		assertTrue(Arrays.equals(bytes(300), read(v)));
+	}
+
+	public void testNotCacheable() throws Exception {
+		assertFalse(cache.isCacheable(2000));
+		assertNull(cache.put("a", stream(2000), 2000, 2000));
+		cache.setDiskDir(null);
+		assertFalse(cache.isCacheable(300));
+		assertTrue(cache.isCacheable(100));
+	}
+
+	public void testEvictsLeastRecentlyUsed() throws Exception {
+		cache.put("a", stream(100), 100, 100);
+		cache.put("b", stream(100), 100, 100);
+		cache.get("a");
+		cache.put("c", stream(100), 100, 100);
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("c"));
+		assertEquals(200, cache.getMemoryBytes());
+		assertEquals(1, cache.getEvictions());
+
+		cache.put("d", stream(600), 600, 600);
+		cache.put("e", stream(600), 600, 600);
+		assertNull(cache.get("d"));
+		assertEquals(600, cache.getDiskBytes());
+		assertEquals(1, dir.list().length);
+	}
+
+	public void testExistingEntryIsKept() throws Exception {
+		CompressedVariantCache.Variant v = cache.put("a", stream(300), 300, 300);
+		assertSame(v, cache.put("a", stream(300), 300, 300));
+		assertEquals(1, dir.list().length);
+		assertEquals(1, cache.getSize());
+	}
+
+	public void testPutAndOpen_EvictedBeforeRead() throws Exception {
+		try (InputStream in = cache.putAndOpen("a", stream(600), 600, 600)) {
+			cache.put("b", stream(600), 600, 600);
+			assertNull(cache.get("a"));
+			// still readable, since it was opened before it was evicted
+			assertTrue(Arrays.equals(bytes(600), IOUtils.toByteArray(in)));
+		}
+	}
+
+	public void testPutAndOpen_NotCacheable() throws Exception {
+		InputStream in = stream(2000);
+		assertNull(cache.putAndOpen("a", in, 2000, 2000));
+		// not read, so the caller can send it instead
+		assertEquals(2000, in.available());
+		assertEquals(0, cache.getSize());
+	}
+
+	private static byte[] bytes(int n) {
+		byte[] arr = new byte[n];
+		for (int i = 0; i < n; i++) {
+			arr[i] = (byte) i;
+		}
+		return arr;
+	}
+
+	private static InputStream stream(int n) {
+		return new ByteArrayInputStream(bytes(n));
+	}
+
+	private static byte[] read(CompressedVariantCache.Variant v) throws Exception {
+		try (InputStream in = v.getInputStream()) {
+			return IOUtils.toByteArray(in);
+		}
+	}
+}
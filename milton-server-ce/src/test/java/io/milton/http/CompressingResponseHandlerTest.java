@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http;
+
+import io.milton.http.entity.CompressingEntity;
+import io.milton.resource.GetableResource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import junit.framework.TestCase;
+import org.apache.commons.io.IOUtils;
+
+import static org.easymock.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class CompressingResponseHandlerTest extends TestCase {
+
+	CompressingResponseHandler handler;
+
+	@Override
+	protected void setUp() throws Exception {
+		handler = new CompressingResponseHandler();
+		handler.setEncodings(Arrays.asList(Response.ContentEncoding.DEFLATE, Response.ContentEncoding.GZIP));
+	}
+
+	public void testSelectEncoding() {
+		assertEquals(Response.ContentEncoding.DEFLATE, handler.selectEncoding("gzip, deflate"));
+		assertEquals(Response.ContentEncoding.GZIP, handler.selectEncoding("gzip"));
+		assertEquals(Response.ContentEncoding.GZIP, handler.selectEncoding("gzip;q=0.5, deflate;q=0"));
+		assertEquals(Response.ContentEncoding.GZIP, handler.selectEncoding("*, deflate;q=0"));
+		assertNull(handler.selectEncoding("br"));
+		assertNull(handler.selectEncoding("identity, gzip;q=0"));
+		assertNull(handler.selectEncoding(null));
+	}
+
+	public void testCompress_Gzip() throws Exception {
+		byte[] data = sample();
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		OutputStream out = CompressingEntity.compress(bout, Response.ContentEncoding.GZIP, Deflater.BEST_SPEED);
+		out.write(data);
+		out.close();
+		assertTrue(bout.size() < data.length);
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bout.toByteArray()))) {
+			assertTrue(Arrays.equals(data, IOUtils.toByteArray(in)));
+		}
+	}
+
+	public void testCompress_Deflate() throws Exception {
+		byte[] data = sample();
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		OutputStream out = CompressingEntity.compress(bout, Response.ContentEncoding.DEFLATE, Deflater.BEST_COMPRESSION);
+		out.write(data);
+		out.close();
+		try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(bout.toByteArray()))) {
+			assertTrue(Arrays.equals(data, IOUtils.toByteArray(in)));
+		}
+	}
+
+	public void testWrite_SendContentFails() throws Exception {
+		final byte[] data = sample();
+		GetableResource resource = createMock(GetableResource.class);
+		resource.sendContent(anyObject(OutputStream.class), isNull(Range.class), isNull(Map.class), eq("text/plain"));
+		expectLastCall().andAnswer(() -> {
+			((OutputStream) getCurrentArguments()[0]).write(data);
+			throw new IOException("client went away");
+		});
+		replay(resource);
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		CompressingEntity entity = new CompressingEntity(resource, null, "text/plain", Response.ContentEncoding.GZIP, Deflater.BEST_SPEED);
+		try {
+			entity.write(null, bout);
+			fail("expected IOException");
+		} catch (IOException ex) {
+			assertEquals("client went away", ex.getMessage());
+		}
+		verify(resource);
+		// the compressing stream was finished, so what was sent before the failure is readable
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bout.toByteArray()))) {
+			assertTrue(Arrays.equals(data, IOUtils.toByteArray(in)));
+		}
+	}
+
+	private byte[] sample() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			sb.append("line ").append(i).append(" of some compressible text\n");
+		}
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
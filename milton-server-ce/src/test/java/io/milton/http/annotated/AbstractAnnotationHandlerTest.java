@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.milton.http.annotated;
+
+import io.milton.annotations.Get;
+import java.util.Collections;
+import java.util.Map;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class AbstractAnnotationHandlerTest extends TestCase {
+
+	private GetAnnotationHandler handler;
+
+	public AbstractAnnotationHandlerTest(String testName) {
+		super(testName);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		handler = new GetAnnotationHandler(new AnnotationResourceFactory());
+		handler.parseController(new TestController());
+	}
+
+	public void testGetBestMethod_MostSpecific() {
+		assertEquals("getString", handler.getBestMethod(String.class).method.getName());
+		assertEquals("getObject", handler.getBestMethod(Integer.class).method.getName());
+		// second call comes from the dispatch cache
+		assertEquals("getString", handler.getBestMethod(String.class).method.getName());
+	}
+
+	public void testGetBestMethod_ContentType() {
+		assertEquals("getJson", handler.getBestMethod(Integer.class, "application/json").method.getName());
+		assertEquals("getObject", handler.getBestMethod(Integer.class, "text/plain").method.getName());
+		assertEquals("getJson", handler.getBestMethod(Integer.class, "application/json").method.getName());
+	}
+
+	public void testGetBestMethod_Params() {
+		Map<String, String> params = Collections.singletonMap("edit", "true");
+		assertEquals("getEdit", handler.getBestMethod(Integer.class, null, params, null).method.getName());
+		assertEquals("getObject", handler.getBestMethod(Integer.class, null, Collections.emptyMap(), null).method.getName());
+		assertEquals("getObject", handler.getBestMethod(Integer.class, null, null, null).method.getName());
+		assertEquals("getEdit", handler.getBestMethod(Integer.class, null, params, null).method.getName());
+	}
+
+	public void testGetBestMethod_NotFound() {
+		GetAnnotationHandler h = new GetAnnotationHandler(new AnnotationResourceFactory());
+		h.parseController(new StringController());
+		assertNull(h.getBestMethod(Integer.class));
+		assertNull(h.getBestMethod(Integer.class));
+		assertNotNull(h.getBestMethod(String.class));
+	}
+
+	public static class TestController {
+
+		@Get
+		public String getObject(Object source) {
+			return null;
+		}
+
+		@Get
+		public String getString(String source) {
+			return null;
+		}
+
+		@Get(contentType = "application/json")
+		public String getJson(Object source) {
+			return null;
+		}
+
+		@Get(params = "edit")
+		public String getEdit(Object source) {
+			return null;
+		}
+	}
+
+	public static class StringController {
+
+		@Get
+		public String getString(String source) {
+			return null;
+		}
+	}
+}
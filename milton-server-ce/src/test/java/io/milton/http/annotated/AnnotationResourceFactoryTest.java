@@ -15,7 +15,23 @@
  */
 package io.milton.http.annotated;
 
+import io.milton.annotations.ChildrenOf;
+import io.milton.annotations.ChildrenOfNames;
+import io.milton.annotations.Name;
+import io.milton.annotations.Root;
+import io.milton.http.HttpManager;
+import io.milton.http.Request;
+import io.milton.http.fck.FckResourceFactory;
+import io.milton.resource.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import static junit.framework.Assert.assertEquals;
+import static org.easymock.EasyMock.*;
 import junit.framework.TestCase;
 
 /**
@@ -66,5 +82,174 @@ public class AnnotationResourceFactoryTest extends TestCase {
 		String s = arf.stripContext("/something/somewhere.doc");
 		System.out.println("s3: " + s);
 		assertEquals("/somewhere.doc", s);
-	}		
+	}
+
+	public void testGetResource_RequestCache() throws Exception {
+		TreeController controller = new TreeController();
+		AnnotationResourceFactory arf = factory(controller);
+		setRequest(newRequest());
+
+		Resource r1 = arf.getResource("host", "/a/x");
+		Resource r2 = arf.getResource("host", "/a/x");
+
+		assertNotNull(r1);
+		assertSame(r1, r2);
+		assertEquals(1, arf.getRequestCacheHits());
+		assertEquals(1, controller.childrenOfCalls);
+	}
+
+	public void testGetResource_RequestCacheIsolated() throws Exception {
+		TreeController controller = new TreeController();
+		AnnotationResourceFactory arf = factory(controller);
+
+		setRequest(newRequest());
+		Resource r1 = arf.getResource("host", "/a/x");
+		setRequest(newRequest());
+		Resource r2 = arf.getResource("host", "/a/x");
+
+		assertNotNull(r2);
+		assertNotSame(r1, r2);
+		assertEquals(0, arf.getRequestCacheHits());
+		assertEquals(2, arf.getRequestCacheMisses());
+		assertEquals(2, controller.childrenOfCalls);
+	}
+
+	public void testGetResource_RequestCacheDisabled() throws Exception {
+		AnnotationResourceFactory arf = factory(new TreeController());
+		arf.setRequestCacheEnabled(false);
+		setRequest(newRequest());
+
+		assertNotNull(arf.getResource("host", "/a/x"));
+		assertNotNull(arf.getResource("host", "/a/x"));
+
+		assertEquals(0, arf.getRequestCacheHits());
+		assertEquals(0, arf.getRequestCacheMisses());
+	}
+
+	public void testGetResources_UsesRequestCache() throws Exception {
+		TreeController controller = new TreeController();
+		AnnotationResourceFactory arf = factory(controller);
+		setRequest(newRequest());
+		Resource x = arf.getResource("host", "/a/x");
+
+		Map<String, Resource> found = arf.getResources("host", Arrays.asList("/a/x", "/a/y", "/a/missing"));
+
+		assertEquals(Arrays.asList("/a/x", "/a/y"), new ArrayList<>(found.keySet()));
+		assertSame(x, found.get("/a/x"));
+		assertFalse("x should come from the request cache", controller.namesRequested.contains("x"));
+		// the batch located /a/y, so a later single lookup is answered from the cache
+		long hits = arf.getRequestCacheHits();
+		assertSame(found.get("/a/y"), arf.getResource("host", "/a/y"));
+		assertEquals(hits + 1, arf.getRequestCacheHits());
+	}
+
+	public void testFckResourceFactory_DelegatesGetResources() throws Exception {
+		TreeController controller = new TreeController();
+		AnnotationResourceFactory arf = factory(controller);
+		FckResourceFactory fck = new FckResourceFactory(arf);
+		setRequest(newRequest());
+
+		Map<String, Resource> found = fck.getResources("host", Arrays.asList("/a/x", "/a/y"));
+
+		assertEquals(2, found.size());
+		assertEquals(Arrays.asList("x", "y"), controller.namesRequested);
+		assertSame(found.get("/a/x"), arf.getResource("host", "/a/x"));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		setRequest(null);
+		super.tearDown();
+	}
+
+	static Request newRequest() {
+		Request request = createNiceMock(Request.class);
+		expect(request.getAttributes()).andReturn(new HashMap<>()).anyTimes();
+		replay(request);
+		return request;
+	}
+
+	private static AnnotationResourceFactory factory(Object controller) {
+		AnnotationResourceFactory arf = new AnnotationResourceFactory();
+		arf.setControllers(Collections.singletonList(controller));
+		return arf;
+	}
+
+	/**
+	 * The request cache is keyed on the current request, which is normally
+	 * bound to the thread by HttpManager while processing
+	 */
+	@SuppressWarnings("unchecked")
+	static void setRequest(Request request) throws Exception {
+		java.lang.reflect.Field f = HttpManager.class.getDeclaredField("tlRequest");
+		f.setAccessible(true);
+		ThreadLocal<Request> tl = (ThreadLocal<Request>) f.get(null);
+		if (request == null) {
+			tl.remove();
+		} else {
+			tl.set(request);
+		}
+	}
+
+	public static class TreeController {
+
+		int childrenOfCalls;
+		final List<String> namesRequested = new ArrayList<>();
+
+		@Root
+		public TreeController getRoot() {
+			return this;
+		}
+
+		@ChildrenOf
+		public List<Folder> getFolders(TreeController root) {
+			return Collections.singletonList(new Folder("a"));
+		}
+
+		@ChildrenOf
+		public List<Item> getItems(Folder folder) {
+			childrenOfCalls++;
+			return Arrays.asList(new Item("x"), new Item("y"));
+		}
+
+		@ChildrenOfNames
+		public Map<String, Item> getItemsByName(Folder folder, List<String> names) {
+			namesRequested.addAll(names);
+			Map<String, Item> map = new LinkedHashMap<>();
+			for (String n : names) {
+				if (n.equals("x") || n.equals("y")) {
+					map.put(n, new Item(n));
+				}
+			}
+			return map;
+		}
+
+		@Name
+		public String getFolderName(Folder folder) {
+			return folder.name;
+		}
+
+		@Name
+		public String getItemName(Item item) {
+			return item.name;
+		}
+	}
+
+	public static class Folder {
+
+		final String name;
+
+		Folder(String name) {
+			this.name = name;
+		}
+	}
+
+	public static class Item {
+
+		final String name;
+
+		Item(String name) {
+			this.name = name;
+		}
+	}
 }
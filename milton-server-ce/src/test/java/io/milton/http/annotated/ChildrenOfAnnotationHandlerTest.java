@@ -0,0 +1,179 @@
+/*
+ * Copyright 2014 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.milton.http.annotated;
+
+import io.milton.annotations.CTag;
+import io.milton.annotations.ChildrenOf;
+import io.milton.annotations.Name;
+import io.milton.annotations.Root;
+import io.milton.annotations.UniqueId;
+import io.milton.http.Auth;
+import io.milton.http.Request;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import junit.framework.TestCase;
+import static org.easymock.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class ChildrenOfAnnotationHandlerTest extends TestCase {
+
+	private CountingController controller;
+	private AnnotationResourceFactory arf;
+
+	public ChildrenOfAnnotationHandlerTest(String testName) {
+		super(testName);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		controller = new CountingController();
+		arf = new AnnotationResourceFactory();
+		arf.setControllers(Collections.singletonList(controller));
+		AnnotationResourceFactoryTest.setRequest(AnnotationResourceFactoryTest.newRequest());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		AnnotationResourceFactoryTest.setRequest(null);
+		super.tearDown();
+	}
+
+	public void testExecute_NotCachedByDefault() throws Exception {
+		assertEquals(2, children().size());
+		assertEquals(2, children().size());
+
+		assertEquals(2, controller.calls);
+		assertEquals(0, arf.childrenOfAnnotationHandler.getChildrenCacheHits());
+	}
+
+	public void testExecute_CachedWhileCtagUnchanged() throws Exception {
+		arf.setChildrenCacheSize(10);
+
+		AnnoResource first = children().iterator().next();
+		Set<AnnoResource> second = children();
+
+		assertEquals(1, controller.calls);
+		assertEquals(2, second.size());
+		assertEquals(1, arf.childrenOfAnnotationHandler.getChildrenCacheHits());
+		// each request gets its own resources wrapping the cached sources
+		for (AnnoResource r : second) {
+			assertNotSame(first, r);
+		}
+
+		controller.ctag = "2";
+		assertEquals(2, children().size());
+		assertEquals(2, controller.calls);
+	}
+
+	public void testExecute_CachedPerUser() throws Exception {
+		arf.setChildrenCacheSize(10);
+
+		AnnotationResourceFactoryTest.setRequest(request("a"));
+		children();
+		AnnotationResourceFactoryTest.setRequest(request("b"));
+		children();
+		children();
+
+		assertEquals(2, controller.calls);
+		assertEquals(1, arf.childrenOfAnnotationHandler.getChildrenCacheHits());
+	}
+
+	public void testExecute_NotCachedWithoutUniqueId() throws Exception {
+		arf.setChildrenCacheSize(10);
+		controller.uniqueId = null;
+
+		children();
+		children();
+
+		assertEquals(2, controller.calls);
+		assertEquals(0, arf.childrenOfAnnotationHandler.getChildrenCacheMisses());
+	}
+
+	public void testExecute_Evicted() throws Exception {
+		arf.setChildrenCacheSize(10);
+		children();
+		arf.getChildrenCache().invalidateAll();
+
+		children();
+
+		assertEquals(2, controller.calls);
+	}
+
+	private static Request request(String user) {
+		Request request = createNiceMock(Request.class);
+		expect(request.getAttributes()).andReturn(new HashMap<>()).anyTimes();
+		expect(request.getAuthorization()).andReturn(new Auth(user, null)).anyTimes();
+		replay(request);
+		return request;
+	}
+
+	/**
+	 * Loads the children of a new root resource, as a new request would
+	 */
+	private Set<AnnoResource> children() throws Exception {
+		AnnoCollectionResource root = new AnnoCollectionResource(arf, controller, null);
+		return arf.childrenOfAnnotationHandler.execute(root, false);
+	}
+
+	public static class CountingController {
+
+		int calls;
+		String ctag = "1";
+		String uniqueId = "root";
+
+		@Root
+		public CountingController getRoot() {
+			return this;
+		}
+
+		@ChildrenOf
+		public List<Item> getItems(CountingController root) {
+			calls++;
+			return Arrays.asList(new Item("x"), new Item("y"));
+		}
+
+		@CTag
+		public String getCtag(CountingController root) {
+			return ctag;
+		}
+
+		@UniqueId
+		public String getUniqueId(CountingController root) {
+			return uniqueId;
+		}
+
+		@Name
+		public String getName(Item item) {
+			return item.name;
+		}
+	}
+
+	public static class Item {
+
+		final String name;
+
+		Item(String name) {
+			this.name = name;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.milton.http.annotated;
+
+import io.milton.annotations.Get;
+import io.milton.annotations.Principal;
+import java.lang.reflect.InvocationTargetException;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class ControllerMethodTest extends TestCase {
+
+	public ControllerMethodTest(String testName) {
+		super(testName);
+	}
+
+	public void testInvoke() throws Exception {
+		TestController c = new TestController();
+		ControllerMethod cm = new ControllerMethod(c, TestController.class.getMethod("concat", String.class, Integer.class), String.class, null);
+		assertTrue(cm.isCompiled());
+		assertEquals("a1", cm.invoke("a", 1));
+		assertEquals("bnull", cm.invoke("b", null));
+	}
+
+	public void testInvoke_Primitive() throws Exception {
+		TestController c = new TestController();
+		ControllerMethod cm = new ControllerMethod(c, TestController.class.getMethod("size", String.class), String.class, null);
+		assertEquals(3, cm.invoke("abc"));
+	}
+
+	public void testInvoke_ExceptionIsWrapped() throws Exception {
+		TestController c = new TestController();
+		ControllerMethod cm = new ControllerMethod(c, TestController.class.getMethod("fail", String.class), String.class, null);
+		try {
+			cm.invoke("x");
+			fail("Expected exception");
+		} catch (InvocationTargetException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	public void testInvoke_WrongArgCount() throws Exception {
+		TestController c = new TestController();
+		ControllerMethod cm = new ControllerMethod(c, TestController.class.getMethod("size", String.class), String.class, null);
+		try {
+			cm.invoke("a", "b");
+			fail("Expected exception");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testInvoke_WrongArgType() throws Exception {
+		TestController c = new TestController();
+		ControllerMethod cm = new ControllerMethod(c, TestController.class.getMethod("concat", String.class, Integer.class), String.class, null);
+		try {
+			cm.invoke("a", "b");
+			fail("Expected exception");
+		} catch (IllegalArgumentException e) {
+			// expected, as for Method.invoke
+		}
+	}
+
+	public void testInvoke_NullForPrimitive() throws Exception {
+		TestController c = new TestController();
+		ControllerMethod cm = new ControllerMethod(c, TestController.class.getMethod("twice", long.class), Long.class, null);
+		assertEquals(4L, cm.invoke(2L));
+		assertEquals(4L, cm.invoke(2)); // widened, as for Method.invoke
+		try {
+			cm.invoke((Object) null);
+			fail("Expected exception");
+		} catch (IllegalArgumentException e) {
+			// expected, as for Method.invoke
+		}
+	}
+
+	public void testPrincipalParams() throws Exception {
+		TestController c = new TestController();
+		ControllerMethod cm = new ControllerMethod(c, TestController.class.getMethod("withPrincipal", String.class, Object.class), String.class, null);
+		assertFalse(cm.principalParams[0]);
+		assertTrue(cm.principalParams[1]);
+		assertEquals(Object.class, cm.paramTypes[1]);
+	}
+
+	public static class TestController {
+
+		@Get
+		public String concat(String source, Integer i) {
+			return source + i;
+		}
+
+		public int size(String source) {
+			return source.length();
+		}
+
+		public long twice(long source) {
+			return source * 2;
+		}
+
+		public String fail(String source) {
+			throw new IllegalStateException("failed");
+		}
+
+		public String withPrincipal(String source, @Principal Object user) {
+			return source;
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.entity;
+
+import io.milton.http.Auth;
+import io.milton.http.Range;
+import io.milton.http.Request;
+import io.milton.http.Response;
+import io.milton.resource.RandomAccessGetableResource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+
+import static org.easymock.classextension.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class PartialEntityTest extends TestCase {
+
+	static final String CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+	StubResource resource;
+	Response response;
+
+	@Override
+	protected void setUp() throws Exception {
+		resource = new StubResource();
+		response = createMock(Response.class);
+	}
+
+	public void testWrite_RandomAccess() throws Exception {
+		String expected = "\n--XX\nContent-Type: text/plain\nContent-Range: bytes 2-4/36\n\n234"
+				+ "\n--XX\nContent-Type: text/plain\nContent-Range: bytes 30-35/36\n\nuvwxyz"
+				+ "\n--XX--\n";
+		response.setContentLengthHeader((long) expected.length());
+		replay(response);
+
+		String s = write(Arrays.asList(new Range(2L, 4L), new Range(30L, null)));
+
+		verify(response);
+		assertEquals(expected, s);
+		assertEquals(2, resource.sent.size());
+		assertEquals(30, resource.sent.get(1).getStart().longValue());
+		assertEquals(35, resource.sent.get(1).getFinish().longValue());
+	}
+
+	public void testWrite_SameAsStreamed() throws Exception {
+		List<Range> ranges = Arrays.asList(new Range(0L, 3L), new Range(10L, 12L));
+		response.setContentLengthHeader(anyLong());
+		expectLastCall().times(2);
+		replay(response);
+
+		String seekable = write(ranges);
+		resource.randomAccess = false;
+		String streamed = write(ranges);
+
+		assertEquals(streamed, seekable);
+		assertNull(resource.sent.get(2));
+	}
+
+	public void testWrite_IgnoresUnsatisfiableRange() throws Exception {
+		response.setContentLengthHeader(anyLong());
+		replay(response);
+
+		String s = write(Arrays.asList(new Range(100L, 200L), new Range(0L, 0L)));
+
+		assertEquals(1, resource.sent.size());
+		assertTrue(s.endsWith("\n\n0\n--XX--\n"));
+	}
+
+	private String write(List<Range> ranges) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new PartialEntity(resource, ranges, null, "text/plain", "XX").write(response, out);
+		return out.toString(StandardCharsets.UTF_8.name());
+	}
+
+	static class StubResource implements RandomAccessGetableResource {
+
+		boolean randomAccess = true;
+		List<Range> sent = new ArrayList<>();
+
+		@Override
+		public boolean isRandomAccess() {
+			return randomAccess;
+		}
+
+		@Override
+		public void sendContent(OutputStream out, Range range, Map<String, String> params, String contentType) throws IOException {
+			sent.add(range);
+			byte[] data = CONTENT.getBytes(StandardCharsets.UTF_8);
+			if (range == null) {
+				out.write(data);
+			} else {
+				int start = range.getStart().intValue();
+				out.write(data, start, range.getFinish().intValue() - start + 1);
+			}
+		}
+
+		@Override
+		public Long getMaxAgeSeconds(Auth auth) {
+			return null;
+		}
+
+		@Override
+		public String getContentType(String accepts) {
+			return "text/plain";
+		}
+
+		@Override
+		public Long getContentLength() {
+			return (long) CONTENT.length();
+		}
+
+		@Override
+		public String getUniqueId() {
+			return "stub";
+		}
+
+		@Override
+		public String getName() {
+			return "stub.txt";
+		}
+
+		@Override
+		public Object authenticate(String user, String password) {
+			return user;
+		}
+
+		@Override
+		public boolean authorise(Request request, Request.Method method, Auth auth) {
+			return true;
+		}
+
+		@Override
+		public String getRealm() {
+			return "test";
+		}
+
+		@Override
+		public Date getModifiedDate() {
+			return null;
+		}
+
+		@Override
+		public String checkRedirect(Request request) {
+			return null;
+		}
+	}
+}
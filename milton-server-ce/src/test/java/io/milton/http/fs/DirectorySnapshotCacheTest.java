@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.fs;
+
+import io.milton.resource.Resource;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+/**
+ *
+ * @author brad
+ */
+public class DirectorySnapshotCacheTest extends TestCase {
+
+	File dir;
+	DirectorySnapshotCache cache;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = Files.createTempDirectory("milton-snapshots").toFile();
+		Files.write(new File(dir, "b.txt").toPath(), "hello".getBytes(StandardCharsets.UTF_8));
+		new File(dir, "a").mkdir();
+		cache = new DirectorySnapshotCache();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		cache.stop();
+		FileUtils.deleteDirectory(dir);
+	}
+
+	public void testGet_HitAndInvalidate() throws Exception {
+		DirectorySnapshotCache.Snapshot s = cache.get(dir);
+		assertEquals(2, s.getEntries().size());
+		// directories first
+		assertEquals("a", s.getEntries().get(0).getFile().getName());
+		assertEquals(5, s.getEntries().get(1).getAttributes().size());
+
+		assertSame(s, cache.get(dir));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(0.5, cache.getHitRatio(), 0.001);
+
+		cache.invalidate(dir);
+		assertNotSame(s, cache.get(dir));
+		assertEquals(2, cache.getMisses());
+	}
+
+	public void testGet_DirectoryModified() throws Exception {
+		DirectorySnapshotCache.Snapshot s = cache.get(dir);
+		new File(dir, "c.txt").createNewFile();
+		dir.setLastModified(dir.lastModified() + 10000);
+
+		DirectorySnapshotCache.Snapshot s2 = cache.get(dir);
+		assertNotSame(s, s2);
+		assertEquals(3, s2.getEntries().size());
+	}
+
+	public void testGet_InvalidatedDuringLoad() throws Exception {
+		final CountDownLatch loading = new CountDownLatch(1);
+		final CountDownLatch invalidated = new CountDownLatch(1);
+		cache = new DirectorySnapshotCache() {
+			@Override
+			DirectorySnapshotCache.Snapshot load(Path p) throws IOException {
+				DirectorySnapshotCache.Snapshot s = super.load(p);
+				if (loading.getCount() > 0) {
+					loading.countDown();
+					try {
+						invalidated.await(10, TimeUnit.SECONDS);
+					} catch (InterruptedException ex) {
+						throw new IOException(ex);
+					}
+				}
+				return s;
+			}
+		};
+		final DirectorySnapshotCache.Snapshot[] stale = new DirectorySnapshotCache.Snapshot[1];
+		Thread t = new Thread(() -> {
+			try {
+				stale[0] = cache.get(dir);
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+		});
+		t.start();
+		assertTrue(loading.await(10, TimeUnit.SECONDS));
+		// a change which does not alter the directory's modified date
+		Files.write(new File(dir, "b.txt").toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+		cache.invalidate(dir);
+		invalidated.countDown();
+		t.join(10000);
+
+		assertEquals(5, stale[0].getEntries().get(1).getAttributes().size());
+		// the listing read before the invalidation was not kept
+		DirectorySnapshotCache.Snapshot s = cache.get(dir);
+		assertNotSame(stale[0], s);
+		assertEquals(7, s.getEntries().get(1).getAttributes().size());
+		assertEquals(0, cache.getHits());
+	}
+
+	public void testWatchKeys_CancelledOnEvictionAndInvalidate() throws Exception {
+		cache = new DirectorySnapshotCache(2);
+		cache.start();
+		File a = new File(dir, "a");
+		File c = new File(dir, "c");
+		c.mkdir();
+
+		cache.get(dir);
+		cache.get(dir);
+		cache.invalidate(dir);
+		cache.get(dir);
+		assertEquals(1, cache.getWatchedCount());
+
+		cache.get(a);
+		cache.get(c); // evicts dir
+		assertEquals(2, cache.getWatchedCount());
+
+		cache.invalidate(a);
+		assertEquals(1, cache.getWatchedCount());
+		cache.invalidateAll();
+		assertEquals(0, cache.getWatchedCount());
+	}
+
+	public void testWatch_InvalidatesOnChange() throws Exception {
+		cache.start();
+		DirectorySnapshotCache.Snapshot s = cache.get(dir);
+		// a change which does not alter the directory's modified date
+		Files.write(new File(dir, "b.txt").toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+		long giveUp = System.currentTimeMillis() + 15000;
+		while (cache.getWatchedCount() > 0 && System.currentTimeMillis() < giveUp) {
+			Thread.sleep(50);
+		}
+		assertEquals(0, cache.getWatchedCount());
+		assertNotSame(s, cache.get(dir));
+		assertEquals(1, cache.getWatchedCount());
+	}
+
+	public void testGetChildren() throws Exception {
+		FileSystemResourceFactory factory = new FileSystemResourceFactory(dir, null);
+		factory.setDirectorySnapshotCache(cache);
+		FsDirectoryResource root = (FsDirectoryResource) factory.resolveFile("localhost", dir);
+
+		List<? extends Resource> children = root.getChildren();
+		assertEquals(2, children.size());
+		assertTrue(children.get(0) instanceof FsDirectoryResource);
+		assertEquals(Long.valueOf(5), ((FsFileResource) children.get(1)).getContentLength());
+
+		// creating a file through the resource invalidates the listing
+		root.createNew("c.txt", new ByteArrayInputStream(new byte[3]), 3L, null);
+		assertEquals(3, root.getChildren().size());
+	}
+}
@@ -23,7 +23,20 @@
  */
 package io.milton.http.fs;
 
+import io.milton.event.DeleteEvent;
+import io.milton.event.EventManager;
+import io.milton.http.DeleteHelperImpl;
+import io.milton.http.HandlerHelper;
+import io.milton.http.LockInfo;
+import io.milton.http.LockTimeout;
+import io.milton.resource.DeletableCollectionResource;
+import io.milton.resource.DeletableResource;
+import io.milton.resource.Resource;
+import java.io.File;
+import java.nio.file.Files;
 import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import static org.easymock.EasyMock.*;
 
 /**
  *
@@ -35,9 +48,62 @@ public class FsDirectoryResourceTest extends TestCase {
 		super(testName);
 	}
 	
+	private File root;
+	private FileSystemResourceFactory factory;
+
 	@Override
 	protected void setUp() throws Exception {
 		super.setUp();
+		root = Files.createTempDirectory("fsdir").toFile();
+		FileUtils.writeStringToFile(new File(root, "dir/a.txt"), "a", "UTF-8");
+		FileUtils.writeStringToFile(new File(root, "dir/sub/b.txt"), "b", "UTF-8");
+		factory = new FileSystemResourceFactory(root, null);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		FileUtils.deleteQuietly(root);
+		super.tearDown();
+	}
+
+	public void testDelete_MembersDeletedSingly() throws Exception {
+		Resource r = factory.getResource("localhost", "/dir");
+		assertFalse(r instanceof DeletableCollectionResource);
+		EventManager eventManager = createMock(EventManager.class);
+		eventManager.fireEvent(isA(DeleteEvent.class));
+		expectLastCall().times(4); // a.txt, b.txt, sub and dir
+		replay(eventManager);
+
+		new DeleteHelperImpl(new HandlerHelper(null)).delete((DeletableResource) r, eventManager);
+
+		verify(eventManager);
+		assertFalse(new File(root, "dir").exists());
+	}
+
+	public void testDelete_BulkWithHierarchicalLockManager() throws Exception {
+		StripedLockManager lockManager = new StripedLockManager();
+		factory.setLockManager(lockManager);
+		FsFileResource b = (FsFileResource) factory.getResource("localhost", "/dir/sub/b.txt");
+		b.lock(new LockTimeout(100L), new LockInfo(LockInfo.LockScope.EXCLUSIVE, LockInfo.LockType.WRITE, "me", LockInfo.LockDepth.ZERO));
+		assertEquals(1, lockManager.getLocksWithin("/dir").size());
+		Resource r = factory.getResource("localhost", "/dir");
+		assertTrue(r instanceof DeletableCollectionResource);
+		EventManager eventManager = createMock(EventManager.class);
+		eventManager.fireEvent(isA(DeleteEvent.class));
+		replay(eventManager);
+
+		new DeleteHelperImpl(new HandlerHelper(null)).delete((DeletableResource) r, eventManager);
+
+		verify(eventManager);
+		assertFalse(new File(root, "dir").exists());
+		assertTrue(lockManager.getLocksWithin("/dir").isEmpty());
+	}
+
+	public void testDelete_BulkFlag() throws Exception {
+		factory.setBulkDelete(true);
+		Resource r = factory.getResource("localhost", "/dir");
+		assertTrue(r instanceof DeletableCollectionResource);
+		assertTrue(factory.getResource("localhost", "/").getClass() == FsBulkDeleteDirectoryResource.class);
 	}
 
 	public void testCreateCollection() {
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.fs;
+
+import io.milton.resource.MultiNamespaceCustomPropertyResource;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import javax.xml.namespace.QName;
+import junit.framework.TestCase;
+
+import static org.easymock.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class PersistentPropertyManagerTest extends TestCase {
+
+	File storeFile;
+	PersistentPropertyManager pm;
+	QName color = new QName("http://example.com/ns", "color");
+	QName size = new QName("http://example.com/ns", "size");
+
+	@Override
+	protected void setUp() throws Exception {
+		storeFile = File.createTempFile("milton-props", ".dat");
+		pm = new PersistentPropertyManager(storeFile);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		pm.stop();
+		storeFile.delete();
+	}
+
+	public void testSetGet() {
+		MultiNamespaceCustomPropertyResource r = resource("/a");
+		pm.setProperty(color, "red", r);
+		pm.setProperty(size, "big", r);
+		assertEquals("red", pm.getProperty(color, r));
+		assertEquals(2, pm.getAllPropertyNames(r).size());
+
+		pm.setProperty(color, null, r);
+		assertNull(pm.getProperty(color, r));
+		pm.setProperty(size, null, r);
+		assertNull(pm.getAllPropertyNames(r));
+		assertEquals(0, pm.getResourceCount());
+	}
+
+	public void testSurvivesRestart() throws Exception {
+		pm.setProperty(color, "red", resource("/a"));
+		pm.setProperty(color, "blue", resource("/a"));
+		pm.setProperty(color, "green", resource("/b"));
+		pm.stop();
+
+		pm = new PersistentPropertyManager(storeFile);
+		assertEquals("blue", pm.getProperty(color, resource("/a")));
+		assertEquals("green", pm.getProperty(color, resource("/b")));
+		assertEquals(2, pm.getResourceCount());
+	}
+
+	public void testTornRecordDiscarded() throws Exception {
+		pm.setProperty(color, "red", resource("/a"));
+		pm.stop();
+		long goodSize = storeFile.length();
+		try (RandomAccessFile raf = new RandomAccessFile(storeFile, "rw")) {
+			raf.seek(goodSize);
+			raf.writeInt(1000); // a header claiming more data than there is
+			raf.writeLong(0);
+			raf.write(new byte[10]);
+		}
+
+		pm = new PersistentPropertyManager(storeFile);
+		assertEquals("red", pm.getProperty(color, resource("/a")));
+		assertEquals(goodSize, pm.getFileSize());
+	}
+
+	public void testCompact() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			pm.setProperty(color, "c" + i, resource("/a"));
+		}
+		pm.setProperty(color, "x", resource("/b"));
+		long before = pm.getFileSize();
+
+		pm.compact();
+		assertTrue(pm.getFileSize() < before);
+		assertEquals(pm.getLiveBytes(), pm.getFileSize());
+		assertEquals("c99", pm.getProperty(color, resource("/a")));
+		pm.stop();
+
+		pm = new PersistentPropertyManager(storeFile);
+		assertEquals("x", pm.getProperty(color, resource("/b")));
+	}
+
+	public void testCompact_ReplaceFails() throws Exception {
+		pm.stop();
+		pm = new PersistentPropertyManager(storeFile) {
+			@Override
+			void replaceStoreFile(Path compacted, Path store) throws IOException {
+				throw new IOException("simulated");
+			}
+		};
+		pm.setProperty(color, "red", resource("/a"));
+		pm.setProperty(color, "blue", resource("/a"));
+		long before = pm.getFileSize();
+		try {
+			pm.compact();
+			fail("Expected exception");
+		} catch (UncheckedIOException e) {
+			// expected
+		}
+
+		// still usable, with the original file
+		assertEquals(before, pm.getFileSize());
+		assertEquals("blue", pm.getProperty(color, resource("/a")));
+		pm.setProperty(color, "green", resource("/b"));
+		assertFalse(new File(storeFile.getAbsolutePath() + ".compact").exists());
+		pm.stop();
+
+		pm = new PersistentPropertyManager(storeFile);
+		assertEquals("blue", pm.getProperty(color, resource("/a")));
+		assertEquals("green", pm.getProperty(color, resource("/b")));
+	}
+
+	public void testRemoveWithin_Root() {
+		pm.setProperty(color, "red", resource("/"));
+		pm.setProperty(color, "blue", resource("/a"));
+		pm.removeWithin("/");
+		assertEquals(0, pm.getResourceCount());
+	}
+
+	public void testMoveAndRemoveWithin() {
+		pm.setProperty(color, "red", resource("/a/b"));
+		pm.setProperty(color, "blue", resource("/a/b/c"));
+		pm.setProperty(color, "green", resource("/a/bc"));
+
+		pm.moveWithin("/a/b", "/x");
+		assertNull(pm.getProperty(color, resource("/a/b")));
+		assertEquals("red", pm.getProperty(color, resource("/x")));
+		assertEquals("blue", pm.getProperty(color, resource("/x/c")));
+		assertEquals("green", pm.getProperty(color, resource("/a/bc")));
+
+		pm.removeWithin("/x");
+		assertNull(pm.getProperty(color, resource("/x/c")));
+		assertEquals(1, pm.getResourceCount());
+	}
+
+	private MultiNamespaceCustomPropertyResource resource(String id) {
+		MultiNamespaceCustomPropertyResource r = createMock(MultiNamespaceCustomPropertyResource.class);
+		expect(r.getUniqueId()).andReturn(id).anyTimes();
+		replay(r);
+		return r;
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.fs;
+
+import io.milton.cache.LocalCacheManager;
+import io.milton.http.LockInfo;
+import io.milton.http.LockResult;
+import io.milton.http.LockTimeout;
+import io.milton.http.LockToken;
+import io.milton.resource.LockableResource;
+import junit.framework.TestCase;
+
+import static org.easymock.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class SimpleLockManagerTest extends TestCase {
+
+    SimpleLockManager lockManager;
+    LockInfo lockInfo;
+
+    @Override
+    protected void setUp() throws Exception {
+        lockManager = new SimpleLockManager(new LocalCacheManager());
+        lockInfo = new LockInfo(LockInfo.LockScope.EXCLUSIVE, LockInfo.LockType.WRITE, "me", LockInfo.LockDepth.ZERO);
+    }
+
+    public void testLock_Infinite() throws Exception {
+        LockableResource resource = createMock(LockableResource.class);
+        expect(resource.getUniqueId()).andReturn("a").anyTimes();
+        replay(resource);
+
+        LockResult res = lockManager.lock(LockTimeout.parseTimeout("Infinite"), lockInfo, resource);
+        assertTrue(res.isSuccessful());
+
+        LockToken token = lockManager.getCurrentToken(resource);
+        assertNotNull(token);
+        assertEquals(res.getLockToken().tokenId, token.tokenId);
+        assertFalse(lockManager.lock(new LockTimeout(100L), lockInfo, resource).isSuccessful());
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.fs;
+
+import io.milton.http.LockInfo;
+import io.milton.http.LockResult;
+import io.milton.http.LockTimeout;
+import io.milton.http.LockToken;
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.resource.LockableResource;
+import junit.framework.TestCase;
+
+import static org.easymock.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class StripedLockManagerTest extends TestCase {
+
+	StripedLockManager lockManager;
+	LockInfo lockInfo;
+
+	@Override
+	protected void setUp() throws Exception {
+		lockManager = new StripedLockManager();
+		lockInfo = new LockInfo(LockInfo.LockScope.EXCLUSIVE, LockInfo.LockType.WRITE, "me", LockInfo.LockDepth.ZERO);
+	}
+
+	public void testLockUnLock() throws NotAuthorizedException {
+		LockableResource resource = resource("a");
+
+		LockResult res = lockManager.lock(new LockTimeout(100L), lockInfo, resource);
+		assertTrue(res.isSuccessful());
+
+		LockToken token = lockManager.getCurrentToken(resource);
+		assertNotNull(token);
+		assertEquals(res.getLockToken().tokenId, token.tokenId);
+		assertEquals("me", token.info.lockedByUser);
+
+		lockManager.unlock(token.tokenId, resource);
+		assertNull(lockManager.getCurrentToken(resource));
+		assertEquals(0, lockManager.getLockCount());
+	}
+
+	public void testLock_AlreadyLocked() {
+		LockableResource resource = resource("a");
+		assertTrue(lockManager.lock(new LockTimeout(100L), lockInfo, resource).isSuccessful());
+
+		LockResult res = lockManager.lock(new LockTimeout(100L), lockInfo, resource);
+		assertFalse(res.isSuccessful());
+		assertEquals(LockResult.FailureReason.ALREADY_LOCKED, res.getFailureReason());
+
+		// a different resource is not affected
+		assertTrue(lockManager.lock(new LockTimeout(100L), lockInfo, resource("b")).isSuccessful());
+	}
+
+	public void testLock_Infinite() {
+		LockableResource resource = resource("a");
+		LockTimeout infinite = LockTimeout.parseTimeout("Infinite");
+		assertTrue(lockManager.lock(infinite, lockInfo, resource).isSuccessful());
+
+		lockManager.run();
+		assertNotNull(lockManager.getCurrentToken(resource));
+		LockResult res = lockManager.lock(infinite, lockInfo, resource);
+		assertFalse(res.isSuccessful());
+		assertEquals(LockResult.FailureReason.ALREADY_LOCKED, res.getFailureReason());
+	}
+
+	public void testUnlock_WrongToken() {
+		LockableResource resource = resource("a");
+		lockManager.lock(new LockTimeout(100L), lockInfo, resource);
+		try {
+			lockManager.unlock("not-the-token", resource);
+			fail("expected NotAuthorizedException");
+		} catch (NotAuthorizedException e) {
+			// expected
+		}
+		assertNotNull(lockManager.getCurrentToken(resource));
+	}
+
+	public void testRefresh() throws Exception {
+		LockableResource resource = resource("a");
+		LockToken token = lockManager.lock(new LockTimeout(100L), lockInfo, resource).getLockToken();
+
+		LockResult res = lockManager.refresh(token.tokenId, new LockTimeout(500L), resource);
+		assertTrue(res.isSuccessful());
+		assertEquals(token.tokenId, res.getLockToken().tokenId);
+		assertEquals(Long.valueOf(500L), lockManager.getCurrentToken(resource).timeout.getSeconds());
+	}
+
+	public void testExpiry() throws Exception {
+		LockableResource resource = resource("a");
+		lockManager.lock(new LockTimeout(0L), lockInfo, resource);
+		Thread.sleep(20);
+
+		lockManager.run();
+		assertEquals(0, lockManager.getLockCount());
+		assertNull(lockManager.getCurrentToken(resource));
+
+		// the resource can be locked again once the old lock has expired
+		assertTrue(lockManager.lock(new LockTimeout(100L), lockInfo, resource).isSuccessful());
+	}
+
+	public void testPathLock_DepthInfinity() throws Exception {
+		LockInfo infinity = new LockInfo(LockInfo.LockScope.EXCLUSIVE, LockInfo.LockType.WRITE, "me", LockInfo.LockDepth.INFINITY);
+		LockToken token = lockManager.lock(new LockTimeout(100L), infinity, resource("a"), "/a/b").getLockToken();
+		assertNotNull(token);
+
+		// the lock covers everything within /a/b, but not its parent or siblings
+		assertEquals(token.tokenId, lockManager.getCurrentToken(resource("c"), "/a/b/c/d").tokenId);
+		assertNull(lockManager.getCurrentToken(resource("x"), "/a"));
+		assertNull(lockManager.getCurrentToken(resource("x"), "/a/bb"));
+
+		// and nothing within it can be locked separately
+		assertFalse(lockManager.lock(new LockTimeout(100L), lockInfo, resource("c"), "/a/b/c").isSuccessful());
+
+		// unlocking from a member removes the lock
+		lockManager.unlock(token.tokenId, resource("c"), "a/b/c/");
+		assertNull(lockManager.getCurrentToken(resource("c"), "/a/b/c"));
+		assertEquals(0, lockManager.getLockCount());
+	}
+
+	public void testPathLock_DepthInfinityWithLockedMember() {
+		assertTrue(lockManager.lock(new LockTimeout(100L), lockInfo, resource("c"), "/a/b/c").isSuccessful());
+
+		LockInfo infinity = new LockInfo(LockInfo.LockScope.EXCLUSIVE, LockInfo.LockType.WRITE, "me", LockInfo.LockDepth.INFINITY);
+		LockResult res = lockManager.lock(new LockTimeout(100L), infinity, resource("a"), "/a");
+		assertFalse(res.isSuccessful());
+		assertEquals(LockResult.FailureReason.ALREADY_LOCKED, res.getFailureReason());
+
+		// a depth zero lock on the parent is fine
+		assertTrue(lockManager.lock(new LockTimeout(100L), lockInfo, resource("a"), "/a").isSuccessful());
+	}
+
+	public void testGetLocksWithin() {
+		lockManager.lock(new LockTimeout(100L), lockInfo, resource("1"), "/a/b/c");
+		lockManager.lock(new LockTimeout(100L), lockInfo, resource("2"), "/a/x");
+		lockManager.lock(new LockTimeout(100L), lockInfo, resource("3"), "/z");
+
+		assertEquals(2, lockManager.getLocksWithin("/a").size());
+		assertEquals(1, lockManager.getLocksWithin("/a/b").size());
+		assertEquals(3, lockManager.getLocksWithin("/").size());
+		assertTrue(lockManager.getLocksWithin("/a/y").isEmpty());
+
+		lockManager.removeLocksWithin("/a");
+		assertTrue(lockManager.getLocksWithin("/a").isEmpty());
+		assertEquals(1, lockManager.getLockCount());
+	}
+
+	public void testPathLock_Refresh() {
+		LockToken token = lockManager.lock(new LockTimeout(100L), lockInfo, resource("1"), "/a").getLockToken();
+
+		// the unique id of the resource may have changed, eg after a PUT
+		LockResult res = lockManager.refresh(token.tokenId, new LockTimeout(500L), resource("2"), "/a");
+		assertTrue(res.isSuccessful());
+		assertEquals(Long.valueOf(500L), lockManager.getCurrentToken(resource("2"), "/a").timeout.getSeconds());
+	}
+
+	private LockableResource resource(String uniqueId) {
+		LockableResource r = createMock(LockableResource.class);
+		expect(r.getUniqueId()).andReturn(uniqueId).anyTimes();
+		expect(r.getName()).andReturn(uniqueId).anyTimes();
+		replay(r);
+		return r;
+	}
+}
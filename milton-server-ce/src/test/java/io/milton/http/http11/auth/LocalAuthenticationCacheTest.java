@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.http11.auth;
+
+import io.milton.http.Auth;
+import io.milton.http.AuthenticationHandler;
+import io.milton.http.AuthenticationService;
+import io.milton.http.Request;
+import io.milton.resource.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import junit.framework.TestCase;
+
+import static org.easymock.classextension.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class LocalAuthenticationCacheTest extends TestCase {
+
+	LocalAuthenticationCache cache;
+
+	@Override
+	protected void setUp() throws Exception {
+		cache = new LocalAuthenticationCache(60, 100);
+	}
+
+	public void testGetAndPut() {
+		assertNull(cache.get("realm", "joe", "pwd"));
+		cache.put("realm", "joe", "pwd", "joeToken");
+		assertEquals("joeToken", cache.get("realm", "joe", "pwd"));
+		assertNull(cache.get("realm", "joe", "wrong"));
+		assertNull(cache.get("other", "joe", "pwd"));
+		assertNull(cache.get("realm", "joep", "wd"));
+		assertEquals(1, cache.getHits());
+		assertEquals(4, cache.getMisses());
+	}
+
+	public void testInvalidateUser() {
+		cache.put("realm", "joe", "pwd", "joeToken");
+		cache.put("other", "joe", "pwd", "joeToken");
+		cache.put("realm", "bob", "pwd", "bobToken");
+		cache.invalidate("joe");
+		assertNull(cache.get("realm", "joe", "pwd"));
+		assertNull(cache.get("other", "joe", "pwd"));
+		assertEquals("bobToken", cache.get("realm", "bob", "pwd"));
+	}
+
+	public void testAuthenticationServiceSkipsHandlerOnHit() {
+		Resource resource = createMock(Resource.class);
+		expect(resource.getRealm()).andReturn("realm").anyTimes();
+		AuthenticationHandler handler = createMock(AuthenticationHandler.class);
+		expect(handler.supports(eq(resource), anyObject(Request.class))).andReturn(true).times(2);
+		expect(handler.authenticate(eq(resource), anyObject(Request.class))).andReturn("joeToken").once();
+		replay(resource, handler);
+
+		AuthenticationService service = new AuthenticationService(Collections.singletonList(handler));
+		service.setAuthenticationCache(cache);
+		for (int i = 0; i < 2; i++) {
+			AuthenticationService.AuthStatus status = service.authenticate(resource, basicRequest("joe", "pwd"));
+			assertFalse(status.loginFailed);
+			assertEquals("joeToken", status.auth.getTag());
+		}
+		verify(handler);
+	}
+
+	private Request basicRequest(String user, String password) {
+		String enc = Base64.getEncoder().encodeToString((user + ":" + password).getBytes(StandardCharsets.UTF_8));
+		Request request = createMock(Request.class);
+		expect(request.getAttributes()).andReturn(new HashMap<>()).anyTimes();
+		expect(request.getAuthorization()).andReturn(new Auth("Basic " + enc)).anyTimes();
+		expect(request.getHostHeader()).andReturn("localhost").anyTimes();
+		replay(request);
+		return request;
+	}
+}
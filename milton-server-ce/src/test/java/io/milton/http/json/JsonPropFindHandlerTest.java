@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.json;
+
+import io.milton.http.exceptions.BadRequestException;
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.http.values.ValueAndType;
+import io.milton.http.webdav.PropFindPropertyBuilder;
+import io.milton.http.webdav.PropFindResponse;
+import io.milton.http.webdav.PropertiesRequest;
+import io.milton.http.webdav.WebDavProtocol;
+import io.milton.resource.FolderResource;
+import io.milton.resource.PropFindableResource;
+import io.milton.resource.Resource;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.namespace.QName;
+import junit.framework.TestCase;
+
+import static org.easymock.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class JsonPropFindHandlerTest extends TestCase {
+
+	static final QName NAME = new QName(WebDavProtocol.NS_DAV.getName(), "name");
+	static final QName ODD = new QName(WebDavProtocol.NS_DAV.getName(), "odd");
+
+	StubPropertyBuilder propertyBuilder;
+	JsonPropFindHandler handler;
+	FolderResource folder;
+
+	@Override
+	protected void setUp() throws Exception {
+		propertyBuilder = new StubPropertyBuilder();
+		handler = new JsonPropFindHandler(propertyBuilder);
+		List<Resource> children = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			PropFindableResource r = createMock(PropFindableResource.class);
+			expect(r.getName()).andReturn("c" + i).anyTimes();
+			replay(r);
+			children.add(r);
+		}
+		folder = createMock(FolderResource.class);
+		expect(folder.getName()).andReturn("folder").anyTimes();
+		expect((List) folder.getChildren()).andReturn(children).anyTimes();
+		replay(folder);
+	}
+
+	public void testPage() throws Exception {
+		String json = send("fields", "name", "depth", "1", "offset", "1", "limit", "2");
+		assertEquals("[{\"name\":\"folder\"},{\"name\":\"c1\"},{\"name\":\"c2\"}]", json);
+		// only the members on the page are built
+		assertEquals(2, propertyBuilder.membersBuilt);
+	}
+
+	public void testWhereAndSort() throws Exception {
+		String json = send("fields", "name", "depth", "1", "where", "odd", "sort", "-name", "limit", "2");
+		// the folder is not odd, so is excluded
+		assertEquals("[{\"name\":\"c9\"},{\"name\":\"c7\"}]", json);
+		assertEquals(2, propertyBuilder.membersBuilt);
+	}
+
+	public void testNegatedWhere() throws Exception {
+		String json = send("fields", "name", "depth", "1", "where", "!odd");
+		assertEquals("[{\"name\":\"folder\"},{\"name\":\"c0\"},{\"name\":\"c2\"},{\"name\":\"c4\"},{\"name\":\"c6\"},{\"name\":\"c8\"}]", json);
+	}
+
+	public void testWhereAndSort_Depth2() throws Exception {
+		// odd is not a field, so is only used to filter, as it is for depth 1
+		String json = send("fields", "name", "depth", "2", "where", "odd", "sort", "-name", "limit", "2");
+		assertEquals("[{\"name\":\"c9\"},{\"name\":\"c7\"}]", json);
+	}
+
+	public void testWhere_NotAuthorized() throws Exception {
+		propertyBuilder.unreadable.add("c1");
+		propertyBuilder.unreadable.add("c4");
+		assertEquals("[{\"name\":\"c3\"},{\"name\":\"c5\"}]", send("fields", "name", "depth", "1", "where", "odd", "limit", "2"));
+		assertEquals("[{\"name\":\"folder\"},{\"name\":\"c0\"},{\"name\":\"c1\"},{\"name\":\"c2\"}]", send("fields", "name", "depth", "1", "where", "!odd", "limit", "3"));
+		// unreadable values sort last
+		assertEquals("[{\"name\":\"folder\"},{\"name\":\"c1\"},{\"name\":\"c4\"}]", send("fields", "name", "depth", "1", "sort", "odd", "offset", "8"));
+	}
+
+	public void testInvalidPage() throws Exception {
+		try {
+			send("fields", "name", "offset", "x");
+			fail("expected BadRequestException");
+		} catch (BadRequestException ex) {
+			assertEquals("Invalid offset: x", ex.getReason());
+		}
+	}
+
+	private String send(String... nameValues) throws Exception {
+		Map<String, String> params = new HashMap<>();
+		for (int i = 0; i < nameValues.length; i += 2) {
+			params.put(nameValues[i], nameValues[i + 1]);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		handler.sendContent(folder, "/folder/_DAV/PROPFIND", out, null, params, null);
+		return out.toString(StandardCharsets.UTF_8.name());
+	}
+
+	/**
+	 * Has a name property, and an odd property which is true for members
+	 * whose name ends with an odd digit
+	 */
+	static class StubPropertyBuilder implements PropFindPropertyBuilder {
+
+		int membersBuilt;
+		// names of resources whose odd property the current user may not read
+		final Set<String> unreadable = new HashSet<>();
+
+		@Override
+		public List<PropFindResponse> buildProperties(PropFindableResource pfr, int depth, PropertiesRequest parseResult, String url) throws NotAuthorizedException, BadRequestException {
+			List<PropFindResponse> list = new ArrayList<>();
+			list.add(response(pfr, url + "/", parseResult.getNames()));
+			if (depth > 0 && pfr instanceof FolderResource) {
+				for (Resource child : ((FolderResource) pfr).getChildren()) {
+					list.add(response(child, url + "/" + child.getName(), parseResult.getNames()));
+				}
+			}
+			return list;
+		}
+
+		@Override
+		public ValueAndType getProperty(QName field, Resource resource) throws NotAuthorizedException {
+			if (field.equals(NAME)) {
+				return new ValueAndType(resource.getName(), String.class);
+			} else if (field.equals(ODD)) {
+				if (unreadable.contains(resource.getName())) {
+					throw new NotAuthorizedException(resource);
+				}
+				char c = resource.getName().charAt(resource.getName().length() - 1);
+				return new ValueAndType(Character.isDigit(c) && (c - '0') % 2 == 1, Boolean.class);
+			}
+			return null;
+		}
+
+		@Override
+		public void processResource(List<PropFindResponse> responses, PropFindableResource resource, PropertiesRequest parseResult, String href, int requestedDepth, int currentDepth, String collectionHref) {
+			membersBuilt++;
+			responses.add(response(resource, href, parseResult.getNames()));
+		}
+
+		@Override
+		public Set<QName> findAllProps(PropFindableResource resource) {
+			return null;
+		}
+
+		private PropFindResponse response(Resource r, String href, Set<QName> names) {
+			Map<QName, ValueAndType> known = new LinkedHashMap<>();
+			for (QName n : names) {
+				try {
+					ValueAndType vt = getProperty(n, r);
+					if (vt != null) {
+						known.put(n, vt);
+					}
+				} catch (NotAuthorizedException ex) {
+					// reported as an error property by the real builder
+				}
+			}
+			return new PropFindResponse(href, known, new HashMap<>());
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.report;
+
+import io.milton.http.Request;
+import io.milton.http.Response;
+import io.milton.http.entity.StringEntity;
+import io.milton.http.exceptions.BadRequestException;
+import io.milton.resource.Resource;
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import junit.framework.TestCase;
+import org.jdom2.Document;
+
+import static org.easymock.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class ReportHandlerTest extends TestCase {
+
+	static final String MULTIGET = "<?xml version=\"1.0\" encoding=\"utf-8\" ?>"
+			+ "<C:calendar-multiget xmlns:D=\"DAV:\" xmlns:C=\"urn:ietf:params:xml:ns:caldav\">"
+			+ "<D:prop><D:getetag/><C:calendar-data><C:comp name=\"VCALENDAR\"/></C:calendar-data></D:prop>"
+			+ "<D:href>/cal/a.ics</D:href>"
+			+ "<D:href>/cal/b&amp;c.ics</D:href>"
+			+ "</C:calendar-multiget>";
+
+	Map<String, Report> reports;
+	ReportHandler handler;
+	Request request;
+	Response response;
+	Resource resource;
+
+	@Override
+	protected void setUp() throws Exception {
+		reports = new HashMap<>();
+		handler = new ReportHandler(null, null, reports);
+		request = createNiceMock(Request.class);
+		response = createNiceMock(Response.class);
+		resource = createNiceMock(Resource.class);
+	}
+
+	public void testPullParsedReport_ReadsHrefsAndProps() throws Exception {
+		PullReport report = new PullReport();
+		reports.put("calendar-multiget", report);
+		expect(request.getInputStream()).andReturn(new ByteArrayInputStream(MULTIGET.getBytes("UTF-8")));
+		replay(request, response, resource);
+
+		handler.processExistingResource(null, request, response, resource);
+
+		assertEquals(2, report.props.size());
+		assertTrue(report.props.contains(new QName("DAV:", "getetag")));
+		assertTrue(report.props.contains(new QName("urn:ietf:params:xml:ns:caldav", "calendar-data")));
+		assertEquals("/cal/a.ics|/cal/b&c.ics|", report.hrefs.toString());
+	}
+
+	public void testDocumentReport_StillGetsDocument() throws Exception {
+		DocReport report = new DocReport();
+		reports.put("calendar-multiget", report);
+		expect(request.getInputStream()).andReturn(new ByteArrayInputStream(MULTIGET.getBytes("UTF-8")));
+		replay(request, response, resource);
+
+		handler.processExistingResource(null, request, response, resource);
+
+		assertNotNull(report.doc);
+		assertEquals("calendar-multiget", report.doc.getRootElement().getName());
+		assertEquals(2, ReportUtils.findAll(report.doc.getRootElement(), "href", null).size());
+	}
+
+	public void testDoctypeRejected() throws Exception {
+		reports.put("calendar-multiget", new DocReport());
+		String xml = "<?xml version=\"1.0\"?><!DOCTYPE foo [<!ENTITY x \"y\">]><calendar-multiget/>";
+		expect(request.getInputStream()).andReturn(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+		replay(request, response, resource);
+		try {
+			handler.processExistingResource(null, request, response, resource);
+			fail("Expected BadRequestException");
+		} catch (BadRequestException e) {
+			// expected
+		}
+	}
+
+	static class PullReport implements PullParsedReport {
+
+		Set<QName> props;
+		StringBuilder hrefs = new StringBuilder();
+
+		@Override
+		public Response.Entity processStreaming(String host, String path, Resource r, XMLStreamReader reader) throws javax.xml.stream.XMLStreamException {
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					if (reader.getLocalName().equals("prop")) {
+						props = ReportUtils.readProps(reader);
+					} else {
+						hrefs.append(reader.getElementText()).append("|");
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					break;
+				}
+			}
+			return new StringEntity("");
+		}
+
+		@Override
+		public Response.Entity processStreaming(String host, String path, Resource r, Document doc) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String getName() {
+			return "calendar-multiget";
+		}
+	}
+
+	static class DocReport implements Report {
+
+		Document doc;
+
+		@Override
+		public String getName() {
+			return "calendar-multiget";
+		}
+
+		@Override
+		public String process(String host, String path, Resource r, Document doc) {
+			this.doc = doc;
+			return "";
+		}
+	}
+}
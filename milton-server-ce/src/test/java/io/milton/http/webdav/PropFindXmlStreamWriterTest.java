@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.webdav;
+
+import io.milton.http.Response;
+import io.milton.http.values.ValueAndType;
+import io.milton.http.values.ValueWriters;
+import io.milton.http.webdav.PropFindResponse.NameAndError;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ *
+ * @author brad
+ */
+public class PropFindXmlStreamWriterTest extends TestCase {
+
+	PropFindXmlGenerator generator;
+	ByteArrayOutputStream out;
+
+	@Override
+	protected void setUp() throws Exception {
+		generator = new PropFindXmlGenerator(new ValueWriters());
+		out = new ByteArrayOutputStream();
+	}
+
+	public void testWritesEachResponse() throws Exception {
+		QName displayName = new QName(WebDavProtocol.DAV_URI, "displayname");
+		PropFindXmlStreamWriter writer = generator.createStreamWriter(out, Arrays.asList(displayName), true);
+		writer.onResponse(response("/a/", displayName, "a"));
+		writer.onResponse(response("/a/b", displayName, "b"));
+		writer.finish(null);
+
+		assertEquals(2, writer.getCount());
+		Document doc = parse();
+		NodeList list = doc.getElementsByTagNameNS(WebDavProtocol.DAV_URI, "response");
+		assertEquals(2, list.getLength());
+	}
+
+	public void testDeclaresUnexpectedNamespaceOnResponse() throws Exception {
+		QName displayName = new QName(WebDavProtocol.DAV_URI, "displayname");
+		QName custom = new QName("http://example.com/ns/", "colour");
+		PropFindXmlStreamWriter writer = generator.createStreamWriter(out, Arrays.asList(displayName), true);
+		writer.onResponse(response("/a/", displayName, "a"));
+		writer.onResponse(response("/a/b", custom, "red"));
+		writer.finish(null);
+
+		Document doc = parse(); // would fail if the prefix was not declared
+		NodeList list = doc.getElementsByTagNameNS("http://example.com/ns/", "colour");
+		assertEquals(1, list.getLength());
+		assertEquals("red", list.item(0).getTextContent());
+	}
+
+	public void testDeclaresNamespaceOfErrorProperties() throws Exception {
+		QName unknown = new QName("http://example.com/other/", "missing");
+		PropFindXmlStreamWriter writer = generator.createStreamWriter(out, null, true);
+		Map<Response.Status, List<NameAndError>> errors = new EnumMap<>(Response.Status.class);
+		List<NameAndError> notFound = new ArrayList<>();
+		notFound.add(new NameAndError(unknown, null));
+		errors.put(Response.Status.SC_NOT_FOUND, notFound);
+		writer.onResponse(new PropFindResponse("/a/", new LinkedHashMap<>(), errors));
+		writer.finish(null);
+
+		Document doc = parse();
+		assertEquals(1, doc.getElementsByTagNameNS("http://example.com/other/", "missing").getLength());
+	}
+
+	private PropFindResponse response(String href, QName name, String value) {
+		Map<QName, ValueAndType> known = new LinkedHashMap<>();
+		known.put(name, new ValueAndType(value, String.class));
+		return new PropFindResponse(href, known, new EnumMap<>(Response.Status.class));
+	}
+
+	private Document parse() throws Exception {
+		DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+		f.setNamespaceAware(true);
+		Document doc = f.newDocumentBuilder().parse(new ByteArrayInputStream(out.toByteArray()));
+		Element root = doc.getDocumentElement();
+		assertEquals("multistatus", root.getLocalName());
+		return doc;
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ *
+ * Copyright 2014 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.milton.simpleton;
+
+import junit.framework.TestCase;
+import org.simpleframework.http.Response;
+
+import static org.easymock.classextension.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class SimpletonServerTest extends TestCase {
+
+	VirtualThreadStage stage;
+
+	@Override
+	protected void setUp() throws Exception {
+		stage = new VirtualThreadStage("test", 1, 1);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		stage.close();
+	}
+
+	public void testKeepsStageQueueTime() {
+		stage.setMaxQueueTimeMillis(2000);
+		SimpletonServer server = new SimpletonServer(null, null, stage);
+		assertEquals(2000, stage.getMaxQueueTimeMillis());
+		assertEquals(2000, server.getMaxQueueTimeMillis());
+
+		SslSimpletonServer sslServer = new SslSimpletonServer(null, null, stage);
+		assertEquals(2000, stage.getMaxQueueTimeMillis());
+		assertEquals(2000, sslServer.getMaxQueueTimeMillis());
+	}
+
+	public void testRejectedWith503() throws Exception {
+		stage.close();
+		Response response = createMock(Response.class);
+		response.setCode(503);
+		expectLastCall().times(2);
+		response.close();
+		expectLastCall().times(2);
+		replay(response);
+
+		new SimpletonServer(null, null, stage).handle(null, response);
+		new SslSimpletonServer(null, null, stage).handle(null, response);
+
+		verify(response);
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ *
+ * Copyright 2014 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.milton.simpleton;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import org.simpleframework.http.Response;
+
+import static org.easymock.classextension.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class VirtualThreadStageTest extends TestCase {
+
+	VirtualThreadStage stage;
+	CountDownLatch release;
+	AtomicInteger completed;
+
+	@Override
+	protected void setUp() throws Exception {
+		release = new CountDownLatch(1);
+		completed = new AtomicInteger();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		release.countDown();
+		stage.close();
+	}
+
+	public void testRunsUpToMaxConcurrent() throws Exception {
+		stage = new VirtualThreadStage("test", 2, 10);
+		for (int i = 0; i < 3; i++) {
+			stage.enqueue(new BlockingTask(null));
+		}
+		waitFor(() -> stage.getActive() == 2);
+		assertEquals(1, stage.getWaiting());
+
+		release.countDown();
+		waitFor(() -> completed.get() == 3);
+		assertEquals(3, stage.getAdmitted());
+		assertEquals(0, stage.getRejected());
+	}
+
+	public void testRejectsAfterQueueTime() throws Exception {
+		stage = new VirtualThreadStage("test", 1, 10);
+		stage.setMaxQueueTimeMillis(50);
+		Response response = createMock(Response.class);
+		response.setCode(503);
+		response.close();
+		replay(response);
+
+		stage.enqueue(new BlockingTask(null));
+		waitFor(() -> stage.getActive() == 1);
+		stage.enqueue(new BlockingTask(response));
+		Thread.sleep(100);
+		release.countDown();
+
+		waitFor(() -> stage.getRejected() == 1);
+		verify(response);
+		assertEquals(1, completed.get());
+	}
+
+	public void testRejectsWhenTooManyWaiting() throws Exception {
+		stage = new VirtualThreadStage("test", 1, 1);
+		stage.enqueue(new BlockingTask(null));
+		waitFor(() -> stage.getActive() == 1);
+		stage.enqueue(new BlockingTask(null));
+		try {
+			stage.enqueue(new BlockingTask(null));
+			fail("should have been rejected");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		assertEquals(1, stage.getRejected());
+	}
+
+	public void testCloseDrainsAcceptedTasks() throws Exception {
+		stage = new VirtualThreadStage("test", 1, 10);
+		stage.enqueue(new BlockingTask(null));
+		stage.enqueue(new BlockingTask(null));
+		new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+			release.countDown();
+		}).start();
+
+		stage.close();
+
+		assertEquals(2, completed.get());
+		try {
+			stage.enqueue(new BlockingTask(null));
+			fail("should have been rejected");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+	}
+
+	public void testCloseRejectsTasksNotStarted() throws Exception {
+		stage = new VirtualThreadStage("test", 1, 10);
+		stage.setDrainTimeoutMillis(50);
+		Response response = createMock(Response.class);
+		response.setCode(503);
+		response.close();
+		replay(response);
+
+		stage.enqueue(new BlockingTask(null));
+		waitFor(() -> stage.getActive() == 1);
+		stage.enqueue(new BlockingTask(response));
+
+		stage.close();
+
+		waitFor(() -> stage.getRejected() == 1);
+		verify(response);
+		assertEquals(0, completed.get());
+	}
+
+	private void waitFor(Condition c) throws Exception {
+		long end = System.currentTimeMillis() + 5000;
+		while (!c.met()) {
+			if (System.currentTimeMillis() > end) {
+				fail("timed out");
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	interface Condition {
+
+		boolean met();
+	}
+
+	class BlockingTask extends Task {
+
+		BlockingTask(Response response) {
+			super(null, null, response);
+		}
+
+		@Override
+		public void run() {
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				return;
+			}
+			completed.incrementAndGet();
+		}
+
+		@Override
+		public String toString() {
+			return "BlockingTask";
+		}
+	}
+}
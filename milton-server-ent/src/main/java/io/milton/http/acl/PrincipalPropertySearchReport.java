@@ -5,10 +5,12 @@
 package io.milton.http.acl;
 
 import io.milton.http.caldav.CalDavProtocol;
+import io.milton.http.Response;
 import io.milton.http.caldav.CalendarQueryReport;
+import io.milton.http.entity.PropFindXmlEntity;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
-import io.milton.http.report.Report;
+import io.milton.http.report.StreamingReport;
 import io.milton.http.report.ReportUtils;
 import io.milton.http.webdav.PropFindPropertyBuilder;
 import io.milton.http.webdav.PropFindResponse;
@@ -61,7 +63,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author nabil.shams
  */
-public class PrincipalPropertySearchReport implements Report {
+public class PrincipalPropertySearchReport implements StreamingReport {
 
     private static final Logger log = LoggerFactory.getLogger(CalendarQueryReport.class);
     private final PropFindPropertyBuilder propertyBuilder;
@@ -82,7 +84,7 @@ public class PrincipalPropertySearchReport implements Report {
     }
 
     @Override
-    public String process(String host, String path, Resource r, Document doc) throws BadRequestException, NotAuthorizedException {
+    public Response.Entity processStreaming(String host, String path, Resource r, Document doc) throws BadRequestException, NotAuthorizedException {
         log.debug("process");
         // The requested properties
         Set<QName> props = getProps(doc);
@@ -142,9 +144,7 @@ public class PrincipalPropertySearchReport implements Report {
             respProps.addAll(resps);
         }
 
-        String xml = xmlGenerator.generate(respProps);
-        log.debug(xml);
-        return xml;
+        return new PropFindXmlEntity(xmlGenerator, respProps);
     }
 
     private Set<QName> getProps(Document doc) {
@@ -6,9 +6,13 @@
 package io.milton.http.carddav;
 
 import io.milton.http.ResourceFactory;
+import io.milton.http.Response;
+import io.milton.http.entity.PropFindXmlEntity;
+import io.milton.http.entity.StringEntity;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.http.report.QualifiedReport;
+import io.milton.http.report.StreamingReport;
 import io.milton.http.report.ReportUtils;
 import io.milton.http.webdav.PropFindPropertyBuilder;
 import io.milton.http.webdav.PropFindResponse;
@@ -106,7 +110,7 @@ or more complex with many criterias
  * @author charly-alinto
  * @date 10 sept. 2014
  */
-public class AddressBookQueryReport implements QualifiedReport
+public class AddressBookQueryReport implements QualifiedReport, StreamingReport
 {
 
 	private static final Logger log = LoggerFactory.getLogger(AddressBookMultiGetReport.class);
@@ -138,7 +142,7 @@ public class AddressBookQueryReport implements QualifiedReport
     }
 
   	@Override
-  	public String process( String host, String path, Resource res, Document doc )
+  	public Response.Entity processStreaming( String host, String path, Resource res, Document doc )
   	{
   		log.trace( "AddressBookQueryReport.process() host=" + host + " path=" + path );
   		// The requested properties
@@ -219,9 +223,7 @@ public class AddressBookQueryReport implements QualifiedReport
   					}
   				}
 
-  				String xml = this.xmlGenerator.generate( respProps );
-  				log.trace( "AddressBookQueryReport result:\n" + xml );
-  				return xml;
+  				return new PropFindXmlEntity( this.xmlGenerator, respProps );
   			}
   			else
   			{
@@ -232,7 +234,7 @@ public class AddressBookQueryReport implements QualifiedReport
   		{
   			log.error( "ERROR occured in AddressBookQueryReport.process", e );
   		}
-		return "";
+		return new StringEntity( "" );
   	}
 
   	private Set<QName> getProps( Document doc )
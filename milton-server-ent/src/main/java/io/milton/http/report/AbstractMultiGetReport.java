@@ -6,8 +6,11 @@
 package io.milton.http.report;
 
 import io.milton.common.Utils;
+import io.milton.http.BatchResourceFactory;
 import io.milton.http.HttpManager;
 import io.milton.http.ResourceFactory;
+import io.milton.http.Response;
+import io.milton.http.entity.PropFindXmlEntity;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.http.webdav.*;
@@ -20,19 +23,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * @author brad
  */
-public abstract class AbstractMultiGetReport implements QualifiedReport {
+public abstract class AbstractMultiGetReport implements QualifiedReport, PullParsedReport {
 
     private static final Logger log = LoggerFactory.getLogger(AbstractMultiGetReport.class);
+    /**
+     * Maximum number of hrefs to locate with a single call to the resource factory
+     */
+    private static final int BATCH_SIZE = 200;
     protected final ResourceFactory resourceFactory;
     protected final PropFindPropertyBuilder propertyBuilder;
     protected final PropFindXmlGenerator xmlGenerator;
@@ -48,7 +59,7 @@ public abstract class AbstractMultiGetReport implements QualifiedReport {
     }
 
     @Override
-    public String process(String host, String path, Resource calendar, Document doc) throws NotAuthorizedException, BadRequestException {
+    public Response.Entity processStreaming(String host, String path, Resource calendar, Document doc) throws NotAuthorizedException, BadRequestException {
         log.debug("process report: " + getName());
         // The requested properties
         Set<QName> props = getProps(doc);
@@ -60,25 +71,76 @@ public abstract class AbstractMultiGetReport implements QualifiedReport {
         // Generate the response
         List<PropFindResponse> respProps = new ArrayList<>();
 
-        for (String href : hrefs) {
-            if(!href.startsWith("/")) {
-                if (href.contains("://")) {
-                    try {
-                        URI uri = new URI(href);
-                        href = uri.getPath();
-                        if (log.isDebugEnabled()) {
-                            log.debug("Extracted path from absolute URI: {}", href);
-                        }
-                    } catch (URISyntaxException e) {
-                        log.warn("Invalid absolute URI in href: {}", href, e);
-                        href = Utils.suffixSlash(path) + href;
+        for (int i = 0; i < hrefs.size(); i += BATCH_SIZE) {
+            appendResponses(host, path, hrefs.subList(i, Math.min(hrefs.size(), i + BATCH_SIZE)), parseResult, respProps);
+        }
+
+        return new PropFindXmlEntity(xmlGenerator, respProps);
+    }
+
+    /**
+     * Reads the request body incrementally. Hrefs are resolved in batches of
+     * BATCH_SIZE as they are read, once the requested properties are known. The
+     * prop element normally precedes the hrefs, but any hrefs which come first
+     * are held until it has been read
+     */
+    @Override
+    public Response.Entity processStreaming(String host, String path, Resource calendar, XMLStreamReader reader) throws NotAuthorizedException, BadRequestException, XMLStreamException {
+        log.debug("process report(pull): " + getName());
+        PropertiesRequest parseResult = null;
+        List<String> pendingHrefs = new ArrayList<>();
+        List<PropFindResponse> respProps = new ArrayList<>();
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String local = reader.getLocalName();
+                boolean dav = NS_DAV.getURI().equals(reader.getNamespaceURI());
+                if (dav && local.equals("prop")) {
+                    parseResult = PropertiesRequest.toProperties(ReportUtils.readProps(reader));
+                } else if (dav && local.equals("href")) {
+                    String href = reader.getElementText();
+                    if (log.isTraceEnabled()) {
+                        log.trace(" href: " + href);
                     }
+                    pendingHrefs.add(href);
                 } else {
-                    href = Utils.suffixSlash(path) + href;
+                    ReportUtils.skipElement(reader);
+                }
+                if (parseResult != null && pendingHrefs.size() >= BATCH_SIZE) {
+                    appendResponses(host, path, pendingHrefs, parseResult, respProps);
+                    pendingHrefs.clear();
                 }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                break; // end of the root element
             }
-            String decodedHref = HttpManager.decodeUrl(href);
-            Resource r = resourceFactory.getResource(host, decodedHref);
+        }
+        if (parseResult == null) {
+            throw new BadRequestException(calendar, "No prop element");
+        }
+        appendResponses(host, path, pendingHrefs, parseResult, respProps);
+        return new PropFindXmlEntity(xmlGenerator, respProps);
+    }
+
+    /**
+     * Locate the resources for the given hrefs and append their properties,
+     * in the order of the hrefs. If the resource factory is a
+     * BatchResourceFactory the resources are located with a single call
+     */
+    private void appendResponses(String host, String path, List<String> hrefs, PropertiesRequest parseResult, List<PropFindResponse> respProps) throws NotAuthorizedException, BadRequestException {
+        if (hrefs.isEmpty()) {
+            return;
+        }
+        List<String> fullHrefs = new ArrayList<>(hrefs.size());
+        List<String> decodedHrefs = new ArrayList<>(hrefs.size());
+        for (String href : hrefs) {
+            href = toFullHref(path, href);
+            fullHrefs.add(href);
+            decodedHrefs.add(HttpManager.decodeUrl(href));
+        }
+        Map<String, Resource> resources = BatchResourceFactory.getResources(resourceFactory, host, decodedHrefs);
+        for (int i = 0; i < fullHrefs.size(); i++) {
+            String href = fullHrefs.get(i);
+            Resource r = resources.get(decodedHrefs.get(i));
             if (r != null) {
                 if (r instanceof PropFindableResource) {
                     PropFindableResource pfr = (PropFindableResource) r;
@@ -94,13 +156,26 @@ public abstract class AbstractMultiGetReport implements QualifiedReport {
                 log.warn("requested href not found: " + href + " on resource factory: " + resourceFactory.getClass());
             }
         }
+    }
 
-        String xml = xmlGenerator.generate(respProps);
-        if (log.isTraceEnabled()) {
-            log.trace(getName() + ": response");
-            log.trace(xml);
+    private String toFullHref(String path, String href) {
+        if(!href.startsWith("/")) {
+            if (href.contains("://")) {
+                try {
+                    URI uri = new URI(href);
+                    href = uri.getPath();
+                    if (log.isDebugEnabled()) {
+                        log.debug("Extracted path from absolute URI: {}", href);
+                    }
+                } catch (URISyntaxException e) {
+                    log.warn("Invalid absolute URI in href: {}", href, e);
+                    href = Utils.suffixSlash(path) + href;
+                }
+            } else {
+                href = Utils.suffixSlash(path) + href;
+            }
         }
-        return xml;
+        return href;
     }
 
     private List<String> getHrefs(Document doc) {
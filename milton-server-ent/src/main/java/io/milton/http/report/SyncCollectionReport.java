@@ -4,6 +4,7 @@ import io.milton.common.Utils;
 import io.milton.http.HttpManager;
 import io.milton.http.Response;
 import io.milton.http.XmlWriter;
+import io.milton.http.entity.PropFindXmlEntity;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.http.webdav.PropFindPropertyBuilder;
@@ -31,7 +32,7 @@ import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.Namespace;
 
-public class SyncCollectionReport implements Report {
+public class SyncCollectionReport implements StreamingReport {
     protected final Namespace NS_DAV = Namespace.getNamespace(WebDavProtocol.NS_DAV.getPrefix(), WebDavProtocol.NS_DAV.getName());
     private enum SyncLevel {
       One,
@@ -51,7 +52,7 @@ public class SyncCollectionReport implements Report {
     }
   
     @Override
-    public String process(String host, String path, Resource r, Document doc)
+    public Response.Entity processStreaming(String host, String path, Resource r, Document doc)
         throws BadRequestException, NotAuthorizedException {
         if (!(r instanceof SyncCollectionResource)) {
             throw new BadRequestException(r, "This resource does not support sync-token.");
@@ -162,7 +163,7 @@ public class SyncCollectionReport implements Report {
       
         //List<PropFindResponse>
 
-        return xmlGenerator.generate(respProps, new PropFindXmlFooter() {
+        return new PropFindXmlEntity(xmlGenerator, respProps, new PropFindXmlFooter() {
             @Override
             public void footer(XmlWriter writer) {
                 writer.writeProperty(WebDavProtocol.NS_DAV.getPrefix(), "sync-token", nextSyncToken.toString());